@@ -16,6 +16,7 @@ import com.atlassian.theplugin.commons.bamboo.BambooPlan;
 import com.atlassian.theplugin.commons.bamboo.BambooProject;
 import com.atlassian.theplugin.commons.bamboo.BuildDetails;
 import com.atlassian.theplugin.commons.bamboo.BuildIssue;
+import com.atlassian.theplugin.commons.bamboo.SubscribedPlansUpdate;
 import com.atlassian.theplugin.commons.bamboo.api.BambooSession;
 import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
 import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
@@ -46,6 +47,15 @@ public interface BambooServerFacade2 extends ProductServerFacade {
 			boolean isUseFavourities, boolean isShowBranches, boolean myBranchesOly, int timezoneOffset)
             throws ServerPasswordNotProvidedException, RemoteApiException;
 
+	/**
+	 * Incremental version of {@link #getSubscribedPlansResults}: only plans whose latest build changed since
+	 * the previous call for the same server are fully retrieved, and the changes are reported to the caller.
+	 */
+	SubscribedPlansUpdate getSubscribedPlansUpdate(
+			ConnectionCfg bambooServer, final Collection<SubscribedPlan> plans,
+			boolean isUseFavourities, boolean isShowBranches, boolean myBranchesOnly, int timezoneOffset)
+			throws ServerPasswordNotProvidedException, RemoteApiException;
+
 	BuildDetails getBuildDetails(ConnectionCfg bambooServer, @NotNull String planKey, int buildNumber)
 		throws ServerPasswordNotProvidedException, RemoteApiException;
 
@@ -14,6 +14,7 @@ package com.atlassian.connector.commons.crucible;
 import com.atlassian.connector.commons.api.ConnectionCfg;
 import com.atlassian.theplugin.commons.crucible.api.CrucibleSession;
 import com.atlassian.theplugin.commons.crucible.api.PathAndRevision;
+import com.atlassian.theplugin.commons.crucible.api.ReviewItemCommentsHandler;
 import com.atlassian.theplugin.commons.crucible.api.UploadItem;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicProject;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicReview;
@@ -195,6 +196,19 @@ public interface CrucibleServerFacade2 extends ProductServerFacade {
 	@Deprecated
 	Review getReview(ConnectionCfg server, PermId permId) throws RemoteApiException, ServerPasswordNotProvidedException;
 
+	/**
+	 * Loads review together with its items and their versioned comments.
+	 * <p/>
+	 * Crucible 2.0 and newer return all of it in a single response. Older servers are asked for review items and
+	 * then for comments of each item, several items at a time if the implementation allows concurrent requests.
+	 *
+	 * @param handler receives comments of each review item as soon as they are loaded, may be <code>null</code>
+	 * @return review with items and their comments, or <code>null</code> if there is no such review
+	 */
+	@Nullable
+	Review getReviewWithComments(ConnectionCfg server, PermId permId, @Nullable ReviewItemCommentsHandler handler)
+		throws RemoteApiException, ServerPasswordNotProvidedException;
+
 	/**
 	 * @deprecated We are going remove {@link CrucibleServerFacade2}, so getSession here is for new code that should use
 	 *             {@link CrucibleSession} directly.
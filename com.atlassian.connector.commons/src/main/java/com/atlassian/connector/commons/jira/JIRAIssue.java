@@ -135,4 +135,11 @@ public interface JIRAIssue {
     Locale getLocale();
 
     boolean usesRest();
+
+    /**
+     * @return true if only the fields listed in {@link JIRAIssueBean#SUMMARY_FIELDS} have been retrieved,
+     *         full details have to be retrieved with {@link JIRAServerFacade2#getIssueDetails} before the issue is
+     *         displayed or updated
+     */
+    boolean isSummaryOnly();
 }
@@ -41,6 +41,7 @@ import com.atlassian.jira.rest.client.domain.Status;
 import com.atlassian.jira.rest.client.domain.Subtask;
 import com.atlassian.jira.rest.client.domain.Version;
 import com.atlassian.jira.rest.client.internal.json.JsonParseUtil;
+import com.atlassian.theplugin.commons.util.TimestampParser;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
@@ -49,18 +50,29 @@ import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.jdom.Element;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 public class JIRAIssueBean implements JIRAIssue {
+    /**
+     * Fields retrieved for issue summaries (the key is always retrieved), see {@link #isSummaryOnly()}.
+     * They have the same names in REST and in the XML view of the issue navigator.
+     */
+    public static final List<String> SUMMARY_FIELDS = Collections.unmodifiableList(
+            Arrays.asList("summary", "status", "priority", "assignee", "updated"));
+
 	private Long id;
     private String serverUrl;
 	private String key;
@@ -107,6 +119,11 @@ public class JIRAIssueBean implements JIRAIssue {
     private String environment;
     private List<JiraCustomField> basicCustomFields = new ArrayList<JiraCustomField>();
     private Locale locale;
+    private boolean summaryOnly;
+    private boolean restSummary;
+
+    private static final DateTimeFormatter RSS_TIME_FORMAT = DateTimeFormat.forPattern("EEE, d MMM yyyy HH:mm:ss Z")
+            .withLocale(Locale.US);
 
     public JIRAIssueBean() {
         locale = Locale.US;
@@ -158,6 +175,8 @@ public class JIRAIssueBean implements JIRAIssue {
         this.securityLevel = issue.getSecurityLevel();
         this.environment = issue.getEnvironment();
         this.basicCustomFields = issue.getCustomFields();                
+        this.summaryOnly = issue.isSummaryOnly();
+        this.restSummary = summaryOnly && issue.usesRest();
     }
 
 	public JIRAIssueBean(String serverUrl, Element e, Locale locale) {
@@ -255,21 +274,7 @@ public class JIRAIssueBean implements JIRAIssue {
 				String text = el.getText();
 				String creationDate = el.getAttributeValue("created", "Unknown");
 
-				Calendar cal = Calendar.getInstance();
-				DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z (z)", locale);
-				try {
-					cal.setTime(df.parse(creationDate));
-				} catch (java.text.ParseException ex) {
-                    //try another one
-					df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", locale);
-                    try {
-                        cal.setTime(df.parse(creationDate));
-                    } catch (ParseException e1) {
-                        //not good date format is not handled
-                    }
-                }
-
-				commentsList.add(new JIRACommentBean(commentId, author, text, cal));
+				commentsList.add(new JIRACommentBean(commentId, author, text, parseRssTime(creationDate, locale)));
 			}
 		}
 
@@ -281,6 +286,32 @@ public class JIRAIssueBean implements JIRAIssue {
         }
 	}
 
+	/**
+	 * @return time of RSS timestamp or current time if it cannot be parsed
+	 */
+	private static Calendar parseRssTime(String date, Locale locale) {
+		Calendar cal = Calendar.getInstance();
+		final long millis = TimestampParser.parseMillis(date);
+		if (millis != TimestampParser.INVALID) {
+			cal.setTimeInMillis(millis);
+			return cal;
+		}
+		// month names in the language of the server
+		DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z (z)", locale);
+		try {
+			cal.setTime(df.parse(date));
+		} catch (ParseException ex) {
+			//try another one
+			df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", locale);
+			try {
+				cal.setTime(df.parse(date));
+			} catch (ParseException e1) {
+				//not good date format is not handled
+			}
+		}
+		return cal;
+	}
+
     public JIRAIssueBean(String url, RemoteIssue remoteIssue) {
         this.serverUrl = url;
         id = Long.valueOf(remoteIssue.getId());
@@ -377,9 +408,8 @@ public class JIRAIssueBean implements JIRAIssue {
                 this.priorityUrl = ((Priority) prio).getIconUri().toString();
             }
         }
-        DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", Locale.US);
-        this.created = df.format(issue.getCreationDate().toDate());
-        this.updated = df.format(issue.getUpdateDate().toDate());
+        this.created = RSS_TIME_FORMAT.print(issue.getCreationDate().getMillis());
+        this.updated = RSS_TIME_FORMAT.print(issue.getUpdateDate().getMillis());
         this.subTaskList = Lists.newArrayList();
         Iterable<Subtask> subtasks = issue.getSubtasks();
         if (subtasks != null) {
@@ -477,6 +507,43 @@ public class JIRAIssueBean implements JIRAIssue {
         }
     }
 
+    /**
+     * Issue summary from a REST search which retrieved only {@link #SUMMARY_FIELDS}.
+     */
+    public JIRAIssueBean(String url, JSONObject issue) throws JSONException {
+        locale = Locale.US;
+        summaryOnly = true;
+        restSummary = true;
+
+        this.serverUrl = url;
+        this.id = issue.getLong("id");
+        this.key = issue.getString("key");
+        updateProjectKey();
+        JSONObject fields = issue.getJSONObject("fields");
+        this.summary = JsonParseUtil.getOptionalString(fields, "summary");
+        JSONObject s = JsonParseUtil.getOptionalJsonObject(fields, "status");
+        if (s != null) {
+            this.statusId = s.optLong("id");
+            this.status = JsonParseUtil.getOptionalString(s, "name");
+            this.statusUrl = JsonParseUtil.getOptionalString(s, "iconUrl");
+        }
+        JSONObject prio = JsonParseUtil.getOptionalJsonObject(fields, "priority");
+        if (prio != null) {
+            this.priorityId = prio.optLong("id", -1);
+            this.priority = JsonParseUtil.getOptionalString(prio, "name");
+            this.priorityUrl = JsonParseUtil.getOptionalString(prio, "iconUrl");
+        }
+        JSONObject ass = JsonParseUtil.getOptionalJsonObject(fields, "assignee");
+        if (ass != null) {
+            this.assigneeId = JsonParseUtil.getOptionalString(ass, "name");
+            this.assignee = JsonParseUtil.getOptionalString(ass, "displayName");
+        }
+        String updateDate = JsonParseUtil.getOptionalString(fields, "updated");
+        if (updateDate != null) {
+            this.updated = RSS_TIME_FORMAT.print(JsonParseUtil.parseDateTime(updateDate).getMillis());
+        }
+    }
+
     private String getHtmlDescription(Issue issue) {
         JSONObject rf = getRenderedFields(issue.getRawObject());
         if (rf == null) {
@@ -870,7 +937,15 @@ public class JIRAIssueBean implements JIRAIssue {
     }
 
     public boolean usesRest() {
-        return apiIssueObject instanceof Issue;
+        return restSummary || apiIssueObject instanceof Issue;
+    }
+
+    public boolean isSummaryOnly() {
+        return summaryOnly;
+    }
+
+    public void setSummaryOnly(boolean summaryOnly) {
+        this.summaryOnly = summaryOnly;
     }
 
     public void setWikiDescription(String wikiDescription) {
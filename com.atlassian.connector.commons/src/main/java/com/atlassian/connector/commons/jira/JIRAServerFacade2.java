@@ -54,6 +54,50 @@ public interface JIRAServerFacade2 extends ProductServerFacade {
                                          int start,
                                          int size) throws JIRAException;
 
+    /**
+     * Issues matching the filter, retrieved page by page while they are being read.
+     *
+     * @param pageSize  number of issues requested at once
+     * @param maxIssues maximum number of issues to read, or -1 to read all of them
+     */
+    JiraIssueStream getIssueStream(ConnectionCfg httpConnectionCfg, JiraFilter filter, String sort, String sortOrder,
+                                   int pageSize, int maxIssues);
+
+    /**
+     * Issues of the saved filter, retrieved page by page while they are being read.
+     *
+     * @param pageSize  number of issues requested at once
+     * @param maxIssues maximum number of issues to read, or -1 to read all of them
+     */
+    JiraIssueStream getSavedFilterIssueStream(ConnectionCfg httpConnectionCfg, JIRASavedFilter filter, String sort,
+                                              String sortOrder, int pageSize, int maxIssues);
+
+    /**
+     * Like {@link #getIssues(ConnectionCfg, JiraFilter, String, String, int, int)}, but only the fields shown in
+     * issue lists ({@link JIRAIssueBean#SUMMARY_FIELDS}) are retrieved. Use {@link #getIssueDetails} to retrieve
+     * the rest of an issue when it is opened.
+     */
+    List<JIRAIssue> getIssueSummaries(ConnectionCfg httpConnectionCfg, JiraFilter filter, String sort,
+                                      String sortOrder, int start, int size) throws JIRAException;
+
+    /**
+     * Like {@link #getSavedFilterIssues}, but only {@link JIRAIssueBean#SUMMARY_FIELDS} are retrieved.
+     */
+    List<JIRAIssue> getSavedFilterIssueSummaries(ConnectionCfg httpConnectionCfg, JIRASavedFilter filter, String sort,
+                                                 String sortOrder, int start, int size) throws JIRAException;
+
+    /**
+     * Like {@link #getIssueStream}, but only {@link JIRAIssueBean#SUMMARY_FIELDS} are retrieved.
+     */
+    JiraIssueStream getIssueSummaryStream(ConnectionCfg httpConnectionCfg, JiraFilter filter, String sort,
+                                          String sortOrder, int pageSize, int maxIssues);
+
+    /**
+     * Like {@link #getSavedFilterIssueStream}, but only {@link JIRAIssueBean#SUMMARY_FIELDS} are retrieved.
+     */
+    JiraIssueStream getSavedFilterIssueSummaryStream(ConnectionCfg httpConnectionCfg, JIRASavedFilter filter,
+                                                     String sort, String sortOrder, int pageSize, int maxIssues);
+
     List<JIRAProject> getProjects(ConnectionCfg httpConnectionCfg) throws JIRAException;
 
     List<JIRAProject> getProjectsForIssueCreation(ConnectionCfg httpConnectionCfg) throws JIRAException;
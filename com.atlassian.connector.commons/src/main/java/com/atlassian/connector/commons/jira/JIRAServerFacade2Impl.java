@@ -30,6 +30,7 @@ import com.atlassian.connector.commons.jira.beans.JIRASecurityLevelBean;
 import com.atlassian.connector.commons.jira.beans.JIRAUserBean;
 import com.atlassian.connector.commons.jira.beans.JIRAVersionBean;
 import com.atlassian.connector.commons.jira.beans.JiraFilter;
+import com.atlassian.connector.commons.jira.cache.JiraMetadataCache;
 import com.atlassian.connector.commons.jira.rss.JIRAException;
 import com.atlassian.connector.commons.jira.soap.AxisSessionCallback;
 import com.atlassian.theplugin.commons.ServerType;
@@ -37,77 +38,74 @@ import com.atlassian.theplugin.commons.jira.JiraServerData;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
 import com.atlassian.theplugin.commons.util.Logger;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public final class JIRAServerFacade2Impl implements JIRAServerFacade2 {
     private static Logger logger;
 
-    private JIRASoapAndXmlServerFacade2Impl soapAndXmlFacade;
-    private JiraRESTFacade2Impl restFacade;
+    private final JIRAServerFacade2 soapAndXmlFacade;
+    private final JIRAServerFacade2 restFacade;
 
-    private final Set<ConnectionCfg> restCapable = new HashSet<ConnectionCfg>();
-    private final Set<ConnectionCfg> notRestCapable = new HashSet<ConnectionCfg>();
+    private final JiraServerCapabilities capabilities;
 
-    JIRAServerFacade2 worker;
+    private final JiraMetadataCache metadataCache = new JiraMetadataCache();
 
     public JIRAServerFacade2Impl(HttpSessionCallback callback, AxisSessionCallback axisCallback) {
-        soapAndXmlFacade = new JIRASoapAndXmlServerFacade2Impl(callback, axisCallback);
-        restFacade = new JiraRESTFacade2Impl();
-
-        worker = (JIRAServerFacade2) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { JIRAServerFacade2.class },
-            new InvocationHandler() {
-                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                    ConnectionCfg connection = (ConnectionCfg) args[0];
-                    boolean useRest = restCapable.contains(connection);
-                    boolean useSoapAndXml = notRestCapable.contains(connection);
-                    try {
-                        if (!useRest && !useSoapAndXml) {
-                            try {
-                                if (restFacade.supportsRest(connection)) {
-                                    restCapable.add(connection);
-                                    useRest = true;
-                                } else {
-                                    notRestCapable.add(connection);
-                                }
-                            } catch (JIRAException e) {
-                                Class<?>[] exceptionTypes = method.getExceptionTypes();
-                                for (Class<?> exceptionType : exceptionTypes) {
-                                    if (exceptionType.isAssignableFrom(JIRAException.class)) {
-                                        throw e;
-                                    }
-                                }
-                                throw new RemoteApiException(e);
-                            }
-                        }
-                        if (useRest) {
-                            return method.invoke(restFacade, args);
-                        }
-                        return method.invoke(soapAndXmlFacade, args);
-                    } catch (InvocationTargetException e) {
-                        throw e.getCause();
-                    }
-                }
-            }
-        );
+        this(new JIRASoapAndXmlServerFacade2Impl(callback, axisCallback), new JiraRESTFacade2Impl());
+    }
+
+    private JIRAServerFacade2Impl(JIRAServerFacade2 soapAndXmlFacade, JiraRESTFacade2Impl restFacade) {
+        this(soapAndXmlFacade, restFacade, new JiraServerCapabilities(restFacade));
+    }
+
+    JIRAServerFacade2Impl(JIRAServerFacade2 soapAndXmlFacade, JIRAServerFacade2 restFacade,
+                          JiraServerCapabilities capabilities) {
+        this.soapAndXmlFacade = soapAndXmlFacade;
+        this.restFacade = restFacade;
+        this.capabilities = capabilities;
     }
 
     public void reset() {
         restFacade.reset();
         soapAndXmlFacade.reset();
-        restCapable.clear();
-        notRestCapable.clear();
+        // capabilities are kept, they are revalidated by server build number
+        metadataCache.invalidateAll();
+    }
+
+    /**
+     * @return which servers are called through REST and which through SOAP API
+     */
+    public JiraServerCapabilities getServerCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * @return cache of statuses, priorities, resolutions, issue types, components, versions and security levels
+     *         of all servers
+     */
+    public JiraMetadataCache getMetadataCache() {
+        return metadataCache;
     }
 
+    private static String getProjectKey(long projectId, String projectKey) {
+        return projectKey + "#" + projectId;
+    }
+
+    /**
+     * @return false also if it is not known yet and the server cannot be reached now; nothing is remembered then
+     */
     public boolean usesRest(JiraServerData jiraServerData) {
-        return worker.usesRest(jiraServerData);
+        try {
+            return capabilities.usesRest(jiraServerData);
+        } catch (JIRAException e) {
+            return false;
+        }
+    }
+
+    private JIRAServerFacade2 route(ConnectionCfg server) throws JIRAException {
+        return capabilities.usesRest(server) ? restFacade : soapAndXmlFacade;
     }
 
     public static void setLogger(Logger logger) {
@@ -120,151 +118,252 @@ public final class JIRAServerFacade2Impl implements JIRAServerFacade2 {
     }
 
 //    public List<JIRAIssue> getIssues(ConnectionCfg httpConnectionCfg, String queryString, String sort, String sortOrder, int start, int size) throws JIRAException {
-//        return worker.getIssues(httpConnectionCfg, queryString, sort, sortOrder, start, size);
+//        return route(httpConnectionCfg).getIssues(httpConnectionCfg, queryString, sort, sortOrder, start, size);
 //    }
 //
 //    public List<JIRAIssue> getIssues(ConnectionCfg httpConnectionCfg, List<JIRAQueryFragment> query, String sort, String sortOrder, int start, int size) throws JIRAException {
-//        return worker.getIssues(httpConnectionCfg, query, sort, sortOrder, start, size);
+//        return route(httpConnectionCfg).getIssues(httpConnectionCfg, query, sort, sortOrder, start, size);
 //    }
 
 
     public List<JIRAIssue> getIssues(ConnectionCfg httpConnectionCfg, JiraFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
-        return worker.getIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+        return route(httpConnectionCfg).getIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
     }
 
     public List<JIRAIssue> getIssues(JiraServerData server, String query, String sort, String sortOrder, int start, int size) throws JIRAException {
-        return worker.getIssues(server, query, sort, sortOrder, start, size);
+        return route(server).getIssues(server, query, sort, sortOrder, start, size);
     }
 
     public List<JIRAIssue> getSavedFilterIssues(ConnectionCfg httpConnectionCfg, JIRASavedFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
-        return worker.getSavedFilterIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+        return route(httpConnectionCfg).getSavedFilterIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+    }
+
+    public List<JIRAIssue> getIssueSummaries(ConnectionCfg httpConnectionCfg, JiraFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
+        return route(httpConnectionCfg).getIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+    }
+
+    public List<JIRAIssue> getSavedFilterIssueSummaries(ConnectionCfg httpConnectionCfg, JIRASavedFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
+        return route(httpConnectionCfg).getSavedFilterIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+    }
+
+    public JiraIssueStream getIssueStream(final ConnectionCfg httpConnectionCfg, final JiraFilter filter,
+                                          final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return route(httpConnectionCfg).getIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getSavedFilterIssueStream(final ConnectionCfg httpConnectionCfg, final JIRASavedFilter filter,
+                                                     final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return route(httpConnectionCfg).getSavedFilterIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getIssueSummaryStream(final ConnectionCfg httpConnectionCfg, final JiraFilter filter,
+                                                 final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return route(httpConnectionCfg).getIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getSavedFilterIssueSummaryStream(final ConnectionCfg httpConnectionCfg,
+                                                            final JIRASavedFilter filter, final String sort,
+                                                            final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return route(httpConnectionCfg).getSavedFilterIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
     }
 
 //    public List<JIRAIssue> getSavedFilterIssues(ConnectionCfg httpConnectionCfg, List<JIRAQueryFragment> query, String sort, String sortOrder, int start, int size) throws JIRAException {
-//        return worker.getSavedFilterIssues(httpConnectionCfg, query, sort, sortOrder, start, size);
+//        return route(httpConnectionCfg).getSavedFilterIssues(httpConnectionCfg, query, sort, sortOrder, start, size);
 //    }
 
     public List<JIRAProject> getProjects(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getProjects(httpConnectionCfg);
+        return route(httpConnectionCfg).getProjects(httpConnectionCfg);
     }
 
     public List<JIRAProject> getProjectsForIssueCreation(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getProjectsForIssueCreation(httpConnectionCfg);
+        return route(httpConnectionCfg).getProjectsForIssueCreation(httpConnectionCfg);
     }
 
-    public List<JIRAConstant> getStatuses(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getStatuses(httpConnectionCfg);
+    public List<JIRAConstant> getStatuses(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.STATUSES, null,
+                new JiraMetadataCache.Loader<JIRAConstant>() {
+                    public List<JIRAConstant> load() throws JIRAException {
+                        return route(httpConnectionCfg).getStatuses(httpConnectionCfg);
+                    }
+                });
     }
 
-    public List<JIRAConstant> getIssueTypes(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getIssueTypes(httpConnectionCfg);
+    public List<JIRAConstant> getIssueTypes(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.ISSUE_TYPES, null,
+                new JiraMetadataCache.Loader<JIRAConstant>() {
+                    public List<JIRAConstant> load() throws JIRAException {
+                        return route(httpConnectionCfg).getIssueTypes(httpConnectionCfg);
+                    }
+                });
     }
 
-    public List<JIRAConstant> getIssueTypesForProject(ConnectionCfg httpConnectionCfg, long projectId, String project) throws JIRAException {
-        return worker.getIssueTypesForProject(httpConnectionCfg, projectId, project);
+    public List<JIRAConstant> getIssueTypesForProject(final ConnectionCfg httpConnectionCfg, final long projectId, final String project) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.PROJECT_ISSUE_TYPES, getProjectKey(projectId, project),
+                new JiraMetadataCache.Loader<JIRAConstant>() {
+                    public List<JIRAConstant> load() throws JIRAException {
+                        return route(httpConnectionCfg).getIssueTypesForProject(httpConnectionCfg, projectId, project);
+                    }
+                });
     }
 
-    public List<JIRAConstant> getSubtaskIssueTypes(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getSubtaskIssueTypes(httpConnectionCfg);
+    public List<JIRAConstant> getSubtaskIssueTypes(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.SUBTASK_ISSUE_TYPES, null,
+                new JiraMetadataCache.Loader<JIRAConstant>() {
+                    public List<JIRAConstant> load() throws JIRAException {
+                        return route(httpConnectionCfg).getSubtaskIssueTypes(httpConnectionCfg);
+                    }
+                });
     }
 
-    public List<JIRAConstant> getSubtaskIssueTypesForProject(ConnectionCfg httpConnectionCfg, long projectId, String project) throws JIRAException {
-        return worker.getSubtaskIssueTypesForProject(httpConnectionCfg, projectId, project);
+    public List<JIRAConstant> getSubtaskIssueTypesForProject(final ConnectionCfg httpConnectionCfg, final long projectId, final String project) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.PROJECT_SUBTASK_ISSUE_TYPES, getProjectKey(projectId, project),
+                new JiraMetadataCache.Loader<JIRAConstant>() {
+                    public List<JIRAConstant> load() throws JIRAException {
+                        return route(httpConnectionCfg).getSubtaskIssueTypesForProject(httpConnectionCfg, projectId, project);
+                    }
+                });
     }
 
     public List<JIRAQueryFragment> getSavedFilters(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getSavedFilters(httpConnectionCfg);
+        return route(httpConnectionCfg).getSavedFilters(httpConnectionCfg);
     }
 
-    public List<JIRAComponentBean> getComponents(ConnectionCfg httpConnectionCfg, String projectKey) throws JIRAException {
-        return worker.getComponents(httpConnectionCfg, projectKey);
+    public List<JIRAComponentBean> getComponents(final ConnectionCfg httpConnectionCfg, final String projectKey) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.COMPONENTS, projectKey,
+                new JiraMetadataCache.Loader<JIRAComponentBean>() {
+                    public List<JIRAComponentBean> load() throws JIRAException {
+                        return route(httpConnectionCfg).getComponents(httpConnectionCfg, projectKey);
+                    }
+                });
     }
 
-    public List<JIRAVersionBean> getVersions(ConnectionCfg httpConnectionCfg, String projectKey) throws JIRAException {
-        return worker.getVersions(httpConnectionCfg, projectKey);
+    public List<JIRAVersionBean> getVersions(final ConnectionCfg httpConnectionCfg, final String projectKey) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.VERSIONS, projectKey,
+                new JiraMetadataCache.Loader<JIRAVersionBean>() {
+                    public List<JIRAVersionBean> load() throws JIRAException {
+                        return route(httpConnectionCfg).getVersions(httpConnectionCfg, projectKey);
+                    }
+                });
     }
 
-    public List<JIRAPriorityBean> getPriorities(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getPriorities(httpConnectionCfg);
+    public List<JIRAPriorityBean> getPriorities(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.PRIORITIES, null,
+                new JiraMetadataCache.Loader<JIRAPriorityBean>() {
+                    public List<JIRAPriorityBean> load() throws JIRAException {
+                        return route(httpConnectionCfg).getPriorities(httpConnectionCfg);
+                    }
+                });
     }
 
-    public List<JIRAResolutionBean> getResolutions(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        return worker.getResolutions(httpConnectionCfg);
+    public List<JIRAResolutionBean> getResolutions(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return metadataCache.get(httpConnectionCfg, JiraMetadataCache.Kind.RESOLUTIONS, null,
+                new JiraMetadataCache.Loader<JIRAResolutionBean>() {
+                    public List<JIRAResolutionBean> load() throws JIRAException {
+                        return route(httpConnectionCfg).getResolutions(httpConnectionCfg);
+                    }
+                });
     }
 
     public List<JIRAAction> getAvailableActions(ConnectionCfg httpConnectionCfg, JIRAIssue issue) throws JIRAException {
-        return worker.getAvailableActions(httpConnectionCfg, issue);
+        return route(httpConnectionCfg).getAvailableActions(httpConnectionCfg, issue);
     }
 
     public List<JIRAActionField> getFieldsForAction(ConnectionCfg httpConnectionCfg, JIRAIssue issue, JIRAAction action) throws JIRAException {
-        return worker.getFieldsForAction(httpConnectionCfg, issue, action);
+        return route(httpConnectionCfg).getFieldsForAction(httpConnectionCfg, issue, action);
     }
 
     public void progressWorkflowAction(ConnectionCfg httpConnectionCfg, JIRAIssue issue, JIRAAction action) throws JIRAException {
-        worker.progressWorkflowAction(httpConnectionCfg, issue, action);
+        route(httpConnectionCfg).progressWorkflowAction(httpConnectionCfg, issue, action);
     }
 
     public void progressWorkflowAction(ConnectionCfg httpConnectionCfg, JIRAIssue issue, JIRAAction action, List<JIRAActionField> fields) throws JIRAException {
-        worker.progressWorkflowAction(httpConnectionCfg, issue, action, fields);
+        route(httpConnectionCfg).progressWorkflowAction(httpConnectionCfg, issue, action, fields);
     }
 
     public void addComment(ConnectionCfg httpConnectionCfg, String issueKey, String comment) throws JIRAException {
-        worker.addComment(httpConnectionCfg, issueKey, comment);
+        route(httpConnectionCfg).addComment(httpConnectionCfg, issueKey, comment);
     }
 
     public void addAttachment(ConnectionCfg httpConnectionCfg, String issueKey, String name, byte[] content) throws JIRAException {
-        worker.addAttachment(httpConnectionCfg, issueKey, name, content);
+        route(httpConnectionCfg).addAttachment(httpConnectionCfg, issueKey, name, content);
     }
 
     public JIRAIssue createIssue(ConnectionCfg httpConnectionCfg, JIRAIssue issue) throws JIRAException {
-        return worker.createIssue(httpConnectionCfg, issue);
+        return route(httpConnectionCfg).createIssue(httpConnectionCfg, issue);
     }
 
     public JIRAIssue createSubtask(JiraServerData jiraServerData, JIRAIssue parent, JIRAIssue issue) throws JIRAException {
-        return worker.createSubtask(jiraServerData, parent, issue);
+        return route(jiraServerData).createSubtask(jiraServerData, parent, issue);
     }
 
     public JIRAIssue getIssue(ConnectionCfg httpConnectionCfg, String key) throws JIRAException {
-        return worker.getIssue(httpConnectionCfg, key);
+        return route(httpConnectionCfg).getIssue(httpConnectionCfg, key);
     }
 
     public JIRAIssue getIssueDetails(ConnectionCfg httpConnectionCfg, JIRAIssue issue) throws JIRAException {
-        return worker.getIssueDetails(httpConnectionCfg, issue);
+        return route(httpConnectionCfg).getIssueDetails(httpConnectionCfg, issue);
     }
 
     public void logWork(ConnectionCfg httpConnectionCfg, JIRAIssue issue, String timeSpent, Calendar startDate, String comment, boolean updateEstimate, String newEstimate) throws JIRAException {
-        worker.logWork(httpConnectionCfg, issue, timeSpent, startDate, comment, updateEstimate, newEstimate);
+        route(httpConnectionCfg).logWork(httpConnectionCfg, issue, timeSpent, startDate, comment, updateEstimate, newEstimate);
     }
 
     public void setField(ConnectionCfg httpConnectionCfg, JIRAIssue issue, String fieldId, String value) throws JIRAException {
-        worker.setField(httpConnectionCfg, issue, fieldId, value);
+        route(httpConnectionCfg).setField(httpConnectionCfg, issue, fieldId, value);
     }
 
     public void setField(ConnectionCfg httpConnectionCfg, JIRAIssue issue, String fieldId, String[] values) throws JIRAException {
-        worker.setField(httpConnectionCfg, issue, fieldId, values);
+        route(httpConnectionCfg).setField(httpConnectionCfg, issue, fieldId, values);
     }
 
     public void setFields(ConnectionCfg httpConnectionCfg, JIRAIssue issue, List<JIRAActionField> fields) throws JIRAException {
-        worker.setFields(httpConnectionCfg, issue, fields);
+        route(httpConnectionCfg).setFields(httpConnectionCfg, issue, fields);
     }
 
     public JIRAUserBean getUser(ConnectionCfg httpConnectionCfg, String loginName) throws JIRAException, JiraUserNotFoundException {
-        return worker.getUser(httpConnectionCfg, loginName);
+        return route(httpConnectionCfg).getUser(httpConnectionCfg, loginName);
     }
 
     public List<JIRAComment> getComments(ConnectionCfg httpConnectionCfg, JIRAIssue issue) throws JIRAException {
-        return worker.getComments(httpConnectionCfg, issue);
+        return route(httpConnectionCfg).getComments(httpConnectionCfg, issue);
     }
 
     public Collection<JIRAAttachment> getIssueAttachements(ConnectionCfg httpConnectionCfg, JIRAIssue issue) throws JIRAException {
-        return worker.getIssueAttachements(httpConnectionCfg, issue);
+        return route(httpConnectionCfg).getIssueAttachements(httpConnectionCfg, issue);
     }
 
-    public List<JIRASecurityLevelBean> getSecurityLevels(ConnectionCfg connectionCfg, String projectKey) throws JIRAException {
-        return worker.getSecurityLevels(connectionCfg, projectKey);
+    public List<JIRASecurityLevelBean> getSecurityLevels(final ConnectionCfg connectionCfg, final String projectKey) throws JIRAException {
+        return metadataCache.get(connectionCfg, JiraMetadataCache.Kind.SECURITY_LEVELS, projectKey,
+                new JiraMetadataCache.Loader<JIRASecurityLevelBean>() {
+                    public List<JIRASecurityLevelBean> load() throws JIRAException {
+                        return route(connectionCfg).getSecurityLevels(connectionCfg, projectKey);
+                    }
+                });
     }
 
     public void testServerConnection(final ConnectionCfg httpConnectionCfg) throws RemoteApiException {
-        worker.testServerConnection(httpConnectionCfg);
+        final JIRAServerFacade2 facade;
+        try {
+            facade = route(httpConnectionCfg);
+        } catch (JIRAException e) {
+            throw new RemoteApiException(e.getMessage(), e);
+        }
+        facade.testServerConnection(httpConnectionCfg);
     }
 }
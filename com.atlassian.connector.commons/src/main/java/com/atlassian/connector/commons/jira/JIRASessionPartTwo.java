@@ -26,6 +26,18 @@ public interface JIRASessionPartTwo {
 
     List<JIRAIssue> getIssues(String jql, String sort, String sortOrder, int start, int size) throws JIRAException;
 
+    /**
+     * Like {@link #getIssues(JiraFilter, String, String, int, int)}, but only {@link JIRAIssueBean#SUMMARY_FIELDS}
+     * are retrieved.
+     */
+    List<JIRAIssue> getIssueSummaries(JiraFilter filter, String sortBy, String sortOrder, int start, int max) throws JIRAException;
+
+    /**
+     * Like {@link #getSavedFilterIssues(JIRASavedFilter, String, String, int, int)}, but only
+     * {@link JIRAIssueBean#SUMMARY_FIELDS} are retrieved.
+     */
+    List<JIRAIssue> getSavedFilterIssueSummaries(JIRASavedFilter filter, String sortBy, String sortOrder, int start, int max) throws JIRAException;
+
     JIRAIssue getIssue(String issueKey) throws JIRAException;
     void login() throws JIRAException, JiraCaptchaRequiredException;
     boolean isLoggedIn(ConnectionCfg server);
@@ -43,6 +43,8 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginException;
 import com.atlassian.theplugin.commons.remoteapi.jira.JiraCaptchaRequiredException;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
 import com.atlassian.theplugin.commons.util.Logger;
+import org.jetbrains.annotations.NotNull;
+
 import javax.xml.rpc.ServiceException;
 import java.net.MalformedURLException;
 import java.util.Calendar;
@@ -59,7 +61,8 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
     private static Logger logger;
 
     private final Map<String, JiraRssAutoRenewClient> rssSessions = new HashMap<String, JiraRssAutoRenewClient>();
-    private final Map<String, JIRASessionPartOne> soapSessions = new HashMap<String, JIRASessionPartOne>();
+    private final JIRASoapSessionManager soapSessions;
+    private final RssClientFactory rssClientFactory;
 
     private static final long ONE_MINUTE = 1 * 60 * 1000;
 
@@ -67,9 +70,33 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         return httpConnectionCfg.getUrl() + "_" + httpConnectionCfg.getUsername() + "_" + httpConnectionCfg.getPassword();
     }
 
-    public JIRASoapAndXmlServerFacade2Impl(HttpSessionCallback callback, AxisSessionCallback axisCallback) {
+    /**
+     * Creates RSS/XML clients, which are logged in by the facade.
+     */
+    interface RssClientFactory {
+        @NotNull
+        JIRARssClient createClient(@NotNull ConnectionCfg server) throws RemoteApiException;
+    }
+
+    public JIRASoapAndXmlServerFacade2Impl(final HttpSessionCallback callback, AxisSessionCallback axisCallback) {
         this.callback = callback;
         this.axisCallback = axisCallback;
+        this.soapSessions = new JIRASoapSessionManager(createSoapSessionFactory());
+        this.rssClientFactory = new RssClientFactory() {
+            @NotNull
+            public JIRARssClient createClient(@NotNull ConnectionCfg server) throws RemoteApiException {
+                return new JIRARssClient(server, callback);
+            }
+        };
+    }
+
+    JIRASoapAndXmlServerFacade2Impl(HttpSessionCallback callback,
+                                    JIRASoapSessionManager.SessionFactory soapSessionFactory,
+                                    RssClientFactory rssClientFactory) {
+        this.callback = callback;
+        this.axisCallback = null;
+        this.soapSessions = new JIRASoapSessionManager(soapSessionFactory);
+        this.rssClientFactory = rssClientFactory;
     }
 
     public void reset() {
@@ -85,28 +112,35 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         JIRASoapAndXmlServerFacade2Impl.logger = logger;
     }
 
-    private synchronized JIRASessionPartOne getSoapSession(ConnectionCfg connectionCfg) throws RemoteApiException {
-        String key = getSessionKey(connectionCfg);
-
-        JIRASessionPartOne session = soapSessions.get(key);
-        if (session == null
-                || (((JIRASoapSessionImpl) session).getLastUsed().getTime() < new Date().getTime() - ONE_MINUTE)) {
-            if (session != null) {
-                soapSessions.remove(key);
+    private JIRASoapSessionManager.SessionFactory createSoapSessionFactory() {
+        return new JIRASoapSessionManager.SessionFactory() {
+            @NotNull
+            public JIRASessionPartOne createSession(@NotNull ConnectionCfg server) throws RemoteApiException {
+                try {
+                    return new JIRASoapSessionImpl(logger, server, axisCallback);
+                } catch (MalformedURLException e) {
+                    throw new RemoteApiException(e);
+                } catch (ServiceException e) {
+                    throw new RemoteApiException(e);
+                }
             }
 
-            try {
-                session = new JIRASoapSessionImpl(logger, connectionCfg, axisCallback);
-            } catch (MalformedURLException e) {
-                throw new RemoteApiException(e);
-            } catch (ServiceException e) {
-                throw new RemoteApiException(e);
+            public boolean ping(@NotNull JIRASessionPartOne session) throws RemoteApiException {
+                return ((JIRASoapSessionImpl) session).ping();
             }
+        };
+    }
 
-            session.login(connectionCfg.getUsername(), connectionCfg.getPassword());
-            soapSessions.put(key, session);
+    private <T> T callSoap(ConnectionCfg connectionCfg, JIRASoapSessionManager.SoapCall<T> call)
+            throws JIRAException {
+        try {
+            return soapSessions.execute(connectionCfg, call);
+        } catch (CaptchaRequiredException e) {
+            removeRssSession(connectionCfg);
+            throw new JiraCaptchaRequiredException(e.getMessage());
+        } catch (RemoteApiException e) {
+            throw new JIRAException(e.getMessage(), e);
         }
-        return session;
     }
 
     private synchronized JiraRssAutoRenewClient getRssSession(ConnectionCfg server) throws RemoteApiException {
@@ -119,7 +153,7 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         if (session == null || (session.getLastUsed().getTime() < new Date().getTime() - ONE_MINUTE)) {
 
 
-            JIRARssClient client = new JIRARssClient(server, callback);
+            JIRARssClient client = rssClientFactory.createClient(server);
 
             try {
                 callback.disposeClient(server);
@@ -175,6 +209,32 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         throw new JIRAException("Not implemented");
     }
 
+    public List<JIRAIssue> getIssueSummaries(ConnectionCfg httpConnectionCfg, JiraFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
+        try {
+            JiraRssAutoRenewClient rss = getRssSession(httpConnectionCfg);
+            return rss.getIssueSummaries(filter, sort, sortOrder, start, size);
+        } catch (CaptchaRequiredException e) {
+            removeRssSession(httpConnectionCfg);
+            throw new JiraCaptchaRequiredException(e.getMessage());
+        } catch (RemoteApiException e) {
+            removeRssSession(httpConnectionCfg);
+            throw new JIRAException(e.getMessage(), e);
+        }
+    }
+
+    public List<JIRAIssue> getSavedFilterIssueSummaries(ConnectionCfg httpConnectionCfg, JIRASavedFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
+        try {
+            JiraRssAutoRenewClient rss = getRssSession(httpConnectionCfg);
+            return rss.getSavedFilterIssueSummaries(filter, sort, sortOrder, start, size);
+        } catch (CaptchaRequiredException e) {
+            removeRssSession(httpConnectionCfg);
+            throw new JiraCaptchaRequiredException(e.getMessage());
+        } catch (RemoteApiException e) {
+            removeRssSession(httpConnectionCfg);
+            throw new JIRAException(e.getMessage(), e);
+        }
+    }
+
     //    public List<JIRAIssue> getIssues(ConnectionCfg httpConnectionCfg, String queryString, String sort,
 //                                     String sortOrder, int start, int size) throws JIRAException {
 //        try {
@@ -237,6 +297,43 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         }
     }
 
+    public JiraIssueStream getIssueStream(final ConnectionCfg httpConnectionCfg, final JiraFilter filter,
+                                          final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return getIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getSavedFilterIssueStream(final ConnectionCfg httpConnectionCfg, final JIRASavedFilter filter,
+                                                     final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return getSavedFilterIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getIssueSummaryStream(final ConnectionCfg httpConnectionCfg, final JiraFilter filter,
+                                                 final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return getIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getSavedFilterIssueSummaryStream(final ConnectionCfg httpConnectionCfg,
+                                                            final JIRASavedFilter filter, final String sort,
+                                                            final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return getSavedFilterIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
     public JIRAIssue getIssue(ConnectionCfg httpConnectionCfg, String key) throws JIRAException {
         try {
             JiraRssAutoRenewClient rss = getRssSession(httpConnectionCfg);
@@ -250,26 +347,12 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         }
     }
 
-    public List<JIRAProject> getProjects(ConnectionCfg server) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(server);
-            return soap.getProjects();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(server);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(server));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = null;
-                    soap = getSoapSession(server);
-                    return soap.getProjects();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAProject> getProjects(final ConnectionCfg server) throws JIRAException {
+        return callSoap(server, new JIRASoapSessionManager.SoapCall<List<JIRAProject>>() {
+            public List<JIRAProject> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getProjects();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
     public List<JIRAProject> getProjectsForIssueCreation(ConnectionCfg httpConnectionCfg) throws JIRAException {
@@ -277,466 +360,193 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         return getProjects(httpConnectionCfg);
     }
 
-    public List<JIRAConstant> getIssueTypes(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(httpConnectionCfg);
-            return soap.getIssueTypes();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(httpConnectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(httpConnectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(httpConnectionCfg);
-                    return soap.getIssueTypes();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAConstant> getIssueTypes(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return callSoap(httpConnectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAConstant>>() {
+            public List<JIRAConstant> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getIssueTypes();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAConstant> getIssueTypesForProject(ConnectionCfg httpConnectionCfg, long projectId, String projectKey)
+    public List<JIRAConstant> getIssueTypesForProject(final ConnectionCfg httpConnectionCfg, final long projectId, final String projectKey)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(httpConnectionCfg);
-            return soap.getIssueTypesForProject(projectId, projectKey);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(httpConnectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(httpConnectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(httpConnectionCfg);
-                    return soap.getIssueTypesForProject(projectId, projectKey);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        return callSoap(httpConnectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAConstant>>() {
+            public List<JIRAConstant> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getIssueTypesForProject(projectId, projectKey);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAConstant> getSubtaskIssueTypes(ConnectionCfg httpConnectionCfg) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(httpConnectionCfg);
-            return soap.getSubtaskIssueTypes();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(httpConnectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(httpConnectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(httpConnectionCfg);
-                    return soap.getSubtaskIssueTypes();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAConstant> getSubtaskIssueTypes(final ConnectionCfg httpConnectionCfg) throws JIRAException {
+        return callSoap(httpConnectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAConstant>>() {
+            public List<JIRAConstant> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getSubtaskIssueTypes();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAConstant> getSubtaskIssueTypesForProject(ConnectionCfg connectionCfg, long projectId, String projectKey)
+    public List<JIRAConstant> getSubtaskIssueTypesForProject(final ConnectionCfg connectionCfg, final long projectId, final String projectKey)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getSubtaskIssueTypesForProject(projectId, projectKey);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getSubtaskIssueTypesForProject(projectId, projectKey);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAConstant>>() {
+            public List<JIRAConstant> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getSubtaskIssueTypesForProject(projectId, projectKey);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAConstant> getStatuses(ConnectionCfg connection) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connection);
-            return soap.getStatuses();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connection);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connection));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connection);
-                    return soap.getStatuses();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAConstant> getStatuses(final ConnectionCfg connection) throws JIRAException {
+        return callSoap(connection, new JIRASoapSessionManager.SoapCall<List<JIRAConstant>>() {
+            public List<JIRAConstant> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getStatuses();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public void addComment(ConnectionCfg connectionCfg, String issueKey, String comment) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.addComment(issueKey, comment);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    soap.addComment(issueKey, comment);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public void addComment(final ConnectionCfg connectionCfg, final String issueKey, final String comment) throws JIRAException {
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.addComment(issueKey, comment);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public void addAttachment(ConnectionCfg connectionCfg, String issueKey, String name, byte[] content)
+    public void addAttachment(final ConnectionCfg connectionCfg, final String issueKey, final String name, final byte[] content)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.addAttachment(issueKey, name, content);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    soap.addAttachment(issueKey, name, content);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.addAttachment(issueKey, name, content);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public JIRAIssue createIssue(ConnectionCfg connectionCfg, JIRAIssue issue) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            JIRAIssue i = soap.createIssue(issue);
-            return getIssue(connectionCfg, i.getKey());
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    JIRAIssue i = soap.createIssue(issue);
-                    return getIssue(connectionCfg, i.getKey());
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public JIRAIssue createIssue(ConnectionCfg connectionCfg, final JIRAIssue issue) throws JIRAException {
+        JIRAIssue i = callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<JIRAIssue>() {
+            public JIRAIssue call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.createIssue(issue);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
+        return getIssue(connectionCfg, i.getKey());
     }
 
     public JIRAIssue createSubtask(JiraServerData jiraServerData, JIRAIssue parent, JIRAIssue issue) throws JIRAException {
         throw new JIRAException("SOAP JIRA API does not support issue subtask creation");
     }
 
-    public void logWork(ConnectionCfg connectionCfg, JIRAIssue issue, String timeSpent, Calendar startDate,
-                        String comment, boolean updateEstimate, String newEstimate)
+    public void logWork(final ConnectionCfg connectionCfg, final JIRAIssue issue, final String timeSpent, final Calendar startDate,
+                        final String comment, final boolean updateEstimate, final String newEstimate)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.logWork(issue, timeSpent, startDate, comment, updateEstimate, newEstimate);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    soap.logWork(issue, timeSpent, startDate, comment, updateEstimate, newEstimate);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.logWork(issue, timeSpent, startDate, comment, updateEstimate, newEstimate);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAComponentBean> getComponents(ConnectionCfg connectionCfg, String projectKey) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getComponents(projectKey);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getComponents(projectKey);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAComponentBean> getComponents(final ConnectionCfg connectionCfg, final String projectKey) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAComponentBean>>() {
+            public List<JIRAComponentBean> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getComponents(projectKey);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAVersionBean> getVersions(ConnectionCfg connectionCfg, String projectKey) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getVersions(projectKey);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            if (e == null) {
-                logger.warn("PL-1710: e is null");
-            } else if (e.getMessage() == null) {
-                logger.warn("PL-1710: e.getMessage() is null");
+    public List<JIRAVersionBean> getVersions(final ConnectionCfg connectionCfg, final String projectKey) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAVersionBean>>() {
+            public List<JIRAVersionBean> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getVersions(projectKey);
             }
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getVersions(projectKey);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
-            }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAPriorityBean> getPriorities(ConnectionCfg connectionCfg) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getPriorities();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getPriorities();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAPriorityBean> getPriorities(final ConnectionCfg connectionCfg) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAPriorityBean>>() {
+            public List<JIRAPriorityBean> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getPriorities();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAResolutionBean> getResolutions(ConnectionCfg connectionCfg) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getResolutions();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getResolutions();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAResolutionBean> getResolutions(final ConnectionCfg connectionCfg) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAResolutionBean>>() {
+            public List<JIRAResolutionBean> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getResolutions();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAQueryFragment> getSavedFilters(ConnectionCfg connectionCfg) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getSavedFilters();
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getSavedFilters();
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAQueryFragment> getSavedFilters(final ConnectionCfg connectionCfg) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAQueryFragment>>() {
+            public List<JIRAQueryFragment> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getSavedFilters();
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAAction> getAvailableActions(ConnectionCfg connectionCfg, JIRAIssue issue) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getAvailableActions(issue);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getAvailableActions(issue);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAAction> getAvailableActions(final ConnectionCfg connectionCfg, final JIRAIssue issue) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAAction>>() {
+            public List<JIRAAction> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getAvailableActions(issue);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public List<JIRAActionField> getFieldsForAction(ConnectionCfg connectionCfg, JIRAIssue issue, JIRAAction action)
+    public List<JIRAActionField> getFieldsForAction(final ConnectionCfg connectionCfg, final JIRAIssue issue, final JIRAAction action)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getFieldsForAction(issue, action);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getFieldsForAction(issue, action);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAActionField>>() {
+            public List<JIRAActionField> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getFieldsForAction(issue, action);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public void setField(ConnectionCfg connectionCfg, JIRAIssue issue, String fieldId, String value)
+    public void setField(final ConnectionCfg connectionCfg, final JIRAIssue issue, final String fieldId, final String value)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.setField(issue, fieldId, value);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                     soap.setField(issue, fieldId, value);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.setField(issue, fieldId, value);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public void setField(ConnectionCfg connectionCfg, JIRAIssue issue, String fieldId, String[] values)
+    public void setField(final ConnectionCfg connectionCfg, final JIRAIssue issue, final String fieldId, final String[] values)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.setField(issue, fieldId, values);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                     soap.setField(issue, fieldId, values);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.setField(issue, fieldId, values);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public void setFields(ConnectionCfg connectionCfg, JIRAIssue issue, List<JIRAActionField> fields) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.setFields(issue, fields);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                     soap.setFields(issue, fields);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public void setFields(final ConnectionCfg connectionCfg, final JIRAIssue issue, final List<JIRAActionField> fields) throws JIRAException {
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.setFields(issue, fields);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
 
-    public List<JIRAComment> getComments(ConnectionCfg connectionCfg, JIRAIssue issue) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getComments(issue);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                     return soap.getComments(issue);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRAComment> getComments(final ConnectionCfg connectionCfg, final JIRAIssue issue) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRAComment>>() {
+            public List<JIRAComment> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getComments(issue);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public Collection<JIRAAttachment> getIssueAttachements(ConnectionCfg connectionCfg, JIRAIssue issue)
+    public Collection<JIRAAttachment> getIssueAttachements(final ConnectionCfg connectionCfg, final JIRAIssue issue)
             throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getIssueAttachements(issue);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getIssueAttachements(issue);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Collection<JIRAAttachment>>() {
+            public Collection<JIRAAttachment> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getIssueAttachements(issue);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
     public void progressWorkflowAction(ConnectionCfg connectionCfg, JIRAIssue issue, JIRAAction action)
@@ -744,89 +554,50 @@ public final class JIRASoapAndXmlServerFacade2Impl implements JIRAServerFacade2
         progressWorkflowAction(connectionCfg, issue, action, null);
     }
 
-    public void progressWorkflowAction(ConnectionCfg connectionCfg, JIRAIssue issue,
-                                       JIRAAction action, List<JIRAActionField> fields) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            soap.progressWorkflowAction(issue, action, fields);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    soap.progressWorkflowAction(issue, action, fields);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public void progressWorkflowAction(final ConnectionCfg connectionCfg, final JIRAIssue issue,
+                                       final JIRAAction action, final List<JIRAActionField> fields) throws JIRAException {
+        callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<Void>() {
+            public Void call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                soap.progressWorkflowAction(issue, action, fields);
+                return null;
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public JIRAIssue getIssueDetails(ConnectionCfg connectionCfg, JIRAIssue issue) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getIssueDetails(issue);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getIssueDetails(issue);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public JIRAIssue getIssueDetails(final ConnectionCfg connectionCfg, JIRAIssue issue) throws JIRAException {
+        // SOAP details only complete the issue, the rest of a summary comes from the XML view
+        final JIRAIssue fullIssue = issue.isSummaryOnly() ? getIssue(connectionCfg, issue.getKey()) : issue;
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<JIRAIssue>() {
+            public JIRAIssue call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getIssueDetails(fullIssue);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 
-    public JIRAUserBean getUser(ConnectionCfg connectionCfg, String loginName)
+    public JIRAUserBean getUser(ConnectionCfg connectionCfg, final String loginName)
             throws JIRAException, JiraUserNotFoundException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getUser(loginName);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
+        final JiraUserNotFoundException[] notFound = new JiraUserNotFoundException[1];
+        JIRAUserBean user = callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<JIRAUserBean>() {
+            public JIRAUserBean call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                try {
                     return soap.getUser(loginName);
+                } catch (JiraUserNotFoundException e) {
+                    notFound[0] = e;
+                    return null;
                 }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
             }
-            throw new JIRAException(e.getMessage(), e);
+        });
+        if (notFound[0] != null) {
+            throw notFound[0];
         }
+        return user;
     }
 
-    public List<JIRASecurityLevelBean> getSecurityLevels(ConnectionCfg connectionCfg, String projectKey) throws JIRAException {
-        try {
-            JIRASessionPartOne soap = getSoapSession(connectionCfg);
-            return soap.getSecurityLevels(projectKey);
-        } catch (CaptchaRequiredException e) {
-            removeRssSession(connectionCfg);
-            throw new JiraCaptchaRequiredException(e.getMessage());
-        } catch (RemoteApiException e) {
-            soapSessions.remove(getSessionKey(connectionCfg));
-            try {
-                if (e != null && e.getMessage().contains("User not authenticated yet, or session timed out.")) {
-                    JIRASessionPartOne soap = getSoapSession(connectionCfg);
-                    return soap.getSecurityLevels(projectKey);
-                }
-            } catch (RemoteApiException e1) {
-                throw new JIRAException(e.getMessage(), e);
+    public List<JIRASecurityLevelBean> getSecurityLevels(final ConnectionCfg connectionCfg, final String projectKey) throws JIRAException {
+        return callSoap(connectionCfg, new JIRASoapSessionManager.SoapCall<List<JIRASecurityLevelBean>>() {
+            public List<JIRASecurityLevelBean> call(@NotNull JIRASessionPartOne soap) throws RemoteApiException {
+                return soap.getSecurityLevels(projectKey);
             }
-            throw new JIRAException(e.getMessage(), e);
-        }
+        });
     }
 }
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.soap.axis.RemoteAuthenticationException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.atlassian.theplugin.commons.remoteapi.ServerSessionRegistry;
+import com.atlassian.theplugin.commons.util.LoggerImpl;
+import com.google.common.base.Ticker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Logged in JIRA SOAP sessions, one per server and credentials, which are reused for as long as the server accepts
+ * their tokens.
+ * <p/>
+ * JIRA expires tokens which have not been used for a while (30 minutes by default). Sessions idle for more than
+ * {@link #getTokenTimeout()} are therefore logged in again before they are used, instead of sending a request which
+ * would fail. While a session is in use (it was used in the last {@link #getMaxIdleTime()} ms), its token is kept
+ * alive in the background with a lightweight request every {@link #getKeepAliveInterval()} ms, so that occasional
+ * use does not pay for a login.
+ * <p/>
+ * A session is logged in again only when the server rejects its token, and only once: callers which fail with
+ * the same rejected token share the next login, as do callers asking for a session which is not logged in yet
+ * (see {@link ServerSessionRegistry}).
+ * <p/>
+ * This class is thread-safe.
+ */
+final class JIRASoapSessionManager {
+
+    /** slightly less than the default token timeout of JIRA */
+    static final long DEFAULT_TOKEN_TIMEOUT = 25 * 60 * 1000L;
+
+    static final long DEFAULT_KEEP_ALIVE_INTERVAL = 10 * 60 * 1000L;
+
+    static final long DEFAULT_MAX_IDLE_TIME = 2 * 60 * 60 * 1000L;
+
+    private static final String TOKEN_EXPIRED_MESSAGE = "User not authenticated yet, or session timed out.";
+
+    private static final ScheduledExecutorService KEEP_ALIVE_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "jira-soap-keep-alive-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Creates sessions and checks their tokens.
+     */
+    interface SessionFactory {
+        /**
+         * @return new session which is not logged in yet
+         */
+        @NotNull
+        JIRASessionPartOne createSession(@NotNull ConnectionCfg server) throws RemoteApiException;
+
+        /**
+         * Sends a lightweight request with the token of the session, which keeps the token from expiring.
+         *
+         * @return false if the server does not accept the token anymore
+         */
+        boolean ping(@NotNull JIRASessionPartOne session) throws RemoteApiException;
+    }
+
+    /**
+     * Remote call made by {@link JIRASoapSessionManager#execute(ConnectionCfg, SoapCall)}.
+     */
+    interface SoapCall<T> {
+        T call(@NotNull JIRASessionPartOne session) throws RemoteApiException;
+    }
+
+    private final SessionFactory factory;
+
+    private final Ticker ticker;
+
+    private final ServerSessionRegistry<Entry> registry = new ServerSessionRegistry<Entry>();
+
+    private volatile long tokenTimeout = DEFAULT_TOKEN_TIMEOUT;
+
+    private volatile long keepAliveInterval = DEFAULT_KEEP_ALIVE_INTERVAL;
+
+    private volatile long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+
+    /** guarded by <code>this</code> */
+    private ScheduledFuture<?> keepAliveTask;
+
+    JIRASoapSessionManager(@NotNull SessionFactory factory) {
+        this(factory, Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker source of time for token timeouts and idle times
+     */
+    JIRASoapSessionManager(@NotNull SessionFactory factory, @NotNull Ticker ticker) {
+        this.factory = factory;
+        this.ticker = ticker;
+    }
+
+    long getTokenTimeout() {
+        return tokenTimeout;
+    }
+
+    /**
+     * @param tokenTimeout idle time (in ms) after which a token is assumed to be expired
+     */
+    void setTokenTimeout(long tokenTimeout) {
+        if (tokenTimeout <= 0) {
+            throw new IllegalArgumentException("tokenTimeout must be positive: " + tokenTimeout);
+        }
+        this.tokenTimeout = tokenTimeout;
+    }
+
+    long getKeepAliveInterval() {
+        return keepAliveInterval;
+    }
+
+    /**
+     * @param keepAliveInterval how often (in ms) tokens of sessions in use are kept alive, 0 to not keep them alive
+     */
+    synchronized void setKeepAliveInterval(long keepAliveInterval) {
+        if (keepAliveInterval < 0) {
+            throw new IllegalArgumentException("keepAliveInterval must not be negative: " + keepAliveInterval);
+        }
+        this.keepAliveInterval = keepAliveInterval;
+        stopKeepAlive();
+        if (!registry.getSessions().isEmpty()) {
+            startKeepAlive();
+        }
+    }
+
+    long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * @param maxIdleTime how long (in ms) after its last use a session is kept alive and remembered
+     */
+    void setMaxIdleTime(long maxIdleTime) {
+        if (maxIdleTime < 0) {
+            throw new IllegalArgumentException("maxIdleTime must not be negative: " + maxIdleTime);
+        }
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    ServerSessionRegistry<?> getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Makes the call with the session of given server. If the server rejects the token of the session, the session
+     * is logged in again and the call is repeated once.
+     */
+    <T> T execute(@NotNull ConnectionCfg server, @NotNull SoapCall<T> call) throws RemoteApiException {
+        Entry entry = getEntry(server);
+        try {
+            final T result = call.call(entry.session);
+            entry.used(now());
+            return result;
+        } catch (RemoteApiException e) {
+            if (!isTokenRejected(e)) {
+                throw e;
+            }
+            entry.invalidate();
+        }
+
+        // whoever gets here first logs in, the others use its session
+        entry = getEntry(server);
+        final T result = call.call(entry.session);
+        entry.used(now());
+        return result;
+    }
+
+    /**
+     * Forgets all sessions.
+     */
+    synchronized void clear() {
+        registry.clear();
+        stopKeepAlive();
+    }
+
+    /**
+     * Keeps tokens of sessions in use alive and forgets sessions which have not been used for too long.
+     */
+    void keepAlive() {
+        final long now = now();
+        for (Map.Entry<String, Entry> mapEntry : registry.getSessions().entrySet()) {
+            final Entry entry = mapEntry.getValue();
+            if (entry.invalid || now - entry.lastUsed > maxIdleTime) {
+                registry.getSessions().remove(mapEntry.getKey(), entry);
+                continue;
+            }
+            if (now - entry.lastActive < keepAliveInterval) {
+                continue;
+            }
+            try {
+                if (factory.ping(entry.session)) {
+                    entry.lastActive = now();
+                } else {
+                    entry.invalidate();
+                }
+            } catch (RemoteApiException e) {
+                // maybe the server is just down for a while; it is checked again next time
+                LoggerImpl.getInstance().debug("Cannot keep JIRA SOAP session alive", e);
+            } catch (RuntimeException e) {
+                LoggerImpl.getInstance().warn("Cannot keep JIRA SOAP session alive", e);
+            }
+        }
+        synchronized (this) {
+            if (registry.getSessions().isEmpty()) {
+                stopKeepAlive();
+            }
+        }
+    }
+
+    /**
+     * @return true if the exception means the server does not accept the token anymore
+     */
+    static boolean isTokenRejected(@NotNull RemoteApiException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RemoteAuthenticationException
+                    || (t.getMessage() != null && t.getMessage().contains(TOKEN_EXPIRED_MESSAGE))) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private Entry getEntry(@NotNull final ConnectionCfg server) throws RemoteApiException {
+        final Entry entry = registry.getSession(getSessionKey(server), new ServerSessionRegistry.SessionLoader<Entry>() {
+            public boolean isReady(@NotNull Entry entry) {
+                return !entry.invalid && now() - entry.lastActive < tokenTimeout;
+            }
+
+            @NotNull
+            public Entry load(@Nullable Entry entry) throws RemoteApiException {
+                final JIRASessionPartOne session = factory.createSession(server);
+                session.login(server.getUsername(), server.getPassword());
+                return new Entry(session, now());
+            }
+        });
+        synchronized (this) {
+            if (keepAliveTask == null) {
+                startKeepAlive();
+            }
+        }
+        return entry;
+    }
+
+    /** guarded by <code>this</code> */
+    private void startKeepAlive() {
+        final long interval = keepAliveInterval;
+        if (interval == 0) {
+            return;
+        }
+        try {
+            keepAliveTask = KEEP_ALIVE_SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    keepAlive();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // tokens just expire as they would without keep-alive
+            LoggerImpl.getInstance().warn("Cannot schedule keeping JIRA SOAP sessions alive", e);
+        }
+    }
+
+    /** guarded by <code>this</code> */
+    private void stopKeepAlive() {
+        if (keepAliveTask != null) {
+            keepAliveTask.cancel(false);
+            keepAliveTask = null;
+        }
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+
+    @NotNull
+    private static String getSessionKey(@NotNull ConnectionCfg server) {
+        return server.getUrl() + "_" + server.getUsername() + "_" + server.getPassword();
+    }
+
+    private static final class Entry {
+        private final JIRASessionPartOne session;
+
+        /** last call made by a caller */
+        private volatile long lastUsed;
+
+        /** last request accepted by the server, including keep-alive requests */
+        private volatile long lastActive;
+
+        private volatile boolean invalid;
+
+        private Entry(@NotNull JIRASessionPartOne session, long now) {
+            this.session = session;
+            this.lastUsed = now;
+            this.lastActive = now;
+        }
+
+        private void used(long now) {
+            lastUsed = now;
+            lastActive = now;
+        }
+
+        private void invalidate() {
+            invalid = true;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.jira.rss.JIRAException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Issues of a search, retrieved page by page while they are being read, e.g. by
+ * {@link JIRAServerFacade2#getIssueStream(com.atlassian.connector.commons.api.ConnectionCfg,
+ * com.atlassian.connector.commons.jira.beans.JiraFilter, String, String, int, int)}.
+ * <p/>
+ * Up to {@link #getPrefetchPages()} pages following the one being read are requested in the background, so the
+ * reader rarely waits for the server, while large searches are never retrieved in one huge request. The search
+ * ends with the first page which is not full, or when the requested number of issues has been read.
+ * <p/>
+ * Pages are requested independently, so an issue which moves to a later page while the search is being read
+ * (because it has been updated) may be returned by two pages; such duplicates are skipped.
+ * <p/>
+ * A stream which is not read to the end should be closed, so that pages still being retrieved are cancelled.
+ * Reading is not thread-safe, but {@link #close()} may be called from any thread (which ends the stream).
+ */
+public final class JiraIssueStream {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "jira-issue-prefetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Retrieves a page of issues from the server.
+     */
+    public interface PageLoader {
+        /**
+         * @return issues from <code>start</code> on (0 based), at most <code>size</code> of them; fewer than
+         *         <code>size</code> if there are no more issues
+         */
+        @NotNull
+        List<JIRAIssue> loadPage(int start, int size) throws JIRAException;
+    }
+
+    private final PageLoader loader;
+
+    private final int pageSize;
+
+    private final int prefetchPages;
+
+    /** offset after the last issue to read, or -1 to read all issues */
+    private final int end;
+
+    private final ConcurrentLinkedQueue<Page> pages = new ConcurrentLinkedQueue<Page>();
+
+    private final Set<String> returnedKeys = new HashSet<String>();
+
+    private int nextPageStart;
+
+    private int returned;
+
+    private boolean lastPageRead;
+
+    private Iterator<JIRAIssue> current;
+
+    private JIRAIssue nextIssue;
+
+    private volatile boolean closed;
+
+    /**
+     * @param pageSize  number of issues requested at once
+     * @param maxIssues maximum number of issues to read, or -1 to read all of them
+     */
+    public JiraIssueStream(@NotNull PageLoader loader, int pageSize, int maxIssues) {
+        this(loader, 0, pageSize, DEFAULT_PREFETCH_PAGES, maxIssues);
+    }
+
+    /**
+     * @param start         offset of the first issue to read (0 based)
+     * @param pageSize      number of issues requested at once
+     * @param prefetchPages number of pages requested ahead of the one being read, 0 to request pages only when
+     *                      they are needed
+     * @param maxIssues     maximum number of issues to read, or -1 to read all of them
+     */
+    public JiraIssueStream(@NotNull PageLoader loader, int start, int pageSize, int prefetchPages, int maxIssues) {
+        if (start < 0) {
+            throw new IllegalArgumentException("start must not be negative: " + start);
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException("prefetchPages must not be negative: " + prefetchPages);
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+        this.end = maxIssues >= 0 ? start + maxIssues : -1;
+        this.nextPageStart = start;
+        requestPages();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * @return true if there is another issue; waits for its page to be retrieved if needed
+     * @throws JIRAException if the page cannot be retrieved (the stream is closed then)
+     */
+    public boolean hasNext() throws JIRAException {
+        while (nextIssue == null) {
+            if (closed) {
+                return false;
+            }
+            if (current != null && current.hasNext()) {
+                final JIRAIssue issue = current.next();
+                if (issue.getKey() == null || returnedKeys.add(issue.getKey())) {
+                    nextIssue = issue;
+                }
+                continue;
+            }
+            final Page page = lastPageRead ? null : pages.poll();
+            if (page == null) {
+                close();
+                return false;
+            }
+            final List<JIRAIssue> issues = page.get();
+            if (issues == null) {
+                // cancelled by close()
+                return false;
+            }
+            if (issues.size() < page.size || (end >= 0 && page.start + page.size >= end)) {
+                lastPageRead = true;
+                cancelPages();
+            } else {
+                requestPages();
+            }
+            current = issues.iterator();
+        }
+        return true;
+    }
+
+    /**
+     * @return next issue; waits for its page to be retrieved if needed
+     * @throws JIRAException if the page cannot be retrieved (the stream is closed then)
+     */
+    @NotNull
+    public JIRAIssue next() throws JIRAException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JIRAIssue issue = nextIssue;
+        nextIssue = null;
+        returned++;
+        return issue;
+    }
+
+    /**
+     * @return number of issues returned by {@link #next()} so far
+     */
+    public int getReturnedCount() {
+        return returned;
+    }
+
+    /**
+     * Reads all remaining issues and closes the stream.
+     */
+    @NotNull
+    public List<JIRAIssue> readAll() throws JIRAException {
+        final List<JIRAIssue> issues = new ArrayList<JIRAIssue>();
+        try {
+            while (hasNext()) {
+                issues.add(next());
+            }
+        } finally {
+            close();
+        }
+        return issues;
+    }
+
+    /**
+     * Ends the stream; pages which are still being retrieved are cancelled.
+     */
+    public void close() {
+        closed = true;
+        cancelPages();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void requestPages() {
+        while (!closed && pages.size() <= prefetchPages && (end < 0 || nextPageStart < end)) {
+            final int start = nextPageStart;
+            final int size = end >= 0 ? Math.min(pageSize, end - start) : pageSize;
+            final Page page = new Page(start, size);
+            pages.add(page);
+            nextPageStart += size;
+            try {
+                PREFETCHER.execute(page.task);
+            } catch (RejectedExecutionException e) {
+                // retrieved by the reader when needed
+            }
+        }
+    }
+
+    private void cancelPages() {
+        Page page;
+        while ((page = pages.poll()) != null) {
+            page.task.cancel(true);
+        }
+    }
+
+    private final class Page {
+        private final int start;
+
+        private final int size;
+
+        private final FutureTask<List<JIRAIssue>> task;
+
+        private Page(final int start, final int size) {
+            this.start = start;
+            this.size = size;
+            this.task = new FutureTask<List<JIRAIssue>>(new Callable<List<JIRAIssue>>() {
+                public List<JIRAIssue> call() throws JIRAException {
+                    return loader.loadPage(start, size);
+                }
+            });
+        }
+
+        /**
+         * @return issues of the page or <code>null</code> if it has been cancelled
+         */
+        private List<JIRAIssue> get() throws JIRAException {
+            // not started yet if the executor rejected it
+            task.run();
+            try {
+                return task.get();
+            } catch (CancellationException e) {
+                return null;
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new JIRAException("Interrupted while retrieving issues", e);
+            } catch (ExecutionException e) {
+                close();
+                if (e.getCause() instanceof JIRAException) {
+                    throw (JIRAException) e.getCause();
+                }
+                throw new JIRAException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+}
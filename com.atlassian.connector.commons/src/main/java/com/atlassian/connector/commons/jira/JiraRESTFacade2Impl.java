@@ -25,10 +25,10 @@ import com.atlassian.theplugin.commons.util.Logger;
 import java.net.URISyntaxException;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * User: kalamon
@@ -38,7 +38,8 @@ import java.util.concurrent.Callable;
 public class JiraRESTFacade2Impl implements JIRAServerFacade2, JiraRESTSupportTester {
     private static Logger logger;
 
-    private final Map<ConnectionCfg, JiraRestSessionImpl> sessions = new HashMap<ConnectionCfg, JiraRestSessionImpl>();
+    private final ConcurrentMap<ConnectionCfg, JiraRestSessionImpl> sessions =
+            new ConcurrentHashMap<ConnectionCfg, JiraRestSessionImpl>();
 
     public void reset() {
         sessions.clear();
@@ -61,6 +62,14 @@ public class JiraRESTFacade2Impl implements JIRAServerFacade2, JiraRESTSupportTe
         return session.supportsRest();
     }
 
+    public int getServerBuildNumber(ConnectionCfg server) throws JIRAException {
+        try {
+            return get(server).getServerBuildNumber();
+        } catch (RemoteApiException e) {
+            throw new JIRAException(e.getMessage(), e);
+        }
+    }
+
     public List<JIRAIssue> getIssues(ConnectionCfg server, JiraFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
         JiraRestSessionImpl session = get(server);
         return session.getIssues(filter, sort, sortOrder, start, size);
@@ -76,6 +85,53 @@ public class JiraRESTFacade2Impl implements JIRAServerFacade2, JiraRESTSupportTe
         return session.getSavedFilterIssues(filter, sort, sortOrder, start, size);
     }
 
+    public List<JIRAIssue> getIssueSummaries(ConnectionCfg server, JiraFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
+        JiraRestSessionImpl session = get(server);
+        return session.getIssueSummaries(filter, sort, sortOrder, start, size);
+    }
+
+    public List<JIRAIssue> getSavedFilterIssueSummaries(ConnectionCfg server, JIRASavedFilter filter, String sort, String sortOrder, int start, int size) throws JIRAException {
+        JiraRestSessionImpl session = get(server);
+        return session.getSavedFilterIssueSummaries(filter, sort, sortOrder, start, size);
+    }
+
+    public JiraIssueStream getIssueStream(final ConnectionCfg httpConnectionCfg, final JiraFilter filter,
+                                          final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return JiraRESTFacade2Impl.this.getIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getSavedFilterIssueStream(final ConnectionCfg httpConnectionCfg, final JIRASavedFilter filter,
+                                                     final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return JiraRESTFacade2Impl.this.getSavedFilterIssues(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getIssueSummaryStream(final ConnectionCfg httpConnectionCfg, final JiraFilter filter,
+                                                 final String sort, final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return JiraRESTFacade2Impl.this.getIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
+    public JiraIssueStream getSavedFilterIssueSummaryStream(final ConnectionCfg httpConnectionCfg,
+                                                            final JIRASavedFilter filter, final String sort,
+                                                            final String sortOrder, int pageSize, int maxIssues) {
+        return new JiraIssueStream(new JiraIssueStream.PageLoader() {
+            public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+                return JiraRESTFacade2Impl.this.getSavedFilterIssueSummaries(httpConnectionCfg, filter, sort, sortOrder, start, size);
+            }
+        }, pageSize, maxIssues);
+    }
+
     public List<JIRAProject> getProjects(final ConnectionCfg server) throws JIRAException {
         return withJiraException(new Callable<List<JIRAProject>>() {
             public List<JIRAProject> call() throws Exception {
@@ -349,7 +405,10 @@ public class JiraRESTFacade2Impl implements JIRAServerFacade2, JiraRESTSupportTe
             } catch (URISyntaxException e) {
                 throw new JIRAException(e.getMessage());
             }
-            sessions.put(connectionCfg, session);
+            final JiraRestSessionImpl existing = sessions.putIfAbsent(connectionCfg, session);
+            if (existing != null) {
+                session = existing;
+            }
         }
         return session;
     }
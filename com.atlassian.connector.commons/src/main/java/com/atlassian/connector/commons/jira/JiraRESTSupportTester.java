@@ -9,5 +9,17 @@ import com.atlassian.connector.commons.jira.rss.JIRAException;
  * Time: 15:36
  */
 public interface JiraRESTSupportTester {
+    /**
+     * Returned by {@link #getServerBuildNumber(ConnectionCfg)} for servers which answer, but do not provide
+     * the REST API (JIRA 4 and older).
+     */
+    int NO_REST_API = 0;
+
     boolean supportsRest(ConnectionCfg server) throws JIRAException;
+
+    /**
+     * @return build number of the server, retrieved with the REST API, or {@link #NO_REST_API}
+     * @throws JIRAException if the server cannot be reached or its reply cannot be understood
+     */
+    int getServerBuildNumber(ConnectionCfg server) throws JIRAException;
 }
@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.rss.JIRAException;
+import com.atlassian.jira.rest.client.internal.ServerVersionConstants;
+import com.atlassian.theplugin.commons.util.LoggerImpl;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers which JIRA servers support the REST API (JIRA 5 and newer) and so are called through REST rather
+ * than SOAP and RSS.
+ * <p/>
+ * A server is probed (its build number is retrieved) the first time it is used; callers using the same server
+ * at the same time wait for a single probe. Results are remembered by server URL and optionally stored in a file
+ * (see {@link #setStoreFile(File)}), so servers do not have to be probed again after restart. Results older than
+ * {@link #getRevalidationInterval()} are still used, but the build number is retrieved again in the background, so
+ * that an upgraded (or downgraded) server is routed correctly.
+ * <p/>
+ * A server which answers without the REST API (JIRA 4 and older) is remembered like any other and called through SOAP.
+ * A server which cannot be probed (e.g. because it is not available) is not remembered at all: the error is returned
+ * to the callers waiting for the probe and the next call probes the server again.
+ * <p/>
+ * This class is thread-safe. Routing a server which has been probed already takes a single map lookup.
+ */
+public final class JiraServerCapabilities {
+
+    public static final long DEFAULT_REVALIDATION_INTERVAL = 24 * 60 * 60 * 1000L;
+
+    private static final int UNKNOWN_BUILD_NUMBER = -1;
+
+    private static final ExecutorService REVALIDATOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "jira-capabilities-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final JiraRESTSupportTester probe;
+
+    private final Executor revalidator;
+
+    private final ConcurrentMap<String, Capability> capabilities = new ConcurrentHashMap<String, Capability>();
+
+    private final ConcurrentMap<String, FutureTask<Capability>> probes =
+            new ConcurrentHashMap<String, FutureTask<Capability>>();
+
+    private volatile long revalidationInterval = DEFAULT_REVALIDATION_INTERVAL;
+
+    @Nullable
+    private volatile File storeFile;
+
+    public JiraServerCapabilities(@NotNull JiraRESTSupportTester probe) {
+        this(probe, REVALIDATOR);
+    }
+
+    /**
+     * @param revalidator runs background probes of servers whose results are too old
+     */
+    JiraServerCapabilities(@NotNull JiraRESTSupportTester probe, @NotNull Executor revalidator) {
+        this.probe = probe;
+        this.revalidator = revalidator;
+    }
+
+    public long getRevalidationInterval() {
+        return revalidationInterval;
+    }
+
+    /**
+     * @param revalidationInterval age (in ms) after which the build number of a server is retrieved again
+     */
+    public void setRevalidationInterval(long revalidationInterval) {
+        if (revalidationInterval <= 0) {
+            throw new IllegalArgumentException("revalidationInterval must be positive: " + revalidationInterval);
+        }
+        this.revalidationInterval = revalidationInterval;
+    }
+
+    @Nullable
+    public File getStoreFile() {
+        return storeFile;
+    }
+
+    /**
+     * Reads results stored in given file (if it exists) and stores results there from now on.
+     *
+     * @param file file to store probe results in, or <code>null</code> to keep them in memory only
+     */
+    public void setStoreFile(@Nullable File file) {
+        storeFile = file;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.load(in);
+        } catch (IOException e) {
+            LoggerImpl.getInstance().warn("Cannot read JIRA server capabilities from " + file, e);
+            return;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        for (String url : properties.stringPropertyNames()) {
+            final Capability capability = Capability.parse(properties.getProperty(url));
+            if (capability != null) {
+                capabilities.putIfAbsent(url, capability);
+            }
+        }
+    }
+
+    /**
+     * @return true if the server should be called through the REST API; the server is probed first if needed
+     * @throws JIRAException if the server has to be probed and cannot be reached
+     */
+    public boolean usesRest(@NotNull ConnectionCfg server) throws JIRAException {
+        final Capability capability = capabilities.get(server.getUrl());
+        if (capability == null) {
+            return probe(server).rest;
+        }
+        if (System.currentTimeMillis() - capability.checkedAt > revalidationInterval) {
+            revalidate(server);
+        }
+        return capability.rest;
+    }
+
+    /**
+     * @return build number of the server as of its last probe ({@link JiraRESTSupportTester#NO_REST_API} for servers
+     *         without the REST API) or -1 if it is not known
+     */
+    public int getBuildNumber(@NotNull ConnectionCfg server) {
+        final Capability capability = capabilities.get(server.getUrl());
+        return capability != null ? capability.buildNumber : UNKNOWN_BUILD_NUMBER;
+    }
+
+    /**
+     * Forgets what is known about the server, so that it is probed again next time it is used.
+     */
+    public void invalidate(@NotNull ConnectionCfg server) {
+        if (capabilities.remove(server.getUrl()) != null) {
+            store();
+        }
+    }
+
+    /**
+     * Forgets all servers (also those stored in the file).
+     */
+    public void clear() {
+        capabilities.clear();
+        store();
+    }
+
+    @NotNull
+    private Capability probe(@NotNull final ConnectionCfg server) throws JIRAException {
+        final String url = server.getUrl();
+        FutureTask<Capability> task = probes.get(url);
+        if (task == null) {
+            final FutureTask<Capability> newTask = createProbe(server);
+            task = probes.putIfAbsent(url, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    task.run();
+                } finally {
+                    probes.remove(url, task);
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JIRAException("Interrupted while retrieving build number of " + url, e);
+        } catch (ExecutionException e) {
+            // the failure is shared by all waiting callers, each of them gets its own exception
+            throw new JIRAException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void revalidate(@NotNull ConnectionCfg server) {
+        final String url = server.getUrl();
+        final FutureTask<Capability> task = createProbe(server);
+        if (probes.putIfAbsent(url, task) != null) {
+            return;
+        }
+        try {
+            revalidator.execute(new Runnable() {
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        probes.remove(url, task);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probes.remove(url, task);
+        }
+    }
+
+    @NotNull
+    private FutureTask<Capability> createProbe(@NotNull final ConnectionCfg server) {
+        return new FutureTask<Capability>(new Callable<Capability>() {
+            public Capability call() throws JIRAException {
+                return update(server.getUrl(), retrieveCapability(server));
+            }
+        });
+    }
+
+    @NotNull
+    private Capability retrieveCapability(@NotNull ConnectionCfg server) throws JIRAException {
+        final JIRAException failure;
+        try {
+            return new Capability(probe.getServerBuildNumber(server), System.currentTimeMillis());
+        } catch (JIRAException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new JIRAException("Cannot retrieve build number of " + server.getUrl() + ": " + e.getMessage(), e);
+        }
+        final Capability old = capabilities.get(server.getUrl());
+        if (old != null) {
+            // the server has answered before, it is probably just not available right now
+            LoggerImpl.getInstance().debug("Cannot retrieve build number of " + server.getUrl()
+                    + ", keeping the known one", failure);
+            return new Capability(old.buildNumber, System.currentTimeMillis());
+        }
+        throw failure;
+    }
+
+    @NotNull
+    private Capability update(@NotNull String url, @NotNull Capability capability) {
+        final Capability old = capabilities.put(url, capability);
+        if (old != null && old.rest != capability.rest) {
+            LoggerImpl.getInstance().info("JIRA server " + url + " is now called through "
+                    + (capability.rest ? "REST" : "SOAP") + " API (build number " + capability.buildNumber + ")");
+        }
+        if (old == null || old.buildNumber != capability.buildNumber || old.checkedAt != capability.checkedAt) {
+            store();
+        }
+        return capability;
+    }
+
+    private synchronized void store() {
+        final File file = storeFile;
+        if (file == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        for (Map.Entry<String, Capability> entry : capabilities.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().format());
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            properties.store(out, "JIRA server build numbers");
+            out.close();
+            out = null;
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            LoggerImpl.getInstance().warn("Cannot store JIRA server capabilities in " + file, e);
+            temp.delete();
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static final class Capability {
+        /** {@link JiraRESTSupportTester#NO_REST_API} for servers without the REST API */
+        private final int buildNumber;
+
+        private final long checkedAt;
+
+        private final boolean rest;
+
+        private Capability(int buildNumber, long checkedAt) {
+            this.buildNumber = buildNumber;
+            this.checkedAt = checkedAt;
+            this.rest = buildNumber >= ServerVersionConstants.BN_JIRA_5;
+        }
+
+        @NotNull
+        private String format() {
+            return buildNumber + "," + checkedAt;
+        }
+
+        @Nullable
+        private static Capability parse(@Nullable String value) {
+            if (value == null) {
+                return null;
+            }
+            final int comma = value.indexOf(',');
+            try {
+                return comma > 0 ? new Capability(Integer.parseInt(value.substring(0, comma).trim()),
+                        Long.parseLong(value.substring(comma + 1).trim())) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.atlassian.connector.commons.jira;
 
+import com.atlassian.theplugin.commons.util.TimestampParser;
+
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
 
 /**
@@ -16,68 +19,46 @@ public final class JiraTimeFormatter {
     }
 
     public static String formatShortTimeFromJiraTimeString(String dateString, Locale locale) {
-        DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z (z)", locale);
         DateFormat ds = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
-        String t;
         if (dateString == null) {
             return "";
         }
-        try {
-            t = ds.format(df.parse(dateString));
-        } catch (ParseException e) {
-            // maybe it is JIRA 4.1 EAP format? try it
-            df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", locale);
-            try {
-                t = ds.format(df.parse(dateString));
-            } catch (ParseException e2) {
-                t = "Invalid";
-            }
-        }
-
-        return t;
+        Date date = parseJiraTime(dateString, locale);
+        return date != null ? ds.format(date) : "Invalid";
     }
 
     public static String formatDateTimeFromJiraTimeString(String dateString, Locale locale) {
-        DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z (z)", locale);
         DateFormat ds = new SimpleDateFormat("dd/MMM/yy HH:mm");
-        String t;
-        try {
-            t = ds.format(df.parse(dateString));
-        } catch (ParseException e) {
-            // maybe it is JIRA 4.1 EAP format? try it
-            df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", locale);
-            try {
-                t = ds.format(df.parse(dateString));
-            } catch (ParseException e2) {
-                t = "Invalid";
-            }
-        }
-
-        return t;
+        Date date = parseJiraTime(dateString, locale);
+        return date != null ? ds.format(date) : "Invalid";
     }
 
     public static String formatDateFromJiraTimeString(String dateString, Locale locale) {
-        DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z (z)", locale);
         DateFormat ds = new SimpleDateFormat("dd/MMM/yy", locale);
-        String t;
+        Date date = parseJiraTime(dateString, locale);
+        return date != null ? ds.format(date) : "Invalid";
+    }
+
+    private static Date parseJiraTime(String dateString, Locale locale) {
+        final long millis = TimestampParser.parseMillis(dateString);
+        if (millis != TimestampParser.INVALID) {
+            return new Date(millis);
+        }
+        if (dateString == null) {
+            return null;
+        }
+        // month names in the language of the server
+        DateFormat df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z (z)", locale);
         try {
-            t = ds.format(df.parse(dateString));
+            return df.parse(dateString);
         } catch (ParseException e) {
             // maybe it is JIRA 4.1 EAP format? try it
             df = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", locale);
             try {
-                t = ds.format(df.parse(dateString));
+                return df.parse(dateString);
             } catch (ParseException e2) {
-                df = new SimpleDateFormat("yyyy-MM-dd", locale);
-                try {
-                    t = ds.format(df.parse(dateString));
-                } catch (ParseException e3) {
-                    t = "Invalid";
-                }
+                return null;
             }
         }
-
-            return t;
-        }
-
-    }
\ No newline at end of file
+    }
+}
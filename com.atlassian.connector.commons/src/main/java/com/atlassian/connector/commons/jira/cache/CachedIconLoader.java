@@ -14,77 +14,246 @@
  * limitations under the License.
  */
 
+
 package com.atlassian.connector.commons.jira.cache;
 
+import com.atlassian.theplugin.commons.util.StringUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 import javax.swing.*;
-import java.net.MalformedURLException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Icons (of issue types, priorities, statuses etc.) downloaded from JIRA servers.
+ * <p/>
+ * {@link #loadIcon(String)} only schedules the download in the background and returns immediately, so parsing
+ * issues never waits for images. {@link #getIcon(String)} returns the icon, waiting for the download if it is still
+ * in progress. Each icon is downloaded only once even if many threads ask for it at the same time. An icon which
+ * could not be downloaded is not asked for again during {@link #FAILURE_RETRY_DELAY} milliseconds.
+ * <p/>
+ * At most {@link #MAX_ICONS} icons are kept in memory. Disabled (grayed) variants are generated only when asked for.
+ * Optionally downloaded icons are also stored in a directory (see {@link #setIconDirectory(File)}), so they do not
+ * have to be downloaded again after restart.
+ * <p/>
+ * This class is thread-safe.
+ */
 public final class CachedIconLoader {
-	private static Map<String, Icon> icons = new HashMap<String, Icon>();
-	private static Map<String, Icon> disabledIcons = new HashMap<String, Icon>();
+
+	public static final int MAX_ICONS = 1000;
+
+	/**
+	 * How long an icon which failed to download is not retried, in milliseconds.
+	 */
+	public static final long FAILURE_RETRY_DELAY = 60 * 1000L;
+
+	private static final int CONNECT_TIMEOUT = 10 * 1000;
+
+	private static final int READ_TIMEOUT = 30 * 1000;
+
+	private static final int DOWNLOAD_THREADS = 2;
+
+	private static final String ICON_SUFFIX = ".icon";
+
+	private static final LoadingCache<String, CachedIcon> ICONS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_ICONS)
+			.build(new CacheLoader<String, CachedIcon>() {
+				@Override
+				public CachedIcon load(String urlString) throws IOException {
+					try {
+						return new CachedIcon(new ImageIcon(readIcon(urlString)));
+					} catch (IOException e) {
+						FAILURES.put(urlString, Boolean.TRUE);
+						throw e;
+					}
+				}
+			});
+
+	private static final Cache<String, Boolean> FAILURES = CacheBuilder.newBuilder()
+			.maximumSize(MAX_ICONS)
+			.expireAfterWrite(FAILURE_RETRY_DELAY, TimeUnit.MILLISECONDS)
+			.build();
+
+	private static final ConcurrentMap<String, Boolean> SCHEDULED = new ConcurrentHashMap<String, Boolean>();
+
+	private static final ExecutorService DOWNLOADER = Executors.newFixedThreadPool(DOWNLOAD_THREADS,
+			new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "jira-icon-loader-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	@Nullable
+	private static volatile File iconDirectory;
 
 	private CachedIconLoader() {
 	}
 
+	@Nullable
+	public static File getIconDirectory() {
+		return iconDirectory;
+	}
+
+	/**
+	 * @param directory directory where downloaded icons are stored (and looked up before downloading them),
+	 *                  or <code>null</code> to keep icons in memory only
+	 */
+	public static void setIconDirectory(@Nullable File directory) {
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Cannot create icon directory " + directory);
+		}
+		iconDirectory = directory;
+	}
+
+	/**
+	 * @return grayed variant of the icon, which is loaded first if needed, or null if it cannot be loaded
+	 */
+	@Nullable
 	public static Icon getDisabledIcon(String urlString) {
-		return disabledIcons.get(urlString);
+		final CachedIcon icon = get(urlString);
+		return icon != null ? icon.getDisabledIcon() : null;
 	}
 
-	private static void addDisabledIcon(String urlString, Icon icon) {
-		disabledIcons.put(urlString, icon);
+	@Nullable
+	public static Icon getIcon(URL url) {
+		return url != null ? getIcon(url.toString()) : null;
 	}
 
-	private static Icon generateDisabledIcon(Icon icon) {
-		return new ImageIcon(GrayFilter.createDisabledImage(((ImageIcon) icon).getImage()));
+	/**
+	 * @return the icon, which is loaded first (or waited for, if it is being loaded already) if needed,
+	 *         or null if the URL is not valid or the icon cannot be downloaded
+	 */
+	@Nullable
+	public static Icon getIcon(String urlString) {
+		final CachedIcon icon = get(urlString);
+		return icon != null ? icon.icon : null;
 	}
 
-	private static void maybeGenerateDisabledIcon(String urlString, Icon icon) {
-		if (disabledIcons.containsKey(urlString) || icon == null) {
+	/**
+	 * Starts loading the icon in the background, unless it is loaded (or being loaded) already.
+	 */
+	public static void loadIcon(final String urlString) {
+		if (urlString == null || ICONS.getIfPresent(urlString) != null || FAILURES.getIfPresent(urlString) != null
+				|| SCHEDULED.putIfAbsent(urlString, Boolean.TRUE) != null) {
 			return;
 		}
-		addDisabledIcon(urlString, generateDisabledIcon(icon));
+		try {
+			DOWNLOADER.execute(new Runnable() {
+				public void run() {
+					try {
+						get(urlString);
+					} finally {
+						SCHEDULED.remove(urlString);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			SCHEDULED.remove(urlString);
+		}
 	}
 
-	public static Icon getIcon(URL url) {
-		if (url != null) {
-			String key = url.toString();
-			if (!icons.containsKey(key)) {
-				Icon i = new ImageIcon(url);
-				icons.put(key, i);
-				maybeGenerateDisabledIcon(key, i);
-			}
-			return icons.get(key);
-		} else {
-			return null;
-		}
+	/**
+	 * Drops all icons kept in memory and forgets failed downloads. Icons stored in {@link #getIconDirectory()}
+	 * are kept.
+	 */
+	public static void clear() {
+		ICONS.invalidateAll();
+		FAILURES.invalidateAll();
 	}
 
-	public static Icon getIcon(String urlString) {
-		if (urlString != null) {
-			if (!icons.containsKey(urlString)) {
-				loadIcon(urlString);
-			}
-			return icons.get(urlString);
-		} else {
+	@Nullable
+	private static CachedIcon get(String urlString) {
+		if (urlString == null || FAILURES.getIfPresent(urlString) != null) {
+			return null;
+		}
+		try {
+			return ICONS.get(urlString);
+		} catch (ExecutionException e) {
+			// malformed URL or download failed
 			return null;
 		}
 	}
 
-	public static void loadIcon(String urlString) {
-		if (urlString != null && !icons.containsKey(urlString)) {
+	/**
+	 * @return image data from the icon directory or the server
+	 * @throws IOException when the URL is not valid or the icon cannot be downloaded
+	 */
+	@NotNull
+	private static byte[] readIcon(@NotNull String urlString) throws IOException {
+		final URL url = new URL(urlString);
+		final File directory = iconDirectory;
+		final File file = directory != null ? new File(directory, StringUtil.sha1Hex(urlString) + ICON_SUFFIX) : null;
+		if (file != null && file.isFile()) {
 			try {
+				return FileUtils.readFileToByteArray(file);
+			} catch (IOException e) {
+				// download it again
+			}
+		}
+
+		final byte[] data;
+		final URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		final InputStream in = connection.getInputStream();
+		try {
+			data = IOUtils.toByteArray(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
 
-				URL url = new URL(urlString);
-				Icon i = new ImageIcon(url);
-				icons.put(urlString, i);
-				maybeGenerateDisabledIcon(urlString, i);
-			} catch (MalformedURLException e) {
-				//logger.warn("Cannot load icon: [" + urlString + "]", e);
+		if (file != null) {
+			try {
+				FileUtils.writeByteArrayToFile(file, data);
+			} catch (IOException e) {
+				// icon stays in memory only
+				file.delete();
 			}
 		}
+		return data;
 	}
 
+	private static final class CachedIcon {
+		private final ImageIcon icon;
+
+		private volatile Icon disabledIcon;
+
+		private CachedIcon(@NotNull ImageIcon icon) {
+			this.icon = icon;
+		}
+
+		@NotNull
+		private Icon getDisabledIcon() {
+			Icon disabled = disabledIcon;
+			if (disabled == null) {
+				// generating it twice in a race is harmless
+				disabled = new ImageIcon(GrayFilter.createDisabledImage(icon.getImage()));
+				disabledIcon = disabled;
+			}
+			return disabled;
+		}
+	}
 }
@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira.cache;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.rss.JIRAException;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metadata of JIRA servers (statuses, priorities, resolutions, issue types, components, versions and security
+ * levels), which changes rarely but is asked for by every issue creation and filter dialog.
+ * <p/>
+ * Each value is kept per server (and per project where it depends on the project) for <code>ttl</code> ms.
+ * Values older than <code>refreshInterval</code> ms are still returned, but reloaded in the background, so that
+ * frequently used metadata is refreshed without anybody waiting for it. A value is loaded only once even if
+ * many threads ask for it at the same time; failures are not cached.
+ * <p/>
+ * Hit counts and load times of each kind of metadata are available from {@link #getStats(Kind)}.
+ * <p/>
+ * This class is thread-safe. Returned lists are copies, which callers are free to modify.
+ */
+public final class JiraMetadataCache {
+
+	public static final long DEFAULT_TTL = 60 * 60 * 1000L;
+
+	public static final long DEFAULT_REFRESH_INTERVAL = 10 * 60 * 1000L;
+
+	public static final int MAX_ENTRIES_PER_KIND = 1000;
+
+	private static final int REFRESH_THREADS = 2;
+
+	private static final Object NULL = new Object();
+
+	private static final ExecutorService REFRESHER = Executors.newFixedThreadPool(REFRESH_THREADS,
+			new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "jira-metadata-refresh-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	public enum Kind {
+		STATUSES,
+		PRIORITIES,
+		RESOLUTIONS,
+		ISSUE_TYPES,
+		SUBTASK_ISSUE_TYPES,
+		PROJECT_ISSUE_TYPES,
+		PROJECT_SUBTASK_ISSUE_TYPES,
+		COMPONENTS,
+		VERSIONS,
+		SECURITY_LEVELS
+	}
+
+	/**
+	 * Retrieves metadata from the server.
+	 */
+	public interface Loader<T> {
+		@Nullable
+		List<T> load() throws JIRAException;
+	}
+
+	private final Map<Kind, LoadingCache<Key, Object>> caches = new EnumMap<Kind, LoadingCache<Key, Object>>(Kind.class);
+
+	private final long ttl;
+
+	private final long refreshInterval;
+
+	public JiraMetadataCache() {
+		this(DEFAULT_TTL, DEFAULT_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * @param ttl             how long (in ms) metadata is kept, 0 to not keep it at all
+	 * @param refreshInterval age (in ms) after which metadata is reloaded in the background,
+	 *                        0 (or not less than <code>ttl</code>) to never reload it in the background
+	 */
+	public JiraMetadataCache(long ttl, long refreshInterval) {
+		this(ttl, refreshInterval, Ticker.systemTicker(), REFRESHER);
+	}
+
+	/**
+	 * @param ticker    source of time for the age of metadata
+	 * @param refresher runs background reloads
+	 */
+	public JiraMetadataCache(long ttl, long refreshInterval, @NotNull Ticker ticker, @NotNull Executor refresher) {
+		if (ttl < 0) {
+			throw new IllegalArgumentException("ttl must not be negative: " + ttl);
+		}
+		if (refreshInterval < 0) {
+			throw new IllegalArgumentException("refreshInterval must not be negative: " + refreshInterval);
+		}
+		this.ttl = ttl;
+		this.refreshInterval = refreshInterval;
+		for (Kind kind : Kind.values()) {
+			final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+					.maximumSize(MAX_ENTRIES_PER_KIND)
+					.ticker(ticker)
+					.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+					.recordStats();
+			if (refreshInterval > 0 && refreshInterval < ttl) {
+				builder.refreshAfterWrite(refreshInterval, TimeUnit.MILLISECONDS);
+			}
+			caches.put(kind, builder.build(new MetadataLoader(refresher)));
+		}
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	/**
+	 * @param project project the metadata belongs to, <code>null</code> for metadata of the whole server
+	 * @return cached metadata or metadata retrieved by the loader (or waited for, if another thread retrieves it
+	 *         already), if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> get(@NotNull ConnectionCfg server, @NotNull Kind kind, @Nullable String project,
+			@NotNull Loader<T> loader) throws JIRAException {
+		final Object value;
+		try {
+			value = caches.get(kind).get(new Key(server, project, loader));
+		} catch (ExecutionException e) {
+			throw toJiraException(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw toJiraException(e.getCause());
+		}
+		return value != NULL ? new ArrayList<T>((List<T>) value) : null;
+	}
+
+	/**
+	 * @return cached metadata or <code>null</code> if there is none (metadata is never retrieved by this method)
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public <T> List<T> getIfPresent(@NotNull ConnectionCfg server, @NotNull Kind kind, @Nullable String project) {
+		final Object value = caches.get(kind).getIfPresent(new Key(server, project, null));
+		return value != null && value != NULL ? new ArrayList<T>((List<T>) value) : null;
+	}
+
+	/**
+	 * Forgets given metadata, so that it is retrieved from the server next time it is asked for.
+	 */
+	public void invalidate(@NotNull ConnectionCfg server, @NotNull Kind kind, @Nullable String project) {
+		caches.get(kind).invalidate(new Key(server, project, null));
+	}
+
+	/**
+	 * Forgets given kind of metadata of the server (for all projects).
+	 */
+	public void invalidate(@NotNull ConnectionCfg server, @NotNull Kind kind) {
+		final String serverKey = getServerKey(server);
+		for (Key key : caches.get(kind).asMap().keySet()) {
+			if (key.server.equals(serverKey)) {
+				caches.get(kind).invalidate(key);
+			}
+		}
+	}
+
+	/**
+	 * Forgets all metadata of the server.
+	 */
+	public void invalidate(@NotNull ConnectionCfg server) {
+		for (Kind kind : Kind.values()) {
+			invalidate(server, kind);
+		}
+	}
+
+	public void invalidateAll() {
+		for (LoadingCache<Key, Object> cache : caches.values()) {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * @return hit and miss counts and load times (including background reloads) of given kind of metadata
+	 */
+	@NotNull
+	public CacheStats getStats(@NotNull Kind kind) {
+		return caches.get(kind).stats();
+	}
+
+	/**
+	 * @return hit and miss counts and load times of all metadata
+	 */
+	@NotNull
+	public CacheStats getStats() {
+		CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+		for (LoadingCache<Key, Object> cache : caches.values()) {
+			stats = stats.plus(cache.stats());
+		}
+		return stats;
+	}
+
+	@NotNull
+	private static JIRAException toJiraException(@Nullable Throwable cause) {
+		if (cause instanceof JIRAException) {
+			return (JIRAException) cause;
+		}
+		return new JIRAException(cause != null ? cause.getMessage() : null, cause);
+	}
+
+	@NotNull
+	private static String getServerKey(@NotNull ConnectionCfg server) {
+		return server.getUrl() + "_" + server.getUsername() + "_" + server.getPassword();
+	}
+
+	private static final class MetadataLoader extends CacheLoader<Key, Object> {
+		private final Executor refresher;
+
+		private MetadataLoader(@NotNull Executor refresher) {
+			this.refresher = refresher;
+		}
+
+		@Override
+		public Object load(@NotNull Key key) throws JIRAException {
+			if (key.loader == null) {
+				throw new IllegalStateException("No loader for " + key);
+			}
+			final List<?> value = key.loader.load();
+			return value != null ? new ArrayList<Object>(value) : NULL;
+		}
+
+		@Override
+		public ListenableFuture<Object> reload(@NotNull final Key key, @NotNull Object oldValue) {
+			// old value is returned until the new one is retrieved
+			final ListenableFutureTask<Object> task = ListenableFutureTask.create(new Callable<Object>() {
+				public Object call() throws JIRAException {
+					return load(key);
+				}
+			});
+			refresher.execute(task);
+			return task;
+		}
+	}
+
+	/**
+	 * Identifies metadata; the loader is not a part of the identity, it only retrieves the metadata
+	 * when it is not cached.
+	 */
+	private static final class Key {
+		private final String server;
+
+		private final String url;
+
+		private final String project;
+
+		private final Loader<?> loader;
+
+		private Key(@NotNull ConnectionCfg server, @Nullable String project, @Nullable Loader<?> loader) {
+			this.server = getServerKey(server);
+			this.url = server.getUrl();
+			this.project = project;
+			this.loader = loader;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key key = (Key) o;
+			return server.equals(key.server) && (project != null ? project.equals(key.project) : key.project == null);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * server.hashCode() + (project != null ? project.hashCode() : 0);
+		}
+
+		@Override
+		public String toString() {
+			return project != null ? url + " " + project : url;
+		}
+	}
+}
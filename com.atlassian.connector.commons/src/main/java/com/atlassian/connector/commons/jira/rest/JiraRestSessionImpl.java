@@ -9,6 +9,7 @@ import com.atlassian.connector.commons.jira.JIRAIssue;
 import com.atlassian.connector.commons.jira.JIRAIssueBean;
 import com.atlassian.connector.commons.jira.JIRASessionPartOne;
 import com.atlassian.connector.commons.jira.JIRASessionPartTwo;
+import com.atlassian.connector.commons.jira.JiraRESTSupportTester;
 import com.atlassian.connector.commons.jira.JiraUserNotFoundException;
 import com.atlassian.connector.commons.jira.beans.JIRAAttachment;
 import com.atlassian.connector.commons.jira.beans.JIRAComment;
@@ -81,16 +82,19 @@ import com.google.common.collect.Maps;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.filter.Filterable;
 import com.sun.jersey.client.apache.config.ApacheHttpClientConfig;
 import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.cookie.CookiePolicy;
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.joda.time.DateTime;
 
+import javax.ws.rs.core.UriBuilder;
 import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -168,6 +172,12 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
         }
     }
 
+    JiraRestSessionImpl(ConnectionCfg server, JiraRestClient restClient) {
+        this.server = server;
+        this.proxyInfo = null;
+        this.restClient = restClient;
+    }
+
     public boolean supportsRest() throws JIRAException {
         try {
             return restClient.getMetadataClient().getServerInfo(pm).getBuildNumber() >= ServerVersionConstants.BN_JIRA_5;
@@ -176,6 +186,27 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
         }
     }
 
+    /**
+     * @return build number of the server or {@link JiraRESTSupportTester#NO_REST_API} if the server has no
+     *         REST API resource for it
+     */
+    public int getServerBuildNumber() throws RemoteApiException {
+        try {
+            return wrapWithRemoteApiException(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    return restClient.getMetadataClient().getServerInfo(pm).getBuildNumber();
+                }
+            });
+        } catch (RemoteApiException e) {
+            if (e.getCause() instanceof RestClientException && e.getCause().getCause() instanceof UniformInterfaceException
+                && ((UniformInterfaceException) e.getCause().getCause()).getResponse().getStatus() == ClientResponse.Status.NOT_FOUND.getStatusCode()) {
+                // the server is there, it is just too old
+                return JiraRESTSupportTester.NO_REST_API;
+            }
+            throw e;
+        }
+    }
+
     public void login(final String userName, final String password) throws RemoteApiException {
         wrapWithRemoteApiException(new Callable<Void>() {
             public Void call() throws Exception {
@@ -344,7 +375,7 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
         return wrapWithRemoteApiException(new Callable<List<JIRAAction>>() {
             public List<JIRAAction> call() throws Exception {
                 List<JIRAAction> result = Lists.newArrayList();
-                Iterable<Transition> transitions = restClient.getIssueClient().getTransitions((Issue) issue.getApiIssueObject(), pm);
+                Iterable<Transition> transitions = restClient.getIssueClient().getTransitions(getRestIssue(issue), pm);
                 for (Transition transition : transitions) {
                     result.add(new JIRAActionBean(transition.getId(), transition.getName()));
                 }
@@ -356,7 +387,7 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
     public List<JIRAActionField> getFieldsForAction(final JIRAIssue issue, final JIRAAction action) throws RemoteApiException {
         return wrapWithRemoteApiException(new Callable<List<JIRAActionField>>() {
             public List<JIRAActionField> call() throws Exception {
-                Iterable<Transition> transitions = restClient.getIssueClient().getTransitions((Issue) issue.getApiIssueObject(), pm);
+                Iterable<Transition> transitions = restClient.getIssueClient().getTransitions(getRestIssue(issue), pm);
                 List<JIRAActionField> result = Lists.newArrayList();
                 for (Transition transition : transitions) {
                     if (transition.getId() != action.getId()) {
@@ -379,7 +410,7 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
             wrapWithRemoteApiException(new Callable<Object>() {
                 public Object call() throws Exception {
                     TransitionInput t = new TransitionInput((int) action.getId(), fieldValues);
-                    restClient.getIssueClient().transition((Issue) issue.getApiIssueObject(), t, pm);
+                    restClient.getIssueClient().transition(getRestIssue(issue), t, pm);
                     return null;
                 }
             });
@@ -389,7 +420,7 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
                     Issue iszju = restClient.getIssueClient().getIssue(issue.getKey(), ImmutableList.of(IssueRestClient.Expandos.EDITMETA), pm);
                     fieldValues.addAll(generateFieldValues(issue, iszju, fields));
                     TransitionInput t = new TransitionInput((int) action.getId(), fieldValues);
-                    restClient.getIssueClient().transition((Issue) issue.getApiIssueObject(), t, pm);
+                    restClient.getIssueClient().transition(getRestIssue(issue), t, pm);
                     return null;
                 }
             });
@@ -559,17 +590,22 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
         return getIssues(filter.getJql(), sortBy, sortOrder, start, max);
     }
 
+    public List<JIRAIssue> getIssueSummaries(
+            JiraFilter filter, String sortBy, String sortOrder, int start, int max) throws JIRAException {
+        return getIssueSummaries(filter.getJql(), sortBy, sortOrder, start, max);
+    }
+
+    public List<JIRAIssue> getSavedFilterIssueSummaries(
+            JIRASavedFilter filter, String sortBy, String sortOrder, int start, int max) throws JIRAException {
+        return getIssueSummaries(filter.getJql(), sortBy, sortOrder, start, max);
+    }
+
     public List<JIRAIssue> getIssues(
             final String jql, final String sortBy, final String sortOrder, final int start, final int max)
             throws JIRAException {
         return wrapWithJiraException(new Callable<List<JIRAIssue>>() {
             public List<JIRAIssue> call() throws Exception {
-                String sort =
-                        jql.toLowerCase().contains("order by")
-                            ? ""
-                            : (StringUtils.isNotEmpty(sortBy) && StringUtils.isNotEmpty(sortOrder)
-                                ? " order by " + sortBy + " " + sortOrder
-                                : "");
+                String sort = getSortClause(jql, sortBy, sortOrder);
                 SearchResult result = restClient.getSearchClient().searchJqlWithFullIssues(jql + sort, max, start, pm);
                 List<JIRAIssue> list = Lists.newArrayList();
                 for (BasicIssue issue : result.getIssues()) {
@@ -581,6 +617,57 @@ public class JiraRestSessionImpl implements JIRASessionPartOne, JIRASessionPartT
         });
     }
 
+    /**
+     * Searches issues retrieving only {@link JIRAIssueBean#SUMMARY_FIELDS}. The search client always asks
+     * for all fields, so the search resource is called directly.
+     */
+    public List<JIRAIssue> getIssueSummaries(
+            final String jql, final String sortBy, final String sortOrder, final int start, final int max)
+            throws JIRAException {
+        return wrapWithJiraException(new Callable<List<JIRAIssue>>() {
+            public List<JIRAIssue> call() throws Exception {
+                URI uri = UriBuilder.fromUri(server.getUrl()).path("rest/api/2/search")
+                        .queryParam("jql", jql + getSortClause(jql, sortBy, sortOrder))
+                        .queryParam("startAt", start)
+                        .queryParam("maxResults", max)
+                        .queryParam("fields", StringUtils.join(JIRAIssueBean.SUMMARY_FIELDS, ','))
+                        .build();
+                WebResource resource = restClient.getTransportClient().resource(uri);
+                JSONObject result;
+                try {
+                    result = resource.get(JSONObject.class);
+                } catch (UniformInterfaceException e) {
+                    // lets wrapWithJiraException renew the session
+                    throw new RestClientException(e);
+                }
+                JSONArray issues = result.getJSONArray("issues");
+                List<JIRAIssue> list = Lists.newArrayListWithCapacity(issues.length());
+                for (int i = 0; i < issues.length(); i++) {
+                    list.add(new JIRAIssueBean(server.getUrl(), issues.getJSONObject(i)));
+                }
+                return list;
+            }
+        });
+    }
+
+    private static String getSortClause(String jql, String sortBy, String sortOrder) {
+        return jql.toLowerCase().contains("order by")
+                ? ""
+                : (StringUtils.isNotEmpty(sortBy) && StringUtils.isNotEmpty(sortOrder)
+                    ? " order by " + sortBy + " " + sortOrder
+                    : "");
+    }
+
+    /**
+     * @return REST issue the bean has been created from, retrieved again if the bean is only an issue summary
+     */
+    private Issue getRestIssue(JIRAIssue issue) {
+        if (issue.getApiIssueObject() instanceof Issue) {
+            return (Issue) issue.getApiIssueObject();
+        }
+        return restClient.getIssueClient().getIssue(issue.getKey(), pm);
+    }
+
     public JIRAIssue getIssue(final String issueKey) throws JIRAException {
         return wrapWithJiraException(new Callable<JIRAIssue>() {
             public JIRAIssue call() throws Exception {
@@ -135,6 +135,16 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
     }
 
     public List<JIRAIssue> getIssues(JiraFilter filter, String sortBy, String sortOrder, int start, int max) throws JIRAException {
+        return getIssues(filter, sortBy, sortOrder, start, max, false);
+    }
+
+    public List<JIRAIssue> getIssueSummaries(JiraFilter filter, String sortBy, String sortOrder, int start, int max)
+            throws JIRAException {
+        return getIssues(filter, sortBy, sortOrder, start, max, true);
+    }
+
+    private List<JIRAIssue> getIssues(JiraFilter filter, String sortBy, String sortOrder, int start, int max,
+                                      boolean summaryOnly) throws JIRAException {
 
 //    public List<JIRAIssue> getIssues(String queryString, String sortBy, String sortOrder, int start, int max)
 //            throws JIRAException {
@@ -148,6 +158,9 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
         url.append("&sorter/order=").append(sortOrder);
         url.append("&pager/start=").append(start);
         url.append("&tempMax=").append(max);
+        if (summaryOnly) {
+            appendSummaryFields(url);
+        }
 //        url.append(appendAuthentication(false));
 
         try {
@@ -156,7 +169,7 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
             Element channel = root.getChild("channel");
 
             if (channel != null && !channel.getChildren("item").isEmpty()) {
-                return makeIssues(channel.getChildren("item"), getLocale(channel));
+                return makeIssues(channel.getChildren("item"), getLocale(channel), summaryOnly);
             }
             return Collections.emptyList();
         } catch (AuthenticationException e) {
@@ -221,6 +234,16 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
 //    }
 
     public List<JIRAIssue> getSavedFilterIssues(JIRASavedFilter filter, String sortBy, String sortOrder, int start, int max) throws JIRAException {
+        return getSavedFilterIssues(filter, sortBy, sortOrder, start, max, false);
+    }
+
+    public List<JIRAIssue> getSavedFilterIssueSummaries(JIRASavedFilter filter, String sortBy, String sortOrder,
+                                                        int start, int max) throws JIRAException {
+        return getSavedFilterIssues(filter, sortBy, sortOrder, start, max, true);
+    }
+
+    private List<JIRAIssue> getSavedFilterIssues(JIRASavedFilter filter, String sortBy, String sortOrder, int start,
+                                                 int max, boolean summaryOnly) throws JIRAException {
 
 //    public List<JIRAIssue> getSavedFilterIssues(JIRAQueryFragment fragment,
 //                                                String sortBy,
@@ -241,6 +264,9 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
         url.append("&sorter/order=").append(sortOrder);
         url.append("&pager/start=").append(start);
         url.append("&tempMax=").append(max);
+        if (summaryOnly) {
+            appendSummaryFields(url);
+        }
 
 //        url.append(appendAuthentication(false));
 
@@ -249,7 +275,7 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
             Element root = doc.getRootElement();
             Element channel = root.getChild("channel");
             if (channel != null && !channel.getChildren("item").isEmpty()) {
-                return makeIssues(channel.getChildren("item"), getLocale(channel));
+                return makeIssues(channel.getChildren("item"), getLocale(channel), summaryOnly);
             }
             return Collections.emptyList();
         } catch (IOException e) {
@@ -278,7 +304,7 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
                 final List<Element> items = channel.getChildren("item");
                 if (!items.isEmpty()) {
 
-                    return makeIssues(items, getLocale(channel)).get(0);
+                    return makeIssues(items, getLocale(channel), false).get(0);
                 }
             }
             throw new JIRAException("Cannot parse response from JIRA: " + doc.toString());
@@ -291,10 +317,23 @@ public class JIRARssClient extends AbstractHttpSession implements JIRASessionPar
         }
     }
 
-    private List<JIRAIssue> makeIssues(@NotNull List<Element> issueElements, Locale locale) {
+    /**
+     * Limits the XML view to the columns shown in issue lists, so that descriptions, comments and custom fields
+     * are neither sent nor parsed.
+     */
+    private static void appendSummaryFields(StringBuilder url) {
+        url.append("&field=key");
+        for (String field : JIRAIssueBean.SUMMARY_FIELDS) {
+            url.append("&field=").append(field);
+        }
+    }
+
+    private List<JIRAIssue> makeIssues(@NotNull List<Element> issueElements, Locale locale, boolean summaryOnly) {
         List<JIRAIssue> result = new ArrayList<JIRAIssue>(issueElements.size());
         for (final Element issueElement : issueElements) {
             JIRAIssueBean jiraIssue = new JIRAIssueBean(httpConnectionCfg.getUrl(), issueElement, locale);
+            jiraIssue.setSummaryOnly(summaryOnly);
+            // icons are downloaded in the background
             CachedIconLoader.loadIcon(jiraIssue.getTypeIconUrl());
             CachedIconLoader.loadIcon(jiraIssue.getPriorityIconUrl());
             CachedIconLoader.loadIcon(jiraIssue.getStatusTypeUrl());
@@ -59,6 +59,11 @@ public class JiraRssAutoRenewClient implements JIRASessionPartTwo {
         return rssClient.getIssues(jql, sort, sortOrder, start, size);
     }
 
+    public List<JIRAIssue> getIssueSummaries(JiraFilter filter, String sortBy, String sortOrder, int start, int max)
+            throws JIRAException {
+        return rssClient.getIssueSummaries(filter, sortBy, sortOrder, start, max);
+    }
+
     //    public List<JIRAIssue> getIssues(String queryString, String sortBy, String sortOrder, int start, int max)
 //            throws JIRAException {
 //        return rssClient.getIssues(queryString, sortBy, sortOrder, start, max);
@@ -83,6 +88,11 @@ public class JiraRssAutoRenewClient implements JIRASessionPartTwo {
         return rssClient.getSavedFilterIssues(filter, sortBy, sortOrder, start, max);
     }
 
+    public List<JIRAIssue> getSavedFilterIssueSummaries(JIRASavedFilter filter, String sortBy, String sortOrder,
+                                                        int start, int max) throws JIRAException {
+        return rssClient.getSavedFilterIssueSummaries(filter, sortBy, sortOrder, start, max);
+    }
+
     public JIRAIssue getIssue(String issueKey) throws JIRAException {
         return rssClient.getIssue(issueKey);
     }
@@ -47,6 +47,7 @@ import com.atlassian.connector.commons.jira.soap.axis.RemoteFilter;
 import com.atlassian.connector.commons.jira.soap.axis.RemoteIssue;
 import com.atlassian.connector.commons.jira.soap.axis.RemoteIssueType;
 import com.atlassian.connector.commons.jira.soap.axis.RemoteNamedObject;
+import com.atlassian.connector.commons.jira.soap.axis.RemotePermissionException;
 import com.atlassian.connector.commons.jira.soap.axis.RemotePriority;
 import com.atlassian.connector.commons.jira.soap.axis.RemoteProject;
 import com.atlassian.connector.commons.jira.soap.axis.RemoteResolution;
@@ -75,6 +76,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class JIRASoapSessionImpl implements JIRASessionPartOne {
 
     private String token;
+    private String userName;
     private final JiraSoapService service;
     private final ConnectionCfg httpConnectionCfg;
     private boolean loggedIn;
@@ -180,6 +182,7 @@ public class JIRASoapSessionImpl implements JIRASessionPartOne {
     public void login(String userName, String password) throws RemoteApiException {
         try {
             token = service.login(userName, password);
+            this.userName = userName;
         } catch (RemoteAuthenticationException e) {
             if (e != null && e.getFaultString() != null
                     && e.getFaultString().contains("The maximum number of failed login attempts")) {
@@ -206,6 +209,29 @@ public class JIRASoapSessionImpl implements JIRASessionPartOne {
         }
     }
 
+    /**
+     * Sends a lightweight request with the token of this session, which keeps the token from expiring.
+     *
+     * @return false if the server does not accept the token anymore
+     */
+    public boolean ping() throws RemoteApiException {
+        if (!loggedIn) {
+            return false;
+        }
+        try {
+            service.getUser(token, userName);
+            return true;
+        } catch (RemotePermissionException e) {
+            // the token is still valid, the user just cannot see himself
+            return true;
+        } catch (RemoteAuthenticationException e) {
+            loggedIn = false;
+            return false;
+        } catch (RemoteException e) {
+            throw new RemoteApiException(e.toString(), e);
+        }
+    }
+
     public void logWork(JIRAIssue issue, String timeSpent, Calendar startDate, String comment,
                         boolean updateEstimate, String newEstimate)
             throws RemoteApiException {
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Identity and state of the latest build of a plan, as cheaply retrievable from Bamboo result lists
+ * (without changes, tests or any other expansion).
+ * <p/>
+ * Two equal summaries mean that nothing has happened with the plan in between: no build was started, queued
+ * or finished. It is used to decide whether the full (and much more expensive) build information has to be
+ * retrieved again.
+ */
+public final class BambooBuildSummary {
+
+	private final String planKey;
+
+	private final Integer number;
+
+	private final String state;
+
+	private final String lifeCycleState;
+
+	public BambooBuildSummary(@NotNull String planKey, @Nullable Integer number, @Nullable String state,
+			@Nullable String lifeCycleState) {
+		this.planKey = planKey;
+		this.number = number;
+		this.state = state;
+		this.lifeCycleState = lifeCycleState;
+	}
+
+	@NotNull
+	public String getPlanKey() {
+		return planKey;
+	}
+
+	/**
+	 * @return number of the latest (possibly still running or queued) build or <code>null</code> if the plan was
+	 *         never built
+	 */
+	@Nullable
+	public Integer getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return result state, e.g. <code>Successful</code>, <code>Failed</code> or <code>Unknown</code>
+	 */
+	@Nullable
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * @return life cycle state, e.g. <code>Queued</code>, <code>InProgress</code> or <code>Finished</code>
+	 */
+	@Nullable
+	public String getLifeCycleState() {
+		return lifeCycleState;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		final BambooBuildSummary that = (BambooBuildSummary) o;
+		return planKey.equals(that.planKey) && equal(number, that.number) && equal(state, that.state)
+				&& equal(lifeCycleState, that.lifeCycleState);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = planKey.hashCode();
+		result = 31 * result + (number != null ? number.hashCode() : 0);
+		result = 31 * result + (state != null ? state.hashCode() : 0);
+		result = 31 * result + (lifeCycleState != null ? lifeCycleState.hashCode() : 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return planKey + "-" + number + " [" + state + ", " + lifeCycleState + "]";
+	}
+
+	private static boolean equal(@Nullable Object o1, @Nullable Object o2) {
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans of a Bamboo server indexed by plan key, so that looking up a plan (e.g. whether it is enabled) does not
+ * require scanning the whole plan list.
+ * <p/>
+ * It is still a collection of plans (in the order as returned by the server), so it can be used wherever
+ * a plain plan list is expected.
+ * <p/>
+ * This class is immutable.
+ */
+public final class BambooPlanCatalog extends AbstractCollection<BambooPlan> implements Serializable {
+
+	private static final BambooPlanCatalog EMPTY = new BambooPlanCatalog(Collections.<BambooPlan>emptyList());
+
+	private final List<BambooPlan> plans;
+
+	private final Map<String, BambooPlan> plansByKey;
+
+	private final Map<String, List<BambooPlan>> branchesByMasterKey;
+
+	public BambooPlanCatalog(@NotNull Collection<BambooPlan> plans) {
+		this.plans = Collections.unmodifiableList(new ArrayList<BambooPlan>(plans));
+		plansByKey = new HashMap<String, BambooPlan>(plans.size() * 2);
+		branchesByMasterKey = new HashMap<String, List<BambooPlan>>();
+		for (BambooPlan plan : this.plans) {
+			if (plan.getKey() == null || plansByKey.containsKey(plan.getKey())) {
+				// first one wins, as it always did for linear search
+				continue;
+			}
+			plansByKey.put(plan.getKey(), plan);
+			if (plan.getMaterPlanKey() != null) {
+				List<BambooPlan> branches = branchesByMasterKey.get(plan.getMaterPlanKey());
+				if (branches == null) {
+					branches = new ArrayList<BambooPlan>();
+					branchesByMasterKey.put(plan.getMaterPlanKey(), branches);
+				}
+				branches.add(plan);
+			}
+		}
+	}
+
+	@NotNull
+	public static BambooPlanCatalog empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @return given plans as a catalog, without copying them if they already are one
+	 */
+	@NotNull
+	public static BambooPlanCatalog of(@NotNull Collection<BambooPlan> plans) {
+		return plans instanceof BambooPlanCatalog ? (BambooPlanCatalog) plans : new BambooPlanCatalog(plans);
+	}
+
+	@Nullable
+	public BambooPlan getPlan(@NotNull String planKey) {
+		return plansByKey.get(planKey);
+	}
+
+	/**
+	 * @return whether the plan is enabled or <code>null</code> if there is no such plan in the catalog
+	 */
+	@Nullable
+	public Boolean isPlanEnabled(@NotNull String planKey) {
+		final BambooPlan plan = plansByKey.get(planKey);
+		return plan != null ? plan.isEnabled() : null;
+	}
+
+	public boolean isFavourite(@NotNull String planKey) {
+		final BambooPlan plan = plansByKey.get(planKey);
+		return plan != null && plan.isFavourite();
+	}
+
+	/**
+	 * @return favourite plans, in the catalog order
+	 */
+	@NotNull
+	public List<BambooPlan> getFavourites() {
+		final List<BambooPlan> favourites = new ArrayList<BambooPlan>();
+		for (BambooPlan plan : plans) {
+			if (plan.isFavourite()) {
+				favourites.add(plan);
+			}
+		}
+		return favourites;
+	}
+
+	/**
+	 * @return branches of given plan known to this catalog (branches are not listed by all Bamboo versions)
+	 */
+	@NotNull
+	public List<BambooPlan> getBranches(@NotNull String masterPlanKey) {
+		final List<BambooPlan> branches = branchesByMasterKey.get(masterPlanKey);
+		return branches != null ? Collections.unmodifiableList(branches) : Collections.<BambooPlan>emptyList();
+	}
+
+	/**
+	 * @return key of the master plan if given plan is a plan branch, otherwise <code>null</code>
+	 */
+	@Nullable
+	public String getMasterPlanKey(@NotNull String planKey) {
+		final BambooPlan plan = plansByKey.get(planKey);
+		return plan != null ? plan.getMaterPlanKey() : null;
+	}
+
+	/**
+	 * @param favouritePlanKeys keys of favourite plans (compared case insensitively)
+	 * @return copy of this catalog with given plans marked as favourite
+	 */
+	@NotNull
+	public BambooPlanCatalog withFavourites(@NotNull Collection<String> favouritePlanKeys) {
+		if (favouritePlanKeys.isEmpty()) {
+			return this;
+		}
+		final Set<String> favourites = new HashSet<String>();
+		for (String key : favouritePlanKeys) {
+			favourites.add(key.toUpperCase(Locale.ENGLISH));
+		}
+		final List<BambooPlan> result = new ArrayList<BambooPlan>(plans.size());
+		for (BambooPlan plan : plans) {
+			if (plan.getKey() != null && favourites.remove(plan.getKey().toUpperCase(Locale.ENGLISH))) {
+				result.add(plan.withFavourite(true));
+			} else {
+				result.add(plan);
+			}
+		}
+		return new BambooPlanCatalog(result);
+	}
+
+	@Override
+	public Iterator<BambooPlan> iterator() {
+		return plans.iterator();
+	}
+
+	@Override
+	public int size() {
+		return plans.size();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof BambooPlan && ((BambooPlan) o).getKey() != null
+				&& plansByKey.containsKey(((BambooPlan) o).getKey());
+	}
+}
@@ -22,7 +22,6 @@ import com.atlassian.theplugin.commons.ServerType;
 import com.atlassian.theplugin.commons.bamboo.api.AutoRenewBambooSession;
 import com.atlassian.theplugin.commons.bamboo.api.BambooServerVersionNumberConstants;
 import com.atlassian.theplugin.commons.bamboo.api.BambooSession;
-import com.atlassian.theplugin.commons.bamboo.api.BambooSessionImpl;
 import com.atlassian.theplugin.commons.bamboo.api.LoginBambooSession;
 import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
 import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
@@ -31,14 +30,28 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginFailedException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
+import com.atlassian.theplugin.commons.remoteapi.ServerSessionRegistry;
+import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
+import com.atlassian.theplugin.commons.util.BoundedTaskRunner;
 import com.atlassian.theplugin.commons.util.Logger;
+import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class used for communication wiht Bamboo Server.
@@ -48,7 +61,7 @@ import java.util.WeakHashMap;
  */
 @Deprecated
 public final class BambooServerFacadeImpl implements BambooServerFacade2 {
-	private final Map<String, BambooSession> sessions = new WeakHashMap<String, BambooSession>();
+	private final ServerSessionRegistry<BambooSession> sessions = new ServerSessionRegistry<BambooSession>();
 
 	private final Logger logger;
 
@@ -56,10 +69,33 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 
 	private final HttpSessionCallback callback;
 
+	private final BoundedTaskRunner taskRunner;
+
+	private volatile int maxConcurrentRequestsPerServer = AbstractHttpSession.DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+	private volatile boolean batchedRefresh;
+
+	private final Map<String, IncrementalRefreshState> refreshStates = new HashMap<String, IncrementalRefreshState>();
+
+	/**
+	 * How long plan lists are cached by default, in milliseconds.
+	 */
+	public static final long DEFAULT_PLAN_LIST_TTL = 60 * 1000L;
+
+	private volatile long planListTtl = DEFAULT_PLAN_LIST_TTL;
+
+	private final ConcurrentMap<String, CachedPlanCatalog> planCatalogs = new ConcurrentHashMap<String, CachedPlanCatalog>();
+
 	public BambooServerFacadeImpl(Logger loger, @NotNull BambooSessionFactory factory, @NotNull HttpSessionCallback callback) {
+		this(loger, factory, callback, BoundedTaskRunner.getShared());
+	}
+
+	public BambooServerFacadeImpl(Logger loger, @NotNull BambooSessionFactory factory, @NotNull HttpSessionCallback callback,
+			@NotNull BoundedTaskRunner taskRunner) {
 		this.logger = loger;
 		this.callback = callback;
 		this.bambooSessionFactory = factory;
+		this.taskRunner = taskRunner;
 	}
 
 	public BambooServerFacadeImpl(Logger loger, HttpSessionCallback callback) {
@@ -70,18 +106,122 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 		return ServerType.BAMBOO_SERVER;
 	}
 
-	public synchronized BambooSession getSession(ConnectionCfg server) throws RemoteApiException {
-		// @todo old server will stay on map - remove them !!!
-		String key = server.getUsername() + server.getUrl() + server.getPassword() + server.getId();
-		BambooSession session = sessions.get(key);
-		if (session == null) {
-			session = bambooSessionFactory.createSession(server, callback);
-			sessions.put(key, session);
+	public int getMaxConcurrentRequestsPerServer() {
+		return maxConcurrentRequestsPerServer;
+	}
+
+	/**
+	 * Sets how many requests may be sent to a single Bamboo server at the same time when refreshing plans.
+	 * The default of 1 keeps the old, fully sequential behaviour. Higher values only take effect for sessions
+	 * using a pooled HttpClient (see {@link AbstractHttpSession#setMaxConcurrentRequests(int)}).
+	 *
+	 * @param maxConcurrentRequestsPerServer limit of requests in flight per server, must be positive
+	 */
+	public synchronized void setMaxConcurrentRequestsPerServer(int maxConcurrentRequestsPerServer) {
+		if (maxConcurrentRequestsPerServer < 1) {
+			throw new IllegalArgumentException("maxConcurrentRequestsPerServer must be positive: "
+					+ maxConcurrentRequestsPerServer);
+		}
+		this.maxConcurrentRequestsPerServer = maxConcurrentRequestsPerServer;
+		for (BambooSession session : sessions.getSessions().values()) {
+			applyConcurrencyLimit(session);
+		}
+	}
+
+	public boolean isBatchedRefresh() {
+		return batchedRefresh;
+	}
+
+	/**
+	 * When enabled, latest builds of subscribed plans are retrieved with
+	 * {@link BambooSession#getLatestBuildsForPlans(Collection, boolean, boolean, boolean, int)}, i.e. with a few bulk
+	 * requests per server instead of a few requests per plan. Old servers are still queried plan by plan.
+	 */
+	public void setBatchedRefresh(boolean batchedRefresh) {
+		this.batchedRefresh = batchedRefresh;
+	}
+
+	public long getPlanListTtl() {
+		return planListTtl;
+	}
+
+	/**
+	 * Sets how long the plan list of a server (used by every refresh of subscribed plans to find out which plans
+	 * are enabled or favourite) is reused before it is retrieved again.
+	 *
+	 * @param planListTtl time to live in milliseconds, 0 disables caching
+	 */
+	public void setPlanListTtl(long planListTtl) {
+		if (planListTtl < 0) {
+			throw new IllegalArgumentException("planListTtl must not be negative: " + planListTtl);
 		}
-		if (!session.isLoggedIn()) {
-			session.login(server.getUsername(), server.getPassword().toCharArray());
+		this.planListTtl = planListTtl;
+		if (planListTtl == 0) {
+			planCatalogs.clear();
 		}
-		return session;
+	}
+
+	/**
+	 * Makes the next {@link #getPlanList(ConnectionCfg)} for given server retrieve plans from the server again.
+	 */
+	public void invalidatePlanList(ConnectionCfg bambooServer) {
+		planCatalogs.remove(getSessionKey(bambooServer));
+	}
+
+	private void applyConcurrencyLimit(BambooSession session) {
+		if (session instanceof AutoRenewBambooSession) {
+			((AutoRenewBambooSession) session).setMaxConcurrentRequests(maxConcurrentRequestsPerServer);
+		} else if (session instanceof AbstractHttpSession) {
+			((AbstractHttpSession) session).setMaxConcurrentRequests(maxConcurrentRequestsPerServer);
+		}
+	}
+
+	public long getFailedLoginRetryDelay() {
+		return sessions.getFailureRetryDelay();
+	}
+
+	/**
+	 * Sets for how long a failed login to a server is reported to further callers instead of being attempted again.
+	 *
+	 * @param failedLoginRetryDelay delay in milliseconds, 0 to attempt the login on every call
+	 * @see ServerSessionRegistry
+	 */
+	public void setFailedLoginRetryDelay(long failedLoginRetryDelay) {
+		sessions.setFailureRetryDelay(failedLoginRetryDelay);
+	}
+
+	/**
+	 * Returns logged in session for given server. Callers asking for different servers do not wait for each other,
+	 * concurrent callers asking for the same server share a single login.
+	 */
+	public BambooSession getSession(final ConnectionCfg server) throws RemoteApiException {
+		// @todo old server will stay on map - remove them !!!
+		return sessions.getSession(getSessionKey(server), new ServerSessionRegistry.SessionLoader<BambooSession>() {
+			public boolean isReady(@NotNull BambooSession session) {
+				try {
+					return session.isLoggedIn();
+				} catch (RemoteApiLoginException e) {
+					// log in again
+					return false;
+				}
+			}
+
+			@NotNull
+			public BambooSession load(@Nullable BambooSession session) throws RemoteApiException {
+				if (session == null) {
+					session = bambooSessionFactory.createSession(server, callback);
+					applyConcurrencyLimit(session);
+				}
+				if (!isReady(session)) {
+					session.login(server.getUsername(), server.getPassword().toCharArray());
+				}
+				return session;
+			}
+		});
+	}
+
+	private static String getSessionKey(ConnectionCfg server) {
+		return server.getUsername() + server.getUrl() + server.getPassword() + server.getId();
 	}
 
 	/**
@@ -119,17 +259,27 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 	}
 
 	/**
-	 * List plans defined on Bamboo server.
+	 * List plans defined on Bamboo server. The list is cached for {@link #getPlanListTtl()} ms.
 	 *
 	 * @param bambooServer Bamboo server information
-	 * @return list of plans
+	 * @return plans indexed by plan key
 	 * @throws com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException
 	 *          when invoked for Server that has not had the password set yet
 	 */
-	public Collection<BambooPlan> getPlanList(ConnectionCfg bambooServer) throws ServerPasswordNotProvidedException,
+	public BambooPlanCatalog getPlanList(ConnectionCfg bambooServer) throws ServerPasswordNotProvidedException,
 			RemoteApiException {
+		final String key = getSessionKey(bambooServer);
+		final long ttl = planListTtl;
+		final CachedPlanCatalog cached = planCatalogs.get(key);
+		if (cached != null && System.currentTimeMillis() - cached.loadTime < ttl) {
+			return cached.catalog;
+		}
 		BambooSession api = getSession(bambooServer);
-		return api.getPlanList();
+		final BambooPlanCatalog catalog = BambooPlanCatalog.of(api.getPlanList());
+		if (ttl > 0) {
+			planCatalogs.put(key, new CachedPlanCatalog(catalog, System.currentTimeMillis()));
+		}
+		return catalog;
 	}
 
 	/**
@@ -203,6 +353,75 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 		}
 	}
 
+	/**
+	 * Incremental version of {@link #getSubscribedPlansResults(ConnectionCfg, Collection, boolean, boolean, boolean, int)}.
+	 * <p/>
+	 * The last known build of every plan is remembered per server. Each refresh first retrieves cheap summaries
+	 * of the latest builds (build number and state, a few requests for the whole server plus one small request
+	 * per plan branch) and full build information (including committers) is retrieved only for plans whose
+	 * summary changed. Unchanged plans keep the build instances returned by the previous refresh.
+	 * <p/>
+	 * Servers older than Bamboo 4.0 do not provide the summaries, so all plans are retrieved each time,
+	 * but the changes are still reported.
+	 * <p/>
+	 * Builds of unchanged plans are not re-created, so their polling time and relative build date are those
+	 * of the refresh which retrieved them.
+	 *
+	 * @return all current builds together with changes since the previous call for the same server
+	 */
+	@NotNull
+	public SubscribedPlansUpdate getSubscribedPlansUpdate(ConnectionCfg connectionCfg,
+			final Collection<SubscribedPlan> plans, boolean isUseFavourities, boolean isShowBranches,
+			boolean myBranchesOnly, int timezoneOffset) throws ServerPasswordNotProvidedException, RemoteApiException {
+		final BambooSession session = getSession(connectionCfg);
+		final int buildNumber = session.getBamboBuildNumber();
+		final boolean showBranches = isShowBranches
+				&& buildNumber >= BambooServerVersionNumberConstants.BAMBOO_3600_BUILD_NUMBER;
+		final IncrementalRefreshState state = getRefreshState(connectionCfg,
+				isUseFavourities + "/" + showBranches + "/" + myBranchesOnly + "/" + timezoneOffset);
+		synchronized (state) {
+			final Collection<BambooBuild> builds;
+			if (buildNumber >= BambooServerVersionNumberConstants.BAMBOO_1401_BUILD_NUMBER) {
+				builds = getSubscribedPlansResultsNew(connectionCfg, plans, isUseFavourities, showBranches,
+						myBranchesOnly, timezoneOffset,
+						buildNumber >= BambooServerVersionNumberConstants.BAMBOO_2906_BUILD_NUMBER ? state : null);
+			} else {
+				builds = getSubscribedPlansResultsOld(connectionCfg, plans, isUseFavourities, timezoneOffset);
+			}
+			return state.update(builds);
+		}
+	}
+
+	/**
+	 * Forgets the builds remembered by {@link #getSubscribedPlansUpdate}, so that the next refresh of the server
+	 * retrieves (and reports) all plans again.
+	 */
+	public void resetSubscribedPlansUpdate(ConnectionCfg connectionCfg) {
+		synchronized (refreshStates) {
+			refreshStates.remove(connectionCfg.getId());
+		}
+	}
+
+	@NotNull
+	private IncrementalRefreshState getRefreshState(ConnectionCfg connectionCfg, String options) {
+		synchronized (refreshStates) {
+			IncrementalRefreshState state = refreshStates.get(connectionCfg.getId());
+			if (state == null || !state.options.equals(options)) {
+				state = new IncrementalRefreshState(options);
+				refreshStates.put(connectionCfg.getId(), state);
+			}
+			return state;
+		}
+	}
+
+	Collection<BambooBuild> getSubscribedPlansResultsNew(
+			final ConnectionCfg bambooServer, final Collection<SubscribedPlan> plans,
+			final boolean isUseFavourities, final boolean isShowBranches, final boolean myBranchesOnly,
+			final int timezoneOffset) throws ServerPasswordNotProvidedException, RemoteApiLoginException {
+		return getSubscribedPlansResultsNew(bambooServer, plans, isUseFavourities, isShowBranches, myBranchesOnly,
+				timezoneOffset, null);
+	}
+
 	/**
 	 * This is the new version of {@link #getSubscribedPlansResults(ConnectionCfg, java.util.Collection, boolean, int)} It
 	 * returns info about 'building' or 'in queue' state.
@@ -215,6 +434,9 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 	 * @param plans
 	 * @param isUseFavourities
 	 * @param timezoneOffset
+	 * @param refreshState
+	 *            builds retrieved by the previous refresh, to be reused for plans whose latest build has not changed,
+	 *            or <code>null</code> to retrieve all plans
 	 * @return results on subscribed builds
 	 * @throws com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException
 	 *             when invoked for Server that has not had the password set yet
@@ -222,9 +444,10 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 	 *             when we cannot log in
 	 * @see com.atlassian.theplugin.commons.bamboo.api.BambooSessionImpl#login(String, char[])
 	 */
-	Collection<BambooBuild> getSubscribedPlansResultsNew(
-            ConnectionCfg bambooServer, final Collection<SubscribedPlan> plans,
-            boolean isUseFavourities, boolean isShowBranches, boolean myBranchesOnly, int timezoneOffset)
+	private Collection<BambooBuild> getSubscribedPlansResultsNew(
+            final ConnectionCfg bambooServer, final Collection<SubscribedPlan> plans,
+            final boolean isUseFavourities, final boolean isShowBranches, final boolean myBranchesOnly,
+            final int timezoneOffset, @Nullable final IncrementalRefreshState refreshState)
 			throws ServerPasswordNotProvidedException, RemoteApiLoginException {
 		Collection<BambooBuild> builds = new ArrayList<BambooBuild>();
 
@@ -248,7 +471,7 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 			connectionError = e;
 		}
 
-		Collection<BambooPlan> plansForServer = null;
+		BambooPlanCatalog plansForServer = null;
 		try {
 			plansForServer = getPlanList(bambooServer);
 		} catch (RemoteApiException e) {
@@ -256,72 +479,146 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 			logger.warn("Cannot fetch plan list from Bamboo server [" + bambooServer.getUrl() + "]");
 		}
 
+		final List<BambooPlan> refreshedPlans = new ArrayList<BambooPlan>();
 		if (isUseFavourities) {
 			if (plansForServer != null) {
-				for (BambooPlan bambooPlan : plansForServer) {
-					if (bambooPlan.isFavourite()) {
-                        String key = bambooPlan.getKey();
-                        if (api != null && api.isLoggedIn()) {
-							try {
-                                if (isShowBranches) {
-                                    Collection<String> branches = api.getBranchKeys(key, isUseFavourities, myBranchesOnly);
-                                    branches.add(key);
-                                    for (String branch : branches) {
-                                        BambooBuild buildInfo = api.getLatestBuildForPlanNew(branch, key.equals(branch) ? null : key, bambooPlan.isEnabled(), timezoneOffset);
-                                        builds.add(buildInfo);
-                                    }
-                                } else {
-                                    BambooBuild buildInfo = api.getLatestBuildForPlanNew(key, null, bambooPlan.isEnabled(), timezoneOffset);
-                                    builds.add(buildInfo);
-                                }
-							} catch (RemoteApiException e) {
-								// go ahead, there are other builds
-								logger.warn("Cannot fetch latest build for plan [" + key
-										+ "] from Bamboo server [" + bambooServer.getUrl() + "]");
+				refreshedPlans.addAll(plansForServer.getFavourites());
+			}
+		} else {
+			for (SubscribedPlan plan : plans) {
+				final Boolean planEnabled = plansForServer != null ? plansForServer.isPlanEnabled(plan.getKey()) : null;
+				refreshedPlans.add(new BambooPlan(null, plan.getKey(), null, planEnabled != null && planEnabled));
+			}
+		}
+
+		if (api == null || !api.isLoggedIn()) {
+			for (BambooPlan plan : refreshedPlans) {
+				builds.add(constructBuildErrorInfo(bambooServer, plan.getKey(), plan.getName(),
+						connectionError == null ? "" : connectionError.getMessage(), connectionError));
+			}
+			return builds;
+		}
+
+		if (batchedRefresh && refreshState == null) {
+			try {
+				builds.addAll(api.getLatestBuildsForPlans(refreshedPlans, isShowBranches, isUseFavourities,
+						myBranchesOnly, timezoneOffset));
+				return builds;
+			} catch (RemoteApiException e) {
+				// plans will be checked one by one
+				logger.warn("Cannot fetch latest builds from Bamboo server [" + bambooServer.getUrl() + "] in bulk", e);
+			}
+		}
+
+		final BambooSession session = api;
+		final int parallelism = maxConcurrentRequestsPerServer;
+		try {
+			// 1st pass - branches of each plan (master plan goes last, as it always did)
+			final List<Collection<String>> planBranches = new ArrayList<Collection<String>>(refreshedPlans.size());
+			if (isShowBranches) {
+				final List<Callable<Collection<String>>> branchTasks
+						= new ArrayList<Callable<Collection<String>>>(refreshedPlans.size());
+				for (final BambooPlan plan : refreshedPlans) {
+					branchTasks.add(new Callable<Collection<String>>() {
+						public Collection<String> call() throws RemoteApiException {
+							final Collection<String> branches
+									= session.getBranchKeys(plan.getKey(), isUseFavourities, myBranchesOnly);
+							branches.add(plan.getKey());
+							return branches;
+						}
+					});
+				}
+				final List<Future<Collection<String>>> results = taskRunner.invokeAll(branchTasks, parallelism);
+				for (int i = 0; i < results.size(); i++) {
+					planBranches.add(getRefreshResult(results.get(i), bambooServer, refreshedPlans.get(i).getKey()));
+				}
+			} else {
+				for (BambooPlan plan : refreshedPlans) {
+					planBranches.add(Collections.singletonList(plan.getKey()));
+				}
+			}
+
+			// summaries of top level plans are cheap to get in bulk, branches are checked one by one
+			final Map<String, BambooBuildSummary> summaries = refreshState != null
+					? getLatestBuildSummaries(session, bambooServer)
+					: Collections.<String, BambooBuildSummary>emptyMap();
+
+			// 2nd pass - latest build of each plan and branch
+			final List<Callable<BambooBuild>> buildTasks = new ArrayList<Callable<BambooBuild>>();
+			final List<String> buildPlanKeys = new ArrayList<String>();
+			for (int i = 0; i < refreshedPlans.size(); i++) {
+				final BambooPlan plan = refreshedPlans.get(i);
+				final Collection<String> branches = planBranches.get(i);
+				if (branches == null) {
+					continue;
+				}
+				for (final String branch : branches) {
+					buildTasks.add(new Callable<BambooBuild>() {
+						public BambooBuild call() throws RemoteApiException {
+							final String masterPlanKey = plan.getKey().equals(branch) ? null : plan.getKey();
+							if (refreshState != null) {
+								return refreshState.getLatestBuild(session, branch, masterPlanKey, plan.isEnabled(),
+										summaries.get(branch), timezoneOffset);
 							}
-						} else {
-							builds.add(constructBuildErrorInfo(bambooServer, key,
-									bambooPlan.getName(), connectionError == null ? ""
-									: connectionError.getMessage(), connectionError));
+							return session.getLatestBuildForPlanNew(branch, masterPlanKey, plan.isEnabled(),
+									timezoneOffset);
 						}
-					}
+					});
+					buildPlanKeys.add(branch);
 				}
 			}
-		} else {
-			for (SubscribedPlan plan : plans) {
-                String key = plan.getKey();
-                if (api != null && api.isLoggedIn()) {
-					try {
-                        Boolean planEnabled = plansForServer != null
-                            ? BambooSessionImpl.isPlanEnabled(plansForServer, key)
-                            : null;
-                        if (isShowBranches) {
-                            Collection<String> branches = api.getBranchKeys(key, isUseFavourities, myBranchesOnly);
-                            branches.add(key);
-                            for (String branch : branches) {
-                                BambooBuild buildInfo = api.getLatestBuildForPlanNew(branch, key.equals(branch) ? null : key, planEnabled != null && planEnabled, timezoneOffset);
-                                builds.add(buildInfo);
-                            }
-                        } else {
-                            BambooBuild buildInfo = api.getLatestBuildForPlanNew(key, null, planEnabled != null && planEnabled, timezoneOffset);
-						    builds.add(buildInfo);
-                        }
-					} catch (RemoteApiException e) {
-						// go ahead, there are other builds
-						// go ahead, there are other builds
-						logger.warn("Cannot fetch latest build for plan [" + key + "] from Bamboo server ["
-								+ bambooServer.getUrl() + "]");
-					}
-				} else {
-					builds.add(constructBuildErrorInfo(bambooServer, key, null, connectionError == null ? ""
-							: connectionError.getMessage(), connectionError));
+			final List<Future<BambooBuild>> results = taskRunner.invokeAll(buildTasks, parallelism);
+			for (int i = 0; i < results.size(); i++) {
+				final BambooBuild build = getRefreshResult(results.get(i), bambooServer, buildPlanKeys.get(i));
+				if (build != null) {
+					builds.add(build);
 				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Refresh of Bamboo server [" + bambooServer.getUrl() + "] interrupted");
 		}
 
 		return builds;
 	}
 
+	@NotNull
+	private Map<String, BambooBuildSummary> getLatestBuildSummaries(BambooSession session, ConnectionCfg bambooServer) {
+		try {
+			return session.getLatestBuildSummaries();
+		} catch (RemoteApiException e) {
+			// plans will be checked one by one
+			logger.warn("Cannot fetch latest build summaries from Bamboo server [" + bambooServer.getUrl() + "]");
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * @return result of a single refresh task or <code>null</code> if it failed with a remote exception,
+	 *         which is logged only - there are other builds to show
+	 */
+	@Nullable
+	private <T> T getRefreshResult(Future<T> future, ConnectionCfg bambooServer, String planKey)
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (CancellationException e) {
+			return null;
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RemoteApiException) {
+				logger.warn("Cannot fetch latest build for plan [" + planKey + "] from Bamboo server ["
+						+ bambooServer.getUrl() + "]");
+				return null;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
 	/**
 	 * List history for provided plan.
 	 * <p/>
@@ -558,6 +855,104 @@ public final class BambooServerFacadeImpl implements BambooServerFacade2 {
 				message, exception).pollingTime(new Date()).build();
 	}
 
+	/**
+	 * Builds reported by the last incremental refresh of a server, together with summaries of their latest builds
+	 * at the time they were retrieved.
+	 */
+	private static final class IncrementalRefreshState {
+		private final String options;
+
+		private final ConcurrentMap<String, BambooBuildSummary> summaries
+				= new ConcurrentHashMap<String, BambooBuildSummary>();
+
+		private Map<String, BambooBuild> builds = Collections.emptyMap();
+
+		private boolean initialized;
+
+		private IncrementalRefreshState(String options) {
+			this.options = options;
+		}
+
+		/**
+		 * @param knownSummary summary retrieved in bulk or <code>null</code> if it has to be retrieved now
+		 * @return build from the previous refresh if nothing has changed, otherwise freshly retrieved one
+		 */
+		@NotNull
+		BambooBuild getLatestBuild(BambooSession session, String planKey, @Nullable String masterPlanKey,
+				boolean isPlanEnabled, @Nullable BambooBuildSummary knownSummary, int timezoneOffset)
+				throws RemoteApiException {
+			BambooBuildSummary summary = knownSummary;
+			if (summary == null) {
+				try {
+					summary = session.getLatestBuildSummary(planKey);
+				} catch (RemoteApiException e) {
+					// retrieve the whole build then
+					summary = null;
+				}
+			}
+			final BambooBuild previous = builds.get(planKey);
+			if (summary != null && previous != null && summary.equals(summaries.get(planKey))
+					&& previous.getEnabled() == isPlanEnabled
+					&& StringUtils.equals(previous.getMasterPlanKey(), masterPlanKey)) {
+				return previous;
+			}
+
+			// summary is taken before the build, so any change in between is detected next time
+			final BambooBuild build = session.getLatestBuildForPlanNew(planKey, masterPlanKey, isPlanEnabled,
+					timezoneOffset);
+			if (summary != null && build.getErrorMessage() == null) {
+				summaries.put(planKey, summary);
+			} else {
+				summaries.remove(planKey);
+			}
+			return build;
+		}
+
+		@NotNull
+		SubscribedPlansUpdate update(Collection<BambooBuild> current) {
+			final Map<String, BambooBuild> next = new LinkedHashMap<String, BambooBuild>();
+			final List<BambooBuild> changed = new ArrayList<BambooBuild>();
+			for (BambooBuild build : current) {
+				next.put(build.getPlanKey(), build);
+				final BambooBuild previous = builds.get(build.getPlanKey());
+				if (previous == null || (previous != build && !isSameBuild(previous, build))) {
+					changed.add(build);
+				}
+			}
+			final List<String> removed = new ArrayList<String>();
+			for (String planKey : builds.keySet()) {
+				if (!next.containsKey(planKey)) {
+					removed.add(planKey);
+				}
+			}
+			summaries.keySet().retainAll(next.keySet());
+
+			final boolean fullRefresh = !initialized;
+			builds = next;
+			initialized = true;
+			return new SubscribedPlansUpdate(current, changed, removed, fullRefresh);
+		}
+
+		private static boolean isSameBuild(BambooBuild b1, BambooBuild b2) {
+			return b1.isValid() == b2.isValid() && (!b1.isValid() || b1.getNumber() == b2.getNumber())
+					&& b1.getStatus() == b2.getStatus() && b1.getPlanState() == b2.getPlanState()
+					&& b1.getEnabled() == b2.getEnabled()
+					&& StringUtils.equals(b1.getMasterPlanKey(), b2.getMasterPlanKey())
+					&& StringUtils.equals(b1.getErrorMessage(), b2.getErrorMessage());
+		}
+	}
+
+	private static final class CachedPlanCatalog {
+		private final BambooPlanCatalog catalog;
+
+		private final long loadTime;
+
+		private CachedPlanCatalog(BambooPlanCatalog catalog, long loadTime) {
+			this.catalog = catalog;
+			this.loadTime = loadTime;
+		}
+	}
+
 	private static class SimpleBambooSessionFactory implements BambooSessionFactory {
 
 		private final Logger logger;
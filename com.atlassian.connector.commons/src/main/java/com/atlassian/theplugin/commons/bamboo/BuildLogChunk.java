@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Part of a build log, consisting of complete lines only.
+ * <p/>
+ * To follow the log of a running build, request the next chunk starting at {@link #getNextOffset()}.
+ */
+public class BuildLogChunk {
+
+	private final String text;
+
+	private final long offset;
+
+	private final long nextOffset;
+
+	private final long totalLength;
+
+	public BuildLogChunk(@NotNull String text, long offset, long nextOffset, long totalLength) {
+		this.text = text;
+		this.offset = offset;
+		this.nextOffset = nextOffset;
+		this.totalLength = totalLength;
+	}
+
+	/**
+	 * @return log lines (possibly none)
+	 */
+	@NotNull
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return byte offset of this chunk within the log
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return byte offset right after this chunk, where the next chunk starts
+	 */
+	public long getNextOffset() {
+		return nextOffset;
+	}
+
+	/**
+	 * @return length of the whole log in bytes at the time it was retrieved or -1 if not known
+	 */
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	public boolean isEmpty() {
+		return text.length() == 0;
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Outcome of an incremental refresh of subscribed plans: all current builds together with what has changed since
+ * the previous refresh of the same server.
+ * <p/>
+ * Builds which have not changed are the very same instances as returned by the previous refresh, so callers may
+ * also compare them by identity.
+ */
+public final class SubscribedPlansUpdate {
+
+	private final Collection<BambooBuild> builds;
+
+	private final Collection<BambooBuild> changedBuilds;
+
+	private final Collection<String> removedPlanKeys;
+
+	private final boolean fullRefresh;
+
+	public SubscribedPlansUpdate(@NotNull Collection<BambooBuild> builds, @NotNull Collection<BambooBuild> changedBuilds,
+			@NotNull Collection<String> removedPlanKeys, boolean fullRefresh) {
+		this.builds = Collections.unmodifiableCollection(builds);
+		this.changedBuilds = Collections.unmodifiableCollection(changedBuilds);
+		this.removedPlanKeys = Collections.unmodifiableCollection(removedPlanKeys);
+		this.fullRefresh = fullRefresh;
+	}
+
+	/**
+	 * @return latest builds of all subscribed plans (and branches), the same as a non-incremental refresh returns
+	 */
+	@NotNull
+	public Collection<BambooBuild> getBuilds() {
+		return builds;
+	}
+
+	/**
+	 * @return builds of plans which are new or whose latest build, plan state or error changed since
+	 *         the previous refresh
+	 */
+	@NotNull
+	public Collection<BambooBuild> getChangedBuilds() {
+		return changedBuilds;
+	}
+
+	/**
+	 * @return keys of plans reported by the previous refresh, but not by this one
+	 */
+	@NotNull
+	public Collection<String> getRemovedPlanKeys() {
+		return removedPlanKeys;
+	}
+
+	/**
+	 * @return <code>true</code> if there was no previous refresh to compare with (or its options were different),
+	 *         so all builds are reported as changed
+	 */
+	public boolean isFullRefresh() {
+		return fullRefresh;
+	}
+
+	public boolean isEmpty() {
+		return changedBuilds.isEmpty() && removedPlanKeys.isEmpty();
+	}
+}
@@ -18,28 +18,33 @@ package com.atlassian.theplugin.commons.bamboo.api;
 
 import com.atlassian.connector.commons.api.ConnectionCfg;
 import com.atlassian.theplugin.commons.bamboo.BambooBuild;
+import com.atlassian.theplugin.commons.bamboo.BambooBuildSummary;
 import com.atlassian.theplugin.commons.bamboo.BambooJobImpl;
 import com.atlassian.theplugin.commons.bamboo.BambooPlan;
 import com.atlassian.theplugin.commons.bamboo.BambooProject;
 import com.atlassian.theplugin.commons.bamboo.BuildDetails;
 import com.atlassian.theplugin.commons.bamboo.BuildIssue;
+import com.atlassian.theplugin.commons.bamboo.BuildLogChunk;
 import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
 import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
+import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
 import com.atlassian.theplugin.commons.util.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Reader;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class AutoRenewBambooSession implements BambooSession {
 	private final BambooSession delegate;
-	private String userName;
-	private char[] password;
+	private volatile String userName;
+	private volatile char[] password;
 
 	public AutoRenewBambooSession(ConnectionCfg serverCfg, HttpSessionCallback callback, Logger logger)
 			throws RemoteApiException {
@@ -50,6 +55,18 @@ public class AutoRenewBambooSession implements BambooSession {
 		this.delegate = bambooSession;
 	}
 
+	/**
+	 * Allows up to <code>maxConcurrentRequests</code> requests of this session to be sent at the same time.
+	 * Has no effect if the underlying session is not HTTP based.
+	 *
+	 * @see AbstractHttpSession#setMaxConcurrentRequests(int)
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		if (delegate instanceof AbstractHttpSession) {
+			((AbstractHttpSession) delegate).setMaxConcurrentRequests(maxConcurrentRequests);
+		}
+	}
+
 	public void addCommentToBuild(@NotNull String planKey, int buildNumber, String buildComment) throws RemoteApiException {
 		try {
 			delegate.addCommentToBuild(planKey, buildNumber, buildComment);
@@ -132,6 +149,35 @@ public class AutoRenewBambooSession implements BambooSession {
 		}
 	}
 
+	public Reader getBuildLogReader(@NotNull String planKey, int buildNumber) throws RemoteApiException {
+		try {
+			return delegate.getBuildLogReader(planKey, buildNumber);
+		} catch (RemoteApiSessionExpiredException e) {
+			delegate.login(userName, password);
+			return delegate.getBuildLogReader(planKey, buildNumber);
+		}
+	}
+
+	public BuildLogChunk getBuildLogTail(@NotNull String planKey, int buildNumber, int maxBytes)
+			throws RemoteApiException {
+		try {
+			return delegate.getBuildLogTail(planKey, buildNumber, maxBytes);
+		} catch (RemoteApiSessionExpiredException e) {
+			delegate.login(userName, password);
+			return delegate.getBuildLogTail(planKey, buildNumber, maxBytes);
+		}
+	}
+
+	public BuildLogChunk getBuildLogChunk(@NotNull String planKey, int buildNumber, long offset)
+			throws RemoteApiException {
+		try {
+			return delegate.getBuildLogChunk(planKey, buildNumber, offset);
+		} catch (RemoteApiSessionExpiredException e) {
+			delegate.login(userName, password);
+			return delegate.getBuildLogChunk(planKey, buildNumber, offset);
+		}
+	}
+
 	public Collection<BambooBuild> getRecentBuildsForPlan(@NotNull final String planKey, final int timezoneOffset)
 			throws RemoteApiException {
 		try {
@@ -184,6 +230,26 @@ public class AutoRenewBambooSession implements BambooSession {
 
 	}
 
+	@NotNull
+	public Map<String, BambooBuildSummary> getLatestBuildSummaries() throws RemoteApiException {
+		try {
+			return delegate.getLatestBuildSummaries();
+		} catch (RemoteApiSessionExpiredException e) {
+			delegate.login(userName, password);
+			return delegate.getLatestBuildSummaries();
+		}
+	}
+
+	@NotNull
+	public BambooBuildSummary getLatestBuildSummary(@NotNull String planKey) throws RemoteApiException {
+		try {
+			return delegate.getLatestBuildSummary(planKey);
+		} catch (RemoteApiSessionExpiredException e) {
+			delegate.login(userName, password);
+			return delegate.getLatestBuildSummary(planKey);
+		}
+	}
+
 	@NotNull
 	public Collection<BambooPlan> getPlanList() throws ServerPasswordNotProvidedException, RemoteApiException {
 		try {
@@ -253,4 +319,17 @@ public class AutoRenewBambooSession implements BambooSession {
             return delegate.getBranchKeys(planKey, useFavourites, myBranchesOnly);
         }
     }
+
+	@NotNull
+	public Collection<BambooBuild> getLatestBuildsForPlans(@NotNull Collection<BambooPlan> plans, boolean isShowBranches,
+			boolean useFavouriteBranches, boolean myBranchesOnly, int timezoneOffset) throws RemoteApiException {
+		try {
+			return delegate.getLatestBuildsForPlans(plans, isShowBranches, useFavouriteBranches, myBranchesOnly,
+					timezoneOffset);
+		} catch (RemoteApiSessionExpiredException e) {
+			delegate.login(userName, password);
+			return delegate.getLatestBuildsForPlans(plans, isShowBranches, useFavouriteBranches, myBranchesOnly,
+					timezoneOffset);
+		}
+	}
 }
@@ -17,11 +17,13 @@
 package com.atlassian.theplugin.commons.bamboo.api;
 
 import com.atlassian.theplugin.commons.bamboo.BambooBuild;
+import com.atlassian.theplugin.commons.bamboo.BambooBuildSummary;
 import com.atlassian.theplugin.commons.bamboo.BambooJobImpl;
 import com.atlassian.theplugin.commons.bamboo.BambooPlan;
 import com.atlassian.theplugin.commons.bamboo.BambooProject;
 import com.atlassian.theplugin.commons.bamboo.BuildDetails;
 import com.atlassian.theplugin.commons.bamboo.BuildIssue;
+import com.atlassian.theplugin.commons.bamboo.BuildLogChunk;
 import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
 import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
 import com.atlassian.theplugin.commons.remoteapi.ProductSession;
@@ -29,8 +31,10 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Reader;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Marek Went
@@ -97,6 +101,32 @@ public interface BambooSession extends ProductSession {
 
 	String getBuildLogs(@NotNull String planKey, int buildNumber) throws RemoteApiException;
 
+	/**
+	 * Streams the build log instead of loading it into memory at once. If a {@link BuildLogCache} is configured,
+	 * the log is served from the local copy and only the bytes appended since it was stored are downloaded.
+	 *
+	 * @return reader of the log, which must be closed by the caller, or <code>null</code> if the log is not available
+	 */
+	@Nullable
+	Reader getBuildLogReader(@NotNull String planKey, int buildNumber) throws RemoteApiException;
+
+	/**
+	 * @param maxBytes maximum number of bytes to retrieve from the end of the log
+	 * @return last complete lines of the log or <code>null</code> if the log is not available
+	 */
+	@Nullable
+	BuildLogChunk getBuildLogTail(@NotNull String planKey, int buildNumber, int maxBytes) throws RemoteApiException;
+
+	/**
+	 * Retrieves complete lines of the log starting at given byte offset, to follow the log of a running build.
+	 * Unterminated last line is not returned until it is completed.
+	 *
+	 * @param offset {@link BuildLogChunk#getNextOffset()} of the previously retrieved chunk or 0
+	 * @return log lines written since <code>offset</code> or <code>null</code> if the log is not available
+	 */
+	@Nullable
+	BuildLogChunk getBuildLogChunk(@NotNull String planKey, int buildNumber, long offset) throws RemoteApiException;
+
 	Collection<BambooBuild> getRecentBuildsForPlan(@NotNull String planKey, int timezoneOffset) throws RemoteApiException;
 
 	Collection<BambooBuild> getRecentBuildsForUser(final int timezoneOffset) throws RemoteApiException;
@@ -105,6 +135,26 @@ public interface BambooSession extends ProductSession {
 	BambooBuild getLatestBuildForPlanNew(@NotNull String planKey, @Nullable String masterPlanKey, boolean isPlanEnabled,
 			int timezoneOffset) throws RemoteApiException;
 
+	/**
+	 * Retrieves summaries of the latest builds of all (non-branch) plans on the server, to cheaply detect
+	 * which plans have to be refreshed.
+	 *
+	 * @return summaries keyed by plan key
+	 * @throws com.atlassian.theplugin.commons.remoteapi.RemoteApiBadServerVersionException
+	 *          for servers older than Bamboo 4.0
+	 */
+	@NotNull
+	Map<String, BambooBuildSummary> getLatestBuildSummaries() throws RemoteApiException;
+
+	/**
+	 * Retrieves summary of the latest build of a plan or plan branch with a single lightweight request.
+	 *
+	 * @throws com.atlassian.theplugin.commons.remoteapi.RemoteApiBadServerVersionException
+	 *          for servers older than Bamboo 4.0
+	 */
+	@NotNull
+	BambooBuildSummary getLatestBuildSummary(@NotNull String planKey) throws RemoteApiException;
+
     @NotNull
     Collection<BuildIssue> getIssuesForBuild(@NotNull String planKey, int buildNumber) throws RemoteApiException;
 
@@ -115,4 +165,22 @@ public interface BambooSession extends ProductSession {
 
     @NotNull
     Collection<String> getBranchKeys(String planKey, boolean useFavourites, boolean myBranchesOnly) throws RemoteApiException;
+
+	/**
+	 * Batched version of {@link #getLatestBuildForPlanNew(String, String, boolean, int)} for many plans. Where
+	 * the server supports it, latest results are retrieved with a few paged requests, which end as soon as
+	 * all given plans are found.
+	 *
+	 * @param plans                plans to query, their enabled state is copied to returned builds
+	 * @param isShowBranches       whether builds of plan branches should be returned as well
+	 * @param useFavouriteBranches whether only favourite branches should be returned
+	 * @param myBranchesOnly       whether only branches of the current user should be returned
+	 * @param timezoneOffset       timezone offset of the server
+	 * @return latest builds in the order of <code>plans</code>, branches of each plan preceding the plan itself.
+	 *         Plans which could not be retrieved are skipped.
+	 * @throws RemoteApiException in case of some communication problem
+	 */
+	@NotNull
+	Collection<BambooBuild> getLatestBuildsForPlans(@NotNull Collection<BambooPlan> plans, boolean isShowBranches,
+			boolean useFavouriteBranches, boolean myBranchesOnly, int timezoneOffset) throws RemoteApiException;
 }
@@ -20,17 +20,21 @@ import com.atlassian.connector.commons.api.ConnectionCfg;
 import com.atlassian.theplugin.commons.BambooFileInfo;
 import com.atlassian.theplugin.commons.bamboo.BambooBuild;
 import com.atlassian.theplugin.commons.bamboo.BambooBuildInfo;
+import com.atlassian.theplugin.commons.bamboo.BambooBuildSummary;
 import com.atlassian.theplugin.commons.bamboo.BambooChangeSet;
 import com.atlassian.theplugin.commons.bamboo.BambooChangeSetImpl;
 import com.atlassian.theplugin.commons.bamboo.BambooJobImpl;
 import com.atlassian.theplugin.commons.bamboo.BambooPlan;
+import com.atlassian.theplugin.commons.bamboo.BambooPlanCatalog;
 import com.atlassian.theplugin.commons.bamboo.BambooProject;
 import com.atlassian.theplugin.commons.bamboo.BambooProjectInfo;
 import com.atlassian.theplugin.commons.bamboo.BuildDetails;
 import com.atlassian.theplugin.commons.bamboo.BuildDetailsInfo;
 import com.atlassian.theplugin.commons.bamboo.BuildIssue;
 import com.atlassian.theplugin.commons.bamboo.BuildIssueInfo;
+import com.atlassian.theplugin.commons.bamboo.BuildLogChunk;
 import com.atlassian.theplugin.commons.bamboo.BuildStatus;
+import com.atlassian.theplugin.commons.bamboo.PlanState;
 import com.atlassian.theplugin.commons.bamboo.TestDetailsInfo;
 import com.atlassian.theplugin.commons.bamboo.TestResult;
 import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
@@ -38,13 +42,20 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiBadServerVersionExcept
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
+import com.atlassian.theplugin.commons.remoteapi.rest.HttpStreamResponse;
 import com.atlassian.theplugin.commons.util.Logger;
 import com.atlassian.theplugin.commons.util.LoggerImpl;
 import com.atlassian.theplugin.commons.util.MiscUtil;
+import com.atlassian.theplugin.commons.util.TimestampParser;
 import com.atlassian.theplugin.commons.util.UrlUtil;
+import com.atlassian.theplugin.commons.util.XmlParserRegistry;
 import com.atlassian.theplugin.commons.util.XmlUtil;
 import com.google.common.collect.Lists;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jdom.Document;
@@ -53,19 +64,26 @@ import org.jdom.JDOMException;
 import org.jdom.xpath.XPath;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -119,6 +137,21 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 
 	private static final String LIST_PLANS = "/rest/api/latest/plan?expand=plans&max-results=5000";
 
+	private static final String PLAN_LIST_PAGE = "/rest/api/latest/plan?expand=";
+
+	private static final String LATEST_RESULTS_PAGE = "/rest/api/latest/result?includeAllStates=true&expand=";
+
+	private static final String LATEST_RESULTS_SUMMARY_PAGE = "/rest/api/latest/result?includeAllStates=true";
+
+	private static final int BATCH_PAGE_SIZE = 100;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Maximum number of log bytes retrieved by a single {@link #getBuildLogChunk(String, int, long)} call.
+	 */
+	static final int MAX_BUILD_LOG_CHUNK_BYTES = 1024 * 1024;
+
 	private static final String BUILD_COMPLETED_DATE_ELEM = "buildCompletedDate";
 
 	private static final String BUILD_SUCCESSFUL = "Successful";
@@ -127,6 +160,9 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 
 	private final ConnectionCfg serverData;
 
+	@Nullable
+	private volatile BuildLogCache buildLogCache;
+
 	private static final int BAMBOO_23_BUILD_NUMBER = 1308;
 	private static final int BAMBOO_2_6_BUILD_NUMBER = 1839;
 	private static final int BAMBOO_2_6_3_BUILD_NUMBER = 1904;
@@ -166,7 +202,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				return -1;
 			}
 
-			XPath xpath = XPath.newInstance("/response/bambooBuildNumber");
+			XPath xpath = XmlParserRegistry.getXPath("/response/bambooBuildNumber");
 			Element element = (Element) xpath.selectSingleNode(doc);
 			if (element != null) {
 				String bNo = element.getText();
@@ -193,7 +229,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			// XPath xpath = XPath.newInstance("/response/bambooBuildNumber");
-			XPath xpath = XPath.newInstance("/info/buildNumber");
+			XPath xpath = XmlParserRegistry.getXPath("/info/buildNumber");
 			Element element = (Element) xpath.selectSingleNode(doc);
 			if (element != null) {
 				String bNo = element.getText();
@@ -214,7 +250,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		List<BambooProject> projects = new ArrayList<BambooProject>();
 		try {
 			Document doc = retrieveGetResponse(buildResultUrl);
-			XPath xpath = XPath.newInstance("/response/project");
+			XPath xpath = XmlParserRegistry.getXPath("/response/project");
 			@SuppressWarnings("unchecked")
 			List<Element> elements = xpath.selectNodes(doc);
 			if (elements != null) {
@@ -240,7 +276,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		List<BambooPlan> plans = new ArrayList<BambooPlan>();
 		try {
 			Document doc = retrieveGetResponse(buildResultUrl);
-			XPath xpath = XPath.newInstance("/response/build");
+			XPath xpath = XmlParserRegistry.getXPath("/response/build");
 			@SuppressWarnings("unchecked")
 			List<Element> elements = xpath.selectNodes(doc);
 			if (elements != null) {
@@ -274,7 +310,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		try {
 			Document doc = retrieveGetResponse(buildResultUrl);
 			// XPath xpath = XPath.newInstance("/response/build");
-			XPath xpath = XPath.newInstance("/plans/plans/plan");
+			XPath xpath = XmlParserRegistry.getXPath("/plans/plans/plan");
 			@SuppressWarnings("unchecked")
 			List<Element> elements = xpath.selectNodes(doc);
 			if (elements != null) {
@@ -318,8 +354,16 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		return getLatestBuildForPlan(planKey, isEnabled != null ? isEnabled : true, timezoneOffset);
 	}
 
+	/**
+	 * @return whether the plan is enabled or <code>null</code> if it is not in given plans. Pass
+	 *         a {@link BambooPlanCatalog} (as returned by {@link #getPlanList()}) when calling it for many plans,
+	 *         other collections are searched linearly.
+	 */
 	@Nullable
 	public static Boolean isPlanEnabled(@NotNull Collection<BambooPlan> allPlans, @NotNull String planKey) {
+		if (allPlans instanceof BambooPlanCatalog) {
+			return ((BambooPlanCatalog) allPlans).isPlanEnabled(planKey);
+		}
 		for (BambooPlan bambooPlan : allPlans) {
 			if (planKey.equals(bambooPlan.getKey())) {
 				return bambooPlan.isEnabled();
@@ -349,7 +393,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/response").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/response").selectNodes(doc);
 			if (elements != null && !elements.isEmpty()) {
 				Element e = elements.iterator().next();
 				final Set<String> commiters = constructBuildCommiters(e);
@@ -389,7 +433,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 
 			@SuppressWarnings("unchecked")
 			// final List<Element> elements = XPath.newInstance("/response").selectNodes(doc);
-			List<Element> elements = XPath.newInstance("/results/results/result").selectNodes(doc);
+			List<Element> elements = XmlParserRegistry.getXPath("/results/results/result").selectNodes(doc);
 			if (elements != null && !elements.isEmpty()) {
 				Element e = elements.iterator().next();
 				// final Set<String> commiters = constructBuildCommiters(e);
@@ -398,7 +442,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				return constructBuilderItem_40(e, new Date(), planKey, commiters, timezoneOffset);
 			} else {
 				// plan may have no builds (never built)
-				elements = XPath.newInstance("/results/results").selectNodes(doc);
+				elements = XmlParserRegistry.getXPath("/results/results").selectNodes(doc);
 				if (elements != null && !elements.isEmpty()) {
 					Element e = elements.iterator().next();
 					// final Set<String> commiters = constructBuildCommiters(e);
@@ -432,7 +476,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		try {
 			Document doc = retrieveGetResponse(buildResultUrl);
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/result/changes/change").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/result/changes/change").selectNodes(doc);
 
 			if (!elements.isEmpty()) {
 				for (Element commiter : elements) {
@@ -454,7 +498,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		try {
 			Document doc = retrieveGetResponse(planUrl);
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/plan").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/plan").selectNodes(doc);
 			if (elements != null && !elements.isEmpty()) {
 				Element e = elements.iterator().next();
 				return constructPlanItem(e, Boolean.TRUE);
@@ -487,7 +531,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			Document doc = retrieveGetResponse(planUrl);
 
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/plan").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/plan").selectNodes(doc);
 			if (elements != null && !elements.isEmpty()) {
 				Element e = elements.iterator().next();
 				BambooPlan plan = constructPlanItem(e, isPlanEnabled);
@@ -565,7 +609,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance(nodePath).selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath(nodePath).selectNodes(doc);
 			Element el = elements.get(0);
 			return constructBuildItemFromNewApi(el, new Date(), planKey);
 
@@ -607,7 +651,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/response/build").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/response/build").selectNodes(doc);
 			if (elements == null || elements.isEmpty()) {
 				builds.add(constructBuildErrorInfo(url, "Malformed server reply: no response element", new Date()).build());
 			} else {
@@ -645,7 +689,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
                 return builds;
             }
 
-            List<Element> elements = XPath.newInstance("/results/results/result").selectNodes(doc);
+            List<Element> elements = XmlParserRegistry.getXPath("/results/results/result").selectNodes(doc);
             if (elements == null || elements.isEmpty()) {
                 builds.add(constructBuildErrorInfo(url, "Malformed server reply: no response element", new Date()).build());
             } else {
@@ -669,7 +713,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 
 		Set<String> commiters = new HashSet<String>();
 		@SuppressWarnings("unchecked")
-		final List<Element> commitElements = XPath.newInstance("commits/commit").selectNodes(element);
+		final List<Element> commitElements = XmlParserRegistry.getXPath("commits/commit").selectNodes(element);
 		if (!commitElements.isEmpty()) {
 			for (Element commiter : commitElements) {
 				commiters.add(commiter.getAttributeValue("author"));
@@ -690,7 +734,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				return builds;
 			}
 
-			final XPath xpath = XPath.newInstance("/response/build");
+			final XPath xpath = XmlParserRegistry.getXPath("/response/build");
 			@SuppressWarnings("unchecked")
 			final List<Element> elements = xpath.selectNodes(doc);
 			if (elements != null) {
@@ -720,7 +764,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				return builds;
 			}
 
-			final XPath xpath = XPath.newInstance("/plans/plans/plan");
+			final XPath xpath = XmlParserRegistry.getXPath("/plans/plans/plan");
 			@SuppressWarnings("unchecked")
 			final List<Element> elements = xpath.selectNodes(doc);
 			if (elements != null) {
@@ -752,7 +796,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> responseElements = XPath.newInstance("/response").selectNodes(doc);
+			final List<Element> responseElements = XmlParserRegistry.getXPath("/response").selectNodes(doc);
 			for (Element element : responseElements) {
 				String vcsRevisionKey = element.getAttributeValue("vcsRevisionKey");
 				if (vcsRevisionKey != null) {
@@ -761,19 +805,16 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> commitElements = XPath.newInstance("/response/commits/commit").selectNodes(doc);
+			final List<Element> commitElements = XmlParserRegistry.getXPath("/response/commits/commit").selectNodes(doc);
 			if (!commitElements.isEmpty()) {
-				int i = 1;
 				for (Element element : commitElements) {
 					BambooChangeSetImpl cInfo = new BambooChangeSetImpl();
 					cInfo.setAuthor(element.getAttributeValue("author"));
-					cInfo.setCommitDate(parseCommitTime(element.getAttributeValue("date")));
+					cInfo.setCommitDate(parseNewApiBuildTime(element.getAttributeValue("date")));
 					cInfo.setComment(getChildText(element, "comment"));
 
-					String path = "/response/commits/commit[" + i++ + "]/files/file";
-					XPath filesPath = XPath.newInstance(path);
 					@SuppressWarnings("unchecked")
-					final List<Element> fileElements = filesPath.selectNodes(doc);
+					final List<Element> fileElements = XmlParserRegistry.getXPath("files/file").selectNodes(element);
 					for (Element file : fileElements) {
 						BambooFileInfo fileInfo = new BambooFileInfo(file.getAttributeValue("name"),
 								file.getAttributeValue("revision"));
@@ -784,7 +825,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> sucTestResElements = XPath.newInstance("/response/successfulTests/testResult")
+			final List<Element> sucTestResElements = XmlParserRegistry.getXPath("/response/successfulTests/testResult")
 					.selectNodes(doc);
 			for (Element element : sucTestResElements) {
 				TestDetailsInfo tInfo = new TestDetailsInfo();
@@ -803,10 +844,9 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> failedTestResElements = XPath.newInstance("/response/failedTests/testResult")
+			final List<Element> failedTestResElements = XmlParserRegistry.getXPath("/response/failedTests/testResult")
 					.selectNodes(doc);
 			if (!failedTestResElements.isEmpty()) {
-				int i = 1;
 				for (Element element : failedTestResElements) {
 					TestDetailsInfo tInfo = new TestDetailsInfo();
 					tInfo.setTestClassName(element.getAttributeValue("testClass"));
@@ -821,10 +861,8 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 					tInfo.setTestDuration(duration);
 					tInfo.setTestResult(TestResult.TEST_FAILED);
 
-					String path = "/response/failedTests/testResult[" + i++ + "]/errors/error";
-					XPath errorPath = XPath.newInstance(path);
 					@SuppressWarnings("unchecked")
-					final List<Element> errorElements = errorPath.selectNodes(doc);
+					final List<Element> errorElements = XmlParserRegistry.getXPath("errors/error").selectNodes(element);
 					for (Element error : errorElements) {
 						tInfo.setTestErrors(error.getText());
 					}
@@ -914,7 +952,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				}
 
 				@SuppressWarnings("unchecked")
-				final List<Element> testResElements = XPath.newInstance("/result/testResults/allTests/testResult")
+				final List<Element> testResElements = XmlParserRegistry.getXPath("/result/testResults/allTests/testResult")
 						.selectNodes(doc);
 				for (Element element : testResElements) {
 					TestDetailsInfo tInfo = new TestDetailsInfo();
@@ -929,7 +967,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 					tInfo.setTestDuration(parseDuration(element.getChild("duration")));
 
 					StringBuilder errorBuilder = new StringBuilder();
-					XPath errorPath = XPath.newInstance("errors/error");
+					XPath errorPath = XmlParserRegistry.getXPath("errors/error");
 					@SuppressWarnings("unchecked")
 					final List<Element> errorElements = errorPath.selectNodes(element);
 					for (Element errorElement : errorElements) {
@@ -1003,7 +1041,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				}
 
 				@SuppressWarnings("unchecked")
-				final List<Element> testResElements = XPath.newInstance("/result/testResults/all/testResult")
+				final List<Element> testResElements = XmlParserRegistry.getXPath("/result/testResults/all/testResult")
 						.selectNodes(doc);
 				for (Element element : testResElements) {
 					TestDetailsInfo tInfo = new TestDetailsInfo();
@@ -1018,7 +1056,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 					tInfo.setTestDuration(parseDuration(element.getChild("duration")));
 
 					StringBuilder errorBuilder = new StringBuilder();
-					XPath errorPath = XPath.newInstance("errors/error");
+					XPath errorPath = XmlParserRegistry.getXPath("errors/error");
 					@SuppressWarnings("unchecked")
 					final List<Element> errorElements = errorPath.selectNodes(element);
 					for (Element errorElement : errorElements) {
@@ -1075,7 +1113,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> testResElements = XPath.newInstance("/build/testResults/all/testResult")
+			final List<Element> testResElements = XmlParserRegistry.getXPath("/build/testResults/all/testResult")
 					.selectNodes(doc);
 			for (Element element : testResElements) {
 				TestDetailsInfo tInfo = new TestDetailsInfo();
@@ -1090,7 +1128,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				tInfo.setTestDuration(parseDuration(element.getChild("duration")));
 
 				StringBuilder errorBuilder = new StringBuilder();
-				XPath errorPath = XPath.newInstance("errors/error");
+				XPath errorPath = XmlParserRegistry.getXPath("errors/error");
 				@SuppressWarnings("unchecked")
 				final List<Element> errorElements = errorPath.selectNodes(element);
 				for (Element errorElement : errorElements) {
@@ -1447,7 +1485,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		if (dateStr != null) {
 			if (dateStr.indexOf('T') != -1) {
 				// new format
-				return parseCommitTime(dateStr);
+				return parseNewApiBuildTime(dateStr);
 			} else {
 				// old format
 				return parseBuildDate(dateStr, "Cannot parse " + element, timezoneOffset);
@@ -1456,12 +1494,6 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		throw new RemoteApiException(element + " cannot be found");
 	}
 
-	private static DateTimeFormatter buildDateFormat = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss");
-
-	private static DateTimeFormatter commitDateFormat = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ssZ");
-
-	private static DateTimeFormatter newApiDateFormat = ISODateTimeFormat.dateTime();
-
 	/**
 	 * Parses date without timezone info
 	 * <p/>
@@ -1477,31 +1509,22 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 	 */
 	@Nullable
 	private Date parseBuildDate(String date, String errorMessage, final int timezoneOffset) {
-		try {
-			final DateTime dateTime = buildDateFormat.parseDateTime(date);
-			// now adjust the time for local caller time, as Bamboo servers always serves its local time
-			// without the timezone info
-			return dateTime.plusHours(timezoneOffset).toDate();
-		} catch (IllegalArgumentException e) {
+		final long millis = TimestampParser.parseMillis(date);
+		if (millis == TimestampParser.INVALID) {
 			LoggerImpl.getInstance().debug("Cannot parse build date: " + errorMessage);
 			return null;
 		}
-	}
-
-	private Date parseCommitTime(String date) throws RemoteApiException {
-		try {
-			return commitDateFormat.parseDateTime(date).toDate();
-		} catch (IllegalArgumentException e) {
-			throw new RemoteApiException("Cannot parse date/time string [" + date + "]", e);
-		}
+		// now adjust the time for local caller time, as Bamboo servers always serves its local time
+		// without the timezone info
+		return new Date(millis + timezoneOffset * 60L * 60 * 1000);
 	}
 
 	private Date parseNewApiBuildTime(String dateTime) throws RemoteApiException {
-		try {
-			return newApiDateFormat.parseDateTime(dateTime).toDate();
-		} catch (IllegalArgumentException e) {
-			throw new RemoteApiException("Cannot parse date/time string [" + dateTime + "]", e);
+		final long millis = TimestampParser.parseMillis(dateTime);
+		if (millis == TimestampParser.INVALID) {
+			throw new RemoteApiException("Cannot parse date/time string [" + dateTime + "]");
 		}
+		return new Date(millis);
 	}
 
 	private String getChildText(Element node, String childName) {
@@ -1513,6 +1536,308 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 	}
 
 	public String getBuildLogs(@NotNull String planKey, int buildNumber) throws RemoteApiException {
+		final String buildResultUrl = getBuildLogUrl(planKey, buildNumber);
+		if (buildResultUrl != null) {
+			try {
+				return doUnconditionalGetForTextNonXmlResource(buildResultUrl);
+			} catch (IOException e) {
+				throw new RemoteApiException(e.getMessage(), e);
+			}
+		}
+
+		return null;
+	}
+
+	@Nullable
+	public BuildLogCache getBuildLogCache() {
+		return buildLogCache;
+	}
+
+	/**
+	 * @param buildLogCache local store of build logs used by {@link #getBuildLogReader(String, int)}, or
+	 *                      <code>null</code> to always stream logs from the server
+	 */
+	public void setBuildLogCache(@Nullable BuildLogCache buildLogCache) {
+		this.buildLogCache = buildLogCache;
+	}
+
+	@Nullable
+	public Reader getBuildLogReader(@NotNull String planKey, int buildNumber) throws RemoteApiException {
+		final String url = getBuildLogUrl(planKey, buildNumber);
+		if (url == null) {
+			return null;
+		}
+		try {
+			final BuildLogCache logCache = buildLogCache;
+			if (logCache == null) {
+				return getTemporaryBuildLogReader(url);
+			}
+			final ReentrantLock lock = logCache.getLock(url);
+			lock.lock();
+			try {
+				final File file = logCache.getFile(url);
+				if (!file.isFile() || logCache.getCharset(url) == null || !updateStoredBuildLog(logCache, url, file)) {
+					final HttpStreamResponse response = doUnconditionalGetForStream(url, null);
+					try {
+						logCache.store(url, response, response.getCharset());
+					} finally {
+						response.close();
+					}
+				}
+				logCache.touch(url);
+				return new InputStreamReader(new FileInputStream(file), logCache.getCharset(url));
+			} finally {
+				lock.unlock();
+			}
+		} catch (IOException e) {
+			throw new RemoteApiException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Downloads the log into a temporary file, which is deleted when the returned reader is closed. The connection
+	 * (and the request permit of this session) is released before returning, so a reader kept open by the caller
+	 * does not block other requests.
+	 */
+	private Reader getTemporaryBuildLogReader(String url) throws IOException {
+		final File file = File.createTempFile("bamboo-build-log", ".log");
+		boolean downloaded = false;
+		try {
+			final String charset;
+			final HttpStreamResponse response = doUnconditionalGetForStream(url, null);
+			try {
+				final OutputStream out = new FileOutputStream(file);
+				try {
+					IOUtils.copy(response, out);
+				} finally {
+					out.close();
+				}
+				charset = response.getCharset();
+			} finally {
+				response.close();
+			}
+			final Reader reader = new InputStreamReader(new FileInputStream(file) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						file.delete();
+					}
+				}
+			}, charset);
+			downloaded = true;
+			return reader;
+		} finally {
+			if (!downloaded) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Downloads only the part of the log appended since it was stored.
+	 *
+	 * @return <code>false</code> if stored copy is not valid anymore and whole log must be retrieved again
+	 */
+	private boolean updateStoredBuildLog(BuildLogCache logCache, String url, File file) throws IOException {
+		final long storedLength = file.length();
+		final HttpStreamResponse response = doUnconditionalGetForStream(url, "bytes=" + storedLength + "-");
+		try {
+			switch (response.getStatusCode()) {
+			case HttpStatus.SC_PARTIAL_CONTENT:
+				if (response.getRangeStart() != storedLength) {
+					return false;
+				}
+				logCache.append(url, response);
+				return true;
+			case HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE:
+				// nothing appended, unless the log was replaced with a shorter one
+				return response.getTotalLength() < 0 || response.getTotalLength() == storedLength;
+			default:
+				// server does not support ranges and sent the whole log
+				logCache.store(url, response, response.getCharset());
+				return true;
+			}
+		} finally {
+			response.close();
+		}
+	}
+
+	@Nullable
+	public BuildLogChunk getBuildLogTail(@NotNull String planKey, int buildNumber, int maxBytes)
+			throws RemoteApiException {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+		}
+		final String url = getBuildLogUrl(planKey, buildNumber);
+		if (url == null) {
+			return null;
+		}
+		try {
+			final HttpStreamResponse response = doUnconditionalGetForStream(url, "bytes=-" + maxBytes);
+			try {
+				switch (response.getStatusCode()) {
+				case HttpStatus.SC_PARTIAL_CONTENT:
+					final byte[] bytes = IOUtils.toByteArray(response);
+					final long total = response.getTotalLength();
+					final long offset = response.getRangeStart() >= 0 ? response.getRangeStart()
+							: (total >= 0 ? total - bytes.length : 0);
+					return createBuildLogChunk(bytes, offset, true, offset + bytes.length, response.getCharset());
+				case HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE:
+					// empty log
+					return new BuildLogChunk("", 0, 0, 0);
+				default:
+					final CountingInputStream counter = new CountingInputStream(response);
+					final byte[] tail = readTail(counter, maxBytes);
+					return createBuildLogChunk(tail, counter.getByteCount() - tail.length, true, counter.getByteCount(),
+							response.getCharset());
+				}
+			} finally {
+				response.close();
+			}
+		} catch (IOException e) {
+			throw new RemoteApiException(e.getMessage(), e);
+		}
+	}
+
+	@Nullable
+	public BuildLogChunk getBuildLogChunk(@NotNull String planKey, int buildNumber, long offset)
+			throws RemoteApiException {
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative: " + offset);
+		}
+		final String url = getBuildLogUrl(planKey, buildNumber);
+		if (url == null) {
+			return null;
+		}
+		try {
+			final HttpStreamResponse response = doUnconditionalGetForStream(url,
+					"bytes=" + offset + "-" + (offset + MAX_BUILD_LOG_CHUNK_BYTES - 1));
+			try {
+				switch (response.getStatusCode()) {
+				case HttpStatus.SC_PARTIAL_CONTENT:
+					final long start = response.getRangeStart() >= 0 ? response.getRangeStart() : offset;
+					return createBuildLogChunk(readChunk(response), start, response.getTotalLength(),
+							response.getCharset());
+				case HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE:
+					// nothing new yet
+					return new BuildLogChunk("", offset, offset, response.getTotalLength());
+				default:
+					long skipped = 0;
+					while (skipped < offset) {
+						final long n = response.skip(offset - skipped);
+						if (n <= 0) {
+							break;
+						}
+						skipped += n;
+					}
+					return createBuildLogChunk(readChunk(response), skipped, response.getTotalLength(),
+							response.getCharset());
+				}
+			} finally {
+				response.close();
+			}
+		} catch (IOException e) {
+			throw new RemoteApiException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Creates chunk following the log from given offset. A line longer than {@link #MAX_BUILD_LOG_CHUNK_BYTES} is
+	 * returned in pieces, otherwise the caller would never get past it.
+	 */
+	@NotNull
+	private static BuildLogChunk createBuildLogChunk(byte[] bytes, long offset, long totalLength, String charset)
+			throws UnsupportedEncodingException {
+		if (bytes.length >= MAX_BUILD_LOG_CHUNK_BYTES && lastIndexOf(bytes, 0, bytes.length) < 0) {
+			return new BuildLogChunk(new String(bytes, charset), offset, offset + bytes.length, totalLength);
+		}
+		return createBuildLogChunk(bytes, offset, false, totalLength, charset);
+	}
+
+	/**
+	 * @return at most {@link #MAX_BUILD_LOG_CHUNK_BYTES} bytes of the stream
+	 */
+	private static byte[] readChunk(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int remaining = MAX_BUILD_LOG_CHUNK_BYTES;
+		int n;
+		while (remaining > 0 && (n = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+			out.write(buffer, 0, n);
+			remaining -= n;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates chunk of complete lines: incomplete last line is left for the next chunk, incomplete first line
+	 * of a tail is dropped (unless the tail is a single line).
+	 *
+	 * @param bytes	   log bytes
+	 * @param offset	  offset of <code>bytes</code> within the log
+	 * @param isTail	  whether <code>bytes</code> are the tail of the log rather than the continuation of a chunk
+	 * @param totalLength length of the whole log or -1 if not known
+	 */
+	@NotNull
+	private static BuildLogChunk createBuildLogChunk(byte[] bytes, long offset, boolean isTail, long totalLength,
+			String charset) throws UnsupportedEncodingException {
+		int from = 0;
+		if (isTail && offset > 0) {
+			final int firstNewLine = indexOf(bytes, 0, bytes.length);
+			if (firstNewLine >= 0 && firstNewLine < bytes.length - 1) {
+				from = firstNewLine + 1;
+			}
+		}
+		final int lastNewLine = lastIndexOf(bytes, from, bytes.length);
+		final int to = lastNewLine >= 0 ? lastNewLine + 1 : (isTail ? bytes.length : from);
+		return new BuildLogChunk(new String(bytes, from, to - from, charset), offset + from, offset + to, totalLength);
+	}
+
+	private static int indexOf(byte[] bytes, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int lastIndexOf(byte[] bytes, int from, int to) {
+		for (int i = to - 1; i >= from; i--) {
+			if (bytes[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return last <code>maxBytes</code> bytes of the stream, keeping no more than that in memory
+	 */
+	@NotNull
+	private static byte[] readTail(InputStream in, int maxBytes) throws IOException {
+		final byte[] ring = new byte[maxBytes];
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long count = 0;
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			for (int i = 0; i < n; i++) {
+				ring[(int) (count++ % maxBytes)] = buffer[i];
+			}
+		}
+		final int length = (int) Math.min(count, maxBytes);
+		final byte[] tail = new byte[length];
+		final int start = (int) ((count - length) % maxBytes);
+		for (int i = 0; i < length; i++) {
+			tail[i] = ring[(start + i) % maxBytes];
+		}
+		return tail;
+	}
+
+	@Nullable
+	private String getBuildLogUrl(@NotNull String planKey, int buildNumber) throws RemoteApiException {
 
 		String buildResultUrl = null;
 
@@ -1552,15 +1877,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 					.toString();
 		}
 
-		if (buildResultUrl != null && buildResultUrl.length() > 0) {
-			try {
-				return doUnconditionalGetForTextNonXmlResource(buildResultUrl);
-			} catch (IOException e) {
-				throw new RemoteApiException(e.getMessage(), e);
-			}
-		}
-
-		return null;
+		return buildResultUrl != null && buildResultUrl.length() > 0 ? buildResultUrl : null;
 	}
 
     @NotNull
@@ -1574,7 +1891,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
             if (null != exception) {
                 throw new RemoteApiException(exception);
             }
-            final XPath xpath = XPath.newInstance("/plan/branches/branch");
+            final XPath xpath = XmlParserRegistry.getXPath("/plan/branches/branch");
             @SuppressWarnings("unchecked")
             final List<Element> elements = xpath.selectNodes(doc);
             if (elements != null) {
@@ -1610,7 +1927,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				throw new RemoteApiException(exception);
 			}
 
-			final XPath xpath = XPath.newInstance("/plan/stages/stage/plans/plan");
+			final XPath xpath = XmlParserRegistry.getXPath("/plan/stages/stage/plans/plan");
 			@SuppressWarnings("unchecked")
 			final List<Element> elements = xpath.selectNodes(doc);
 			if (elements != null) {
@@ -1659,8 +1976,8 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			List<BuildIssue> issues = new ArrayList<BuildIssue>();
 			@SuppressWarnings("unchecked")
 			List<Element> jiraIssuesNode = bambooBuild <= BAMBOO_2_6_3_BUILD_NUMBER
-					? XPath.newInstance("build/jiraIssues").selectNodes(doc)
-					: XPath.newInstance("result/jiraIssues").selectNodes(doc);
+					? XmlParserRegistry.getXPath("build/jiraIssues").selectNodes(doc)
+					: XmlParserRegistry.getXPath("result/jiraIssues").selectNodes(doc);
 
 			if (jiraIssuesNode == null) {
 				throw new RemoteApiException(INVALID_SERVER_RESPONSE);
@@ -1669,7 +1986,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 				throw new RemoteApiException(INVALID_SERVER_RESPONSE);
 			}
 			@SuppressWarnings("unchecked")
-			List<Element> issuesNodes = XPath.newInstance("issue").selectNodes(jiraIssuesNode.get(0));
+			List<Element> issuesNodes = XmlParserRegistry.getXPath("issue").selectNodes(jiraIssuesNode.get(0));
 			if (issuesNodes == null) {
 				throw new RemoteApiException(INVALID_SERVER_RESPONSE);
 			}
@@ -1690,8 +2007,11 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 		}
 	}
 
+	/**
+	 * @return all plans of the server, indexed by plan key, with favourite plans of the current user marked
+	 */
 	@NotNull
-	public Collection<BambooPlan> getPlanList() throws RemoteApiException {
+	public BambooPlanCatalog getPlanList() throws RemoteApiException {
 
 		List<BambooPlan> plans;
 
@@ -1708,19 +2028,358 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			} else {
 				favPlans = getFavouriteUserPlans();
 			}
-			for (String fav : favPlans) {
-				for (ListIterator<BambooPlan> it = plans.listIterator(); it.hasNext();) {
-					final BambooPlan plan = it.next();
-					if (plan.getKey().equalsIgnoreCase(fav)) {
-						it.set(plan.withFavourite(true));
-						break;
+			return new BambooPlanCatalog(plans).withFavourites(favPlans);
+		} catch (RemoteApiException e) {
+			// lack of favourite info is not a blocker here
+		}
+		return new BambooPlanCatalog(plans);
+	}
+
+	/**
+	 * Retrieves latest builds of given plans (and optionally of their branches) with a few paged requests listing
+	 * plans and latest results of the server, instead of several requests per plan. Latest results of branches
+	 * come with the plan list, expanded under each branch. Both lists are read only until all given plans are found.
+	 * <p/>
+	 * Servers older than Bamboo 4.0 (which have no such REST resources) as well as plans and branches missing
+	 * in the bulk replies (e.g. branches never built) are queried one by one, exactly as
+	 * {@link #getLatestBuildForPlanNew} does.
+	 */
+	@NotNull
+	public Collection<BambooBuild> getLatestBuildsForPlans(@NotNull Collection<BambooPlan> plans,
+			final boolean isShowBranches, boolean useFavouriteBranches, boolean myBranchesOnly, int timezoneOffset)
+			throws RemoteApiException {
+		if (getBamboBuildNumber() < BAMBOO_4_0_BUILD_NUMBER) {
+			return getLatestBuildsForPlansOneByOne(plans, isShowBranches, useFavouriteBranches, myBranchesOnly,
+					timezoneOffset);
+		}
+
+		final Date pollingTime = new Date();
+		final Map<String, Element> planElements = new HashMap<String, Element>();
+		final Map<String, Element> resultElements = new HashMap<String, Element>();
+		final Set<String> unlistedPlans = new HashSet<String>();
+		for (BambooPlan plan : plans) {
+			unlistedPlans.add(plan.getKey());
+		}
+		if (unlistedPlans.isEmpty()) {
+			return new ArrayList<BambooBuild>();
+		}
+		final Set<String> unbuiltPlans = new HashSet<String>(unlistedPlans);
+		try {
+			final String planExpand = isShowBranches ? "plans.plan.branches.branch.latestResult.changes.change"
+					: "plans.plan";
+			forAllPages(PLAN_LIST_PAGE + UrlUtil.encodeUrl(planExpand), "/plans/plans", "plan", new PagedListHandler() {
+				public boolean handle(@NotNull Element plan) {
+					final String key = plan.getAttributeValue("key");
+					if (unlistedPlans.remove(key)) {
+						planElements.put(key, plan);
+						if (isShowBranches) {
+							addBranchElements(plan, planElements, resultElements);
+						}
 					}
+					return !unlistedPlans.isEmpty();
 				}
-			}
+			});
+			forAllPages(LATEST_RESULTS_PAGE + UrlUtil.encodeUrl("results.result.changes.change"), "/results/results",
+					"result", new PagedListHandler() {
+				public boolean handle(@NotNull Element result) {
+					final String planKey = getResultPlanKey(result);
+					if (planKey != null && unbuiltPlans.remove(planKey)) {
+						resultElements.put(planKey, result);
+					}
+					return !unbuiltPlans.isEmpty();
+				}
+			});
+		} catch (RemoteApiSessionExpiredException e) {
+			throw e;
 		} catch (RemoteApiException e) {
-			// lack of favourite info is not a blocker here
+			loger.warn("Cannot fetch latest results from Bamboo server [" + getUrl() + "] in bulk, querying plans one by one");
+			return getLatestBuildsForPlansOneByOne(plans, isShowBranches, useFavouriteBranches, myBranchesOnly,
+					timezoneOffset);
 		}
-		return plans;
+
+		final List<BambooBuild> builds = new ArrayList<BambooBuild>();
+		for (BambooPlan plan : plans) {
+			final String key = plan.getKey();
+			try {
+				if (isShowBranches) {
+					for (String branch : getBranchKeys(planElements.get(key), key, useFavouriteBranches, myBranchesOnly)) {
+						builds.add(getLatestBuild(branch, key, plan.isEnabled(), planElements, resultElements, pollingTime,
+								timezoneOffset));
+					}
+				}
+				builds.add(getLatestBuild(key, null, plan.isEnabled(), planElements, resultElements, pollingTime,
+						timezoneOffset));
+			} catch (RemoteApiException e) {
+				// go ahead, there are other builds
+				loger.warn("Cannot fetch latest build for plan [" + key + "] from Bamboo server [" + getUrl() + "]");
+			}
+		}
+		return builds;
+	}
+
+	@NotNull
+	private Collection<BambooBuild> getLatestBuildsForPlansOneByOne(@NotNull Collection<BambooPlan> plans,
+			boolean isShowBranches, boolean useFavouriteBranches, boolean myBranchesOnly, int timezoneOffset) {
+		final List<BambooBuild> builds = new ArrayList<BambooBuild>();
+		for (BambooPlan plan : plans) {
+			final String key = plan.getKey();
+			try {
+				if (isShowBranches) {
+					for (String branch : getBranchKeys(key, useFavouriteBranches, myBranchesOnly)) {
+						builds.add(getLatestBuildForPlanNew(branch, key, plan.isEnabled(), timezoneOffset));
+					}
+				}
+				builds.add(getLatestBuildForPlanNew(key, null, plan.isEnabled(), timezoneOffset));
+			} catch (RemoteApiException e) {
+				// go ahead, there are other builds
+				loger.warn("Cannot fetch latest build for plan [" + key + "] from Bamboo server [" + getUrl() + "]");
+			}
+		}
+		return builds;
+	}
+
+	@NotNull
+	private BambooBuild getLatestBuild(@NotNull String planKey, @Nullable String masterPlanKey, boolean isPlanEnabled,
+			Map<String, Element> planElements, Map<String, Element> resultElements, Date pollingTime,
+			int timezoneOffset) throws RemoteApiException {
+		final Element planElement = planElements.get(planKey);
+		final Element resultElement = resultElements.get(planKey);
+		// branches are not always listed among plans, never built plans have no results
+		if (planElement == null || resultElement == null) {
+			return getLatestBuildForPlanNew(planKey, masterPlanKey, isPlanEnabled, timezoneOffset);
+		}
+		final PlanState planState;
+		if (planElement.getChild("averageBuildTimeInSeconds") != null) {
+			planState = constructPlanItem(planElement, isPlanEnabled).getState();
+		} else if (masterPlanKey != null) {
+			// branch elements carry no build statistics, their latest result tells whether they are building
+			planState = getPlanState(resultElement);
+		} else {
+			return getLatestBuildForPlanNew(planKey, masterPlanKey, isPlanEnabled, timezoneOffset);
+		}
+		return constructBuilderItem_40(resultElement, pollingTime, planKey, getChangeAuthors(resultElement),
+				timezoneOffset).planState(planState).enabled(isPlanEnabled).masterPlanKey(masterPlanKey).build();
+	}
+
+	/**
+	 * Indexes branches listed under given plan element, together with their expanded latest results.
+	 */
+	private static void addBranchElements(@NotNull Element planElement, Map<String, Element> planElements,
+			Map<String, Element> resultElements) {
+		final Element branchesElement = planElement.getChild("branches");
+		if (branchesElement == null) {
+			return;
+		}
+		@SuppressWarnings("unchecked")
+		final List<Element> branches = branchesElement.getChildren("branch");
+		for (Element branch : branches) {
+			final String key = branch.getAttributeValue("key");
+			if (key == null) {
+				continue;
+			}
+			planElements.put(key, branch);
+			final Element latestResult = branch.getChild("latestResult");
+			if (latestResult != null && latestResult.getAttributeValue("number") != null) {
+				resultElements.put(key, latestResult);
+			}
+		}
+	}
+
+	@NotNull
+	private static PlanState getPlanState(@NotNull Element resultElement) {
+		final String lifeCycleState = resultElement.getAttributeValue("lifeCycleState");
+		if ("InProgress".equals(lifeCycleState)) {
+			return PlanState.BUILDING;
+		} else if ("Queued".equals(lifeCycleState) || "Pending".equals(lifeCycleState)) {
+			return PlanState.IN_QUEUE;
+		}
+		return PlanState.STANDING;
+	}
+
+	@NotNull
+	private Collection<String> getBranchKeys(@Nullable Element planElement, @NotNull String planKey,
+			boolean useFavourites, boolean myBranchesOnly) throws RemoteApiException {
+		final Element branchesElement = planElement != null ? planElement.getChild("branches") : null;
+		// "my branches" are filtered by the server only, truncated branch list needs to be fetched separately
+		if (branchesElement == null || myBranchesOnly) {
+			return getBranchKeys(planKey, useFavourites, myBranchesOnly);
+		}
+		@SuppressWarnings("unchecked")
+		final List<Element> elements = branchesElement.getChildren("branch");
+		final String size = branchesElement.getAttributeValue("size");
+		if (size != null && parseInt(size) > elements.size()) {
+			return getBranchKeys(planKey, useFavourites, myBranchesOnly);
+		}
+		final List<String> branches = new ArrayList<String>();
+		for (Element element : elements) {
+			if (useFavourites && StringUtils.equals(getChildText(element, "isFavourite"), "false")) {
+				continue;
+			}
+			branches.add(element.getAttributeValue("key"));
+		}
+		return branches;
+	}
+
+	@Nullable
+	private static String getResultPlanKey(@NotNull Element resultElement) {
+		final Element plan = resultElement.getChild("plan");
+		if (plan != null && plan.getAttributeValue("key") != null) {
+			return plan.getAttributeValue("key");
+		}
+		// result key is plan key followed by build number, e.g. PRJ-PLAN-12
+		final String key = resultElement.getAttributeValue("key");
+		final String number = resultElement.getAttributeValue("number");
+		if (key != null && number != null && key.endsWith("-" + number)) {
+			return key.substring(0, key.length() - number.length() - 1);
+		}
+		return null;
+	}
+
+	@NotNull
+	private static Set<String> getChangeAuthors(@NotNull Element resultElement) {
+		final Set<String> commiters = new HashSet<String>();
+		final Element changes = resultElement.getChild("changes");
+		if (changes != null) {
+			@SuppressWarnings("unchecked")
+			final List<Element> elements = changes.getChildren("change");
+			for (Element change : elements) {
+				commiters.add(change.getAttributeValue("author"));
+			}
+		}
+		return commiters;
+	}
+
+	/**
+	 * Receives items of a paged REST list, see {@link #forAllPages(String, String, String, PagedListHandler)}.
+	 */
+	private interface PagedListHandler {
+		/**
+		 * @return <code>false</code> if no more items are needed, so the remaining pages are not requested
+		 */
+		boolean handle(@NotNull Element item);
+	}
+
+	/**
+	 * Retrieves all items of a paged REST list, {@link #BATCH_PAGE_SIZE} items per request.
+	 *
+	 * @param path     resource path with query string
+	 * @param listPath XPath of the list element (carrying <code>size</code> and <code>start-index</code> attributes)
+	 * @param itemName name of the list items
+	 */
+	@NotNull
+	private List<Element> getAllPages(@NotNull String path, @NotNull String listPath, @NotNull String itemName)
+			throws RemoteApiException {
+		final List<Element> items = new ArrayList<Element>();
+		forAllPages(path, listPath, itemName, new PagedListHandler() {
+			public boolean handle(@NotNull Element item) {
+				items.add(item);
+				return true;
+			}
+		});
+		return items;
+	}
+
+	/**
+	 * Passes items of a paged REST list to given handler, {@link #BATCH_PAGE_SIZE} items per request,
+	 * until the list ends or the handler needs no more items.
+	 */
+	private void forAllPages(@NotNull String path, @NotNull String listPath, @NotNull String itemName,
+			@NotNull PagedListHandler handler) throws RemoteApiException {
+		int startIndex = 0;
+		try {
+			while (true) {
+				final Document doc = retrieveGetResponse(getBaseUrl() + path + "&max-results=" + BATCH_PAGE_SIZE
+						+ "&start-index=" + startIndex);
+				final String exception = getExceptionMessages(doc);
+				if (null != exception) {
+					throw new RemoteApiException(exception);
+				}
+				final Element list = (Element) XmlParserRegistry.getXPath(listPath).selectSingleNode(doc);
+				if (list == null) {
+					throw new RemoteApiException("Malformed server reply: no " + listPath + " element");
+				}
+				@SuppressWarnings("unchecked")
+				final List<Element> page = list.getChildren(itemName);
+				for (Element item : page) {
+					if (!handler.handle(item)) {
+						return;
+					}
+				}
+				startIndex += page.size();
+
+				final String size = list.getAttributeValue("size");
+				if (page.isEmpty() || (size != null ? startIndex >= parseInt(size) : page.size() < BATCH_PAGE_SIZE)) {
+					return;
+				}
+			}
+		} catch (JDOMException e) {
+			throw new RemoteApiException("Server returned malformed response", e);
+		} catch (IOException e) {
+			throw new RemoteApiException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Retrieves summaries of the latest builds of all plans on the server with a few paged requests.
+	 * Plan branches are not included.
+	 *
+	 * @return summaries keyed by plan key
+	 * @throws RemoteApiBadServerVersionException for servers older than Bamboo 4.0
+	 */
+	@NotNull
+	public Map<String, BambooBuildSummary> getLatestBuildSummaries() throws RemoteApiException {
+		if (getBamboBuildNumber() < BAMBOO_4_0_BUILD_NUMBER) {
+			throw new RemoteApiBadServerVersionException("Build summaries are available since Bamboo 4.0");
+		}
+		final Map<String, BambooBuildSummary> summaries = new HashMap<String, BambooBuildSummary>();
+		for (Element result : getAllPages(LATEST_RESULTS_SUMMARY_PAGE, "/results/results", "result")) {
+			final String planKey = getResultPlanKey(result);
+			if (planKey != null) {
+				summaries.put(planKey, constructBuildSummary(result, planKey));
+			}
+		}
+		return summaries;
+	}
+
+	/**
+	 * Retrieves summary of the latest build of a plan or branch, which is much cheaper than
+	 * {@link #getLatestBuildForPlanNew(String, String, boolean, int)}.
+	 *
+	 * @throws RemoteApiBadServerVersionException for servers older than Bamboo 4.0
+	 */
+	@NotNull
+	public BambooBuildSummary getLatestBuildSummary(@NotNull String planKey) throws RemoteApiException {
+		if (getBamboBuildNumber() < BAMBOO_4_0_BUILD_NUMBER) {
+			throw new RemoteApiBadServerVersionException("Build summaries are available since Bamboo 4.0");
+		}
+		final String url = getBaseUrl() + LATEST_BUILD_FOR_PLAN + UrlUtil.encodeUrl(planKey)
+				+ "?includeAllStates=true&max-results=1";
+		try {
+			final Document doc = retrieveGetResponse(url);
+			final String exception = getExceptionMessages(doc);
+			if (null != exception) {
+				throw new RemoteApiException(exception);
+			}
+			final Element list = (Element) XmlParserRegistry.getXPath("/results/results").selectSingleNode(doc);
+			if (list == null) {
+				throw new RemoteApiException("Malformed server reply: no /results/results element");
+			}
+			final Element result = list.getChild("result");
+			// plan may have no builds (never built)
+			return result != null ? constructBuildSummary(result, planKey)
+					: new BambooBuildSummary(planKey, null, null, null);
+		} catch (JDOMException e) {
+			throw new RemoteApiException("Server returned malformed response", e);
+		} catch (IOException e) {
+			throw new RemoteApiException(e.getMessage(), e);
+		}
+	}
+
+	@NotNull
+	private BambooBuildSummary constructBuildSummary(@NotNull Element resultElement, @NotNull String planKey)
+			throws RemoteApiException {
+		return new BambooBuildSummary(planKey, parseInt(resultElement.getAttributeValue("number")),
+				resultElement.getAttributeValue("state"), resultElement.getAttributeValue("lifeCycleState"));
 	}
 
 	@NotNull
@@ -1729,7 +2388,7 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			int timezoneOffset) throws RemoteApiLoginException {
 		Collection<BambooBuild> builds = new ArrayList<BambooBuild>();
 
-		Collection<BambooPlan> plansForServer = null;
+		BambooPlanCatalog plansForServer = null;
 		RemoteApiException exception = null;
 		try {
 			plansForServer = getPlanList();
@@ -1765,8 +2424,8 @@ public class BambooSessionImpl extends LoginBambooSession implements BambooSessi
 			for (SubscribedPlan plan : plans) {
 				if (isLoggedIn()) {
 					try {
-						final Boolean isEnabled = plansForServer != null ? BambooSessionImpl.isPlanEnabled(
-								plansForServer, plan.getKey()) : null;
+						final Boolean isEnabled = plansForServer != null ? plansForServer.isPlanEnabled(plan.getKey())
+								: null;
 						BambooBuild buildInfo =
 								getLatestBuildBuilderForPlan(plan.getKey(), timezoneOffset).enabled(
 										isEnabled != null ? isEnabled : true).build();
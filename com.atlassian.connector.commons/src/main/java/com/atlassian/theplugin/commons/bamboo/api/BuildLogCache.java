@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo.api;
+
+import com.atlassian.theplugin.commons.util.StringUtil;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local copies of build logs retrieved by {@link BambooSessionImpl#getBuildLogReader(String, int)}, so that
+ * repeated views of the same log do not download it again. When the log is viewed again only the bytes appended
+ * since (if any) are requested from the server.
+ * <p/>
+ * Total size of stored logs is limited by <code>maxBytes</code>; least recently viewed logs are deleted first.
+ * <p/>
+ * This class is thread-safe. Logs of different builds are stored and read independently.
+ */
+public class BuildLogCache {
+
+	private static final String LOG_SUFFIX = ".log";
+
+	private static final String CHARSET_SUFFIX = ".charset";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final int LOCK_STRIPES = 16;
+
+	private final File directory;
+
+	private final long maxBytes;
+
+	private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+	public BuildLogCache(@NotNull File directory, long maxBytes) throws IOException {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create build log directory " + directory);
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return lock guarding the log of given URL, to be held while it is read or written
+	 */
+	@NotNull
+	ReentrantLock getLock(@NotNull String url) {
+		return getLockForName(StringUtil.sha1Hex(url));
+	}
+
+	/**
+	 * Locks are striped by file name rather than URL, so that eviction can find the lock of any stored log.
+	 */
+	@NotNull
+	private ReentrantLock getLockForName(@NotNull String name) {
+		return locks[(name.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+	}
+
+	/**
+	 * @return local copy of the log, which may not exist yet
+	 */
+	@NotNull
+	File getFile(@NotNull String url) {
+		return new File(directory, StringUtil.sha1Hex(url) + LOG_SUFFIX);
+	}
+
+	@Nullable
+	String getCharset(@NotNull String url) {
+		final File file = new File(directory, StringUtil.sha1Hex(url) + CHARSET_SUFFIX);
+		try {
+			return file.isFile() ? FileUtils.readFileToString(file, "US-ASCII").trim() : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces local copy of the log with the content of given stream.
+	 */
+	void store(@NotNull String url, @NotNull InputStream content, @NotNull String charset) throws IOException {
+		final File file = getFile(url);
+		final File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+		final OutputStream out = new FileOutputStream(temp);
+		try {
+			IOUtils.copy(content, out);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(out);
+			temp.delete();
+			throw e;
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		file.delete();
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Cannot store build log in " + file);
+		}
+		FileUtils.writeStringToFile(new File(directory, StringUtil.sha1Hex(url) + CHARSET_SUFFIX), charset, "US-ASCII");
+		evict(file);
+	}
+
+	/**
+	 * Appends content of given stream to local copy of the log.
+	 */
+	void append(@NotNull String url, @NotNull InputStream content) throws IOException {
+		final File file = getFile(url);
+		final OutputStream out = new FileOutputStream(file, true);
+		try {
+			IOUtils.copy(content, out);
+		} catch (IOException e) {
+			// partially appended log cannot be trusted
+			IOUtils.closeQuietly(out);
+			remove(url);
+			throw e;
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		evict(file);
+	}
+
+	/**
+	 * Marks the log as recently used.
+	 */
+	void touch(@NotNull String url) {
+		getFile(url).setLastModified(System.currentTimeMillis());
+	}
+
+	public void remove(@NotNull String url) {
+		final ReentrantLock lock = getLock(url);
+		lock.lock();
+		try {
+			getFile(url).delete();
+			new File(directory, StringUtil.sha1Hex(url) + CHARSET_SUFFIX).delete();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes all stored logs.
+	 */
+	public void clear() {
+		for (File file : listLogs()) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * @return total size of stored logs in bytes
+	 */
+	public long getSizeInBytes() {
+		long size = 0;
+		for (File file : listLogs()) {
+			size += file.length();
+		}
+		return size;
+	}
+
+	private void evict(@NotNull File keep) {
+		final File[] files = listLogs();
+		long size = 0;
+		for (File file : files) {
+			size += file.length();
+		}
+		if (size <= maxBytes) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				final long m1 = f1.lastModified();
+				final long m2 = f2.lastModified();
+				return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+			}
+		});
+		for (File file : files) {
+			if (size <= maxBytes) {
+				break;
+			}
+			if (file.equals(keep)) {
+				continue;
+			}
+			final String name = file.getName().substring(0, file.getName().length() - LOG_SUFFIX.length());
+			// logs being read or written by other threads are left alone; waiting for them could deadlock
+			final ReentrantLock lock = getLockForName(name);
+			if (!lock.tryLock()) {
+				continue;
+			}
+			try {
+				final long length = file.length();
+				if (file.delete()) {
+					size -= length;
+					new File(directory, name + CHARSET_SUFFIX).delete();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	@NotNull
+	private File[] listLogs() {
+		final File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(LOG_SUFFIX);
+			}
+		});
+		return files != null ? files : new File[0];
+	}
+}
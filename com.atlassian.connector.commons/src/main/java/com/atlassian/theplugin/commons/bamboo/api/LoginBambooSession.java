@@ -26,6 +26,7 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
 import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
+import com.atlassian.theplugin.commons.util.XmlParserRegistry;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.jdom.Document;
@@ -45,7 +46,7 @@ import java.util.List;
  */
 public class LoginBambooSession extends AbstractHttpSession implements ProductSession {
 
-	protected String authToken;
+	protected volatile String authToken;
 
 	private static final String AUTHENTICATION_ERROR_MESSAGE = "User not authenticated yet, or session timed out";
 	private static final String LOGIN_ACTION = "/api/rest/login.action";
@@ -107,7 +108,7 @@ public class LoginBambooSession extends AbstractHttpSession implements ProductSe
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/response/auth").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/response/auth").selectNodes(doc);
 			if (elements == null || elements.size() == 0) {
 				throw new RemoteApiLoginException("Server did not return any authentication token");
 			}
@@ -183,7 +184,7 @@ public class LoginBambooSession extends AbstractHttpSession implements ProductSe
     }
 
     protected static String getExceptionMessages(Document doc) throws JDOMException {
-		XPath xpath = XPath.newInstance("/errors/error");
+		XPath xpath = XmlParserRegistry.getXPath("/errors/error");
 		@SuppressWarnings("unchecked")
 		List<Element> elements = xpath.selectNodes(doc);
 
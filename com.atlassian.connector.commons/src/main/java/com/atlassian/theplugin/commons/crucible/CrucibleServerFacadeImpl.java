@@ -22,12 +22,14 @@ import com.atlassian.theplugin.commons.ServerType;
 import com.atlassian.theplugin.commons.crucible.api.CrucibleLoginException;
 import com.atlassian.theplugin.commons.crucible.api.CrucibleSession;
 import com.atlassian.theplugin.commons.crucible.api.PathAndRevision;
+import com.atlassian.theplugin.commons.crucible.api.ReviewItemCommentsHandler;
 import com.atlassian.theplugin.commons.crucible.api.UploadItem;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicProject;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicReview;
 import com.atlassian.theplugin.commons.crucible.api.model.Comment;
 import com.atlassian.theplugin.commons.crucible.api.model.CrucibleFileInfo;
 import com.atlassian.theplugin.commons.crucible.api.model.CrucibleUserCache;
+import com.atlassian.theplugin.commons.crucible.api.model.CrucibleUserDirectory;
 import com.atlassian.theplugin.commons.crucible.api.model.CrucibleVersionInfo;
 import com.atlassian.theplugin.commons.crucible.api.model.CustomFieldDef;
 import com.atlassian.theplugin.commons.crucible.api.model.CustomFilter;
@@ -41,69 +43,203 @@ import com.atlassian.theplugin.commons.crucible.api.model.Review;
 import com.atlassian.theplugin.commons.crucible.api.model.Reviewer;
 import com.atlassian.theplugin.commons.crucible.api.model.User;
 import com.atlassian.theplugin.commons.crucible.api.model.VersionedComment;
+import com.atlassian.theplugin.commons.crucible.api.rest.CrucibleMetricsCatalog;
+import com.atlassian.theplugin.commons.crucible.api.rest.CrucibleRepositoryCatalog;
 import com.atlassian.theplugin.commons.crucible.api.rest.CrucibleSessionImpl;
 import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
+import com.atlassian.theplugin.commons.remoteapi.ServerSessionRegistry;
+import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
+import com.atlassian.theplugin.commons.util.BoundedTaskRunner;
 import com.atlassian.theplugin.commons.util.Logger;
 import com.atlassian.theplugin.commons.util.MiscUtil;
 import com.atlassian.theplugin.commons.util.UrlUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class CrucibleServerFacadeImpl implements CrucibleServerFacade2 {
-	private final Map<String, CrucibleSession> sessions = new HashMap<String, CrucibleSession>();
+	private final ServerSessionRegistry<CrucibleSession> sessionRegistry = new ServerSessionRegistry<CrucibleSession>();
 
-	private CrucibleUserCache userCache;
+	private final Map<String, CrucibleSession> sessions = sessionRegistry.getSessions();
+
+	private final ConcurrentMap<String, CrucibleRepositoryCatalog> repositoryCatalogs
+			= new ConcurrentHashMap<String, CrucibleRepositoryCatalog>();
+
+	private final ConcurrentMap<String, CrucibleMetricsCatalog> metricsCatalogs
+			= new ConcurrentHashMap<String, CrucibleMetricsCatalog>();
+
+	private volatile CrucibleUserCache userCache;
 
 	private HttpSessionCallback callback;
 
 	private final Logger logger;
 
-	public CrucibleServerFacadeImpl(@NotNull Logger logger, CrucibleUserCache userCache,
+	private final BoundedTaskRunner taskRunner;
+
+	private volatile int maxConcurrentRequestsPerServer = AbstractHttpSession.DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+	/**
+	 * @param userCache used to fill in display names of comment authors; a new {@link CrucibleUserDirectory}
+	 *                  is used if <code>null</code>
+	 */
+	public CrucibleServerFacadeImpl(@NotNull Logger logger, @Nullable CrucibleUserCache userCache,
 			@NotNull HttpSessionCallback callback) {
+		this(logger, userCache, callback, BoundedTaskRunner.getShared());
+	}
+
+	public CrucibleServerFacadeImpl(@NotNull Logger logger, @Nullable CrucibleUserCache userCache,
+			@NotNull HttpSessionCallback callback, @NotNull BoundedTaskRunner taskRunner) {
 		this.logger = logger;
-		this.userCache = userCache;
+		this.userCache = userCache != null ? userCache : new CrucibleUserDirectory();
 		this.callback = callback;
+		this.taskRunner = taskRunner;
 	}
 
-	public void setUserCache(CrucibleUserCache newCache) {
-		userCache = newCache;
+	public int getMaxConcurrentRequestsPerServer() {
+		return maxConcurrentRequestsPerServer;
+	}
+
+	/**
+	 * Sets how many requests may be sent to a single Crucible server at the same time. The limit applies to all
+	 * requests of the server's session (see {@link AbstractHttpSession#setMaxConcurrentRequests(int)}), whichever
+	 * method sends them, and also bounds the comment fetches which
+	 * {@link #getReviewWithComments(ConnectionCfg, PermId, ReviewItemCommentsHandler)} runs in parallel.
+	 * The default of 1 keeps the old, fully sequential behaviour.
+	 *
+	 * @param maxConcurrentRequestsPerServer limit of requests in flight per server, must be positive
+	 */
+	public void setMaxConcurrentRequestsPerServer(int maxConcurrentRequestsPerServer) {
+		if (maxConcurrentRequestsPerServer < 1) {
+			throw new IllegalArgumentException("maxConcurrentRequestsPerServer must be positive: "
+					+ maxConcurrentRequestsPerServer);
+		}
+		this.maxConcurrentRequestsPerServer = maxConcurrentRequestsPerServer;
+		for (CrucibleSession session : sessions.values()) {
+			applyConcurrencyLimit(session);
+		}
+	}
+
+	private void applyConcurrencyLimit(CrucibleSession session) {
+		if (session instanceof AbstractHttpSession) {
+			((AbstractHttpSession) session).setMaxConcurrentRequests(maxConcurrentRequestsPerServer);
+		}
+	}
+
+	public void setUserCache(@Nullable CrucibleUserCache newCache) {
+		userCache = newCache != null ? newCache : new CrucibleUserDirectory();
 	}
 
 	public ServerType getServerType() {
 		return ServerType.CRUCIBLE_SERVER;
 	}
 
-	public synchronized CrucibleSession getSession(ConnectionCfg server) throws RemoteApiException,
+	public long getFailedLoginRetryDelay() {
+		return sessionRegistry.getFailureRetryDelay();
+	}
+
+	/**
+	 * Sets for how long a failed login to a server is reported to further callers instead of being attempted again.
+	 *
+	 * @param failedLoginRetryDelay delay in milliseconds, 0 to attempt the login on every call
+	 * @see ServerSessionRegistry
+	 */
+	public void setFailedLoginRetryDelay(long failedLoginRetryDelay) {
+		sessionRegistry.setFailureRetryDelay(failedLoginRetryDelay);
+	}
+
+	/**
+	 * Sends read state changes of comments still waiting in any session (see
+	 * {@link CrucibleSession#flushPendingReadStates()}). To be called when the application shuts down.
+	 */
+	public void flushPendingReadStates() {
+		for (CrucibleSession session : sessions.values()) {
+			session.flushPendingReadStates();
+		}
+	}
+
+	/**
+	 * @return repositories of given server, shared by all its sessions (for the same user)
+	 */
+	@NotNull
+	public CrucibleRepositoryCatalog getRepositoryCatalog(@NotNull ConnectionCfg server) {
+		final String key = server.getUrl() + server.getUsername();
+		CrucibleRepositoryCatalog catalog = repositoryCatalogs.get(key);
+		if (catalog == null) {
+			final CrucibleRepositoryCatalog newCatalog = new CrucibleRepositoryCatalog();
+			catalog = repositoryCatalogs.putIfAbsent(key, newCatalog);
+			if (catalog == null) {
+				catalog = newCatalog;
+			}
+		}
+		return catalog;
+	}
+
+	/**
+	 * @return metrics definitions of given server, shared by all its sessions
+	 */
+	@NotNull
+	public CrucibleMetricsCatalog getMetricsCatalog(@NotNull ConnectionCfg server) {
+		final String key = server.getUrl();
+		CrucibleMetricsCatalog catalog = metricsCatalogs.get(key);
+		if (catalog == null) {
+			final CrucibleMetricsCatalog newCatalog = new CrucibleMetricsCatalog();
+			catalog = metricsCatalogs.putIfAbsent(key, newCatalog);
+			if (catalog == null) {
+				catalog = newCatalog;
+			}
+		}
+		return catalog;
+	}
+
+	/**
+	 * Returns logged in session for given server. Callers asking for different servers do not wait for each other,
+	 * concurrent callers asking for the same server share a single login.
+	 */
+	public CrucibleSession getSession(final ConnectionCfg server) throws RemoteApiException,
 			ServerPasswordNotProvidedException {
 		String key = server.getUrl() + server.getUsername() + server.getPassword();
-		CrucibleSession session = sessions.get(key);
-		if (session == null) {
-			try {
-				session = new CrucibleSessionImpl(server, callback, logger);
-				// workaround for ACC-31
-				if (!session.isLoggedIn()) {
-					session.login();
+		try {
+			return sessionRegistry.getSession(key, new ServerSessionRegistry.SessionLoader<CrucibleSession>() {
+				public boolean isReady(@NotNull CrucibleSession session) {
+					// stored sessions renew themselves when needed
+					return true;
 				}
-				sessions.put(key, session);
-			} catch (RemoteApiMalformedUrlException e) {
-				if (server.getPassword().length() > 0 || !UrlUtil.isUrlValid(server.getUrl())) {
-					throw e;
-				} else {
-					// this is probably never thrown
-					// todo remove it
-					throw new ServerPasswordNotProvidedException(e);
+
+				@NotNull
+				public CrucibleSession load(@Nullable CrucibleSession session) throws RemoteApiException {
+					final CrucibleSessionImpl newSession = new CrucibleSessionImpl(server, callback, logger);
+					newSession.setRepositoryCatalog(getRepositoryCatalog(server));
+					newSession.setMetricsCatalog(getMetricsCatalog(server));
+					applyConcurrencyLimit(newSession);
+					// workaround for ACC-31
+					if (!newSession.isLoggedIn()) {
+						newSession.login();
+					}
+					return newSession;
 				}
+			});
+		} catch (RemoteApiMalformedUrlException e) {
+			if (server.getPassword().length() > 0 || !UrlUtil.isUrlValid(server.getUrl())) {
+				throw e;
+			} else {
+				// this is probably never thrown
+				// todo remove it
+				throw new ServerPasswordNotProvidedException(e);
 			}
 		}
-		return session;
 	}
 
 	private void fixUserName(ConnectionCfg server, Comment comment) {
@@ -517,6 +653,58 @@ public class CrucibleServerFacadeImpl implements CrucibleServerFacade2 {
 		return session.getReview(permId);
 	}
 
+	public Review getReviewWithComments(ConnectionCfg server, PermId permId,
+			@Nullable final ReviewItemCommentsHandler handler) throws RemoteApiException,
+			ServerPasswordNotProvidedException {
+		final CrucibleSession session = getSession(server);
+		final Review review = session.getReview(permId);
+		if (review == null) {
+			return null;
+		}
+		if (session.getCrucibleVersionInfo().isVersion2OrGreater()) {
+			// details of the review already contain its items and comments
+			if (handler != null && review.getFiles() != null) {
+				for (CrucibleFileInfo file : review.getFiles()) {
+					handler.handle(file, file.getVersionedComments());
+				}
+			}
+			return review;
+		}
+
+		final List<CrucibleFileInfo> files = new ArrayList<CrucibleFileInfo>(session.getFiles(permId));
+		final List<Callable<List<VersionedComment>>> tasks = new ArrayList<Callable<List<VersionedComment>>>();
+		for (final CrucibleFileInfo file : files) {
+			tasks.add(new Callable<List<VersionedComment>>() {
+				public List<VersionedComment> call() throws RemoteApiException {
+					final List<VersionedComment> comments = session.getVersionedComments(review, file);
+					if (handler != null) {
+						synchronized (handler) {
+							handler.handle(file, comments);
+						}
+					}
+					return comments;
+				}
+			});
+		}
+
+		final List<VersionedComment> comments = new ArrayList<VersionedComment>();
+		try {
+			for (Future<List<VersionedComment>> result : taskRunner.invokeAll(tasks, maxConcurrentRequestsPerServer)) {
+				comments.addAll(result.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RemoteApiException("Loading review " + permId.getId() + " interrupted", e);
+		} catch (CancellationException e) {
+			throw new RemoteApiException("Loading review " + permId.getId() + " cancelled", e);
+		} catch (ExecutionException e) {
+			// the task exception has the stack trace of a pool thread, keep it as the cause
+			throw new RemoteApiException(e.getCause().getMessage(), e.getCause());
+		}
+		review.setFilesAndVersionedComments(files, comments);
+		return review;
+	}
+
 	public List<Reviewer> getReviewers(ConnectionCfg server, PermId permId) throws RemoteApiException,
 			ServerPasswordNotProvidedException {
 		CrucibleSession session = getSession(server);
@@ -40,6 +40,7 @@ import com.atlassian.theplugin.commons.crucible.api.model.changes.Changes;
 import com.atlassian.theplugin.commons.remoteapi.ProductSession;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginException;
+import org.apache.commons.httpclient.methods.multipart.PartSource;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -54,6 +55,11 @@ public interface CrucibleSession extends ProductSession {
 
 	CrucibleVersionInfo getServerVersion() throws RemoteApiException;
 
+	/**
+	 * @return version of the server, retrieved once per session
+	 */
+	CrucibleVersionInfo getCrucibleVersionInfo() throws RemoteApiException;
+
 	@Nullable
 	BasicReview createReview(Review review) throws RemoteApiException;
 
@@ -66,6 +72,19 @@ public interface CrucibleSession extends ProductSession {
 	@Nullable
 	BasicReview createReviewFromPatch(Review review, String patch) throws RemoteApiException;
 
+	/**
+	 * Creates review from a patch which is read from its source while it is being sent, so it does not have to fit
+	 * in memory.
+	 *
+	 * @param patch      source of the patch, see {@link UploadItem} for requirements
+	 * @param charset    charset of the patch
+	 * @param anchorData used only by Crucible 2.4 and newer
+	 * @param listener   receives progress of sending the patch
+	 */
+	@Nullable
+	BasicReview createReviewFromPatch(Review review, @NotNull PartSource patch, @NotNull String charset,
+			@Nullable PatchAnchorData anchorData, @Nullable UploadProgressListener listener) throws RemoteApiException;
+
 	@Nullable
 	BasicReview createReviewFromRevision(Review review, List<String> revisions) throws RemoteApiException;
 
@@ -88,6 +107,17 @@ public interface CrucibleSession extends ProductSession {
 	@Nullable
 	BasicReview addPatchToReview(PermId permId, String repository, String patch) throws RemoteApiException;
 
+	/**
+	 * Adds a patch which is read from its source while it is being sent, so it does not have to fit in memory.
+	 *
+	 * @param patch    source of the patch, see {@link UploadItem} for requirements
+	 * @param charset  charset of the patch
+	 * @param listener receives progress of sending the patch
+	 */
+	@Nullable
+	BasicReview addPatchToReview(PermId permId, String repository, @NotNull PartSource patch, @NotNull String charset,
+			@Nullable UploadProgressListener listener) throws RemoteApiException;
+
 	void addReviewers(PermId permId, Set<String> userNames) throws RemoteApiException;
 
 	void removeReviewer(PermId permId, String userNames) throws RemoteApiException;
@@ -108,12 +138,24 @@ public interface CrucibleSession extends ProductSession {
 	 */
 	List<BasicReview> getReviewsInStates(List<State> states) throws RemoteApiException;
 
+	/**
+	 * Like {@link #getReviewsInStates(List)}, but passes reviews to the handler one by one while the response
+	 * is being read, instead of collecting all of them first.
+	 */
+	void getReviewsInStates(@Nullable List<State> states, @NotNull ReviewHandler handler) throws RemoteApiException;
+
 	List<BasicReview> getAllReviews() throws RemoteApiException;
 
 	List<BasicReview> getReviewsForFilter(PredefinedFilter filter) throws RemoteApiException;
 
+	void getReviewsForFilter(@NotNull PredefinedFilter filter, @NotNull ReviewHandler handler)
+			throws RemoteApiException;
+
 	List<BasicReview> getReviewsForCustomFilter(CustomFilter filter) throws RemoteApiException;
 
+	void getReviewsForCustomFilter(@NotNull CustomFilter filter, @NotNull ReviewHandler handler)
+			throws RemoteApiException;
+
 
 	List<BasicReview> getAllReviewsForFile(String repoName, String path) throws RemoteApiException;
 
@@ -159,6 +201,13 @@ public interface CrucibleSession extends ProductSession {
 	@Nullable
 	BasicReview createReviewFromUpload(Review review, Collection<UploadItem> uploadItems) throws RemoteApiException;
 
+	/**
+	 * @param listener receives progress of uploading content of all items
+	 */
+	@Nullable
+	BasicReview createReviewFromUpload(Review review, Collection<UploadItem> uploadItems,
+			@Nullable UploadProgressListener listener) throws RemoteApiException;
+
 	byte[] getFileContent(String contentUrl, boolean ignoreBase) throws RemoteApiException;
 
 	byte[] getFileContent(String contentUrl) throws RemoteApiException;
@@ -167,12 +216,38 @@ public interface CrucibleSession extends ProductSession {
 
 	void addItemsToReview(PermId permId, Collection<UploadItem> uploadItems) throws RemoteApiException;
 
+	/**
+	 * @param listener receives progress of uploading content of all items
+	 */
+	void addItemsToReview(PermId permId, Collection<UploadItem> uploadItems,
+			@Nullable UploadProgressListener listener) throws RemoteApiException;
+
+    /**
+     * Implementations may send the change later, together with other read state changes
+     * (see {@link #flushPendingReadStates()}).
+     *
+     * @throws RemoteApiException if the change is sent immediately and fails, or if earlier changes of comments
+     *                            of the review could not be sent
+     */
     void markCommentRead(PermId reviewId, PermId commentId) throws RemoteApiException;
 
+    /**
+     * Implementations may send the change later, together with other read state changes
+     * (see {@link #flushPendingReadStates()}).
+     *
+     * @throws RemoteApiException if the change is sent immediately and fails, or if earlier changes of comments
+     *                            of the review could not be sent
+     */
     void markCommentLeaveRead(PermId reviewId, PermId commentId) throws RemoteApiException;
 
     void markAllCommentsRead(PermId reviewId) throws RemoteApiException;
 
+    /**
+     * Sends read state changes of comments which have not been sent yet, e.g. before the application exits.
+     * Changes which cannot be sent stay queued and are retried later.
+     */
+    void flushPendingReadStates();
+
 	@NotNull
 	Changes getChanges(@NotNull String repository, @Nullable String oldestCsid, boolean includeOldest,
 			@Nullable String newestCsid, boolean includeNewest, @Nullable Integer max) throws RemoteApiException;
@@ -180,4 +255,7 @@ public interface CrucibleSession extends ProductSession {
     List<BasicReview> getReviewsForIssue(@NotNull String jiraIssueKey, @NotNull int maxReturn)
             throws RemoteApiException;
 
+    void getReviewsForIssue(@NotNull String jiraIssueKey, int maxReturn, @NotNull ReviewHandler handler)
+            throws RemoteApiException;
+
 }
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api;
+
+import com.atlassian.theplugin.commons.crucible.api.model.BasicReview;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives reviews one by one, as they are read from the server response, e.g. by
+ * {@link CrucibleSession#getReviewsForFilter(com.atlassian.theplugin.commons.crucible.api.model.PredefinedFilter,
+ * ReviewHandler)}.
+ * <p/>
+ * The response is being read while the handler is called, so the handler should not issue further requests
+ * with the same session (which may be limited to a single request at a time) - collect what is needed and do it
+ * afterwards.
+ */
+public interface ReviewHandler {
+
+	/**
+	 * @param review next review from the response
+	 * @return <code>true</code> to continue, <code>false</code> to stop reading the response (remaining reviews
+	 *         are not parsed)
+	 * @throws RemoteApiException to abort reading the response; it is rethrown to the caller
+	 */
+	boolean handle(@NotNull BasicReview review) throws RemoteApiException;
+}
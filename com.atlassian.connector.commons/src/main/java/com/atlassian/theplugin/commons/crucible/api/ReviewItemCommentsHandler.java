@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api;
+
+import com.atlassian.theplugin.commons.crucible.api.model.CrucibleFileInfo;
+import com.atlassian.theplugin.commons.crucible.api.model.VersionedComment;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Receives versioned comments of review items as soon as they are loaded, e.g. by
+ * {@link com.atlassian.connector.commons.crucible.CrucibleServerFacade2#getReviewWithComments(
+ * com.atlassian.connector.commons.api.ConnectionCfg, com.atlassian.theplugin.commons.crucible.api.model.PermId,
+ * ReviewItemCommentsHandler)}, so that a large review can be shown before all its items are loaded.
+ * <p/>
+ * Items are handled in no particular order, possibly by different threads, but never concurrently.
+ */
+public interface ReviewItemCommentsHandler {
+
+	/**
+	 * @param reviewItem item of the review
+	 * @param comments   versioned comments of the item (with their replies)
+	 */
+	void handle(@NotNull CrucibleFileInfo reviewItem, @NotNull List<VersionedComment> comments);
+}
@@ -1,8 +1,26 @@
 package com.atlassian.theplugin.commons.crucible.api;
 
+import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
+import org.apache.commons.httpclient.methods.multipart.FilePartSource;
+import org.apache.commons.httpclient.methods.multipart.PartSource;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-// @todo ideally byte arrays should be replaced by input streams
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * File to be uploaded to a review, as its old and new content.
+ * <p/>
+ * Content can be given as byte arrays or as {@link PartSource}s, which are read only while the item is being
+ * uploaded, so that large files do not have to be held in memory. A source may be read more than once
+ * (e.g. when the server redirects the upload), so {@link PartSource#createInputStream()} should open
+ * a new stream on every call. {@link PartSource#getLength()} may return -1 if the length is not known in advance.
+ */
 public class UploadItem {
 	public static final String DEFAULT_CONTENT_TYPE = FilePart.DEFAULT_CONTENT_TYPE;
 	public static final String DEFAULT_CHARSET = FilePart.DEFAULT_CHARSET;
@@ -10,6 +28,8 @@ public class UploadItem {
 	private final String fileName;
 	private final byte[] oldContent;
 	private final byte[] newContent;
+	private final PartSource oldSource;
+	private final PartSource newSource;
 	private final String oldType;
 	private final String newType;
 	private final String oldCharset;
@@ -32,22 +52,88 @@ public class UploadItem {
 		this.fileName = fileName;
 		this.oldType = oldType;
 		this.oldContent = oldContent;
+		this.oldSource = oldContent != null ? new ByteArrayPartSource(fileName, oldContent) : null;
 		this.oldCharset = oldCharset;
 		this.newType = newType;
 		this.newContent = newContent;
+		this.newSource = newContent != null ? new ByteArrayPartSource(fileName, newContent) : null;
+		this.newCharset = newCharset;
+	}
+
+	private UploadItem(@NotNull final String fileName, final String oldType, final String oldCharset,
+			@Nullable final PartSource oldSource, final String newType, final String newCharset,
+			@Nullable final PartSource newSource) {
+		this.fileName = fileName;
+		this.oldType = oldType;
+		this.oldContent = null;
+		this.oldSource = oldSource;
+		this.oldCharset = oldCharset;
+		this.newType = newType;
+		this.newContent = null;
+		this.newSource = newSource;
 		this.newCharset = newCharset;
 	}
 
+	/**
+	 * @param oldSource old content, <code>null</code> if the file did not exist
+	 * @param newSource new content, <code>null</code> if the file has been deleted
+	 * @return item with content read from given sources while it is being uploaded
+	 */
+	@NotNull
+	public static UploadItem fromSources(@NotNull final String fileName, final String oldType, final String oldCharset,
+			@Nullable final PartSource oldSource, final String newType, final String newCharset,
+			@Nullable final PartSource newSource) {
+		return new UploadItem(fileName, oldType, oldCharset, oldSource, newType, newCharset, newSource);
+	}
+
+	/**
+	 * @param oldFile old content, <code>null</code> if the file did not exist
+	 * @param newFile new content, <code>null</code> if the file has been deleted
+	 * @return item with content read from given files while it is being uploaded
+	 */
+	@NotNull
+	public static UploadItem fromFiles(@NotNull final String fileName, @Nullable final File oldFile,
+			@Nullable final File newFile) throws FileNotFoundException {
+		return fromSources(fileName, DEFAULT_CONTENT_TYPE, DEFAULT_CHARSET,
+				oldFile != null ? new FilePartSource(fileName, oldFile) : null,
+				DEFAULT_CONTENT_TYPE, DEFAULT_CHARSET,
+				newFile != null ? new FilePartSource(fileName, newFile) : null);
+	}
+
 	public String getFileName() {
 		return fileName;
 	}
 
+	/**
+	 * Reads the whole content into memory if it was given as a {@link PartSource}; use {@link #getOldSource()}
+	 * to avoid that.
+	 */
 	public byte[] getOldContent() {
-		return oldContent;
+		return oldContent != null ? oldContent : readFully(oldSource);
 	}
 
+	/**
+	 * Reads the whole content into memory if it was given as a {@link PartSource}; use {@link #getNewSource()}
+	 * to avoid that.
+	 */
 	public byte[] getNewContent() {
-		return newContent;
+		return newContent != null ? newContent : readFully(newSource);
+	}
+
+	/**
+	 * @return old content, <code>null</code> if the file did not exist
+	 */
+	@Nullable
+	public PartSource getOldSource() {
+		return oldSource;
+	}
+
+	/**
+	 * @return new content, <code>null</code> if the file has been deleted
+	 */
+	@Nullable
+	public PartSource getNewSource() {
+		return newSource;
 	}
 
 	public String getOldContentType() {
@@ -65,4 +151,20 @@ public class UploadItem {
 	public String getNewCharset() {
 		return newCharset;
 	}
+
+	@Nullable
+	private static byte[] readFully(@Nullable PartSource source) {
+		if (source == null) {
+			return null;
+		}
+		InputStream in = null;
+		try {
+			in = source.createInputStream();
+			return IOUtils.toByteArray(in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read content of " + source.getFileName(), e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
 }
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api;
+
+/**
+ * Receives progress of uploading content to a review, e.g. by
+ * {@link CrucibleSession#addItemsToReview(com.atlassian.theplugin.commons.crucible.api.model.PermId,
+ * java.util.Collection, UploadProgressListener)}.
+ * <p/>
+ * Progress is reported in bytes of the uploaded content as it is read, before any compression.
+ * It is reported by the uploading thread.
+ */
+public interface UploadProgressListener {
+
+	/**
+	 * @param bytesSent  bytes of content sent so far
+	 * @param bytesTotal bytes of all content to be sent or -1 if not known in advance
+	 */
+	void progress(long bytesSent, long bytesTotal);
+}
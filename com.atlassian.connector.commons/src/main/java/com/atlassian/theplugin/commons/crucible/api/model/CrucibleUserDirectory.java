@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.model;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.crucible.CrucibleServerFacade2;
+import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Users of Crucible servers, used to fill in display names of comment authors and to look up reviewers.
+ * <p/>
+ * The whole user list of a server is fetched in one request when it is first needed. Afterwards it is used for
+ * {@link #getTtl()} ms and then fetched again in the background, while lookups keep being answered from the old
+ * list. A name which is not in the list is reported as unknown without sending any request; it causes the list
+ * to be fetched again (in the background) at most once per {@link #MIN_RELOAD_INTERVAL} ms. A failed fetch
+ * is not retried for {@link #FAILURE_RETRY_DELAY} ms.
+ * <p/>
+ * Users are kept in sorted arrays, so that both lookups by name and prefix searches are binary searches. Users
+ * of one list share a single instance of each distinct avatar URL.
+ * <p/>
+ * This class is thread-safe. Lookups do not lock; concurrent callers needing a list which is not loaded yet
+ * wait for a single request.
+ */
+public class CrucibleUserDirectory implements CrucibleUserCache {
+
+	public static final long DEFAULT_TTL = 30 * 60 * 1000;
+
+	static final long MIN_RELOAD_INTERVAL = 60 * 1000;
+
+	static final long FAILURE_RETRY_DELAY = 30 * 1000;
+
+	private static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, "crucible-user-refresher-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private final Executor refresher;
+
+	private volatile long ttl = DEFAULT_TTL;
+
+	public CrucibleUserDirectory() {
+		this(REFRESHER);
+	}
+
+	/**
+	 * @param refresher executes background refreshes of user lists
+	 */
+	CrucibleUserDirectory(@NotNull Executor refresher) {
+		this.refresher = refresher;
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * @param ttl how long (in ms) a user list is used before it is fetched again in the background
+	 */
+	public void setTtl(long ttl) {
+		if (ttl < 0) {
+			throw new IllegalArgumentException("ttl must not be negative: " + ttl);
+		}
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Makes the next lookup for given server fetch its user list again.
+	 */
+	public void invalidate(@NotNull ConnectionCfg server) {
+		entries.remove(getKey(server));
+	}
+
+	/**
+	 * Forgets users of all servers.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	@Nullable
+	public User getUser(@NotNull CrucibleServerFacade2 facade, ConnectionCfg server, String userId,
+			boolean fetchIfNotExist) {
+		final Entry entry = getEntry(server);
+		final Snapshot snapshot = fetchIfNotExist ? entry.getSnapshot(facade, server) : entry.snapshot;
+		User user = snapshot != null ? snapshot.get(userId) : null;
+		if (user == null) {
+			user = entry.added.get(userId);
+		}
+		if (user == null && fetchIfNotExist && snapshot != null
+				&& System.currentTimeMillis() - snapshot.loadTime >= MIN_RELOAD_INTERVAL) {
+			// possibly a user created since the list was fetched
+			entry.refreshInBackground(facade, server);
+		}
+		return user;
+	}
+
+	public void addUser(ConnectionCfg server, User user) {
+		getEntry(server).added.put(user.getUsername().intern(), user);
+	}
+
+	/**
+	 * Finds users whose user name, display name or any word of display name starts with given prefix (ignoring
+	 * case), e.g. to suggest reviewers while their name is being typed.
+	 *
+	 * @param prefix     beginning of the name
+	 * @param maxResults maximum number of users returned
+	 * @return matching users ordered by the matching name, empty if the user list cannot be fetched
+	 */
+	@NotNull
+	public List<User> findUsers(@NotNull CrucibleServerFacade2 facade, @NotNull ConnectionCfg server,
+			@NotNull String prefix, int maxResults) {
+		final Snapshot snapshot = getEntry(server).getSnapshot(facade, server);
+		if (snapshot == null || maxResults <= 0) {
+			return Collections.emptyList();
+		}
+		return snapshot.find(prefix.toLowerCase(Locale.ENGLISH), maxResults);
+	}
+
+	@NotNull
+	private Entry getEntry(@NotNull ConnectionCfg server) {
+		final String key = getKey(server);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			final Entry newEntry = new Entry();
+			entry = entries.putIfAbsent(key, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		return entry;
+	}
+
+	@NotNull
+	private static String getKey(@NotNull ConnectionCfg server) {
+		// users visible to different accounts may differ
+		return server.getUrl() + server.getUsername();
+	}
+
+	/**
+	 * Users of a single server.
+	 */
+	private final class Entry {
+		private final Object loadLock = new Object();
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private final ConcurrentMap<String, User> added = new ConcurrentHashMap<String, User>();
+
+		@Nullable
+		private volatile Snapshot snapshot;
+
+		private volatile long failureTime;
+
+		/**
+		 * @return user list, fetching it if it has not been fetched yet, or <code>null</code> if that failed
+		 */
+		@Nullable
+		private Snapshot getSnapshot(@NotNull CrucibleServerFacade2 facade, @NotNull ConnectionCfg server) {
+			final Snapshot current = snapshot;
+			if (current != null) {
+				if (System.currentTimeMillis() - current.loadTime >= ttl) {
+					refreshInBackground(facade, server);
+				}
+				return current;
+			}
+			synchronized (loadLock) {
+				if (snapshot == null && System.currentTimeMillis() - failureTime >= FAILURE_RETRY_DELAY) {
+					load(facade, server);
+				}
+				return snapshot;
+			}
+		}
+
+		private void refreshInBackground(@NotNull final CrucibleServerFacade2 facade,
+				@NotNull final ConnectionCfg server) {
+			if (System.currentTimeMillis() - failureTime < FAILURE_RETRY_DELAY || !refreshing.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				refresher.execute(new Runnable() {
+					public void run() {
+						try {
+							load(facade, server);
+						} finally {
+							refreshing.set(false);
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				refreshing.set(false);
+			}
+		}
+
+		private void load(@NotNull CrucibleServerFacade2 facade, @NotNull ConnectionCfg server) {
+			final List<User> users;
+			try {
+				users = facade.getUsers(server);
+			} catch (RemoteApiException e) {
+				failureTime = System.currentTimeMillis();
+				return;
+			} catch (ServerPasswordNotProvidedException e) {
+				failureTime = System.currentTimeMillis();
+				return;
+			}
+			final Snapshot loaded = new Snapshot(users);
+			snapshot = loaded;
+			failureTime = 0;
+			for (String name : added.keySet()) {
+				if (loaded.get(name) != null) {
+					added.remove(name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * User list fetched at one time.
+	 */
+	private static final class Snapshot {
+		private final long loadTime = System.currentTimeMillis();
+
+		/** sorted */
+		private final String[] names;
+
+		/** in the order of <code>names</code> */
+		private final User[] users;
+
+		/** sorted lower case user names, display names and words of display names */
+		private final String[] searchKeys;
+
+		/** indices in <code>users</code>, in the order of <code>searchKeys</code> */
+		private final int[] searchUsers;
+
+		private Snapshot(@NotNull Collection<User> fetched) {
+			final Map<String, User> byName = new HashMap<String, User>(fetched.size() * 2);
+			final Map<String, String> avatarUrls = new HashMap<String, String>();
+			for (User user : fetched) {
+				if (byName.containsKey(user.getUsername())) {
+					continue;
+				}
+				String avatarUrl = user.getAvatarUrl();
+				if (avatarUrl != null) {
+					final String shared = avatarUrls.get(avatarUrl);
+					if (shared != null) {
+						avatarUrl = shared;
+					} else {
+						avatarUrls.put(avatarUrl, avatarUrl);
+					}
+				}
+				byName.put(user.getUsername(), new User(user.getUsername().intern(), user.displayName, avatarUrl));
+			}
+
+			names = byName.keySet().toArray(new String[byName.size()]);
+			Arrays.sort(names);
+			users = new User[names.length];
+			for (int i = 0; i < names.length; i++) {
+				users[i] = byName.get(names[i]);
+				names[i] = users[i].getUsername();
+			}
+
+			final List<SearchKey> keys = new ArrayList<SearchKey>(users.length * 2);
+			for (int i = 0; i < users.length; i++) {
+				final Set<String> userKeys = new LinkedHashSet<String>();
+				userKeys.add(users[i].getUsername().toLowerCase(Locale.ENGLISH));
+				final String displayName = users[i].displayName;
+				if (displayName != null) {
+					final String lowerCase = displayName.trim().toLowerCase(Locale.ENGLISH);
+					userKeys.add(lowerCase);
+					for (int space = lowerCase.indexOf(' '); space != -1; space = lowerCase.indexOf(' ', space + 1)) {
+						if (space + 1 < lowerCase.length() && lowerCase.charAt(space + 1) != ' ') {
+							userKeys.add(lowerCase.substring(space + 1));
+						}
+					}
+				}
+				for (String key : userKeys) {
+					keys.add(new SearchKey(key, i));
+				}
+			}
+			Collections.sort(keys, SearchKey.COMPARATOR);
+			searchKeys = new String[keys.size()];
+			searchUsers = new int[keys.size()];
+			for (int i = 0; i < searchKeys.length; i++) {
+				searchKeys[i] = keys.get(i).key;
+				searchUsers[i] = keys.get(i).user;
+			}
+		}
+
+		@Nullable
+		private User get(@Nullable String name) {
+			if (name == null) {
+				return null;
+			}
+			final int i = Arrays.binarySearch(names, name);
+			return i >= 0 ? users[i] : null;
+		}
+
+		@NotNull
+		private List<User> find(@NotNull String lowerCasePrefix, int maxResults) {
+			int i = Arrays.binarySearch(searchKeys, lowerCasePrefix);
+			if (i < 0) {
+				i = -i - 1;
+			}
+			final Set<User> found = new LinkedHashSet<User>();
+			for (; i < searchKeys.length && found.size() < maxResults && searchKeys[i].startsWith(lowerCasePrefix); i++) {
+				found.add(users[searchUsers[i]]);
+			}
+			return new ArrayList<User>(found);
+		}
+	}
+
+	private static final class SearchKey {
+		private static final Comparator<SearchKey> COMPARATOR = new Comparator<SearchKey>() {
+			public int compare(SearchKey k1, SearchKey k2) {
+				return k1.key.compareTo(k2.key);
+			}
+		};
+
+		private final String key;
+
+		private final int user;
+
+		private SearchKey(@NotNull String key, int user) {
+			this.key = key;
+			this.user = user;
+		}
+	}
+}
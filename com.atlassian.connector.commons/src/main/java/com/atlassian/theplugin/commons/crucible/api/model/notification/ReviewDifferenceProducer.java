@@ -3,6 +3,7 @@ package com.atlassian.theplugin.commons.crucible.api.model.notification;
 import com.atlassian.theplugin.commons.crucible.api.model.Comment;
 import com.atlassian.theplugin.commons.crucible.api.model.CrucibleAction;
 import com.atlassian.theplugin.commons.crucible.api.model.CrucibleFileInfo;
+import com.atlassian.theplugin.commons.crucible.api.model.PermId;
 import com.atlassian.theplugin.commons.crucible.api.model.Review;
 import com.atlassian.theplugin.commons.crucible.api.model.Reviewer;
 import com.atlassian.theplugin.commons.util.MiscUtil;
@@ -11,28 +12,67 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.atlassian.theplugin.commons.util.MiscUtil.isModified;
 
 /**
+ * Comments are compared using {@link ReviewFingerprint}s first, so only comments of changed review items
+ * (or changed general comments) are looked at one by one.
+ * <p/>
  * This class is NOT thread-safe!
  */
 public class ReviewDifferenceProducer {
 	private final Review oldReview;
 	private final Review newReview;
+	@Nullable
+	private ReviewFingerprint oldFingerprint;
+	@Nullable
+	private ReviewFingerprint newFingerprint;
 	private final List<CrucibleNotification> notifications = new ArrayList<CrucibleNotification>();
 	private boolean shortEqual;
 	private boolean filesEqual;
 	private int changes;
 
 	public ReviewDifferenceProducer(@NotNull final Review oldReview, @NotNull final Review newReview) {
+		this(oldReview, null, newReview);
+	}
+
+	/**
+	 * @param oldFingerprint fingerprint of <code>oldReview</code> kept from the previous comparison
+	 *                       (see {@link #getNewFingerprint()}), or <code>null</code> to compute it
+	 */
+	public ReviewDifferenceProducer(@NotNull final Review oldReview, @Nullable ReviewFingerprint oldFingerprint,
+			@NotNull final Review newReview) {
 		this.oldReview = oldReview;
+		this.oldFingerprint = oldFingerprint;
 		this.newReview = newReview;
 	}
 
+	/**
+	 * @return fingerprint of the new review, to be passed as the old one when the review is checked next time
+	 */
+	@NotNull
+	public ReviewFingerprint getNewFingerprint() {
+		if (newFingerprint == null) {
+			newFingerprint = ReviewFingerprint.of(newReview);
+		}
+		return newFingerprint;
+	}
+
+	@NotNull
+	private ReviewFingerprint getOldFingerprint() {
+		if (oldFingerprint == null) {
+			oldFingerprint = oldReview == newReview ? getNewFingerprint() : ReviewFingerprint.of(oldReview);
+		}
+		return oldFingerprint;
+	}
+
 	public boolean isShortEqual() {
 		return shortEqual;
 	}
@@ -89,7 +129,7 @@ public class ReviewDifferenceProducer {
 		}
 		filesEqual = areFilesEqual();
 		// check comments status
-			changes = checkComments(oldReview, newReview, true);
+		changes = checkComments();
 
 		return notifications;
 	}
@@ -206,107 +246,104 @@ public class ReviewDifferenceProducer {
 		}
 	}
 
-	private int checkComments(final Review anOldReview, final Review aNewReview,
-			final boolean checkFiles) {
+	private int checkComments() {
+		final ReviewFingerprint oldPrint = getOldFingerprint();
+		final ReviewFingerprint newPrint = getNewFingerprint();
+		if (oldPrint.hasSameComments(newPrint)) {
+			return 0;
+		}
+
 		int commentChanges = 0;
+		if (!oldPrint.hasSameGeneralComments(newPrint)) {
+			final List<CrucibleNotification> removed = new ArrayList<CrucibleNotification>();
+			commentChanges += compareComments(getAllCommentsRecursively(oldReview.getGeneralComments()),
+					getAllCommentsRecursively(newReview.getGeneralComments()), removed);
+			notifications.addAll(removed);
+		}
 
-		Set<Comment> allOldComments = getAllCommentsRecursively(anOldReview.getGeneralComments());
+		final Map<PermId, CrucibleFileInfo> oldFiles = new HashMap<PermId, CrucibleFileInfo>();
+		for (CrucibleFileInfo oldFile : getFiles(oldReview)) {
+			if (!oldFiles.containsKey(oldFile.getPermId())) {
+				oldFiles.put(oldFile.getPermId(), oldFile);
+			}
+		}
+		int versionedChanges = 0;
+		// removed comments are reported after all new and updated ones
+		final List<CrucibleNotification> removed = new ArrayList<CrucibleNotification>();
+		for (CrucibleFileInfo newFile : getFiles(newReview)) {
+			final CrucibleFileInfo oldFile = oldFiles.get(newFile.getPermId());
+			if (oldFile == null) {
+				// comments of removed items are not reported as removed, all comments of new ones are new
+				versionedChanges += compareComments(Collections.<Comment>emptySet(),
+						getAllCommentsRecursively(newFile.getVersionedComments()), null);
+			} else if (!oldPrint.hasSameVersionedComments(newPrint, newFile.getPermId())) {
+				versionedChanges += compareComments(getAllCommentsRecursively(oldFile.getVersionedComments()),
+						getAllCommentsRecursively(newFile.getVersionedComments()), removed);
+			}
+		}
+		notifications.addAll(removed);
 
-		Set<Comment> allNewComments = getAllCommentsRecursively(aNewReview.getGeneralComments());
+		if (versionedChanges > 0) {
+			commentChanges += versionedChanges;
+			filesEqual = false;
+		}
+		return commentChanges;
+	}
 
-		for (Comment comment : allNewComments) {
-			Comment existing = null;
-			for (Comment oldComment : allOldComments) {
-				if (comment.getPermId().getId().equals(oldComment.getPermId().getId())) {
-					existing = oldComment;
-					break;
-				}
+	/**
+	 * Adds notifications about new and updated comments.
+	 *
+	 * @param removed receives notifications about removed comments, <code>null</code> if they are not reported
+	 * @return number of changed comments
+	 */
+	private int compareComments(@NotNull Set<Comment> oldComments, @NotNull Set<Comment> newComments,
+			@Nullable List<CrucibleNotification> removed) {
+		int commentChanges = 0;
+		final Map<String, Comment> oldById = new HashMap<String, Comment>(oldComments.size() * 2);
+		for (Comment oldComment : oldComments) {
+			if (oldComment.getPermId() != null && !oldById.containsKey(oldComment.getPermId().getId())) {
+				oldById.put(oldComment.getPermId().getId(), oldComment);
 			}
+		}
 
+		final Set<PermId> newIds = new HashSet<PermId>(newComments.size() * 2);
+		for (Comment comment : newComments) {
+			Comment existing = null;
+			if (comment.getPermId() != null) {
+				newIds.add(comment.getPermId());
+				existing = oldById.get(comment.getPermId().getId());
+			}
 			if ((existing == null)
 					|| commentContentsDiffer(existing, comment)
-                    || existing.getReadState() != comment.getReadState()) {
-                commentChanges++;
+					|| existing.getReadState() != comment.getReadState()) {
+				commentChanges++;
 				if (existing == null) {
-					notifications.add(new NewCommentNotification(aNewReview, comment));
+					notifications.add(new NewCommentNotification(newReview, comment));
 				} else {
-                    if (commentContentsDiffer(existing, comment)) {
-						notifications.add(new UpdatedCommentNotification(aNewReview, comment, existing.isDraft()));
-                    }
-                    checkAndNotifyReadUnreadStateChange(aNewReview, comment, existing);
-                }
-			}
-		}
-
-		Set<Comment> deletedGen = getDeletedComments(allOldComments, allNewComments);
-		for (Comment gc : deletedGen) {
-			commentChanges++;
-			notifications.add(new RemovedCommentNotification(aNewReview, gc));
-		}
-
-		if (checkFiles) {
-			int versionedChanges = 0;
-			for (CrucibleFileInfo fileInfo : aNewReview.getFiles()) {
-				allNewComments = getAllCommentsRecursively(fileInfo.getVersionedComments());
-				for (Comment comment : allNewComments) {
-					// PL-2047:
-					if (comment == null) {
-						continue;
-					}
-					Comment existing = null;
-					for (CrucibleFileInfo oldFile : anOldReview.getFiles()) {
-						if (oldFile.getPermId().equals(fileInfo.getPermId())) {
-							allOldComments = getAllCommentsRecursively(oldFile.getVersionedComments());
-							for (Comment oldComment : allOldComments) {
-								// PL-2047: //pstefaniak - I've got no idea why NPE could be thrown here :(
-								if (comment.getPermId() == null || oldComment == null || oldComment.getPermId() == null) {
-									continue;
-								}
-								if (comment.getPermId().getId().equals(oldComment.getPermId().getId())) {
-									existing = oldComment;
-									break;
-								}
-							}
-						}
-					}
-					if ((existing == null)
-							|| commentContentsDiffer(existing, comment)
-                            || existing.getReadState() != comment.getReadState()) {
-						versionedChanges++;
-						if (existing == null) {
-							notifications.add(new NewCommentNotification(aNewReview, comment));
-						} else {
-                            if (commentContentsDiffer(existing, comment)) {
-								notifications.add(new UpdatedCommentNotification(aNewReview, comment, existing.isDraft()));
-                            }
-                            checkAndNotifyReadUnreadStateChange(aNewReview, comment, existing);
-                        }
+					if (commentContentsDiffer(existing, comment)) {
+						notifications.add(new UpdatedCommentNotification(newReview, comment, existing.isDraft()));
 					}
+					checkAndNotifyReadUnreadStateChange(newReview, comment, existing);
 				}
 			}
+		}
 
-			for (CrucibleFileInfo oldFile : anOldReview.getFiles()) {
-				for (CrucibleFileInfo newFile : aNewReview.getFiles()) {
-					if (oldFile.getPermId().equals(newFile.getPermId())) {
-						Set<Comment> oldVersionedComments = getAllCommentsRecursively(oldFile.getVersionedComments());
-						Set<Comment> newVersionedComments = getAllCommentsRecursively(newFile.getVersionedComments());
-						Set<Comment> deletedVcs = getDeletedComments(oldVersionedComments, newVersionedComments);
-						for (Comment vc : deletedVcs) {
-							versionedChanges++;
-							notifications.add(new RemovedCommentNotification(aNewReview, vc));
-						}
-					}
+		if (removed != null) {
+			for (Comment oldComment : oldComments) {
+				if (!newIds.contains(oldComment.getPermId())) {
+					commentChanges++;
+					removed.add(new RemovedCommentNotification(newReview, oldComment));
 				}
 			}
-
-			if (versionedChanges > 0) {
-				commentChanges += versionedChanges;
-				filesEqual = false;
-			}
 		}
 		return commentChanges;
 	}
 
+	@NotNull
+	private static Collection<CrucibleFileInfo> getFiles(@NotNull Review review) {
+		return review.getFiles() != null ? review.getFiles() : Collections.<CrucibleFileInfo>emptySet();
+	}
+
 	@NotNull
 	private <T extends Comment> Set<Comment> getAllCommentsRecursively(@NotNull List<T> generalComments) {
 		Set<Comment> result = MiscUtil.buildHashSet();
@@ -331,24 +368,4 @@ public class ReviewDifferenceProducer {
                 || existing.isDefectRaised() != comment.isDefectRaised()
 				|| existing.isDraft() != comment.isDraft();
     }
-
-	private <T extends Comment> Set<T> getDeletedComments(Collection<T> org, Collection<T> modified) {
-		final Set<T> deletedList = MiscUtil.buildHashSet();
-
-		for (T corg : org) {
-			boolean found = false;
-			for (T cnew : modified) {
-				if (cnew != null && cnew.getPermId() != null && corg != null
-                        && cnew.getPermId().equals(corg.getPermId())) {
-					found = true;
-					break;
-				}
-			}
-			if (!found) {
-				deletedList.add(corg);
-			}
-		}
-
-		return deletedList;
-	}
 }
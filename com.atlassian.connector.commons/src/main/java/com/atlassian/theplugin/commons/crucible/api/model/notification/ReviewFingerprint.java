@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.model.notification;
+
+import com.atlassian.theplugin.commons.crucible.api.model.Comment;
+import com.atlassian.theplugin.commons.crucible.api.model.CrucibleFileInfo;
+import com.atlassian.theplugin.commons.crucible.api.model.PermId;
+import com.atlassian.theplugin.commons.crucible.api.model.Review;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact hashes of the comments of a review: one for all general comments (with replies), one for the versioned
+ * comments of each review item and one for the whole review. {@link ReviewDifferenceProducer} compares them to skip
+ * parts of the review which have not changed, and looks at individual comments only where the hashes differ.
+ * <p/>
+ * The hash of a comment covers everything the difference producer reports changes of (id, message, defect and
+ * draft flags and read state); hashes of comment groups do not depend on the order of comments. A group containing
+ * a comment without id has no hash and is always compared comment by comment.
+ * <p/>
+ * A fingerprint describes the review at the time it was computed, so it can be stored instead of being computed
+ * again only as long as the review is not modified. Instances are immutable.
+ */
+public final class ReviewFingerprint {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	@Nullable
+	private final Long generalComments;
+
+	/** hashes of versioned comments by review item, <code>null</code> values for groups without hash */
+	private final Map<PermId, Long> files;
+
+	@Nullable
+	private final Long hash;
+
+	private ReviewFingerprint(@Nullable Long generalComments, @NotNull Map<PermId, Long> files) {
+		this.generalComments = generalComments;
+		this.files = files;
+		Long total = generalComments;
+		for (Map.Entry<PermId, Long> file : files.entrySet()) {
+			if (total == null || file.getValue() == null) {
+				total = null;
+				break;
+			}
+			total = total + mix(hash(file.getKey().getId()) ^ file.getValue());
+		}
+		this.hash = total;
+	}
+
+	@NotNull
+	public static ReviewFingerprint of(@NotNull Review review) {
+		final Collection<CrucibleFileInfo> reviewItems = review.getFiles();
+		final Map<PermId, Long> files = new HashMap<PermId, Long>(reviewItems != null ? reviewItems.size() * 2 : 0);
+		if (reviewItems != null) {
+			for (CrucibleFileInfo file : reviewItems) {
+				if (!files.containsKey(file.getPermId())) {
+					files.put(file.getPermId(), hashComments(file.getVersionedComments()));
+				}
+			}
+		}
+		return new ReviewFingerprint(hashComments(review.getGeneralComments()), files);
+	}
+
+	/**
+	 * @return <code>true</code> if comments of both reviews are (almost certainly) the same
+	 */
+	public boolean hasSameComments(@NotNull ReviewFingerprint other) {
+		return isSame(hash, other.hash);
+	}
+
+	boolean hasSameGeneralComments(@NotNull ReviewFingerprint other) {
+		return isSame(generalComments, other.generalComments);
+	}
+
+	/**
+	 * @return <code>true</code> if both reviews contain given review item and its comments are (almost certainly)
+	 *         the same
+	 */
+	boolean hasSameVersionedComments(@NotNull ReviewFingerprint other, @NotNull PermId file) {
+		return isSame(files.get(file), other.files.get(file));
+	}
+
+	private static boolean isSame(@Nullable Long hash1, @Nullable Long hash2) {
+		return hash1 != null && hash1.equals(hash2);
+	}
+
+	@Nullable
+	private static Long hashComments(@Nullable List<? extends Comment> comments) {
+		if (comments == null) {
+			return 0L;
+		}
+		long sum = 0;
+		for (Comment comment : comments) {
+			if (comment == null || comment.getPermId() == null || comment.getPermId().getId() == null) {
+				return null;
+			}
+			sum += hashComment(comment);
+			final Long replies = hashComments(comment.getReplies());
+			if (replies == null) {
+				return null;
+			}
+			sum += replies;
+		}
+		return sum;
+	}
+
+	private static long hashComment(@NotNull Comment comment) {
+		long h = hash(comment.getPermId().getId());
+		h = h * FNV_PRIME ^ hash(comment.getMessage());
+		h = h * FNV_PRIME ^ (comment.isDefectRaised() ? 1 : 2);
+		h = h * FNV_PRIME ^ (comment.isDraft() ? 1 : 2);
+		h = h * FNV_PRIME ^ (comment.getReadState() != null ? comment.getReadState().ordinal() + 1 : 0);
+		return mix(h);
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the characters; unlike {@link String#hashCode()} it does not make different short strings
+	 * collide easily.
+	 */
+	private static long hash(@Nullable String s) {
+		if (s == null) {
+			return 0;
+		}
+		long h = FNV_OFFSET;
+		for (int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * FNV_PRIME;
+		}
+		return h;
+	}
+
+	/**
+	 * Spreads the bits, so that sums of hashes of similar comments do not cancel out.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.model.PermId;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.atlassian.theplugin.commons.util.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read states of comments waiting to be sent to the server, so that marking many comments as read in a short time
+ * (e.g. while scrolling through a review) does not send a request for each of them immediately.
+ * <p/>
+ * Changes of each review are collected for {@link #getDelay()} ms after the first one and then sent in the
+ * background. Repeated changes of the same comment are sent once, with the last state. Marking all comments of
+ * a review as read makes the pending "read" marks of that review unnecessary, so they are not sent at all.
+ * <p/>
+ * Pending changes of a review are sent before other operations which depend on them ({@link #flush(PermId)}) and
+ * all of them can be sent at once, e.g. on shutdown ({@link #flushAll()}). Changes are always sent in the order
+ * in which they were made.
+ * <p/>
+ * Changes which could not be sent are queued again (unless the comment was changed again in the meantime) and
+ * retried after {@link #getDelay()} ms. After {@link #MAX_ATTEMPTS} failed attempts in a row they are dropped and
+ * the failure is reported to the next caller changing read state of comments of that review (after its own change
+ * has been queued or sent).
+ * <p/>
+ * This class is thread-safe. Changes of different reviews are sent independently; a review being sent does not
+ * hold up changes (or background sending) of other reviews.
+ */
+final class CommentReadStateQueue {
+
+	static final long DEFAULT_DELAY = 500;
+
+	/**
+	 * How many times in a row sending changes of a review may fail before they are dropped.
+	 */
+	static final int MAX_ATTEMPTS = 3;
+
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "crucible-read-state-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Sends read states to the server, i.e. the session using this queue.
+	 */
+	interface Sender {
+		void sendReadState(@NotNull PermId reviewId, @NotNull PermId commentId, boolean leaveUnread)
+				throws RemoteApiException;
+
+		void sendAllRead(@NotNull PermId reviewId) throws RemoteApiException;
+	}
+
+	private final Sender sender;
+
+	private final Logger logger;
+
+	private final ScheduledExecutorService scheduler;
+
+	/** pending changes by review, in the order they were made; guarded by <code>this</code> */
+	private final Map<PermId, Map<PermId, Boolean>> pending = new HashMap<PermId, Map<PermId, Boolean>>();
+
+	/** failed attempts in a row by review; guarded by <code>this</code> */
+	private final Map<PermId, Integer> attempts = new HashMap<PermId, Integer>();
+
+	/** failures of dropped changes by review, not reported yet; guarded by <code>this</code> */
+	private final Map<PermId, RemoteApiException> failures = new HashMap<PermId, RemoteApiException>();
+
+	/** held while sending changes of a review, so that they are never sent concurrently or out of order */
+	private final ConcurrentMap<PermId, ReentrantLock> sendLocks = new ConcurrentHashMap<PermId, ReentrantLock>();
+
+	private volatile long delay = DEFAULT_DELAY;
+
+	CommentReadStateQueue(@NotNull Sender sender, @NotNull Logger logger) {
+		this(sender, logger, SCHEDULER);
+	}
+
+	CommentReadStateQueue(@NotNull Sender sender, @NotNull Logger logger, @NotNull ScheduledExecutorService scheduler) {
+		this.sender = sender;
+		this.logger = logger;
+		this.scheduler = scheduler;
+	}
+
+	long getDelay() {
+		return delay;
+	}
+
+	/**
+	 * @param delay how long (in ms) changes are collected before they are sent; 0 sends every change immediately
+	 */
+	void setDelay(long delay) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("delay must not be negative: " + delay);
+		}
+		this.delay = delay;
+	}
+
+	/**
+	 * @param leaveUnread <code>true</code> to mark the comment as "leave unread", <code>false</code> to mark it read
+	 * @throws RemoteApiException if changes are sent immediately (delay is 0) and sending fails, or if earlier changes
+	 *                            of the review had to be dropped (this change is queued or sent nevertheless)
+	 */
+	void add(@NotNull final PermId reviewId, @NotNull PermId commentId, boolean leaveUnread) throws RemoteApiException {
+		final long currentDelay = delay;
+		if (currentDelay == 0) {
+			final ReentrantLock lock = getSendLock(reviewId);
+			lock.lock();
+			try {
+				flushLocked(reviewId);
+				sender.sendReadState(reviewId, commentId, leaveUnread);
+			} finally {
+				lock.unlock();
+			}
+			checkFailure(reviewId);
+			return;
+		}
+		synchronized (this) {
+			Map<PermId, Boolean> states = pending.get(reviewId);
+			if (states == null) {
+				states = new LinkedHashMap<PermId, Boolean>();
+				pending.put(reviewId, states);
+				schedule(reviewId, currentDelay);
+			}
+			// the last change decides and is sent in its position
+			states.remove(commentId);
+			states.put(commentId, leaveUnread);
+		}
+		checkFailure(reviewId);
+	}
+
+	/**
+	 * Marks all comments of the review as read. Pending "leave unread" marks are sent first, pending "read" marks are
+	 * dropped. If sending fails, changes which were not sent stay queued.
+	 *
+	 * @throws RemoteApiException if sending fails, or if earlier changes of the review had to be dropped (all comments
+	 *                            are marked as read nevertheless)
+	 */
+	void markAllRead(@NotNull PermId reviewId) throws RemoteApiException {
+		final ReentrantLock lock = getSendLock(reviewId);
+		lock.lock();
+		try {
+			final Map<PermId, Boolean> states = take(reviewId);
+			final Map<PermId, Boolean> unsent = states != null ? states : new LinkedHashMap<PermId, Boolean>();
+			try {
+				for (Iterator<Map.Entry<PermId, Boolean>> it = unsent.entrySet().iterator(); it.hasNext();) {
+					final Map.Entry<PermId, Boolean> state = it.next();
+					if (state.getValue()) {
+						sender.sendReadState(reviewId, state.getKey(), true);
+						it.remove();
+					}
+				}
+				sender.sendAllRead(reviewId);
+			} catch (RemoteApiException e) {
+				// nothing is lost, including the "read" marks
+				requeue(reviewId, unsent);
+				throw e;
+			}
+		} finally {
+			lock.unlock();
+		}
+		checkFailure(reviewId);
+	}
+
+	/**
+	 * Drops pending change of a comment, e.g. because it is going to be removed.
+	 */
+	synchronized void discard(@NotNull PermId reviewId, @Nullable PermId commentId) {
+		final Map<PermId, Boolean> states = pending.get(reviewId);
+		if (states != null) {
+			states.remove(commentId);
+		}
+	}
+
+	/**
+	 * Sends pending changes of the review now. Returns after all changes made so far (including those being sent
+	 * in the background) have been sent. Changes which cannot be sent are queued again, see the class description.
+	 */
+	void flush(@NotNull PermId reviewId) {
+		final ReentrantLock lock = getSendLock(reviewId);
+		lock.lock();
+		try {
+			flushLocked(reviewId);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends pending changes of all reviews now. Changes which cannot be sent are queued again.
+	 */
+	void flushAll() {
+		final List<PermId> reviewIds;
+		synchronized (this) {
+			reviewIds = new ArrayList<PermId>(pending.keySet());
+		}
+		for (PermId reviewId : reviewIds) {
+			flush(reviewId);
+		}
+	}
+
+	synchronized boolean hasPendingChanges() {
+		return !pending.isEmpty();
+	}
+
+	private void schedule(@NotNull final PermId reviewId, long currentDelay) {
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					// the scheduler is shared by all queues, it must not wait for a review being sent by another thread
+					final ReentrantLock lock = getSendLock(reviewId);
+					if (!lock.tryLock()) {
+						schedule(reviewId, delay > 0 ? delay : DEFAULT_DELAY);
+						return;
+					}
+					try {
+						flushLocked(reviewId);
+					} finally {
+						lock.unlock();
+					}
+				}
+			}, currentDelay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// sent with the next flush
+			logger.warn("Cannot schedule sending read state of comments of review " + reviewId.getId(), e);
+		}
+	}
+
+	@NotNull
+	private ReentrantLock getSendLock(@NotNull PermId reviewId) {
+		ReentrantLock lock = sendLocks.get(reviewId);
+		if (lock == null) {
+			final ReentrantLock newLock = new ReentrantLock();
+			lock = sendLocks.putIfAbsent(reviewId, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * Sends pending changes of the review, the caller holds the send lock of the review.
+	 */
+	private void flushLocked(@NotNull PermId reviewId) {
+		final Map<PermId, Boolean> states = take(reviewId);
+		if (states == null) {
+			return;
+		}
+		try {
+			send(reviewId, states);
+			synchronized (this) {
+				attempts.remove(reviewId);
+			}
+		} catch (RemoteApiException e) {
+			failed(reviewId, states, e);
+		} catch (RuntimeException e) {
+			failed(reviewId, states, new RemoteApiException(e.getMessage(), e));
+		}
+	}
+
+	@Nullable
+	private synchronized Map<PermId, Boolean> take(@NotNull PermId reviewId) {
+		return pending.remove(reviewId);
+	}
+
+	/**
+	 * Sends the changes, removing each one from <code>states</code> once it is sent.
+	 */
+	private void send(@NotNull PermId reviewId, @NotNull Map<PermId, Boolean> states) throws RemoteApiException {
+		for (Iterator<Map.Entry<PermId, Boolean>> it = states.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<PermId, Boolean> state = it.next();
+			sender.sendReadState(reviewId, state.getKey(), state.getValue());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Queues changes which were not sent again or drops them if sending has failed too many times.
+	 */
+	private void failed(@NotNull PermId reviewId, @NotNull Map<PermId, Boolean> unsent, @NotNull RemoteApiException e) {
+		synchronized (this) {
+			final Integer previous = attempts.get(reviewId);
+			final int failedAttempts = previous != null ? previous + 1 : 1;
+			if (failedAttempts >= MAX_ATTEMPTS) {
+				attempts.remove(reviewId);
+				failures.put(reviewId, e);
+			} else {
+				attempts.put(reviewId, failedAttempts);
+				requeue(reviewId, unsent);
+			}
+		}
+		logger.warn("Cannot update read state of comments of review " + reviewId.getId(), e);
+	}
+
+	/**
+	 * Queues changes which were not sent again, before the changes made in the meantime.
+	 */
+	private synchronized void requeue(@NotNull PermId reviewId, @NotNull Map<PermId, Boolean> unsent) {
+		if (unsent.isEmpty()) {
+			return;
+		}
+		final Map<PermId, Boolean> newer = pending.get(reviewId);
+		if (newer != null) {
+			for (PermId commentId : newer.keySet()) {
+				unsent.remove(commentId);
+			}
+			unsent.putAll(newer);
+		} else {
+			schedule(reviewId, delay);
+		}
+		pending.put(reviewId, unsent);
+	}
+
+	/**
+	 * Reports (once) the failure of changes of the review which were dropped.
+	 */
+	private void checkFailure(@NotNull PermId reviewId) throws RemoteApiException {
+		final RemoteApiException failure;
+		synchronized (this) {
+			failure = failures.remove(reviewId);
+		}
+		if (failure != null) {
+			throw new RemoteApiException("Cannot update read state of comments of review " + reviewId.getId()
+					+ ": " + failure.getMessage(), failure);
+		}
+	}
+}
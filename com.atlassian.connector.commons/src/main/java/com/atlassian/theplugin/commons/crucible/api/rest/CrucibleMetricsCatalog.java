@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.model.CustomFieldDef;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Definitions of review metrics of a Crucible server, by metrics version.
+ * <p/>
+ * A metrics version never changes once defined on the server, so definitions are fetched once per version and kept
+ * until {@link #invalidate()} is called. Failed requests are not remembered, the next lookup tries again.
+ * <p/>
+ * One catalog can be shared by all sessions of the same server. This class is thread-safe; lookups of loaded
+ * versions do not lock and concurrent lookups of a version not loaded yet wait for a single request.
+ */
+public final class CrucibleMetricsCatalog {
+
+	/**
+	 * Source of metrics definitions, i.e. the session using this catalog.
+	 */
+	interface MetricsLoader {
+		@NotNull
+		List<CustomFieldDef> loadMetrics(int version) throws RemoteApiException;
+	}
+
+	private final ConcurrentMap<Integer, FutureTask<List<CustomFieldDef>>> definitions
+			= new ConcurrentHashMap<Integer, FutureTask<List<CustomFieldDef>>>();
+
+	/**
+	 * Makes the next lookup of every version fetch its definitions again.
+	 */
+	public void invalidate() {
+		definitions.clear();
+	}
+
+	/**
+	 * Never sends a request, so it can be used to show metrics only if they happen to be known already.
+	 *
+	 * @return definitions of given metrics version or <code>null</code> if they have not been loaded (yet)
+	 */
+	@Nullable
+	public List<CustomFieldDef> getIfLoaded(int version) {
+		final FutureTask<List<CustomFieldDef>> task = definitions.get(version);
+		if (task == null || !task.isDone()) {
+			return null;
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			// cannot happen for a completed task
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (CancellationException e) {
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param version metrics version
+	 * @param loader  used to fetch the definitions when they are not known yet
+	 * @return unmodifiable list of metrics definitions
+	 */
+	@NotNull
+	List<CustomFieldDef> get(final int version, @NotNull final MetricsLoader loader) throws RemoteApiException {
+		FutureTask<List<CustomFieldDef>> task = definitions.get(version);
+		if (task == null) {
+			final FutureTask<List<CustomFieldDef>> newTask = new FutureTask<List<CustomFieldDef>>(
+					new Callable<List<CustomFieldDef>>() {
+						public List<CustomFieldDef> call() throws RemoteApiException {
+							return Collections.unmodifiableList(new ArrayList<CustomFieldDef>(loader.loadMetrics(version)));
+						}
+					});
+			task = definitions.putIfAbsent(version, newTask);
+			if (task == null) {
+				task = newTask;
+				newTask.run();
+			}
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RemoteApiException("Interrupted while retrieving metrics version " + version, e);
+		} catch (CancellationException e) {
+			definitions.remove(version, task);
+			throw new RemoteApiException("Retrieving metrics version " + version + " cancelled", e);
+		} catch (ExecutionException e) {
+			definitions.remove(version, task);
+			if (e.getCause() instanceof RemoteApiException) {
+				throw copyOf((RemoteApiException) e.getCause());
+			}
+			throw new RemoteApiException(e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return new exception of the same kind as <code>e</code>, so that the failure of a request shared by several
+	 *         waiting threads is never thrown (and its stack trace filled in) by more than one of them
+	 */
+	@NotNull
+	private static RemoteApiException copyOf(@NotNull RemoteApiException e) {
+		if (e instanceof RemoteApiSessionExpiredException) {
+			return new RemoteApiSessionExpiredException(e.getMessage(), e);
+		} else if (e instanceof RemoteApiLoginException) {
+			return new RemoteApiLoginException(e.getMessage(), e);
+		}
+		return new RemoteApiException(e.getMessage(), e);
+	}
+}
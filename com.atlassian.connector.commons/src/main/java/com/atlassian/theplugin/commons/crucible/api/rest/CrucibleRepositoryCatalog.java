@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.model.Repository;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.atlassian.theplugin.commons.util.BoundedTaskRunner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Repositories of a Crucible server, used to resolve repository names of review items.
+ * <p/>
+ * The whole repository list is fetched in one request and kept for {@link #getTtl()} ms, so resolving names of all
+ * files in a review does not cost a request per repository. Details of SVN repositories (needed for their URLs)
+ * are fetched once per repository while the list is valid, in parallel if a review spans several of them.
+ * A name which is not in the list causes the list to be fetched again, at most once per
+ * {@link #MIN_RELOAD_INTERVAL} ms.
+ * <p/>
+ * One catalog can be shared by all sessions of the same server and user. This class is thread-safe; concurrent
+ * requests for an expired list wait for a single request instead of sending their own ones.
+ */
+public final class CrucibleRepositoryCatalog {
+
+	public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+	static final long MIN_RELOAD_INTERVAL = 10 * 1000;
+
+	private static final int MAX_PARALLEL_REQUESTS = 4;
+
+	/**
+	 * Source of repository data, i.e. the session using this catalog.
+	 */
+	interface RepositoryLoader {
+		@NotNull
+		List<Repository> loadRepositories() throws RemoteApiException;
+
+		/**
+		 * @return repository with all details or <code>null</code> if the server did not return them
+		 */
+		@Nullable
+		Repository loadRepositoryDetails(@NotNull Repository repository) throws RemoteApiException;
+	}
+
+	private final Object loadLock = new Object();
+
+	private volatile Snapshot snapshot;
+
+	private volatile long ttl = DEFAULT_TTL;
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * @param ttl how long (in ms) the repository list is used before it is fetched again; 0 fetches it every time
+	 */
+	public void setTtl(long ttl) {
+		if (ttl < 0) {
+			throw new IllegalArgumentException("ttl must not be negative: " + ttl);
+		}
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Makes the next lookup fetch the repository list again.
+	 */
+	public void invalidate() {
+		snapshot = null;
+	}
+
+	/**
+	 * Replaces the repository list with one fetched by other means (e.g. a call to
+	 * {@link com.atlassian.theplugin.commons.crucible.api.CrucibleSession#getRepositories()}).
+	 */
+	public void update(@NotNull Collection<Repository> repositories) {
+		snapshot = new Snapshot(repositories);
+	}
+
+	/**
+	 * @param names   repository names
+	 * @param loader  used to fetch the repository list and details when they are not known or have expired
+	 * @return repositories by name, including details of SVN repositories; names not known to the server are omitted
+	 */
+	@NotNull
+	Map<String, Repository> resolve(@NotNull Collection<String> names, @NotNull RepositoryLoader loader)
+			throws RemoteApiException {
+		if (names.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Snapshot current = getSnapshot(loader);
+		if (!current.repositories.keySet().containsAll(names)
+				&& System.currentTimeMillis() - current.loadTime >= MIN_RELOAD_INTERVAL) {
+			// possibly a repository added since the list was fetched
+			current = reload(loader, current);
+		}
+
+		final Map<String, Repository> result = new HashMap<String, Repository>();
+		final List<Repository> missingDetails = new ArrayList<Repository>();
+		for (String name : new LinkedHashSet<String>(names)) {
+			final Repository repository = current.repositories.get(name);
+			if (repository == null) {
+				continue;
+			}
+			if (!"svn".equals(repository.getType())) {
+				result.put(name, repository);
+				continue;
+			}
+			final Repository details = current.details.get(name);
+			if (details != null) {
+				result.put(name, details);
+			} else {
+				missingDetails.add(repository);
+			}
+		}
+		if (!missingDetails.isEmpty()) {
+			loadDetails(missingDetails, loader, current, result);
+		}
+		return result;
+	}
+
+	private void loadDetails(@NotNull List<Repository> repositories, @NotNull final RepositoryLoader loader,
+			@NotNull final Snapshot current, @NotNull Map<String, Repository> result) throws RemoteApiException {
+		final List<Callable<Repository>> tasks = new ArrayList<Callable<Repository>>(repositories.size());
+		for (final Repository repository : repositories) {
+			tasks.add(new Callable<Repository>() {
+				public Repository call() throws RemoteApiException {
+					final Repository details = loader.loadRepositoryDetails(repository);
+					// without details there is nothing more to learn about this repository, do not ask again
+					final Repository known = details != null ? details : repository;
+					current.details.put(repository.getName(), known);
+					return known;
+				}
+			});
+		}
+
+		final List<Future<Repository>> futures;
+		try {
+			futures = BoundedTaskRunner.getShared().invokeAll(tasks, MAX_PARALLEL_REQUESTS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RemoteApiException("Interrupted while retrieving repositories", e);
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				result.put(repositories.get(i).getName(), futures.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RemoteApiException("Interrupted while retrieving repositories", e);
+			} catch (CancellationException e) {
+				throw new RemoteApiException("Retrieving repository " + repositories.get(i).getName() + " cancelled", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RemoteApiException) {
+					throw (RemoteApiException) e.getCause();
+				}
+				throw new RemoteApiException(e.getCause().getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@NotNull
+	private Snapshot getSnapshot(@NotNull RepositoryLoader loader) throws RemoteApiException {
+		final Snapshot current = snapshot;
+		if (current != null && !current.isExpired(ttl)) {
+			return current;
+		}
+		return reload(loader, current);
+	}
+
+	/**
+	 * Fetches the repository list unless another thread has replaced <code>stale</code> in the meantime.
+	 */
+	@NotNull
+	private Snapshot reload(@NotNull RepositoryLoader loader, @Nullable Snapshot stale) throws RemoteApiException {
+		synchronized (loadLock) {
+			final Snapshot current = snapshot;
+			if (current != null && current != stale && !current.isExpired(ttl)) {
+				return current;
+			}
+			final Snapshot loaded = new Snapshot(loader.loadRepositories());
+			snapshot = loaded;
+			return loaded;
+		}
+	}
+
+	/**
+	 * Repository list fetched at one time, with details of repositories fetched while it is valid.
+	 */
+	private static final class Snapshot {
+		private final Map<String, Repository> repositories;
+
+		private final ConcurrentMap<String, Repository> details = new ConcurrentHashMap<String, Repository>();
+
+		private final long loadTime = System.currentTimeMillis();
+
+		private Snapshot(@NotNull Collection<Repository> repositories) {
+			final Map<String, Repository> byName = new HashMap<String, Repository>(repositories.size() * 2);
+			for (Repository repository : repositories) {
+				if (repository.getName() != null && !byName.containsKey(repository.getName())) {
+					byName.put(repository.getName(), repository);
+				}
+			}
+			this.repositories = byName;
+		}
+
+		private boolean isExpired(long ttl) {
+			return System.currentTimeMillis() - loadTime >= ttl;
+		}
+	}
+}
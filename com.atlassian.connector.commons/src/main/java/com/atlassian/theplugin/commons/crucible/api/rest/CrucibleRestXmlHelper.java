@@ -57,6 +57,7 @@ import com.atlassian.theplugin.commons.crucible.api.model.changes.Revision;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.util.LoggerImpl;
 import com.atlassian.theplugin.commons.util.MiscUtil;
+import com.atlassian.theplugin.commons.util.TimestampParser;
 import com.atlassian.theplugin.commons.util.XmlUtil;
 import org.apache.commons.lang.StringUtils;
 import org.jdom.CDATA;
@@ -1133,56 +1134,27 @@ public final class CrucibleRestXmlHelper {
 
 	private static final DateTimeFormatter COMMENT_TIME_FORMAT_BASE = DateTimeFormat
 			.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-	private static final DateTimeFormatter[] COMMENT_TIME_FORMATS = {COMMENT_TIME_FORMAT_BASE,
-			DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS"),
-			DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"),
-			DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss'Z'"),
-			DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss")};
-	//2010-10-26T09:12:48-07:00
-	//"2010-11-05T15:20:54.856Z'
 
 	public static Date parseDateTime(String date) {
-		IllegalArgumentException ae = null;
-
-		if (date != null && !date.equals("")) {
-			for (DateTimeFormatter f : COMMENT_TIME_FORMATS) {
-				try {
-					Date parsedDate = f.parseDateTime(date).toDate();
-					return parsedDate;
-				} catch (IllegalArgumentException e) {
-					ae = e;
-				}
-			}
-
-			if (ae != null) {
-				throw ae;
-			}
+		if (date == null || date.length() == 0) {
+			return null;
 		}
-
-		return null;
+		final long millis = TimestampParser.parseMillis(date, TimestampParser.ZULU_AS_LOCAL_TIME);
+		if (millis == TimestampParser.INVALID) {
+			throw new IllegalArgumentException("Invalid format: \"" + date + "\"");
+		}
+		return new Date(millis);
 	}
 
 	private static DateTime parseJodaDateTime(String date) throws ParseException {
-		ParseException pe = null;
-
-		if (date != null && !date.equals("")) {
-			for (DateTimeFormatter f : COMMENT_TIME_FORMATS) {
-				try {
-					return f.parseDateTime(date);
-				} catch (IllegalArgumentException e) {
-					//ignore invalid format try harder
-					pe = new ParseException("Invalid date string encountered [" + date + "]", 0);
-
-				} catch (RuntimeException e) {
-					pe = new ParseException("Cannot convert string [" + date + "] to date", 0);
-				}
-			}
-			//unable to parse string throw exception
-			if (pe != null) {
-				throw pe;
-			}
+		if (date == null || date.length() == 0) {
+			return null;
 		}
-		return null;
+		final long millis = TimestampParser.parseMillis(date, TimestampParser.ZULU_AS_LOCAL_TIME);
+		if (millis == TimestampParser.INVALID) {
+			throw new ParseException("Invalid date string encountered [" + date + "]", 0);
+		}
+		return new DateTime(millis);
 	}
 
 	private static ReviewType parseReviewType(String reviewType) throws ParseException {
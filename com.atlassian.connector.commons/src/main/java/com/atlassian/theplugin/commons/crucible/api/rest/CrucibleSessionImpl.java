@@ -20,7 +20,9 @@ import com.atlassian.connector.commons.api.ConnectionCfg;
 import com.atlassian.theplugin.commons.VersionedVirtualFile;
 import com.atlassian.theplugin.commons.crucible.api.CrucibleSession;
 import com.atlassian.theplugin.commons.crucible.api.PathAndRevision;
+import com.atlassian.theplugin.commons.crucible.api.ReviewHandler;
 import com.atlassian.theplugin.commons.crucible.api.UploadItem;
+import com.atlassian.theplugin.commons.crucible.api.UploadProgressListener;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicProject;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicReview;
 import com.atlassian.theplugin.commons.crucible.api.model.Comment;
@@ -52,16 +54,22 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiLoginFailedException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
 import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
+import com.atlassian.theplugin.commons.remoteapi.rest.GzipRequestEntity;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
+import com.atlassian.theplugin.commons.remoteapi.rest.HttpStreamResponse;
 import com.atlassian.theplugin.commons.util.Logger;
 import com.atlassian.theplugin.commons.util.MiscUtil;
 import com.atlassian.theplugin.commons.util.ProductVersionUtil;
 import com.atlassian.theplugin.commons.util.StringUtil;
+import com.atlassian.theplugin.commons.util.XmlParserRegistry;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
 import org.apache.commons.httpclient.methods.multipart.Part;
+import org.apache.commons.httpclient.methods.multipart.PartSource;
 import org.apache.commons.lang.StringUtils;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -70,6 +78,7 @@ import org.jdom.xpath.XPath;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
@@ -79,7 +88,6 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -170,6 +178,8 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     private static final String ADD_PATCH = "/addPatch";
 
+    private static final String PATCH_CHARSET = "UTF-8";
+
     private static final String ADD_FILE = "/addFile";
 
     private static final String MARK_READ = "/markAsRead";
@@ -186,9 +196,30 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     private String authToken;
 
-    private final Map<String, Repository> repositories = new HashMap<String, Repository>();
+    @NotNull
+    private volatile CrucibleRepositoryCatalog repositoryCatalog = new CrucibleRepositoryCatalog();
+
+    private final CrucibleRepositoryCatalog.RepositoryLoader repositoryLoader
+            = new CrucibleRepositoryCatalog.RepositoryLoader() {
+        @NotNull
+        public List<Repository> loadRepositories() throws RemoteApiException {
+            return retrieveRepositories();
+        }
+
+        @Nullable
+        public Repository loadRepositoryDetails(@NotNull Repository repository) throws RemoteApiException {
+            return retrieveSvnRepository(repository.getName());
+        }
+    };
+
+    private volatile CrucibleMetricsCatalog metricsCatalog = new CrucibleMetricsCatalog();
 
-    private final Map<String, List<CustomFieldDef>> metricsDefinitions = new HashMap<String, List<CustomFieldDef>>();
+    private final CrucibleMetricsCatalog.MetricsLoader metricsLoader = new CrucibleMetricsCatalog.MetricsLoader() {
+        @NotNull
+        public List<CustomFieldDef> loadMetrics(int version) throws RemoteApiException {
+            return retrieveMetrics(version);
+        }
+    };
 
     @Nullable
     private volatile CrucibleVersionInfo crucibleVersionInfo;
@@ -197,6 +228,10 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     private final Logger logger;
 
+    private final CommentReadStateQueue readStateQueue;
+
+    private volatile boolean compressUploads;
+
     /**
      * Public constructor for CrucibleSessionImpl.
      *
@@ -209,6 +244,16 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             throws RemoteApiMalformedUrlException {
         super(serverData, callback);
         this.logger = logger;
+        this.readStateQueue = new CommentReadStateQueue(new CommentReadStateQueue.Sender() {
+            public void sendReadState(@NotNull PermId reviewId, @NotNull PermId commentId, boolean leaveUnread)
+                    throws RemoteApiException {
+                postReadState(reviewId, commentId, leaveUnread ? MARK_LEAVE_UNREAD : MARK_READ);
+            }
+
+            public void sendAllRead(@NotNull PermId reviewId) throws RemoteApiException {
+                postAllRead(reviewId);
+            }
+        }, logger);
     }
 
     public void login() throws RemoteApiLoginException {
@@ -233,7 +278,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             if (null != exception) {
                 throw new RemoteApiLoginFailedException(exception);
             }
-            XPath xpath = XPath.newInstance("/loginResult/token");
+            XPath xpath = XmlParserRegistry.getXPath("/loginResult/token");
             List<?> elements = xpath.selectNodes(doc);
             if (elements == null) {
                 throw new RemoteApiLoginException("Server did not return any authentication token");
@@ -305,7 +350,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("versionInfo");
+            XPath xpath = XmlParserRegistry.getXPath("versionInfo");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -328,15 +373,14 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return null;
     }
 
-    private void updateMetricsMetadata(BasicReview review) {
-        try {
-            getMetrics(review.getMetricsVersion());
-        } catch (RemoteApiException e) {
-            // can be swallowed - metrics metadata are useful, but not necessery
-        }
+    public List<BasicReview> getReviewsInStates(List<State> states) throws RemoteApiException {
+        final List<BasicReview> reviews = new ArrayList<BasicReview>();
+        getReviewsInStates(states, new CollectingReviewHandler(reviews));
+        return reviews;
     }
 
-    public List<BasicReview> getReviewsInStates(List<State> states) throws RemoteApiException {
+    public void getReviewsInStates(@Nullable List<State> states, @NotNull ReviewHandler handler)
+            throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -356,31 +400,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             }
         }
 
-        try {
-            Document doc = retrieveGetResponse(sb.toString());
-
-            XPath xpath = XPath.newInstance("/detailedReviews/detailedReviewData");
-
-            @SuppressWarnings("unchecked")
-            List<Element> elements = xpath.selectNodes(doc);
-            List<BasicReview> reviews = new ArrayList<BasicReview>();
-
-            if (elements != null && !elements.isEmpty()) {
-                for (Element element : elements) {
-                    reviews.add(parseBasicReview(element));
-                }
-            }
-            for (BasicReview review : reviews) {
-                updateMetricsMetadata(review);
-            }
-            return reviews;
-        } catch (IOException e) {
-            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-        } catch (JDOMException e) {
-            throwMalformedResponseReturned(e);
-        }
-
-        return null;
+        retrieveReviews(sb.toString(), handler);
     }
 
     public List<BasicReview> getAllReviews() throws RemoteApiException {
@@ -388,37 +408,41 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     public List<BasicReview> getReviewsForFilter(PredefinedFilter filter) throws RemoteApiException {
+        final List<BasicReview> reviews = new ArrayList<BasicReview>();
+        getReviewsForFilter(filter, new CollectingReviewHandler(reviews));
+        return reviews;
+    }
+
+    public void getReviewsForFilter(@NotNull PredefinedFilter filter, @NotNull ReviewHandler handler)
+            throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
 
-        try {
-            String url = getBaseUrl() + REVIEW_SERVICE + FILTERED_REVIEWS + "/" + filter.getFilterUrl()
-                    + DETAIL_REVIEW_INFO;
-            Document doc = retrieveGetResponse(url);
-
-            XPath xpath = XPath.newInstance("/detailedReviews/detailedReviewData");
-
-            @SuppressWarnings("unchecked")
-            List<Element> elements = xpath.selectNodes(doc);
-            List<BasicReview> reviews = new ArrayList<BasicReview>();
+        String url = getBaseUrl() + REVIEW_SERVICE + FILTERED_REVIEWS + "/" + filter.getFilterUrl()
+                + DETAIL_REVIEW_INFO;
+        retrieveReviews(url, handler);
+    }
 
-            if (elements != null && !elements.isEmpty()) {
-                for (Element element : elements) {
-                    reviews.add(parseBasicReview(element));
-                }
-            }
-            for (BasicReview review : reviews) {
-                updateMetricsMetadata(review);
+    /**
+     * Streams reviews from a <code>/detailedReviews/detailedReviewData</code> response to the handler, without
+     * building the whole document in memory.
+     */
+    private void retrieveReviews(String url, @NotNull final ReviewHandler handler) throws RemoteApiException {
+        // may retrieve server version, so it must be known before the response holds the connection
+        final StreamingReviewParser parser = new StreamingReviewParser(getBaseUrl(), shouldTrimWikiMarkers());
+        try {
+            final HttpStreamResponse response = doUnconditionalGetForXmlStream(url);
+            try {
+                parser.parse(response, handler);
+            } finally {
+                response.close();
             }
-            return reviews;
         } catch (IOException e) {
             throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-        } catch (JDOMException e) {
-            throwMalformedResponseReturned(e);
+        } catch (XMLStreamException e) {
+            throw new RemoteApiException(getBaseUrl() + ": Server returned malformed response", e);
         }
-
-        return null;
     }
 
     private boolean checkCustomFiltersAsGet() {
@@ -487,38 +511,46 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     public List<BasicReview> getReviewsForCustomFilter(CustomFilter filter) throws RemoteApiException {
+        final List<BasicReview> reviews = new ArrayList<BasicReview>();
+        getReviewsForCustomFilter(filter, new CollectingReviewHandler(reviews));
+        return reviews;
+    }
+
+    public void getReviewsForCustomFilter(@NotNull CustomFilter filter, @NotNull ReviewHandler handler)
+            throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
 
-        try {
-            Document doc;
-            if (checkCustomFiltersAsGet()) {
-                doc = getReviewsForCustomFilterAsGet(filter);
-            } else {
-                doc = getReviewsForCustomFilterAsPost(filter);
+        if (checkCustomFiltersAsGet()) {
+            String url = getBaseUrl() + REVIEW_SERVICE + FILTERED_REVIEWS + DETAIL_REVIEW_INFO;
+            String urlFilter = filter.getFilterUrl();
+            if (!StringUtils.isEmpty(urlFilter)) {
+                url += "?" + urlFilter;
             }
+            retrieveReviews(url, handler);
+            return;
+        }
 
-            XPath xpath = XPath.newInstance("/detailedReviews/detailedReviewData");
+        // old servers accept the filter only in a POST request
+        try {
+            Document doc = getReviewsForCustomFilterAsPost(filter);
+
+            XPath xpath = XmlParserRegistry.getXPath("/detailedReviews/detailedReviewData");
 
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
-            List<BasicReview> reviews = new ArrayList<BasicReview>();
 
             if (elements != null && !elements.isEmpty()) {
                 for (Element element : elements) {
-                    reviews.add(parseBasicReview(element));
+                    if (!handler.handle(parseBasicReview(element))) {
+                        break;
+                    }
                 }
             }
-            for (BasicReview review : reviews) {
-                updateMetricsMetadata(review);
-            }
-            return reviews;
         } catch (JDOMException e) {
             throwMalformedResponseReturned(e);
         }
-
-        return null;
     }
 
     private Document getReviewsForCustomFilterAsPost(CustomFilter filter) throws RemoteApiException {
@@ -535,24 +567,6 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return null;
     }
 
-    private Document getReviewsForCustomFilterAsGet(CustomFilter filter) throws RemoteApiException {
-        try {
-            String url = getBaseUrl() + REVIEW_SERVICE + FILTERED_REVIEWS + DETAIL_REVIEW_INFO;
-            String urlFilter = filter.getFilterUrl();
-            if (!StringUtils.isEmpty(urlFilter)) {
-                url += "?" + urlFilter;
-            }
-
-            return retrieveGetResponse(url);
-        } catch (IOException e) {
-            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-        } catch (JDOMException e) {
-            throwMalformedResponseReturned(e);
-        }
-
-        return null;
-    }
-
     public List<BasicReview> getAllReviewsForFile(String repoName, String path) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
@@ -563,7 +577,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
                     + DETAIL_REVIEW_INFO + SEARCH_REVIEWS_QUERY + URLEncoder.encode(path, "UTF-8");
             Document doc = retrieveGetResponse(url);
 
-            XPath xpath = XPath.newInstance("/detailedReviews/detailedReviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/detailedReviews/detailedReviewData");
 
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
@@ -574,9 +588,6 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
                     reviews.add(parseBasicReview(element));
                 }
             }
-            for (BasicReview review : reviews) {
-                updateMetricsMetadata(review);
-            }
             return reviews;
         } catch (IOException e) {
             throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
@@ -588,6 +599,8 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     public Review getReview(PermId permId) throws RemoteApiException {
+        // comments come with the review, so their read state must be up to date
+        readStateQueue.flush(permId);
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -596,7 +609,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             String url = getBaseUrl() + REVIEW_SERVICE + "/" + permId.getId() + DETAIL_REVIEW_INFO;
             Document doc = retrieveGetResponse(url);
 
-            XPath xpath = XPath.newInstance("/detailedReviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/detailedReviewData");
 
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
@@ -616,33 +629,60 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return null;
     }
 
+    /**
+     * Repositories used to fill in repository data of review items. Sessions of the same server and user
+     * can share one catalog.
+     */
+    @NotNull
+    public CrucibleRepositoryCatalog getRepositoryCatalog() {
+        return repositoryCatalog;
+    }
+
+    public void setRepositoryCatalog(@NotNull CrucibleRepositoryCatalog repositoryCatalog) {
+        this.repositoryCatalog = repositoryCatalog;
+    }
+
     public void fillRepositoryData(CrucibleFileInfo fileInfo) throws RemoteApiException {
-        String repoName = fileInfo.getRepositoryName();
-        if (repoName == null) {
+        fillRepositoryData(Collections.singletonList(fileInfo));
+    }
+
+    /**
+     * Sets repository URLs of given review items, with all repositories resolved at once.
+     */
+    private void fillRepositoryData(Collection<CrucibleFileInfo> fileInfos) throws RemoteApiException {
+        final Set<String> repoNames = new HashSet<String>();
+        for (CrucibleFileInfo fileInfo : fileInfos) {
             // oh well, it can be null - fileInfos are mostly empty now
-            return;
+            if (fileInfo.getRepositoryName() != null) {
+                repoNames.add(getRepositoryName(fileInfo));
+            }
         }
+        final Map<String, Repository> repositories = repositoryCatalog.resolve(repoNames, repositoryLoader);
 
-        String[] repoNameTokens = repoName.split(":");
-
-        if (!repositories.containsKey(repoName)) {
-            Repository repository = getRepository(repoNameTokens.length > 1 ? repoNameTokens[1] : repoNameTokens[0]);
-            repositories.put(repoName, repository);
-        }
-        Repository repository = repositories.get(repoName);
-        if (repository != null && repository instanceof SvnRepository) {
-            String repoPath = ((SvnRepository) repository).getUrl() + "/" + ((SvnRepository) repository).getPath() + "/";
-            VersionedVirtualFile oldDescriptor = fileInfo.getOldFileDescriptor();
-            if (!oldDescriptor.getUrl().equals("")) {
-                oldDescriptor.setRepoUrl(repoPath);
+        for (CrucibleFileInfo fileInfo : fileInfos) {
+            if (fileInfo.getRepositoryName() == null) {
+                continue;
             }
-            VersionedVirtualFile newDescriptor = fileInfo.getFileDescriptor();
-            if (!newDescriptor.getUrl().equals("")) {
-                newDescriptor.setRepoUrl(repoPath);
+            Repository repository = repositories.get(getRepositoryName(fileInfo));
+            if (repository != null && repository instanceof SvnRepository) {
+                String repoPath = ((SvnRepository) repository).getUrl() + "/" + ((SvnRepository) repository).getPath() + "/";
+                VersionedVirtualFile oldDescriptor = fileInfo.getOldFileDescriptor();
+                if (!oldDescriptor.getUrl().equals("")) {
+                    oldDescriptor.setRepoUrl(repoPath);
+                }
+                VersionedVirtualFile newDescriptor = fileInfo.getFileDescriptor();
+                if (!newDescriptor.getUrl().equals("")) {
+                    newDescriptor.setRepoUrl(repoPath);
+                }
             }
         }
     }
 
+    private static String getRepositoryName(CrucibleFileInfo fileInfo) {
+        String[] repoNameTokens = fileInfo.getRepositoryName().split(":");
+        return repoNameTokens.length > 1 ? repoNameTokens[1] : repoNameTokens[0];
+    }
+
     private BasicReview parseBasicReview(Element element) throws RemoteApiException {
         try {
             return CrucibleRestXmlHelper.parseBasicReview(getBaseUrl(), element, shouldTrimWikiMarkers());
@@ -660,9 +700,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             throw new RemoteApiException(e);
         }
 
-        for (CrucibleFileInfo fileInfo : review.getFiles()) {
-            fillRepositoryData(fileInfo);
-        }
+        fillRepositoryData(review.getFiles());
         return review;
     }
 
@@ -679,7 +717,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/reviewers/reviewer");
+            XPath xpath = XmlParserRegistry.getXPath("/reviewers/reviewer");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             List<Reviewer> reviewers = new ArrayList<Reviewer>();
@@ -708,7 +746,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/users/userData");
+            XPath xpath = XmlParserRegistry.getXPath("/users/userData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             List<User> users = new ArrayList<User>();
@@ -760,7 +798,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/projects/projectData");
+            XPath xpath = XmlParserRegistry.getXPath("/projects/projectData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             List<BasicProject> projects = new ArrayList<BasicProject>();
@@ -796,7 +834,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/projectData");
+            XPath xpath = XmlParserRegistry.getXPath("/projectData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -819,28 +857,33 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             throwNotLoggedIn();
         }
 
+        List<Repository> myRepositories = retrieveRepositories();
+        repositoryCatalog.update(myRepositories);
+        return myRepositories;
+    }
+
+    @NotNull
+    private List<Repository> retrieveRepositories() throws RemoteApiException {
         String requestUrl = getBaseUrl() + REPOSITORIES_SERVICE;
+        List<Repository> myRepositories = new ArrayList<Repository>();
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/repositories/repoData");
+            XPath xpath = XmlParserRegistry.getXPath("/repositories/repoData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
-            List<Repository> myRepositories = new ArrayList<Repository>();
 
             if (elements != null && !elements.isEmpty()) {
                 for (Element element : elements) {
                     myRepositories.add(CrucibleRestXmlHelper.parseRepositoryNode(element));
                 }
             }
-            return myRepositories;
         } catch (IOException e) {
             throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
         } catch (JDOMException e) {
             throwMalformedResponseReturned(e);
         }
-
-        return null;
+        return myRepositories;
     }
 
     public Repository getRepository(String repoName) throws RemoteApiException {
@@ -852,22 +895,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         for (Repository repository : myRepositories) {
             if (repository.getName().equals(repoName)) {
                 if (repository.getType().equals("svn")) {
-                    String requestUrl = getBaseUrl() + REPOSITORIES_SERVICE + "/" + repoName + "/svn";
-                    try {
-                        Document doc = retrieveGetResponse(requestUrl);
-                        XPath xpath = XPath.newInstance("/svnRepositoryData");
-                        @SuppressWarnings("unchecked")
-                        List<Element> elements = xpath.selectNodes(doc);
-                        if (elements != null && !elements.isEmpty()) {
-                            for (Element element : elements) {
-                                return CrucibleRestXmlHelper.parseSvnRepositoryNode(element);
-                            }
-                        }
-                    } catch (IOException e) {
-                        throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-                    } catch (JDOMException e) {
-                        throwMalformedResponseReturned(e);
-                    }
+                    return retrieveSvnRepository(repoName);
                 } else {
                     return repository;
                 }
@@ -877,6 +905,25 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return null;
     }
 
+    @Nullable
+    private SvnRepository retrieveSvnRepository(String repoName) throws RemoteApiException {
+        String requestUrl = getBaseUrl() + REPOSITORIES_SERVICE + "/" + repoName + "/svn";
+        try {
+            Document doc = retrieveGetResponse(requestUrl);
+            XPath xpath = XmlParserRegistry.getXPath("/svnRepositoryData");
+            @SuppressWarnings("unchecked")
+            List<Element> elements = xpath.selectNodes(doc);
+            if (elements != null && !elements.isEmpty()) {
+                return CrucibleRestXmlHelper.parseSvnRepositoryNode(elements.get(0));
+            }
+        } catch (IOException e) {
+            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
+        } catch (JDOMException e) {
+            throwMalformedResponseReturned(e);
+        }
+        return null;
+    }
+
     public Set<CrucibleFileInfo> getFiles(PermId id) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
@@ -886,19 +933,19 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("reviewItems/reviewItem");
+            XPath xpath = XmlParserRegistry.getXPath("reviewItems/reviewItem");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
-            Set<CrucibleFileInfo> reviewItems = new HashSet<CrucibleFileInfo>();
+            List<CrucibleFileInfo> fileInfos = new ArrayList<CrucibleFileInfo>();
 
             if (elements != null && !elements.isEmpty()) {
                 for (Element element : elements) {
-                    CrucibleFileInfo fileInfo = CrucibleRestXmlHelper.parseReviewItemNode(element);
-                    fillRepositoryData(fileInfo);
-                    reviewItems.add(fileInfo);
+                    fileInfos.add(CrucibleRestXmlHelper.parseReviewItemNode(element));
                 }
+                // repository data first, items are put in a hash set
+                fillRepositoryData(fileInfos);
             }
-            return reviewItems;
+            return new HashSet<CrucibleFileInfo>(fileInfos);
         } catch (IOException e) {
             throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
         } catch (JDOMException e) {
@@ -938,6 +985,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 //	}
 
     public List<VersionedComment> getVersionedComments(Review review, CrucibleFileInfo reviewItem) throws RemoteApiException {
+        readStateQueue.flush(review.getPermId());
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -948,7 +996,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("comments/versionedLineCommentData");
+            XPath xpath = XmlParserRegistry.getXPath("comments/versionedLineCommentData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             List<VersionedComment> comments = new ArrayList<VersionedComment>();
@@ -1048,7 +1096,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrievePostResponse(requestUrl, request);
 
-            XPath xpath = XPath.newInstance("generalCommentData");
+            XPath xpath = XmlParserRegistry.getXPath("generalCommentData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1069,6 +1117,8 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     public void removeComment(PermId id, Comment comment) throws RemoteApiException {
+        readStateQueue.discard(id, comment.getPermId());
+        readStateQueue.flush(id);
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -1100,6 +1150,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     public void publishComment(PermId reviewId, PermId commentId) throws RemoteApiException {
+        readStateQueue.flush(reviewId);
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -1130,7 +1181,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
                         + COMMENTS;
         try {
             Document doc = retrievePostResponse(requestUrl, request);
-            XPath xpath = XPath.newInstance("versionedLineCommentData");
+            XPath xpath = XmlParserRegistry.getXPath("versionedLineCommentData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1178,7 +1229,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrievePostResponse(requestUrl, request);
 
-            XPath xpath = XPath.newInstance("generalCommentData");
+            XPath xpath = XmlParserRegistry.getXPath("generalCommentData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1239,7 +1290,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrievePostResponse(getBaseUrl() + REVIEW_SERVICE, request);
 
-            XPath xpath = XPath.newInstance("/reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1260,50 +1311,38 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     @Nullable
     public BasicReview createReviewFromPatch(Review review, String patch)
 			throws RemoteApiException {
-        if (!isLoggedIn()) {
-            throwNotLoggedIn();
-        }
-
-        Document request = CrucibleRestXmlHelper.prepareCreateReviewNode(review, patch);
-
-        StringBuilder txtHolder = new StringBuilder();
-        try {
-            Document doc = retrievePostResponse(getBaseUrl() + REVIEW_SERVICE, request, txtHolder);
-
-            XPath xpath = XPath.newInstance("/reviewData");
-            @SuppressWarnings("unchecked")
-            List<Element> elements = xpath.selectNodes(doc);
-
-            if (elements != null && !elements.isEmpty()) {
-                return parseBasicReview(elements.iterator().next());
-            }
-            return null;
-        } catch (IOException e) {
-            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-        } catch (JDOMException e) {
-            throwMalformedResponseReturned(e, txtHolder.toString());
-        }
-
-        return null;
+        return createReviewFromPatch(review, createPatchSource(patch), PATCH_CHARSET, null, null);
     }
+
     @Nullable
     public BasicReview createReviewFromPatch(Review review, String patch, PatchAnchorData anchorData)
 			throws RemoteApiException {
+        return createReviewFromPatch(review, createPatchSource(patch), PATCH_CHARSET, anchorData, null);
+    }
+
+    @Nullable
+    public BasicReview createReviewFromPatch(Review review, @Nullable PartSource patch, @NotNull String charset,
+            @Nullable PatchAnchorData anchorData, @Nullable UploadProgressListener listener)
+            throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
 
-        Document request = CrucibleRestXmlHelper.prepareCreateReviewNode(review, patch);
-		if (getCrucibleVersionInfo().isVersion24OrGrater() && anchorData != null) {
+        final String placeholder = PatchRequestEntity.createPlaceholder();
+        Document request = CrucibleRestXmlHelper.prepareCreateReviewNode(review, patch != null ? placeholder : null);
+		if (anchorData != null && getCrucibleVersionInfo().isVersion24OrGrater()) {
 
 			CrucibleRestXmlHelper.addAnchorData(request, anchorData);
 		}
 
         StringBuilder txtHolder = new StringBuilder();
         try {
-            Document doc = retrievePostResponse(getBaseUrl() + REVIEW_SERVICE, request, txtHolder);
+            Document doc = patch != null
+                    ? retrievePostResponse(getBaseUrl() + REVIEW_SERVICE,
+                            createPatchEntity(request, placeholder, patch, charset, listener), txtHolder)
+                    : retrievePostResponse(getBaseUrl() + REVIEW_SERVICE, request, txtHolder);
 
-            XPath xpath = XPath.newInstance("/reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1320,8 +1359,57 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return null;
     }
 
+    /**
+     * @return whether uploaded files and patches are sent compressed with gzip
+     */
+    public boolean isCompressUploads() {
+        return compressUploads;
+    }
+
+    /**
+     * Enables sending uploaded files and patches compressed with gzip. Disabled by default, as it requires
+     * the server (or a proxy in front of it) to accept gzip encoded requests.
+     */
+    public void setCompressUploads(boolean compressUploads) {
+        this.compressUploads = compressUploads;
+    }
+
+    @Nullable
+    private static PartSource createPatchSource(@Nullable String patch) throws RemoteApiException {
+        if (patch == null) {
+            return null;
+        }
+        try {
+            return new ByteArrayPartSource(null, patch.getBytes(PATCH_CHARSET));
+        } catch (UnsupportedEncodingException e) {
+            throw new RemoteApiException(e.getMessage(), e);
+        }
+    }
+
+    @NotNull
+    private RequestEntity createPatchEntity(@NotNull Document request, @NotNull String placeholder,
+            @NotNull PartSource patch, @NotNull String charset, @Nullable UploadProgressListener listener)
+            throws UnsupportedEncodingException {
+        final UploadProgress progress = new UploadProgress(listener, Collections.singleton(patch));
+        return new PatchRequestEntity(request, placeholder, progress.track(patch), charset);
+    }
+
+    private Document retrievePostResponse(String urlString, final RequestEntity request, StringBuilder txtHolder)
+            throws JDOMException, RemoteApiException {
+        return retrievePostResponseInternalImpl(urlString, new PostMethodPreparer() {
+            public void prepare(PostMethod postMethod) {
+                if (compressUploads) {
+                    postMethod.setRequestHeader("Content-Encoding", GzipRequestEntity.CONTENT_ENCODING);
+                    postMethod.setRequestEntity(new GzipRequestEntity(request));
+                } else {
+                    postMethod.setRequestEntity(request);
+                }
+            }
+        }, true, 0, txtHolder);
+    }
+
     private List<Element> getReviewData(Document doc) throws JDOMException {
-        XPath xpath = XPath.newInstance("/reviewData");
+        XPath xpath = XmlParserRegistry.getXPath("/reviewData");
         @SuppressWarnings("unchecked")
         List<Element> elements = xpath.selectNodes(doc);
         return elements;
@@ -1330,6 +1418,12 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     @Nullable
     public BasicReview createReviewFromUpload(Review review, Collection<UploadItem> uploadItems) throws RemoteApiException {
+        return createReviewFromUpload(review, uploadItems, null);
+    }
+
+    @Nullable
+    public BasicReview createReviewFromUpload(Review review, Collection<UploadItem> uploadItems,
+            @Nullable UploadProgressListener listener) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -1337,26 +1431,17 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
         try {
             String urlString = getBaseUrl() + REVIEW_SERVICE + "/" + newReview.getPermId().getId() + ADD_FILE;
+            final UploadProgress progress = new UploadProgress(listener, getSources(uploadItems));
             for (UploadItem uploadItem : uploadItems) {
                 String bogusOld = "[--item is empty--]";
                 String bogusNew = "[--item deleted--]";
 
-                byte[] oldContent = uploadItem.getOldContent();
-                byte[] newContent = uploadItem.getNewContent();
-
-                if (oldContent == null) {
-                    oldContent = bogusOld.getBytes();
-                }
-                if (newContent == null) {
-                    newContent = bogusNew.getBytes();
-                }
-
-                ByteArrayPartSource targetOldFile = new ByteArrayPartSource(uploadItem.getFileName(), oldContent);
-                ByteArrayPartSource targetNewFile = new ByteArrayPartSource(uploadItem.getFileName(), newContent);
+                PartSource targetOldFile = getUploadSource(progress, uploadItem, uploadItem.getOldSource(), bogusOld);
+                PartSource targetNewFile = getUploadSource(progress, uploadItem, uploadItem.getNewSource(), bogusNew);
 
                 Part[] parts = {new FilePart("file", targetNewFile), new FilePart("diffFile", targetOldFile)};
 
-                retrievePostResponse(urlString, parts, true);
+                retrievePostResponse(urlString, parts, true, compressUploads);
             }
         } catch (JDOMException e) {
             throwMalformedResponseReturned(e);
@@ -1365,6 +1450,27 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return newReview;
     }
 
+    @NotNull
+    private static List<PartSource> getSources(@NotNull Collection<UploadItem> uploadItems) {
+        final List<PartSource> sources = new ArrayList<PartSource>(uploadItems.size() * 2);
+        for (UploadItem uploadItem : uploadItems) {
+            sources.add(uploadItem.getOldSource());
+            sources.add(uploadItem.getNewSource());
+        }
+        return sources;
+    }
+
+    /**
+     * @param missingContent content sent instead of a missing file
+     */
+    @NotNull
+    private static PartSource getUploadSource(@NotNull UploadProgress progress, @NotNull UploadItem uploadItem,
+            @Nullable PartSource source, @NotNull String missingContent) {
+        return source != null
+                ? progress.track(source, uploadItem.getFileName())
+                : new ByteArrayPartSource(uploadItem.getFileName(), missingContent.getBytes());
+    }
+
     @Nullable
     public BasicReview createReviewFromRevision(Review review, List<String> revisions) throws RemoteApiException {
         if (!isLoggedIn()) {
@@ -1377,7 +1483,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
         try {
             Document doc = retrievePostResponse(getBaseUrl() + REVIEW_SERVICE, request);
-            XPath xpath = XPath.newInstance("/reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1424,7 +1530,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/actions/actionData");
+            XPath xpath = XmlParserRegistry.getXPath("/actions/actionData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             return parseActions(elements);
@@ -1446,7 +1552,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/transitions/actionData");
+            XPath xpath = XmlParserRegistry.getXPath("/transitions/actionData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             return parseActions(elements);
@@ -1484,7 +1590,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             String url = getBaseUrl() + REVIEW_SERVICE + "/" + permId.getId() + ADD_REVISIONS;
             Document doc = retrievePostResponse(url, request);
 
-            XPath xpath = XPath.newInstance("/detailedReviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/detailedReviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1515,7 +1621,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             String url = getBaseUrl() + REVIEW_SERVICE + "/" + permId.getId() + ADD_CHANGESET;
             Document doc = retrievePostResponse(url, request);
 
-            XPath xpath = XPath.newInstance("/reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1560,17 +1666,26 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     @Nullable
     public BasicReview addPatchToReview(PermId permId, String repository, String patch) throws RemoteApiException {
+        return addPatchToReview(permId, repository, createPatchSource(patch), PATCH_CHARSET, null);
+    }
+
+    @Nullable
+    public BasicReview addPatchToReview(PermId permId, String repository, @Nullable PartSource patch,
+            @NotNull String charset, @Nullable UploadProgressListener listener) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
 
-        Document request = CrucibleRestXmlHelper.prepareAddPatchNode(repository, patch);
+        final String placeholder = PatchRequestEntity.createPlaceholder();
+        Document request = CrucibleRestXmlHelper.prepareAddPatchNode(repository, patch != null ? placeholder : null);
 
         try {
             String url = getBaseUrl() + REVIEW_SERVICE + "/" + permId.getId() + ADD_PATCH;
-            Document doc = retrievePostResponse(url, request);
+            Document doc = patch != null
+                    ? retrievePostResponse(url, createPatchEntity(request, placeholder, patch, charset, listener), null)
+                    : retrievePostResponse(url, request);
 
-            XPath xpath = XPath.newInstance("/reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1588,17 +1703,21 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     public void addItemsToReview(PermId permId, Collection<UploadItem> uploadItems) throws RemoteApiException {
+        addItemsToReview(permId, uploadItems, null);
+    }
+
+    public void addItemsToReview(PermId permId, Collection<UploadItem> uploadItems,
+            @Nullable UploadProgressListener listener) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
 
         try {
             String urlString = getBaseUrl() + REVIEW_SERVICE + "/" + permId.getId() + ADD_FILE;
+            final UploadProgress progress = new UploadProgress(listener, getSources(uploadItems));
             for (UploadItem uploadItem : uploadItems) {
-                ByteArrayPartSource targetOldFile =
-                        new ByteArrayPartSource(uploadItem.getFileName(), uploadItem.getOldContent());
-                ByteArrayPartSource targetNewFile =
-                        new ByteArrayPartSource(uploadItem.getFileName(), uploadItem.getNewContent());
+                PartSource targetOldFile = getUploadSource(progress, uploadItem, uploadItem.getOldSource(), "");
+                PartSource targetNewFile = getUploadSource(progress, uploadItem, uploadItem.getNewSource(), "");
 
                 Part[] parts = {
                         new FilePart("file", targetNewFile,
@@ -1606,7 +1725,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
                         new FilePart("diffFile", targetOldFile,
                                 uploadItem.getOldContentType(), uploadItem.getOldCharset())};
 
-                retrievePostResponse(urlString, parts, true);
+                retrievePostResponse(urlString, parts, true, compressUploads);
             }
         } catch (JDOMException e) {
             throwMalformedResponseReturned(e);
@@ -1661,28 +1780,55 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         throw new IllegalStateException("Calling method without calling login() first");
     }
 
+    /**
+     * The change is sent in the background together with other changes made shortly after it,
+     * see {@link #setReadStateDelay(long)}.
+     *
+     * @throws RemoteApiException if earlier changes of the review could not be sent, or if the change is sent
+     *                            immediately and fails
+     */
     public void markCommentRead(PermId reviewId, PermId commentId) throws RemoteApiException {
-        if (!isLoggedIn()) {
-            throwNotLoggedIn();
-        }
+        readStateQueue.add(reviewId, commentId, false);
+    }
 
-        String requestUrl = getBaseUrl() + REVIEW_SERVICE + "/" + reviewId.getId()
-                + COMMENTS + "/" + commentId.getId() + MARK_READ;
+    /**
+     * The change is sent in the background together with other changes made shortly after it,
+     * see {@link #setReadStateDelay(long)}.
+     *
+     * @throws RemoteApiException if earlier changes of the review could not be sent, or if the change is sent
+     *                            immediately and fails
+     */
+    public void markCommentLeaveRead(PermId reviewId, PermId commentId) throws RemoteApiException {
+        readStateQueue.add(reviewId, commentId, true);
+    }
 
-        try {
-            retrievePostResponse(requestUrl, "", false);
-        } catch (JDOMException e) {
-            throwMalformedResponseReturned(e);
-        }
+    public void markAllCommentsRead(PermId reviewId) throws RemoteApiException {
+        readStateQueue.markAllRead(reviewId);
     }
 
-    public void markCommentLeaveRead(PermId reviewId, PermId commentId) throws RemoteApiException {
+    public void flushPendingReadStates() {
+        readStateQueue.flushAll();
+    }
+
+    public long getReadStateDelay() {
+        return readStateQueue.getDelay();
+    }
+
+    /**
+     * @param delay how long (in ms) read state changes of comments of a review are collected before they are sent
+     *              together; 0 sends each change immediately, reporting its failure to the caller
+     */
+    public void setReadStateDelay(long delay) {
+        readStateQueue.setDelay(delay);
+    }
+
+    private void postReadState(PermId reviewId, PermId commentId, String action) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
 
         String requestUrl = getBaseUrl() + REVIEW_SERVICE + "/" + reviewId.getId()
-                + COMMENTS + "/" + commentId.getId() + MARK_LEAVE_UNREAD;
+                + COMMENTS + "/" + commentId.getId() + action;
 
         try {
             retrievePostResponse(requestUrl, "", false);
@@ -1691,7 +1837,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         }
     }
 
-    public void markAllCommentsRead(PermId reviewId) throws RemoteApiException {
+    private void postAllRead(PermId reviewId) throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -1709,6 +1855,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     @Nullable
     public BasicReview changeReviewState(PermId permId, CrucibleAction action) throws RemoteApiException {
+        readStateQueue.flush(permId);
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -1717,7 +1864,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         try {
             Document doc = retrievePostResponse(requestUrl, "", true);
 
-            XPath xpath = XPath.newInstance("reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
             Review review = null;
@@ -1756,6 +1903,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
     @Nullable
     public BasicReview closeReview(PermId permId, String summarizeMessage) throws RemoteApiException {
+        readStateQueue.flush(permId);
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
@@ -1772,7 +1920,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
                 doc = retrievePostResponse(requestUrl, "", true);
             }
 
-            XPath xpath = XPath.newInstance("reviewData");
+            XPath xpath = XmlParserRegistry.getXPath("reviewData");
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
 
@@ -1789,36 +1937,53 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
         return null;
     }
 
+    /**
+     * Metrics definitions are resolved only when asked for (typically when metrics of a review are shown),
+     * so loading review lists never waits for them.
+     */
     public List<CustomFieldDef> getMetrics(int version) throws RemoteApiException {
-        String key = Integer.toString(version);
-        if (!metricsDefinitions.containsKey(key)) {
-            // workaround for ACC-31
-            if (!isLoggedIn()) {
-                throwNotLoggedIn();
-            }
+        return metricsCatalog.get(version, metricsLoader);
+    }
 
-            String requestUrl = getBaseUrl() + REVIEW_SERVICE + METRICS + "/" + Integer.toString(version);
-            try {
-                Document doc = retrieveGetResponse(requestUrl);
+    /**
+     * Metrics definitions by version. Sessions of the same server can share one catalog.
+     */
+    @NotNull
+    public CrucibleMetricsCatalog getMetricsCatalog() {
+        return metricsCatalog;
+    }
 
-                XPath xpath = XPath.newInstance("metrics/metricsData");
-                @SuppressWarnings("unchecked")
-                List<Element> elements = xpath.selectNodes(doc);
-                List<CustomFieldDef> metrics = new ArrayList<CustomFieldDef>();
+    public void setMetricsCatalog(@NotNull CrucibleMetricsCatalog metricsCatalog) {
+        this.metricsCatalog = metricsCatalog;
+    }
 
-                if (elements != null && !elements.isEmpty()) {
-                    for (Element element : elements) {
-                        metrics.add(CrucibleRestXmlHelper.parseMetricsNode(element));
-                    }
+    @NotNull
+    private List<CustomFieldDef> retrieveMetrics(int version) throws RemoteApiException {
+        // workaround for ACC-31
+        if (!isLoggedIn()) {
+            throwNotLoggedIn();
+        }
+
+        String requestUrl = getBaseUrl() + REVIEW_SERVICE + METRICS + "/" + Integer.toString(version);
+        List<CustomFieldDef> metrics = new ArrayList<CustomFieldDef>();
+        try {
+            Document doc = retrieveGetResponse(requestUrl);
+
+            XPath xpath = XmlParserRegistry.getXPath("metrics/metricsData");
+            @SuppressWarnings("unchecked")
+            List<Element> elements = xpath.selectNodes(doc);
+
+            if (elements != null && !elements.isEmpty()) {
+                for (Element element : elements) {
+                    metrics.add(CrucibleRestXmlHelper.parseMetricsNode(element));
                 }
-                metricsDefinitions.put(key, metrics);
-            } catch (IOException e) {
-                throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-            } catch (JDOMException e) {
-                throwMalformedResponseReturned(e);
             }
+        } catch (IOException e) {
+            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
+        } catch (JDOMException e) {
+            throwMalformedResponseReturned(e);
         }
-        return metricsDefinitions.get(key);
+        return metrics;
     }
 
     @Override
@@ -1840,7 +2005,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     }
 
     private static String getExceptionMessages(Document doc) throws JDOMException {
-        XPath xpath = XPath.newInstance("/loginResult/error");
+        XPath xpath = XmlParserRegistry.getXPath("/loginResult/error");
         @SuppressWarnings("unchecked")
         List<Element> elements = xpath.selectNodes(doc);
 
@@ -1881,7 +2046,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
             String url = getBaseUrl() + REVIEW_SERVICE + "/" + permId.getId() + REVIEW_ITEMS + REVISIONS;
             Document doc = retrievePostResponse(url, request);
 
-            XPath xpath = XPath.newInstance("/detailedReviewData");
+            XPath xpath = XmlParserRegistry.getXPath("/detailedReviewData");
 
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
@@ -1923,7 +2088,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
 
             Document doc = retrieveGetResponse(url);
 
-            XPath xpath = XPath.newInstance("/changes");
+            XPath xpath = XmlParserRegistry.getXPath("/changes");
 
             @SuppressWarnings("unchecked")
             List<Element> elements = xpath.selectNodes(doc);
@@ -1934,7 +2099,7 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
                 }
             }
 
-            xpath = XPath.newInstance("/error");
+            xpath = XmlParserRegistry.getXPath("/error");
             Element errorNode = (Element) xpath.selectSingleNode(doc);
             if (errorNode != null) {
                 CrucibleRestXmlHelper.parseErrorAndThrowIt(errorNode);
@@ -1951,36 +2116,36 @@ public class CrucibleSessionImpl extends AbstractHttpSession implements Crucible
     @NotNull
     public List<BasicReview> getReviewsForIssue(@NotNull String jiraIssueKey, @NotNull int maxReturn)
             throws RemoteApiException, RemoteApiSessionExpiredException {
+        final List<BasicReview> reviews = new ArrayList<BasicReview>();
+        getReviewsForIssue(jiraIssueKey, maxReturn, new CollectingReviewHandler(reviews));
+        return reviews;
+    }
+
+    public void getReviewsForIssue(@NotNull String jiraIssueKey, int maxReturn, @NotNull ReviewHandler handler)
+            throws RemoteApiException {
         if (!isLoggedIn()) {
             throwNotLoggedIn();
         }
-        List<BasicReview> reviews = new ArrayList<BasicReview>();
 
         try {
             String url = getBaseUrl() + SEARCH_SERVICE + REVIEWS_FOR_ISSUE + "/?jiraKey="
                     + URLEncoder.encode(jiraIssueKey, "UTF-8") + "&maxReturn=" + maxReturn;
-            Document doc = retrieveGetResponse(url);
-
-            XPath xpath = XPath.newInstance("/detailedReviews/detailedReviewData");
+            retrieveReviews(url, handler);
+        } catch (UnsupportedEncodingException e) {
+            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
+        }
+    }
 
-            @SuppressWarnings("unchecked")
-            List<Element> elements = xpath.selectNodes(doc);
+    private static final class CollectingReviewHandler implements ReviewHandler {
+        private final List<BasicReview> reviews;
 
-            if (elements != null && !elements.isEmpty()) {
-                for (Element element : elements) {
-                    reviews.add(parseBasicReview(element));
-                }
-            }
-            for (BasicReview review : reviews) {
-                updateMetricsMetadata(review);
-            }
-            return reviews;
-        } catch (IOException e) {
-            throw new RemoteApiException(getBaseUrl() + ": " + e.getMessage(), e);
-        } catch (JDOMException e) {
-            throwMalformedResponseReturned(e);
+        private CollectingReviewHandler(List<BasicReview> reviews) {
+            this.reviews = reviews;
         }
 
-        return reviews;
+        public boolean handle(@NotNull BasicReview review) {
+            reviews.add(review);
+            return true;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.methods.multipart.PartSource;
+import org.apache.commons.io.IOUtils;
+import org.jdom.Document;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * XML request carrying a patch, with the patch read from its source while the request is being sent instead of
+ * being held in memory (several times) as part of the request document.
+ * <p/>
+ * The request is built as a document whose patch element contains a placeholder instead of the patch.
+ * The patch is written in its place exactly as {@link CrucibleRestXmlHelper#prepareCreateReviewNode} and
+ * {@link CrucibleRestXmlHelper#prepareAddPatchNode} followed by pretty printing would write it, i.e. trimmed and
+ * with <code>]]&gt;</code> escaped.
+ */
+final class PatchRequestEntity implements RequestEntity {
+
+	static final String CONTENT_TYPE = "application/xml; charset=UTF-8";
+
+	private static final String ESCAPED_CDATA_END = "&#x5D;&#x5D;>";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final byte[] head;
+
+	private final byte[] tail;
+
+	private final PartSource patch;
+
+	private final String charset;
+
+	/**
+	 * @param request	 request document with the placeholder as the content of its patch element
+	 * @param placeholder placeholder created by {@link #createPlaceholder()}
+	 * @param patch	   source of the patch
+	 * @param charset	 charset of the patch
+	 */
+	PatchRequestEntity(@NotNull Document request, @NotNull String placeholder, @NotNull PartSource patch,
+			@NotNull String charset) throws UnsupportedEncodingException {
+		final String text = new XMLOutputter(Format.getPrettyFormat()).outputString(request);
+		final int index = text.indexOf(placeholder);
+		if (index == -1 || index != text.lastIndexOf(placeholder)) {
+			throw new IllegalArgumentException("Request must contain the placeholder exactly once");
+		}
+		this.head = text.substring(0, index).getBytes("UTF-8");
+		this.tail = text.substring(index + placeholder.length()).getBytes("UTF-8");
+		this.patch = patch;
+		this.charset = charset;
+		if (!Charset.isSupported(charset)) {
+			// fail now rather than in the middle of sending
+			throw new UnsupportedEncodingException(charset);
+		}
+	}
+
+	/**
+	 * @return text which does not occur anywhere else in a request
+	 */
+	@NotNull
+	static String createPlaceholder() {
+		return "patch-" + UUID.randomUUID();
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public void writeRequest(OutputStream out) throws IOException {
+		out.write(head);
+		final Reader reader = new InputStreamReader(patch.createInputStream(), charset);
+		try {
+			final Writer writer = new OutputStreamWriter(out, "UTF-8");
+			writeCdataText(reader, writer);
+			writer.flush();
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+		out.write(tail);
+	}
+
+	public long getContentLength() {
+		// not known until the patch is escaped
+		return -1;
+	}
+
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	/**
+	 * Copies text to be placed in a CDATA section, without leading and trailing whitespace and with
+	 * <code>]]&gt;</code> escaped.
+	 */
+	static void writeCdataText(@NotNull Reader in, @NotNull Writer out) throws IOException {
+		final char[] buffer = new char[BUFFER_SIZE];
+		final StringBuilder whitespace = new StringBuilder();
+		boolean started = false;
+		// brackets not written yet, as they may start the end of CDATA
+		int brackets = 0;
+		int count;
+		while ((count = in.read(buffer)) != -1) {
+			for (int i = 0; i < count; i++) {
+				final char c = buffer[i];
+				if (c <= ' ') {
+					// written only if followed by something else
+					if (started) {
+						writeBrackets(out, brackets);
+						brackets = 0;
+						whitespace.append(c);
+					}
+					continue;
+				}
+				started = true;
+				if (whitespace.length() > 0) {
+					out.append(whitespace);
+					whitespace.setLength(0);
+				}
+				if (c == ']') {
+					brackets++;
+				} else if (c == '>' && brackets >= 2) {
+					writeBrackets(out, brackets - 2);
+					brackets = 0;
+					out.write(ESCAPED_CDATA_END);
+				} else {
+					writeBrackets(out, brackets);
+					brackets = 0;
+					out.write(c);
+				}
+			}
+		}
+		writeBrackets(out, brackets);
+	}
+
+	private static void writeBrackets(@NotNull Writer out, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.write(']');
+		}
+	}
+}
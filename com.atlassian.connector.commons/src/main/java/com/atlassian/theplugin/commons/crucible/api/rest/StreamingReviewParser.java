@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.ReviewHandler;
+import com.atlassian.theplugin.commons.crucible.api.model.BasicReview;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.text.ParseException;
+
+/**
+ * Reads lists of reviews (<code>/detailedReviews/detailedReviewData</code> responses) with a pull parser.
+ * <p/>
+ * Only one <code>detailedReviewData</code> element at a time is held in memory: it is turned into a small JDOM tree,
+ * passed to {@link CrucibleRestXmlHelper#parseBasicReview(String, Element, boolean)} (so reviews are the same as
+ * those parsed from a whole document) and handed over to a {@link ReviewHandler} before the next one is read.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class StreamingReviewParser {
+
+	static final String ROOT_ELEMENT = "detailedReviews";
+
+	static final String REVIEW_ELEMENT = "detailedReviewData";
+
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+	private final String serverUrl;
+
+	private final boolean trimWikiMarkers;
+
+	public StreamingReviewParser(@NotNull String serverUrl, boolean trimWikiMarkers) {
+		this.serverUrl = serverUrl;
+		this.trimWikiMarkers = trimWikiMarkers;
+	}
+
+	/**
+	 * Parses reviews from given XML stream. The stream is not closed.
+	 *
+	 * @return number of reviews passed to the handler
+	 * @throws XMLStreamException when the response is not well-formed XML
+	 * @throws RemoteApiException when a review cannot be parsed or the handler fails
+	 */
+	public int parse(@NotNull InputStream in, @NotNull ReviewHandler handler)
+			throws XMLStreamException, RemoteApiException {
+		final XMLStreamReader reader;
+		synchronized (INPUT_FACTORY) {
+			reader = INPUT_FACTORY.createXMLStreamReader(in);
+		}
+		int count = 0;
+		try {
+			int depth = 0;
+			boolean reviewList = false;
+			while (reader.hasNext()) {
+				final int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					if (depth == 1) {
+						reviewList = ROOT_ELEMENT.equals(reader.getLocalName());
+					} else if (depth == 2 && reviewList && REVIEW_ELEMENT.equals(reader.getLocalName())) {
+						final BasicReview review = parseReview(readElement(reader));
+						depth--;
+						count++;
+						if (!handler.handle(review)) {
+							return count;
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	@NotNull
+	private BasicReview parseReview(@NotNull Element element) throws RemoteApiException {
+		try {
+			return CrucibleRestXmlHelper.parseBasicReview(serverUrl, element, trimWikiMarkers);
+		} catch (ParseException e) {
+			throw new RemoteApiException(e);
+		}
+	}
+
+	/**
+	 * Reads the element the reader is positioned at (START_ELEMENT), up to and including its END_ELEMENT.
+	 */
+	@NotNull
+	static Element readElement(@NotNull XMLStreamReader reader) throws XMLStreamException {
+		final Element root = createElement(reader);
+		Element current = root;
+		while (true) {
+			final int event = reader.next();
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				final Element child = createElement(reader);
+				current.addContent(child);
+				current = child;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if (current == root) {
+					return root;
+				}
+				current = current.getParentElement();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				current.addContent(reader.getText());
+				break;
+			default:
+				// comments and processing instructions are not needed
+				break;
+			}
+		}
+	}
+
+	@NotNull
+	private static Element createElement(@NotNull XMLStreamReader reader) {
+		final Element element = new Element(reader.getLocalName());
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+		return element;
+	}
+
+	@NotNull
+	private static XMLInputFactory createInputFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+}
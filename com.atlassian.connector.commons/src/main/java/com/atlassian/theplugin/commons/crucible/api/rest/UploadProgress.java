@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.UploadProgressListener;
+import org.apache.commons.httpclient.methods.multipart.PartSource;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Counts bytes read from uploaded content and reports them to an {@link UploadProgressListener}.
+ * <p/>
+ * Content which is read again (e.g. after a redirect) is counted only once.
+ */
+final class UploadProgress {
+
+	private final UploadProgressListener listener;
+
+	private final long total;
+
+	private long sent;
+
+	/**
+	 * @param listener listener to notify, <code>null</code> to only count
+	 * @param sources  all content to be uploaded, <code>null</code> elements are ignored
+	 */
+	UploadProgress(@Nullable UploadProgressListener listener, @NotNull Collection<PartSource> sources) {
+		this.listener = listener;
+		this.total = getTotalLength(sources);
+	}
+
+	/**
+	 * @return source reading the same content as given one and counting it
+	 */
+	@NotNull
+	PartSource track(@NotNull PartSource source) {
+		return track(source, source.getFileName());
+	}
+
+	/**
+	 * @param fileName file name reported by the returned source
+	 * @return source reading the same content as given one and counting it
+	 */
+	@NotNull
+	PartSource track(@NotNull final PartSource source, final String fileName) {
+		return new PartSource() {
+			private long read;
+
+			public long getLength() {
+				return source.getLength();
+			}
+
+			public String getFileName() {
+				return fileName;
+			}
+
+			public InputStream createInputStream() throws IOException {
+				// read again from the beginning
+				progress(-read);
+				read = 0;
+				return new FilterInputStream(source.createInputStream()) {
+					@Override
+					public int read() throws IOException {
+						final int b = super.read();
+						if (b != -1) {
+							read++;
+							progress(1);
+						}
+						return b;
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						final int count = super.read(b, off, len);
+						if (count > 0) {
+							read += count;
+							progress(count);
+						}
+						return count;
+					}
+
+					@Override
+					public long skip(long n) throws IOException {
+						final long count = super.skip(n);
+						if (count > 0) {
+							read += count;
+							progress(count);
+						}
+						return count;
+					}
+				};
+			}
+		};
+	}
+
+	synchronized long getSent() {
+		return sent;
+	}
+
+	long getTotal() {
+		return total;
+	}
+
+	private void progress(long delta) {
+		if (delta == 0) {
+			return;
+		}
+		final long current;
+		synchronized (this) {
+			sent += delta;
+			current = sent;
+		}
+		if (listener != null) {
+			listener.progress(current, total);
+		}
+	}
+
+	private static long getTotalLength(@NotNull Collection<PartSource> sources) {
+		long length = 0;
+		for (PartSource source : sources) {
+			if (source != null) {
+				final long sourceLength = source.getLength();
+				if (sourceLength < 0) {
+					return -1;
+				}
+				length += sourceLength;
+			}
+		}
+		return length;
+	}
+}
@@ -32,7 +32,9 @@ import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
 import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
 import com.atlassian.theplugin.commons.util.LoggerImpl;
 import com.atlassian.theplugin.commons.util.MiscUtil;
+import com.atlassian.theplugin.commons.util.TimestampParser;
 import com.atlassian.theplugin.commons.util.UrlUtil;
+import com.atlassian.theplugin.commons.util.XmlParserRegistry;
 import com.atlassian.theplugin.commons.util.XmlUtil;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.lang.StringUtils;
@@ -41,8 +43,6 @@ import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.jdom.xpath.XPath;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.UnknownHostException;
@@ -136,7 +136,7 @@ public class FishEyeRestSession extends AbstractHttpSession implements FishEyeSe
 			}
 
 			@SuppressWarnings("unchecked")
-			final List<Element> elements = XPath.newInstance("/response/string").selectNodes(doc);
+			final List<Element> elements = XmlParserRegistry.getXPath("/response/string").selectNodes(doc);
 			if (elements == null || elements.size() == 0) {
 				throw new RemoteApiLoginException("Server did not return any authentication token");
 			}
@@ -202,7 +202,7 @@ public class FishEyeRestSession extends AbstractHttpSession implements FishEyeSe
 		try {
 			Document doc = retrieveGetResponse(requestUrl);
 
-			XPath xpath = XPath.newInstance("/response/string");
+			XPath xpath = XmlParserRegistry.getXPath("/response/string");
 			@SuppressWarnings("unchecked")
 			List<Element> elements = xpath.selectNodes(doc);
 			List<String> myRepositories = new ArrayList<String>();
@@ -230,14 +230,14 @@ public class FishEyeRestSession extends AbstractHttpSession implements FishEyeSe
         try {
             Document doc = retrieveGetResponse(requestUrl);
 
-            XPath xpath = XPath.newInstance("/fileRevisionList");
+            XPath xpath = XmlParserRegistry.getXPath("/fileRevisionList");
             //noinspection unchecked
             List<Element> elements = xpath.selectNodes(doc);
             if (elements == null || elements.size() != 1) {
                 // hmm, what about error conditions?
                 throw new RemoteApiException(getBaseUrl() + ": " + SERVER_RETURNED_MALFORMED_RESPONSE);
             }
-            xpath = XPath.newInstance("/fileRevisionList/fileRevision");
+            xpath = XmlParserRegistry.getXPath("/fileRevisionList/fileRevision");
             //noinspection unchecked
             elements = xpath.selectNodes(doc);
             List<FisheyePathHistoryItem> list = new ArrayList<FisheyePathHistoryItem>();
@@ -279,13 +279,13 @@ public class FishEyeRestSession extends AbstractHttpSession implements FishEyeSe
 		try {
 			Document doc = retrieveGetResponse(requestUrl);
 
-			XPath xpath = XPath.newInstance("/changesetIdList");
+			XPath xpath = XmlParserRegistry.getXPath("/changesetIdList");
 			List<Element> elements = xpath.selectNodes(doc);
 			if (elements == null || elements.size() != 1) {
 				// hmm, what about error conditions?
 				throw new RemoteApiException(getBaseUrl() + ": " + SERVER_RETURNED_MALFORMED_RESPONSE);
 			}
-			xpath = XPath.newInstance("/changesetIdList/csid");
+			xpath = XmlParserRegistry.getXPath("/changesetIdList/csid");
 			elements = xpath.selectNodes(doc);
 
 			final List<String> list = MiscUtil.buildArrayList();
@@ -313,7 +313,7 @@ public class FishEyeRestSession extends AbstractHttpSession implements FishEyeSe
 		try {
 			Document doc = retrieveGetResponse(requestUrl);
 
-			XPath xpath = XPath.newInstance("/changeset");
+			XPath xpath = XmlParserRegistry.getXPath("/changeset");
 			Element changesetElement = (Element) xpath.selectSingleNode(doc);
 			if (changesetElement == null) {
 				// hmm, what about error conditions?
@@ -346,17 +346,13 @@ public class FishEyeRestSession extends AbstractHttpSession implements FishEyeSe
 		return new FileRevisionKey(element.getAttributeValue("rev"), element.getAttributeValue("path"));
 	}
 
-	private static final DateTimeFormatter CHANGESET_TIME_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ssZ");
-
-	private static final DateTimeFormatter CHANGESET1_TIME_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-
 	public static Date parseDateTime(String date) {
 		if (date != null && !date.equals("")) {
-			try {
-				return CHANGESET_TIME_FORMAT.parseDateTime(date).toDate();
-			} catch (IllegalArgumentException e) {
-				return CHANGESET1_TIME_FORMAT.parseDateTime(date).toDate();
+			final long millis = TimestampParser.parseMillis(date);
+			if (millis == TimestampParser.INVALID) {
+				throw new IllegalArgumentException("Invalid format: \"" + date + "\"");
 			}
+			return new Date(millis);
 		} else {
 			return null;
 		}
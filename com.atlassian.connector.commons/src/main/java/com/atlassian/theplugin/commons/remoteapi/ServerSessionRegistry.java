@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sessions of a server facade, one slot per server (or rather per session key, which normally combines the server
+ * URL with the credentials).
+ * <p/>
+ * A session which is already logged in is returned without any locking. Otherwise only callers asking for the same
+ * server wait for each other: the first one logs in and the others get its session (or its failure) when it is done,
+ * so a slow or dead server holds up neither callers of other servers nor sends several logins at once.
+ * <p/>
+ * When a login fails, the failure is remembered for {@link #getFailureRetryDelay()} milliseconds and reported to
+ * callers asking for that server in the meantime, instead of hammering it (and waiting for connection timeouts)
+ * over and over again. Each of these callers gets its own exception with the original failure as the cause.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class ServerSessionRegistry<S> {
+
+	/**
+	 * How long login failures are remembered by default, in milliseconds.
+	 */
+	public static final long DEFAULT_FAILURE_RETRY_DELAY = 5 * 1000L;
+
+	/**
+	 * Creates and logs in sessions for {@link ServerSessionRegistry#getSession(String, SessionLoader)}.
+	 */
+	public interface SessionLoader<S> {
+		/**
+		 * @return true if given session can be returned to callers as it is
+		 */
+		boolean isReady(@NotNull S session);
+
+		/**
+		 * Creates a new session (or reuses the given one) and logs it in.
+		 *
+		 * @param session session previously stored for the server, which is not ready anymore, or null
+		 * @return session ready to use
+		 * @throws RemoteApiException when the session cannot be created or login fails
+		 */
+		@NotNull
+		S load(@Nullable S session) throws RemoteApiException;
+	}
+
+	private final ConcurrentMap<String, S> sessions = new ConcurrentHashMap<String, S>();
+
+	private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	private final ConcurrentMap<String, Failure> failures = new ConcurrentHashMap<String, Failure>();
+
+	private volatile long failureRetryDelay = DEFAULT_FAILURE_RETRY_DELAY;
+
+	public long getFailureRetryDelay() {
+		return failureRetryDelay;
+	}
+
+	/**
+	 * @param failureRetryDelay how long (in milliseconds) a failed login is rethrown before it is attempted again,
+	 *                          0 to always try again
+	 */
+	public void setFailureRetryDelay(long failureRetryDelay) {
+		if (failureRetryDelay < 0) {
+			throw new IllegalArgumentException("failureRetryDelay must not be negative: " + failureRetryDelay);
+		}
+		this.failureRetryDelay = failureRetryDelay;
+		if (failureRetryDelay == 0) {
+			failures.clear();
+		}
+	}
+
+	/**
+	 * @return ready session stored under given key, or a new one provided by <code>loader</code>
+	 * @throws RemoteApiException thrown by the loader now, or by an earlier attempt which failed less than
+	 *                            {@link #getFailureRetryDelay()} milliseconds ago
+	 */
+	@NotNull
+	public S getSession(@NotNull String key, @NotNull SessionLoader<S> loader) throws RemoteApiException {
+		S session = sessions.get(key);
+		if (session != null && loader.isReady(session)) {
+			return session;
+		}
+		checkRecentFailure(key);
+
+		synchronized (getLock(key)) {
+			// someone else may have logged in (or failed) while we were waiting
+			session = sessions.get(key);
+			if (session != null && loader.isReady(session)) {
+				return session;
+			}
+			checkRecentFailure(key);
+
+			try {
+				session = loader.load(session);
+			} catch (RemoteApiException e) {
+				final long delay = failureRetryDelay;
+				if (delay > 0) {
+					failures.put(key, new Failure(e, System.currentTimeMillis() + delay));
+				}
+				throw e;
+			}
+			failures.remove(key);
+			sessions.put(key, session);
+			return session;
+		}
+	}
+
+	/**
+	 * @return live view of the stored sessions, keyed by session key
+	 */
+	@NotNull
+	public ConcurrentMap<String, S> getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * Forgets the session and any recent login failure of given key.
+	 */
+	public void remove(@NotNull String key) {
+		sessions.remove(key);
+		failures.remove(key);
+	}
+
+	public void clear() {
+		sessions.clear();
+		failures.clear();
+	}
+
+	private void checkRecentFailure(@NotNull String key) throws RemoteApiException {
+		final Failure failure = failures.get(key);
+		if (failure == null) {
+			return;
+		}
+		if (System.currentTimeMillis() < failure.retryAfter) {
+			throw copyOf(failure.exception);
+		}
+		failures.remove(key, failure);
+	}
+
+	/**
+	 * @return new exception of the same kind as <code>e</code>, so that the remembered one is never thrown
+	 *         (and its stack trace filled in) by several threads
+	 */
+	@NotNull
+	private static RemoteApiException copyOf(@NotNull RemoteApiException e) {
+		if (e instanceof RemoteApiMalformedUrlException) {
+			return new RemoteApiMalformedUrlException(e.getMessage(), e);
+		} else if (e instanceof RemoteApiLoginFailedException) {
+			final RemoteApiException copy = new RemoteApiLoginFailedException(e.getMessage());
+			copy.initCause(e);
+			return copy;
+		} else if (e instanceof RemoteApiLoginException) {
+			return new RemoteApiLoginException(e.getMessage(), e);
+		}
+		return new RemoteApiException(e.getMessage(), e);
+	}
+
+	@NotNull
+	private Object getLock(@NotNull String key) {
+		Object lock = locks.get(key);
+		if (lock == null) {
+			final Object newLock = new Object();
+			lock = locks.putIfAbsent(key, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	private static final class Failure {
+		private final RemoteApiException exception;
+
+		private final long retryAfter;
+
+		private Failure(@NotNull RemoteApiException exception, long retryAfter) {
+			this.exception = exception;
+			this.retryAfter = retryAfter;
+		}
+	}
+}
@@ -24,15 +24,18 @@ import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredExceptio
 import com.atlassian.theplugin.commons.remoteapi.ServiceUnavailableException;
 import com.atlassian.theplugin.commons.util.LoggerImpl;
 import com.atlassian.theplugin.commons.util.UrlUtil;
+import com.atlassian.theplugin.commons.util.XmlParserRegistry;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.auth.AuthenticationException;
 import org.apache.commons.httpclient.cookie.CookiePolicy;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
 import org.apache.commons.httpclient.methods.multipart.Part;
@@ -46,6 +49,7 @@ import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import org.jdom.xpath.XPath;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -57,7 +61,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
 
 /**
  * Communication stub for lightweight XML based APIs. This method should be tread-safe (at least it is used in this
@@ -71,7 +75,7 @@ public abstract class AbstractHttpSession {
     @NotNull
     private final ConnectionCfg server;
     private static final int MAX_REDIRECTS = 3;
-    private String responseCharSet;
+    private volatile String responseCharSet;
 
     @NotNull
     protected ConnectionCfg getServer() {
@@ -86,45 +90,25 @@ public abstract class AbstractHttpSession {
         return server.getPassword();
     }
 
-    private final Object clientLock = new Object();
-
-    private static ThreadLocal<URL> url = new ThreadLocal<URL>();
-
-    // TODO: replace this with a proper cache to ensure automatic purging. Responses can get quite large.
-    private final Map<String, CacheRecord> cache = new WeakHashMap<String, CacheRecord>();
-
     /**
-     * This class holds an HTTP response body, together with its last modification time and Etag.
+     * Default number of requests a single session may have in flight. One keeps the historical behaviour where all
+     * requests issued through a session are serialized.
      */
-    private final class CacheRecord {
-        private final byte[] document;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 1;
 
-        private final String lastModified;
-
-        private final String etag;
+    /**
+     * Guards clients which are not backed by {@link MultiThreadedHttpConnectionManager} - those cannot be safely used
+     * by more than one thread at a time, so requests are serialized regardless of the configured limit.
+     */
+    private final Semaphore serialPermit = new Semaphore(1, true);
 
-        private CacheRecord(byte[] document, String lastModified, String etag) {
-            if (document == null || lastModified == null || etag == null) {
-                throw new IllegalArgumentException("null");
-            } else {
-                this.document = document;
-                this.lastModified = lastModified;
-                this.etag = etag;
-            }
-        }
+    private volatile Semaphore requestPermits = serialPermit;
 
-        public byte[] getDocument() {
-            return document;
-        }
+    private volatile int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
 
-        public String getLastModified() {
-            return lastModified;
-        }
+    private static ThreadLocal<URL> url = new ThreadLocal<URL>();
 
-        public String getEtag() {
-            return etag;
-        }
-    }
+    private volatile HttpResponseCache cache;
 
     public static URL getUrl() {
         return url.get();
@@ -138,6 +122,54 @@ public abstract class AbstractHttpSession {
         setUrl(new URL(urlString));
     }
 
+    @NotNull
+    public HttpResponseCache getResponseCache() {
+        return cache;
+    }
+
+    /**
+     * Replaces the cache used for conditional GET requests. By default all sessions created for the same
+     * {@link ConnectionCfg} share one cache (see {@link HttpResponseCache#getSharedCache(ConnectionCfg)}).
+     *
+     * @param cache new cache
+     */
+    public void setResponseCache(@NotNull HttpResponseCache cache) {
+        this.cache = cache;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests this session may execute at the same time. Values greater than one take
+     * effect only when {@link HttpSessionCallback#getHttpClient(ConnectionCfg)} returns a client backed by a pooled
+     * {@link MultiThreadedHttpConnectionManager} (see {@link PooledHttpClientFactory}); otherwise requests are still
+     * serialized.
+     * <p/>
+     * Requests already in flight are not affected by the change.
+     *
+     * @param maxConcurrentRequests maximum number of in-flight requests, must be positive
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive: " + maxConcurrentRequests);
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.requestPermits = maxConcurrentRequests == 1 ? serialPermit : new Semaphore(maxConcurrentRequests, true);
+    }
+
+    /**
+     * Blocks until this session is allowed to execute another request with given client.
+     * The returned semaphore must be released once the request completes.
+     */
+    private Semaphore acquireRequestPermit(HttpClient client) {
+        final Semaphore permits = client.getHttpConnectionManager() instanceof MultiThreadedHttpConnectionManager
+                ? requestPermits : serialPermit;
+        permits.acquireUninterruptibly();
+        return permits;
+    }
+
     protected String getBaseUrl() {
         return UrlUtil.removeUrlTrailingSlashes(server.getUrl());
     }
@@ -160,12 +192,13 @@ public abstract class AbstractHttpSession {
         } catch (MalformedURLException e) {
             throw new RemoteApiMalformedUrlException("Malformed server URL: " + myurl, e);
         }
+        this.cache = HttpResponseCache.getSharedCache(server);
     }
 
     protected Document retrieveGetResponse(String urlString) throws IOException, JDOMException,
             RemoteApiSessionExpiredException {
 
-        final SAXBuilder builder = new SAXBuilder();
+        final SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
 
         ByteArrayInputStream in = new ByteArrayInputStream(doConditionalGet(urlString));
         InputStreamReader reader = new InputStreamReader(in);
@@ -202,39 +235,127 @@ public abstract class AbstractHttpSession {
     protected String doUnconditionalGetForTextNonXmlResource(final String urlString) throws IOException {
         UrlUtil.validateUrl(urlString);
         setUrl(urlString);
-        synchronized (clientLock) {
-            HttpClient client;
-            try {
-                client = callback.getHttpClient(server);
-            } catch (HttpProxySettingsException e) {
-                throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
-            }
+        HttpClient client;
+        try {
+            client = callback.getHttpClient(server);
+        } catch (HttpProxySettingsException e) {
+            throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
+        }
 
-            GetMethod method;
+        GetMethod method;
 
-            try {
-                method = new GetMethod(urlString);
-            } catch (IllegalArgumentException e) {
-                throw new IOException("Invalid url " + urlString);
+        try {
+            method = new GetMethod(urlString);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid url " + urlString);
+        }
+
+        final Semaphore permits = acquireRequestPermit(client);
+        try {
+            // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
+            method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+            method.getParams().setSoTimeout(client.getParams().getSoTimeout());
+            callback.configureHttpMethod(this, method);
+            client.executeMethod(method);
+
+            if (method.getStatusCode() != HttpStatus.SC_OK) {
+                throw new IOException("HTTP " + method.getStatusCode() + " ("
+                        + HttpStatus.getStatusText(method.getStatusCode()) + ")\n" + method.getStatusText());
+            } else {
+                return method.getResponseBodyAsString();
             }
+        } catch (NullPointerException e) {
+            throw createIOException("Connection error", e);
+        } finally {
+            method.releaseConnection();
+            permits.release();
+        }
+    }
 
-            try {
-                // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
-                method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
-                method.getParams().setSoTimeout(client.getParams().getSoTimeout());
-                callback.configureHttpMethod(this, method);
-                client.executeMethod(method);
+    /**
+     * Retrieves a non-XML resource (e.g. a log file) without reading its body into memory. Optionally only a part
+     * of the resource is requested with HTTP <code>Range</code> header - servers may ignore it and send the whole
+     * resource, which is reported by {@link HttpStreamResponse#getStatusCode()}.
+     * <p/>
+     * Returned stream holds the connection (and one of {@link #getMaxConcurrentRequests()} permits) until it is closed.
+     * Do not issue other requests with this session before closing it when the session is limited to a single
+     * request at a time.
+     *
+     * @param urlString URL
+     * @param range     value of Range header, e.g. <code>bytes=1024-</code> or <code>bytes=-4096</code>,
+     *                  or <code>null</code> to retrieve the whole resource
+     * @return response body, which must be closed by the caller
+     * @throws IOException in case of any problem or bad URL
+     */
+    @NotNull
+    protected HttpStreamResponse doUnconditionalGetForStream(final String urlString, @Nullable final String range)
+            throws IOException {
+        return doUnconditionalGetForStream(urlString, range, null);
+    }
 
-                if (method.getStatusCode() != HttpStatus.SC_OK) {
-                    throw new IOException("HTTP " + method.getStatusCode() + " ("
-                            + HttpStatus.getStatusText(method.getStatusCode()) + ")\n" + method.getStatusText());
-                } else {
-                    return method.getResponseBodyAsString();
-                }
-            } catch (NullPointerException e) {
-                throw createIOException("Connection error", e);
-            } finally {
+    /**
+     * Retrieves an XML resource without reading its body into memory, e.g. to parse it with a pull parser.
+     * Unlike {@link #retrieveGetResponse(String)} the response is not cached for conditional GET.
+     * <p/>
+     * Returned stream holds the connection until it is closed, see {@link #doUnconditionalGetForStream(String, String)}.
+     *
+     * @param urlString URL
+     * @return response body, which must be closed by the caller
+     * @throws IOException in case of any problem or bad URL
+     */
+    @NotNull
+    protected HttpStreamResponse doUnconditionalGetForXmlStream(final String urlString) throws IOException {
+        return doUnconditionalGetForStream(urlString, null, "application/xml;q=0.9,*/*");
+    }
+
+    @NotNull
+    private HttpStreamResponse doUnconditionalGetForStream(final String urlString, @Nullable final String range,
+            @Nullable final String accept) throws IOException {
+        UrlUtil.validateUrl(urlString);
+        setUrl(urlString);
+        HttpClient client;
+        try {
+            client = callback.getHttpClient(server);
+        } catch (HttpProxySettingsException e) {
+            throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
+        }
+
+        GetMethod method;
+
+        try {
+            method = new GetMethod(urlString);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid url " + urlString);
+        }
+        if (range != null) {
+            method.addRequestHeader("Range", range);
+        }
+        if (accept != null) {
+            method.addRequestHeader("Accept", accept);
+        }
+
+        final Semaphore permits = acquireRequestPermit(client);
+        HttpStreamResponse response = null;
+        try {
+            method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+            method.getParams().setSoTimeout(client.getParams().getSoTimeout());
+            callback.configureHttpMethod(this, method);
+            client.executeMethod(method);
+
+            final int status = method.getStatusCode();
+            if (status != HttpStatus.SC_OK && status != HttpStatus.SC_PARTIAL_CONTENT
+                    && status != HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                throw new IOException("HTTP " + status + " (" + HttpStatus.getStatusText(status) + ")\n"
+                        + method.getStatusText());
+            }
+            response = new HttpStreamResponse(method, permits);
+            return response;
+        } catch (NullPointerException e) {
+            throw createIOException("Connection error", e);
+        } finally {
+            if (response == null) {
                 method.releaseConnection();
+                permits.release();
             }
         }
     }
@@ -252,71 +373,71 @@ public abstract class AbstractHttpSession {
 
         UrlUtil.validateUrl(urlString);
         setUrl(urlString);
-        synchronized (clientLock) {
-            HttpClient client;
-            try {
-                client = callback.getHttpClient(server);
-            } catch (HttpProxySettingsException e) {
-                throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
-            }
+        HttpClient client;
+        try {
+            client = callback.getHttpClient(server);
+        } catch (HttpProxySettingsException e) {
+            throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
+        }
 
-            GetMethod method;
+        GetMethod method;
 
-            try {
-                method = new GetMethod(urlString);
-            } catch (IllegalArgumentException e) {
-                throw new IOException("Invalid url " + urlString);
-            }
+        try {
+            method = new GetMethod(urlString);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid url " + urlString);
+        }
 
-            CacheRecord cacheRecord = cache.get(urlString);
-            callback.configureHttpMethod(this, method);
+        final HttpResponseCache responseCache = cache;
+        HttpResponseCache.CacheRecord cacheRecord = responseCache.get(urlString);
+        callback.configureHttpMethod(this, method);
 
-            if (cacheRecord != null) {
-//                System.out.println(String.format("%s in cache, adding If-Modified-Since: %s and If-None-Match: %s headers.",
-//                    urlString, cacheRecord.getLastModified(), cacheRecord.getEtag()));
-                method.addRequestHeader("If-Modified-Since", cacheRecord.getLastModified());
-                method.addRequestHeader("If-None-Match", cacheRecord.getEtag());
-            }
+        if (cacheRecord != null) {
+//            System.out.println(String.format("%s in cache, adding If-Modified-Since: %s and If-None-Match: %s headers.",
+//                urlString, cacheRecord.getLastModified(), cacheRecord.getEtag()));
+            method.addRequestHeader("If-Modified-Since", cacheRecord.getLastModified());
+            method.addRequestHeader("If-None-Match", cacheRecord.getEtag());
+        }
 
-            method.addRequestHeader("Accept", "application/xml;q=0.9,*/*");
+        method.addRequestHeader("Accept", "application/xml;q=0.9,*/*");
 
-            try {
-                // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
-                method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
-                method.getParams().setSoTimeout(client.getParams().getSoTimeout());
+        final Semaphore permits = acquireRequestPermit(client);
+        try {
+            // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
+            method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+            method.getParams().setSoTimeout(client.getParams().getSoTimeout());
 
-                client.executeMethod(method);
+            client.executeMethod(method);
 
-                if (method.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cacheRecord != null) {
-//					System.out.println("Cache record valid, using cached value: " + new String(cacheRecord.getDocument()));
-                    return cacheRecord.getDocument();
-                } else if (method.getStatusCode() != HttpStatus.SC_OK) {
-                    final String errorDescription = "HTTP " + method.getStatusCode() + " ("
-                            + HttpStatus.getStatusText(method.getStatusCode()) + ")";
-                    LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
+            if (method.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cacheRecord != null) {
+//				System.out.println("Cache record valid, using cached value: " + new String(cacheRecord.getDocument()));
+                return cacheRecord.getDocument();
+            } else if (method.getStatusCode() != HttpStatus.SC_OK) {
+                final String errorDescription = "HTTP " + method.getStatusCode() + " ("
+                        + HttpStatus.getStatusText(method.getStatusCode()) + ")";
+                LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
 
-                    throw createIOException(errorDescription, new Exception(method.getResponseBodyAsString()));
-                } else {
-                    final byte[] result = method.getResponseBody();
-                    final String lastModified = method.getResponseHeader("Last-Modified") == null ? null
-                            : method.getResponseHeader("Last-Modified").getValue();
-                    final String eTag = method.getResponseHeader("Etag") == null ? null : method.getResponseHeader(
-                            "Etag").getValue();
-
-                    if (lastModified != null && eTag != null) {
-                        cacheRecord = new CacheRecord(result, lastModified, eTag);
-                        cache.put(urlString, cacheRecord);
-                    }
-                    return result;
+                throw createIOException(errorDescription, new Exception(method.getResponseBodyAsString()));
+            } else {
+                final byte[] result = method.getResponseBody();
+                final String lastModified = method.getResponseHeader("Last-Modified") == null ? null
+                        : method.getResponseHeader("Last-Modified").getValue();
+                final String eTag = method.getResponseHeader("Etag") == null ? null : method.getResponseHeader(
+                        "Etag").getValue();
+
+                if (lastModified != null && eTag != null) {
+                    responseCache.put(urlString, new HttpResponseCache.CacheRecord(result, lastModified, eTag));
                 }
-            } catch (NullPointerException e) {
-                throw createIOException("Connection error", e);
-            } catch (AuthenticationException e) {
-                // bug PL-1275
-                throw createIOException("Connection error", e);
-            } finally {
-                method.releaseConnection();
+                return result;
             }
+        } catch (NullPointerException e) {
+            throw createIOException("Connection error", e);
+        } catch (AuthenticationException e) {
+            // bug PL-1275
+            throw createIOException("Connection error", e);
+        } finally {
+            method.releaseConnection();
+            permits.release();
         }
     }
 
@@ -414,108 +535,111 @@ public abstract class AbstractHttpSession {
                 throw new RemoteApiException(e.getMessage(), e);
             }
 
-            synchronized (clientLock) {
-                HttpClient client;
-                try {
-                    client = callback.getHttpClient(server);
-                } catch (HttpProxySettingsException e) {
-                    throw new RemoteApiException("Connection error. Please set up HTTP Proxy settings", e);
-                }
+            HttpClient client;
+            try {
+                client = callback.getHttpClient(server);
+            } catch (HttpProxySettingsException e) {
+                throw new RemoteApiException("Connection error. Please set up HTTP Proxy settings", e);
+            }
 
-                PostMethod method = new PostMethod(baseUrl);
+            PostMethod method = new PostMethod(baseUrl);
 
-                try {
-                    // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
-                    method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
-                    method.getParams().setSoTimeout(client.getParams().getSoTimeout());
-                    method.addRequestHeader("Accept", "application/xml");
-
-                    callback.configureHttpMethod(this, method);
-                    postMethodPreparer.prepare(method);
-
-                    client.executeMethod(method);
-
-                    final int httpStatus = method.getStatusCode();
-                    if (httpStatus == HttpStatus.SC_NO_CONTENT) {
-                        return doc;
-                    } else if (httpStatus == HttpStatus.SC_MOVED_PERMANENTLY
-                            || httpStatus == HttpStatus.SC_MOVED_TEMPORARILY) {
-                                                
-                        Header newLocation = method.getResponseHeader("Location");
-                        if (newLocation == null) {
-                            throw new RemoteApiException(
-                                    "Connection error. Received redirection without new target address");
-                        }
-                        String lUrl = newLocation.getValue();
-                        if (lUrl.endsWith("/success")) {
-                            String newBaseUrl = lUrl.substring(0, lUrl.lastIndexOf("/success"));
-                            if (!baseUrl.startsWith(newBaseUrl)) {
-                                // need to login to make sure HttpClient picks up the session cookie
-                                baseUrl = newBaseUrl + "/";
-                                continue;
-                            }
-                        } else if (lUrl.endsWith("/JiraLockedError")) {
-                            throw new RemoteApiException("JIRA is locked. Please contact your JIRA administrator.");
+            final Semaphore permits = acquireRequestPermit(client);
+            try {
+                // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
+                method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+                method.getParams().setSoTimeout(client.getParams().getSoTimeout());
+                method.addRequestHeader("Accept", "application/xml");
 
-						} else {
-                            throw new RemoteApiException(
-                                    "Connection error. Received too many redirects (more than " + MAX_REDIRECTS + ")");
-                        }
+                callback.configureHttpMethod(this, method);
+                postMethodPreparer.prepare(method);
 
-                    } else if (httpStatus == HttpStatus.SC_FORBIDDEN) {
-                        final String errorDescription = "HTTP " + HttpStatus.SC_FORBIDDEN + " ("
-                                + HttpStatus.getStatusText(HttpStatus.SC_FORBIDDEN) + ")";
-                        LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
-
-                        throw new RemoteApiException(errorDescription, new Exception(method.getResponseBodyAsString()));
-                    } else if (httpStatus != HttpStatus.SC_OK
-                            && httpStatus != HttpStatus.SC_CREATED
-                            && !method.getResponseBodyAsString().startsWith("<html>")) {
-
-                        Document document;
-                        SAXBuilder builder = new SAXBuilder();
-                        StringWriter writer = new StringWriter();
-                        IOUtils.copy(method.getResponseBodyAsStream(), writer, "UTF-8");
-                        String response = writer.toString();
-                        if (txtHolder != null) {
-                            txtHolder.append(response);
+                client.executeMethod(method);
+
+                final int httpStatus = method.getStatusCode();
+                if (httpStatus == HttpStatus.SC_NO_CONTENT) {
+                    return doc;
+                } else if (httpStatus == HttpStatus.SC_MOVED_PERMANENTLY
+                        || httpStatus == HttpStatus.SC_MOVED_TEMPORARILY) {
+                                            
+                    Header newLocation = method.getResponseHeader("Location");
+                    if (newLocation == null) {
+                        throw new RemoteApiException(
+                                "Connection error. Received redirection without new target address");
+                    }
+                    String lUrl = newLocation.getValue();
+                    if (lUrl.endsWith("/success")) {
+                        String newBaseUrl = lUrl.substring(0, lUrl.lastIndexOf("/success"));
+                        if (!baseUrl.startsWith(newBaseUrl)) {
+                            // need to login to make sure HttpClient picks up the session cookie
+                            baseUrl = newBaseUrl + "/";
+                            continue;
                         }
-                        document = builder.build(new ByteArrayInputStream(response.getBytes()));
-                        throw buildExceptionText(method.getStatusCode(), document);
-                        
-                    } else if (httpStatus == HttpStatus.SC_NOT_ACCEPTABLE) {
-                        final String errorDescription = "HTTP " + httpStatus + " ("
-                                + "Authentication failed (probably invalid username or password)."
-                                + HttpStatus.getStatusText(httpStatus) + ")";
-                        LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
-                        throw new RemoteApiException(errorDescription, new Exception(method.getResponseBodyAsString()));
-
-                        //RECEIVED STATUS AS html
-                    } else if (httpStatus != HttpStatus.SC_OK && httpStatus != HttpStatus.SC_CREATED) {
-                        final String errorDescription = "HTTP " + httpStatus + " ("
-                                + HttpStatus.getStatusText(httpStatus) + ")";
-                        LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
-                        throw new RemoteApiException(errorDescription, new Exception(method.getResponseBodyAsString()));
+                    } else if (lUrl.endsWith("/JiraLockedError")) {
+                        throw new RemoteApiException("JIRA is locked. Please contact your JIRA administrator.");
+
+						} else {
+                        throw new RemoteApiException(
+                                "Connection error. Received too many redirects (more than " + MAX_REDIRECTS + ")");
                     }
 
-                    this.responseCharSet = method.getResponseCharSet();
-                    if (expectResponse) {
-                        SAXBuilder builder = new SAXBuilder();
-                        doc = builder.build(method.getResponseBodyAsStream());
-                        preprocessResult(doc);
+                } else if (httpStatus == HttpStatus.SC_FORBIDDEN) {
+                    final String errorDescription = "HTTP " + HttpStatus.SC_FORBIDDEN + " ("
+                            + HttpStatus.getStatusText(HttpStatus.SC_FORBIDDEN) + ")";
+                    LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
+
+                    throw new RemoteApiException(errorDescription, new Exception(method.getResponseBodyAsString()));
+                } else if (httpStatus != HttpStatus.SC_OK
+                        && httpStatus != HttpStatus.SC_CREATED
+                        && !method.getResponseBodyAsString().startsWith("<html>")) {
+
+                    Document document;
+                    SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+                    StringWriter writer = new StringWriter();
+                    IOUtils.copy(method.getResponseBodyAsStream(), writer, "UTF-8");
+                    String response = writer.toString();
+                    if (txtHolder != null) {
+                        txtHolder.append(response);
                     }
-                    break;
-
-                } catch (NullPointerException e) {
-                    throw new RemoteApiException("Connection error to [" + baseUrl + "]", e);
-                } catch (IOException e) {
-                    throw new RemoteApiException(e.getMessage(), e);
-                    // TODO PLE-1245 we may need below extended description for some reason (if yes, then restore it)
-                    // throw new RemoteApiException(IOException.class.getSimpleName() + " encountered while posting data to ["
-                    // + urlString + "]: " + e.getMessage(), e);
-                } finally {
+                    document = builder.build(new ByteArrayInputStream(response.getBytes()));
+                    throw buildExceptionText(method.getStatusCode(), document);
+                    
+                } else if (httpStatus == HttpStatus.SC_NOT_ACCEPTABLE) {
+                    final String errorDescription = "HTTP " + httpStatus + " ("
+                            + "Authentication failed (probably invalid username or password)."
+                            + HttpStatus.getStatusText(httpStatus) + ")";
+                    LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
+                    throw new RemoteApiException(errorDescription, new Exception(method.getResponseBodyAsString()));
+
+                    //RECEIVED STATUS AS html
+                } else if (httpStatus != HttpStatus.SC_OK && httpStatus != HttpStatus.SC_CREATED) {
+                    final String errorDescription = "HTTP " + httpStatus + " ("
+                            + HttpStatus.getStatusText(httpStatus) + ")";
+                    LoggerImpl.getInstance().info(errorDescription + "\n" + method.getStatusText());
+                    throw new RemoteApiException(errorDescription, new Exception(method.getResponseBodyAsString()));
+                }
+
+                this.responseCharSet = method.getResponseCharSet();
+                if (expectResponse) {
+                    SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+                    doc = builder.build(method.getResponseBodyAsStream());
+                    preprocessResult(doc);
+                }
+                break;
+
+            } catch (NullPointerException e) {
+                throw new RemoteApiException("Connection error to [" + baseUrl + "]", e);
+            } catch (IOException e) {
+                throw new RemoteApiException(e.getMessage(), e);
+                // TODO PLE-1245 we may need below extended description for some reason (if yes, then restore it)
+                // throw new RemoteApiException(IOException.class.getSimpleName() + " encountered while posting data to ["
+                // + urlString + "]: " + e.getMessage(), e);
+            } finally {
+                try {
                     preprocessMethodResult(method);
+                } finally {
                     method.releaseConnection();
+                    permits.release();
                 }
             }
         }
@@ -542,77 +666,98 @@ public abstract class AbstractHttpSession {
      */
     protected Document retrievePostResponse(String urlString, Part[] parts, boolean expectResponse)
             throws JDOMException, RemoteApiException {
-        return retrievePostResponseInternal(urlString, parts, expectResponse, 0);
+        return retrievePostResponse(urlString, parts, expectResponse, false);
+    }
+
+    /**
+     * @param compress whether to send the request body compressed with gzip, see {@link GzipRequestEntity}
+     */
+    protected Document retrievePostResponse(String urlString, Part[] parts, boolean expectResponse, boolean compress)
+            throws JDOMException, RemoteApiException {
+        return retrievePostResponseInternal(urlString, parts, expectResponse, compress, 0);
     }
 
     private Document retrievePostResponseInternal(String urlString, Part[] parts,
-                                                  boolean expectResponse, int redirectCounter)
+                                                  boolean expectResponse, boolean compress, int redirectCounter)
             throws JDOMException, RemoteApiException {
 
         Document doc = null;
+        String redirectUrl = null;
 
-        synchronized (clientLock) {
-            HttpClient client;
-            try {
-                client = callback.getHttpClient(server);
-            } catch (HttpProxySettingsException e) {
-                throw new RemoteApiException("Connection error to [" + urlString
-                        + "]. Please set up HTTP Proxy settings", e);
-            }
+        HttpClient client;
+        try {
+            client = callback.getHttpClient(server);
+        } catch (HttpProxySettingsException e) {
+            throw new RemoteApiException("Connection error to [" + urlString
+                    + "]. Please set up HTTP Proxy settings", e);
+        }
 
-            PostMethod method = new PostMethod(urlString);
+        PostMethod method = new PostMethod(urlString);
 
-            try {
-                //create new post method, and set parameters
+        final Semaphore permits = acquireRequestPermit(client);
+        try {
+            //create new post method, and set parameters
 
-                method.getParams().setBooleanParameter(HttpMethodParams.USE_EXPECT_CONTINUE, true);
-                method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+            method.getParams().setBooleanParameter(HttpMethodParams.USE_EXPECT_CONTINUE, true);
+            method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
 
-                // Create the multi-part request
-                method.setRequestEntity(new MultipartRequestEntity(parts, method.getParams()));
-                callback.configureHttpMethod(this, method);
+            // Create the multi-part request
+            final RequestEntity entity = new MultipartRequestEntity(parts, method.getParams());
+            if (compress) {
+                method.setRequestHeader("Content-Encoding", GzipRequestEntity.CONTENT_ENCODING);
+                method.setRequestEntity(new GzipRequestEntity(entity));
+            } else {
+                method.setRequestEntity(entity);
+            }
+            callback.configureHttpMethod(this, method);
 
-                client.executeMethod(method);
-                final int httpStatus = method.getStatusCode();
-                if (httpStatus == HttpStatus.SC_NO_CONTENT) {
-                    return doc;
-                } else if (httpStatus == HttpStatus.SC_MOVED_PERMANENTLY
-                        || httpStatus == HttpStatus.SC_MOVED_TEMPORARILY) {
-                    if (redirectCounter < MAX_REDIRECTS) {
-                        Header newLocation = method.getResponseHeader("Location");
-                        if (newLocation == null) {
-                            throw new RemoteApiException(
-                                    "Connection error. Received redirection without new target address");
-                        }
-                        return retrievePostResponseInternal(
-                                newLocation.getValue(), parts, expectResponse, redirectCounter + 1);
-                    } else {
+            client.executeMethod(method);
+            final int httpStatus = method.getStatusCode();
+            if (httpStatus == HttpStatus.SC_NO_CONTENT) {
+                return doc;
+            } else if (httpStatus == HttpStatus.SC_MOVED_PERMANENTLY
+                    || httpStatus == HttpStatus.SC_MOVED_TEMPORARILY) {
+                if (redirectCounter < MAX_REDIRECTS) {
+                    Header newLocation = method.getResponseHeader("Location");
+                    if (newLocation == null) {
                         throw new RemoteApiException(
-                                "Connection error. Received too many redirects (more than " + MAX_REDIRECTS + ")");
+                                "Connection error. Received redirection without new target address");
                     }
-                } else if (httpStatus != HttpStatus.SC_OK && httpStatus != HttpStatus.SC_CREATED) {
-
-                    Document document;
-                    SAXBuilder builder = new SAXBuilder();
-                    document = builder.build(method.getResponseBodyAsStream());
-                    throw buildExceptionText(method.getStatusCode(), document);
+                    // follow the redirect only after the permit is released, as the limit is not reentrant
+                    redirectUrl = newLocation.getValue();
+                } else {
+                    throw new RemoteApiException(
+                            "Connection error. Received too many redirects (more than " + MAX_REDIRECTS + ")");
                 }
+            } else if (httpStatus != HttpStatus.SC_OK && httpStatus != HttpStatus.SC_CREATED) {
 
-                if (expectResponse) {
-                    SAXBuilder builder = new SAXBuilder();
-                    doc = builder.build(method.getResponseBodyAsStream());
-                    preprocessResult(doc);
-                }
-            } catch (NullPointerException e) {
-                throw new RemoteApiException("Connection error to [" + urlString + "]", e);
-            } catch (IOException e) {
-                throw new RemoteApiException(IOException.class.getSimpleName() + " encountered while posting data to ["
-                        + urlString + "]: " + e.getMessage(), e);
-            } finally {
+                Document document;
+                SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+                document = builder.build(method.getResponseBodyAsStream());
+                throw buildExceptionText(method.getStatusCode(), document);
+            }
+
+            if (redirectUrl == null && expectResponse) {
+                SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+                doc = builder.build(method.getResponseBodyAsStream());
+                preprocessResult(doc);
+            }
+        } catch (NullPointerException e) {
+            throw new RemoteApiException("Connection error to [" + urlString + "]", e);
+        } catch (IOException e) {
+            throw new RemoteApiException(IOException.class.getSimpleName() + " encountered while posting data to ["
+                    + urlString + "]: " + e.getMessage(), e);
+        } finally {
+            try {
                 preprocessMethodResult(method);
+            } finally {
                 method.releaseConnection();
+                permits.release();
             }
         }
+        if (redirectUrl != null) {
+            return retrievePostResponseInternal(redirectUrl, parts, expectResponse, compress, redirectCounter + 1);
+        }
         return doc;
     }
 
@@ -625,7 +770,7 @@ public abstract class AbstractHttpSession {
                 .append("Reason: ");
 
         {
-            XPath xpath = XPath.newInstance("error/code");
+            XPath xpath = XmlParserRegistry.getXPath("error/code");
             @SuppressWarnings("unchecked")
             final List<Element> nodes = xpath.selectNodes(document);
             if (nodes != null && !nodes.isEmpty()) {
@@ -634,7 +779,7 @@ public abstract class AbstractHttpSession {
         }
 
         {
-            XPath xpath = XPath.newInstance("error/message");
+            XPath xpath = XmlParserRegistry.getXPath("error/message");
             @SuppressWarnings("unchecked")
             final List<Element> messages = xpath.selectNodes(document);
             if (messages != null && !messages.isEmpty()) {
@@ -643,7 +788,7 @@ public abstract class AbstractHttpSession {
         }
 
         {
-            XPath xpath = XPath.newInstance("status/message");
+            XPath xpath = XmlParserRegistry.getXPath("status/message");
             @SuppressWarnings("unchecked")
             final List<Element> messages = xpath.selectNodes(document);
             if (messages != null && !messages.isEmpty()) {
@@ -653,7 +798,7 @@ public abstract class AbstractHttpSession {
 
         String serverStackTrace = null;
         {
-            XPath xpath = XPath.newInstance("error/stacktrace");
+            XPath xpath = XmlParserRegistry.getXPath("error/stacktrace");
             @SuppressWarnings("unchecked")
             final List<Element> nodes = xpath.selectNodes(document);
             if (nodes != null && !nodes.isEmpty()) {
@@ -675,57 +820,58 @@ public abstract class AbstractHttpSession {
         UrlUtil.validateUrl(urlString);
 
         Document doc = null;
-        synchronized (clientLock) {
-            HttpClient client;
-            try {
-                client = callback.getHttpClient(server);
-            } catch (HttpProxySettingsException e) {
-                throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
-            }
+        HttpClient client;
+        try {
+            client = callback.getHttpClient(server);
+        } catch (HttpProxySettingsException e) {
+            throw createIOException("Connection error. Please set up HTTP Proxy settings", e);
+        }
 
-            DeleteMethod method = new DeleteMethod(urlString);
+        DeleteMethod method = new DeleteMethod(urlString);
+        String redirectUrl = null;
 
-            try {
-                // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
-                method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
-                method.getParams().setSoTimeout(client.getParams().getSoTimeout());
-                callback.configureHttpMethod(this, method);
+        final Semaphore permits = acquireRequestPermit(client);
+        try {
+            // method.getParams().setCookiePolicy(CookiePolicy.RFC_2109);
+            method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+            method.getParams().setSoTimeout(client.getParams().getSoTimeout());
+            callback.configureHttpMethod(this, method);
 
-                client.executeMethod(method);
+            client.executeMethod(method);
 
-                int statusCode = method.getStatusCode();
-                if (statusCode == HttpStatus.SC_NO_CONTENT) {
-                    return null;
-                }
-                if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY
-                        || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
-                    if (redirectCounter < MAX_REDIRECTS) {
-                        Header newLocation = method.getResponseHeader("Location");
-                        if (newLocation == null) {
-                            throw new IOException(
-                                    "Connection error. Received redirection without new target address");
-                        }
-                        return retrieveDeleteResponseInternal(
-                                newLocation.getValue(), expectResponse, redirectCounter + 1);
-                    } else {
+            int statusCode = method.getStatusCode();
+            if (statusCode == HttpStatus.SC_NO_CONTENT) {
+                return null;
+            }
+            if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY
+                    || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
+                if (redirectCounter < MAX_REDIRECTS) {
+                    Header newLocation = method.getResponseHeader("Location");
+                    if (newLocation == null) {
                         throw new IOException(
-                                "Connection error. Received too many redirects (more than " + MAX_REDIRECTS + ")");
+                                "Connection error. Received redirection without new target address");
                     }
+                    // follow the redirect only after the permit is released, as the limit is not reentrant
+                    redirectUrl = newLocation.getValue();
+                } else {
+                    throw new IOException(
+                            "Connection error. Received too many redirects (more than " + MAX_REDIRECTS + ")");
                 }
-                if (method.getStatusCode() != HttpStatus.SC_OK) {
-                    throw new IOException("HTTP status code " + method.getStatusCode() + ": " + method.getStatusText());
-                }
-
-                if (expectResponse) {
-                    SAXBuilder builder = new SAXBuilder();
-                    doc = builder.build(method.getResponseBodyAsStream());
-                    preprocessResult(doc);
-                }
-            } catch (NullPointerException e) {
-                throw createIOException("Connection error", e);
-            } finally {
-                method.releaseConnection();
+            } else if (method.getStatusCode() != HttpStatus.SC_OK) {
+                throw new IOException("HTTP status code " + method.getStatusCode() + ": " + method.getStatusText());
+            } else if (expectResponse) {
+                SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+                doc = builder.build(method.getResponseBodyAsStream());
+                preprocessResult(doc);
             }
+        } catch (NullPointerException e) {
+            throw createIOException("Connection error", e);
+        } finally {
+            method.releaseConnection();
+            permits.release();
+        }
+        if (redirectUrl != null) {
+            return retrieveDeleteResponseInternal(redirectUrl, expectResponse, redirectCounter + 1);
         }
         return doc;
     }
@@ -0,0 +1,486 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi.rest;
+
+import com.atlassian.theplugin.commons.util.LoggerImpl;
+import com.atlassian.theplugin.commons.util.StringUtil;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent tier of {@link HttpResponseCache}, which keeps conditional GET records between IDE restarts.
+ * <p/>
+ * Response bodies are stored in content-addressed files (named after SHA-1 of the body, so identical responses are
+ * stored once). URL to (etag, last modified, content file) mapping is kept in an append-only index log, where every
+ * record is length-prefixed and checksummed. A torn or corrupted tail left by a crash is dropped when the index is
+ * loaded, and body files are written to a temporary file first and renamed, so a crash never exposes partial content.
+ * The index is loaded when the cache is created, so the first requests after a restart are already conditional.
+ * <p/>
+ * Total size of body files is limited by <code>maxBytes</code>; least recently used entries are evicted first.
+ * <p/>
+ * Cached responses are not tied to a user, so one directory should be used per
+ * {@link com.atlassian.connector.commons.api.ConnectionCfg}.
+ * <p/>
+ * This class is thread-safe. All operations on the index are synchronized on <code>this</code>.
+ */
+public class DiskResponseCache {
+
+	private static final String INDEX_FILE = "index.dat";
+
+	private static final String COMPACTED_INDEX_FILE = "index.tmp";
+
+	private static final String CONTENT_SUFFIX = ".body";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final int INDEX_MAGIC = 0x41434331;
+
+	private static final byte RECORD_PUT = 1;
+
+	private static final byte RECORD_REMOVE = 2;
+
+	private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+	private static final int MIN_RECORDS_TO_COMPACT = 1000;
+
+	private final File directory;
+
+	private final long maxBytes;
+
+	/** access-ordered, so iteration starts with the least recently used entry */
+	private final LinkedHashMap<String, IndexEntry> entries = new LinkedHashMap<String, IndexEntry>(16, 0.75f, true);
+
+	private final Map<String, Integer> contentReferences = new HashMap<String, Integer>();
+
+	private long sizeInBytes;
+
+	private int indexRecords;
+
+	private RandomAccessFile indexLog;
+
+	private static final class IndexEntry {
+		private final String etag;
+		private final String lastModified;
+		private final String contentHash;
+		private final long length;
+
+		private IndexEntry(String etag, String lastModified, String contentHash, long length) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.contentHash = contentHash;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Opens (or creates) the cache in given directory and loads its index.
+	 *
+	 * @param directory directory used exclusively by this cache
+	 * @param maxBytes  maximum total size of cached response bodies
+	 * @throws IOException when the directory cannot be created or the index cannot be opened
+	 */
+	public DiskResponseCache(@NotNull File directory, long maxBytes) throws IOException {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create cache directory " + directory);
+		}
+		load();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param urlString requested URL
+	 * @return record stored for given URL or <code>null</code> if there is none or its body cannot be read
+	 */
+	@Nullable
+	public HttpResponseCache.CacheRecord get(@NotNull String urlString) {
+		final IndexEntry entry;
+		synchronized (this) {
+			entry = entries.get(urlString);
+		}
+		if (entry == null) {
+			return null;
+		}
+		// body files are immutable, so they can be read without holding the lock
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(getContentFile(entry.contentHash));
+			final byte[] document = IOUtils.toByteArray(in);
+			if (document.length == entry.length) {
+				return new HttpResponseCache.CacheRecord(document, entry.lastModified, entry.etag);
+			}
+		} catch (IOException e) {
+			// evicted in the meantime or removed externally
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		removeIfUnchanged(urlString, entry);
+		return null;
+	}
+
+	public synchronized void put(@NotNull String urlString, @NotNull HttpResponseCache.CacheRecord record) {
+		final byte[] document = record.getDocument();
+		if (indexLog == null || document.length > maxBytes) {
+			return;
+		}
+		final String contentHash = StringUtil.sha1Hex(document);
+		final IndexEntry previous = entries.get(urlString);
+		if (previous != null && previous.contentHash.equals(contentHash)
+				&& previous.etag.equals(record.getEtag()) && previous.lastModified.equals(record.getLastModified())) {
+			return;
+		}
+		// when only the validators changed, the body file is kept and not written again
+		removeEntry(urlString, previous == null || !previous.contentHash.equals(contentHash));
+		try {
+			writeContent(contentHash, document);
+			final IndexEntry entry = new IndexEntry(record.getEtag(), record.getLastModified(), contentHash,
+					document.length);
+			appendRecord(RECORD_PUT, urlString, entry);
+			addEntry(urlString, entry);
+			evictIfNeeded();
+			compactIfNeeded();
+		} catch (IOException e) {
+			LoggerImpl.getInstance().warn("Cannot store response of [" + urlString + "] in the disk cache", e);
+		}
+	}
+
+	public synchronized void remove(@NotNull String urlString) {
+		if (removeEntry(urlString, true) != null) {
+			try {
+				appendRecord(RECORD_REMOVE, urlString, null);
+			} catch (IOException e) {
+				LoggerImpl.getInstance().warn("Cannot update the disk cache index", e);
+			}
+		}
+	}
+
+	/**
+	 * Removes records of all URLs of given host.
+	 *
+	 * @param host host name as returned by {@link AbstractHttpSession#getServerNameFromUrl(String)}
+	 */
+	public synchronized void removeHost(@NotNull String host) {
+		for (String url : new ArrayList<String>(entries.keySet())) {
+			if (host.equals(AbstractHttpSession.getServerNameFromUrl(url))) {
+				remove(url);
+			}
+		}
+	}
+
+	private synchronized void removeIfUnchanged(String urlString, IndexEntry entry) {
+		if (entries.get(urlString) == entry) {
+			remove(urlString);
+		}
+	}
+
+	public synchronized void clear() {
+		for (String url : new ArrayList<String>(entries.keySet())) {
+			removeEntry(url, true);
+		}
+		try {
+			compact();
+		} catch (IOException e) {
+			LoggerImpl.getInstance().warn("Cannot update the disk cache index", e);
+		}
+	}
+
+	public synchronized void close() {
+		if (indexLog != null) {
+			try {
+				indexLog.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+			indexLog = null;
+		}
+	}
+
+	private void load() throws IOException {
+		final File index = new File(directory, INDEX_FILE);
+		final File compacted = new File(directory, COMPACTED_INDEX_FILE);
+		if (!index.exists() && compacted.exists()) {
+			// crashed between removing the old index and renaming the compacted one
+			if (!compacted.renameTo(index)) {
+				throw new IOException("Cannot restore disk cache index " + compacted);
+			}
+		}
+		if (compacted.exists() && !compacted.delete()) {
+			LoggerImpl.getInstance().warn("Cannot delete " + compacted);
+		}
+
+		indexLog = new RandomAccessFile(index, "rw");
+		final long validLength = readIndex();
+		if (validLength < indexLog.length()) {
+			LoggerImpl.getInstance().info("Dropping " + (indexLog.length() - validLength)
+					+ " bytes of damaged disk cache index " + index);
+			indexLog.setLength(validLength);
+		}
+		if (validLength == 0) {
+			indexLog.writeInt(INDEX_MAGIC);
+		}
+		indexLog.seek(indexLog.length());
+
+		deleteUnreferencedFiles();
+		evictIfNeeded();
+	}
+
+	/**
+	 * @return length of the valid part of the index
+	 */
+	private long readIndex() throws IOException {
+		final long length = indexLog.length();
+		if (length < 4 || length > Integer.MAX_VALUE) {
+			return 0;
+		}
+		final byte[] data = new byte[(int) length];
+		indexLog.readFully(data);
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		if (in.readInt() != INDEX_MAGIC) {
+			return 0;
+		}
+		long valid = 4;
+		final CRC32 crc = new CRC32();
+		while (valid + 4 <= length) {
+			final int recordLength = in.readInt();
+			if (recordLength <= 0 || recordLength > MAX_RECORD_LENGTH || valid + 4 + recordLength + 8 > length) {
+				break;
+			}
+			final byte[] record = new byte[recordLength];
+			in.readFully(record);
+			crc.reset();
+			crc.update(record);
+			if (in.readLong() != crc.getValue()) {
+				break;
+			}
+			applyRecord(record);
+			valid += 4 + recordLength + 8;
+		}
+		return valid;
+	}
+
+	private void applyRecord(byte[] record) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		final byte type = in.readByte();
+		final String url = in.readUTF();
+		// superseded records may point to the same body, unreferenced files are swept once the index is loaded
+		removeEntry(url, false);
+		if (type == RECORD_PUT) {
+			final IndexEntry entry = new IndexEntry(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+			if (getContentFile(entry.contentHash).length() == entry.length) {
+				addEntry(url, entry);
+			}
+		}
+		indexRecords++;
+	}
+
+	private void appendRecord(byte type, String url, @Nullable IndexEntry entry) throws IOException {
+		if (indexLog == null) {
+			return;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		writeRecord(out, type, url, entry);
+		indexLog.write(bytes.toByteArray());
+		indexRecords++;
+	}
+
+	private static void writeRecord(DataOutputStream out, byte type, String url, @Nullable IndexEntry entry)
+			throws IOException {
+		final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+		final DataOutputStream record = new DataOutputStream(recordBytes);
+		record.writeByte(type);
+		record.writeUTF(url);
+		if (entry != null) {
+			record.writeUTF(entry.etag);
+			record.writeUTF(entry.lastModified);
+			record.writeUTF(entry.contentHash);
+			record.writeLong(entry.length);
+		}
+		record.flush();
+		final byte[] data = recordBytes.toByteArray();
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+		out.writeInt(data.length);
+		out.write(data);
+		out.writeLong(crc.getValue());
+		out.flush();
+	}
+
+	private void compactIfNeeded() throws IOException {
+		if (indexRecords > MIN_RECORDS_TO_COMPACT && indexRecords > 2 * entries.size()) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrites the index so that it contains only live entries. The new index is written aside and then renamed,
+	 * so the old one stays valid until the new one is complete.
+	 */
+	private void compact() throws IOException {
+		final File index = new File(directory, INDEX_FILE);
+		final File compacted = new File(directory, COMPACTED_INDEX_FILE);
+		final DataOutputStream out = new DataOutputStream(new FileOutputStream(compacted));
+		try {
+			out.writeInt(INDEX_MAGIC);
+			// iterate in LRU order, so the access order survives a restart
+			for (Map.Entry<String, IndexEntry> entry : entries.entrySet()) {
+				writeRecord(out, RECORD_PUT, entry.getKey(), entry.getValue());
+			}
+			out.flush();
+		} finally {
+			out.close();
+		}
+		close();
+		if (!index.delete() || !compacted.renameTo(index)) {
+			throw new IOException("Cannot replace disk cache index " + index);
+		}
+		indexLog = new RandomAccessFile(index, "rw");
+		indexLog.seek(indexLog.length());
+		indexRecords = entries.size();
+	}
+
+	private void addEntry(String url, IndexEntry entry) {
+		entries.put(url, entry);
+		final Integer references = contentReferences.get(entry.contentHash);
+		if (references == null) {
+			contentReferences.put(entry.contentHash, 1);
+			sizeInBytes += entry.length;
+		} else {
+			contentReferences.put(entry.contentHash, references + 1);
+		}
+	}
+
+	@Nullable
+	private IndexEntry removeEntry(String url, boolean deleteUnreferencedContent) {
+		final IndexEntry entry = entries.remove(url);
+		if (entry != null) {
+			final Integer references = contentReferences.get(entry.contentHash);
+			if (references == null || references <= 1) {
+				contentReferences.remove(entry.contentHash);
+				sizeInBytes -= entry.length;
+				if (deleteUnreferencedContent) {
+					deleteContent(entry.contentHash);
+				}
+			} else {
+				contentReferences.put(entry.contentHash, references - 1);
+			}
+		}
+		return entry;
+	}
+
+	private void evictIfNeeded() throws IOException {
+		final Iterator<String> lru = entries.keySet().iterator();
+		final List<String> evicted = new ArrayList<String>();
+		long size = sizeInBytes;
+		while (size > maxBytes && lru.hasNext()) {
+			final String url = lru.next();
+			evicted.add(url);
+			final IndexEntry entry = entries.get(url);
+			final Integer references = contentReferences.get(entry.contentHash);
+			if (references == null || references <= 1) {
+				size -= entry.length;
+			}
+		}
+		for (String url : evicted) {
+			removeEntry(url, true);
+			appendRecord(RECORD_REMOVE, url, null);
+		}
+	}
+
+	private void deleteUnreferencedFiles() {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			final String name = file.getName();
+			final boolean orphan = name.endsWith(TEMP_SUFFIX) && !name.equals(COMPACTED_INDEX_FILE)
+					|| name.endsWith(CONTENT_SUFFIX)
+					&& !contentReferences.containsKey(name.substring(0, name.length() - CONTENT_SUFFIX.length()));
+			if (orphan && !file.delete()) {
+				LoggerImpl.getInstance().warn("Cannot delete " + file);
+			}
+		}
+	}
+
+	private void writeContent(String contentHash, byte[] document) throws IOException {
+		final File target = getContentFile(contentHash);
+		if (target.length() == document.length) {
+			// content-addressed, so the same body is already there
+			return;
+		}
+		final File temp = File.createTempFile(contentHash, TEMP_SUFFIX, directory);
+		final FileOutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(document);
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if (target.exists()) {
+			target.delete();
+		}
+		if (!temp.renameTo(target)) {
+			temp.delete();
+			throw new IOException("Cannot create " + target);
+		}
+	}
+
+	private void deleteContent(String contentHash) {
+		final File file = getContentFile(contentHash);
+		if (file.exists() && !file.delete()) {
+			LoggerImpl.getInstance().warn("Cannot delete " + file);
+		}
+	}
+
+	private File getContentFile(String contentHash) {
+		return new File(directory, contentHash + CONTENT_SUFFIX);
+	}
+}
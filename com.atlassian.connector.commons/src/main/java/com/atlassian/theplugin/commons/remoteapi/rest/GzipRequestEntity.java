@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi.rest;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request body compressed with gzip while it is being sent. The request has to declare
+ * <code>Content-Encoding: gzip</code> (see {@link #CONTENT_ENCODING}) and the server has to support such requests,
+ * which is not required by HTTP.
+ * <p/>
+ * Length of the compressed body is not known in advance, so it is sent with chunked transfer encoding.
+ */
+public class GzipRequestEntity implements RequestEntity {
+
+	public static final String CONTENT_ENCODING = "gzip";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final RequestEntity entity;
+
+	public GzipRequestEntity(@NotNull RequestEntity entity) {
+		this.entity = entity;
+	}
+
+	public boolean isRepeatable() {
+		return entity.isRepeatable();
+	}
+
+	public void writeRequest(OutputStream out) throws IOException {
+		final GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+		entity.writeRequest(gzip);
+		// the connection stream must stay open
+		gzip.finish();
+	}
+
+	public long getContentLength() {
+		return -1;
+	}
+
+	public String getContentType() {
+		return entity.getContentType();
+	}
+}
@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi.rest;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.util.LoggerImpl;
+import com.atlassian.theplugin.commons.util.StringUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache of HTTP responses used for conditional GET (ETag / Last-Modified revalidation)
+ * in {@link AbstractHttpSession}.
+ * <p/>
+ * Entries are partitioned by host. Each partition is limited to {@link #getMaxBytesPerHost()} bytes of response
+ * bodies and evicts least recently used entries when the budget is exceeded, so one server returning large payloads
+ * (e.g. file contents) cannot push out responses of another one.
+ * <p/>
+ * Optionally a {@link DiskResponseCache} can be attached as a second tier, so that records survive restarts.
+ * Records missing in memory are then looked up on disk and promoted back to memory. Shared caches get one
+ * when {@link #setSharedDiskCacheDirectory(File)} is set.
+ * <p/>
+ * This class is thread-safe. Sessions created for the same {@link ConnectionCfg} may share one instance
+ * obtained through {@link #getSharedCache(ConnectionCfg)}. There is at most one shared instance per server id;
+ * it is replaced when the server's connection data changes and dropped by {@link #removeSharedCache(String)}
+ * (see {@link SharedResponseCacheListener}).
+ */
+public class HttpResponseCache {
+
+	public static final long DEFAULT_MAX_BYTES_PER_HOST = 8 * 1024 * 1024;
+
+	public static final long DEFAULT_MAX_DISK_BYTES_PER_SERVER = 32 * 1024 * 1024;
+
+	/** keyed by server id, changed only while holding the lock of the server, see {@link #getSharedCacheLock(String)} */
+	private static final ConcurrentMap<String, SharedCache> SHARED_CACHES
+			= new ConcurrentHashMap<String, SharedCache>();
+
+	private static final ConcurrentMap<String, Object> SHARED_CACHE_LOCKS = new ConcurrentHashMap<String, Object>();
+
+	@Nullable
+	private static volatile File sharedDiskCacheDirectory;
+
+	private final long maxBytesPerHost;
+
+	private final ConcurrentMap<String, Cache<String, CacheRecord>> partitions
+			= new ConcurrentHashMap<String, Cache<String, CacheRecord>>();
+
+	@Nullable
+	private volatile DiskResponseCache diskCache;
+
+	/**
+	 * HTTP response body, together with its last modification time and Etag.
+	 */
+	public static final class CacheRecord {
+		private final byte[] document;
+
+		private final String lastModified;
+
+		private final String etag;
+
+		public CacheRecord(byte[] document, String lastModified, String etag) {
+			if (document == null || lastModified == null || etag == null) {
+				throw new IllegalArgumentException("null");
+			} else {
+				this.document = document;
+				this.lastModified = lastModified;
+				this.etag = etag;
+			}
+		}
+
+		public byte[] getDocument() {
+			return document;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		int getWeight() {
+			return document.length + 2 * (lastModified.length() + etag.length());
+		}
+	}
+
+	private static final class SharedCache {
+		private final ConnectionCfg server;
+
+		private final HttpResponseCache cache;
+
+		private SharedCache(ConnectionCfg server, HttpResponseCache cache) {
+			this.server = server;
+			this.cache = cache;
+		}
+	}
+
+	public HttpResponseCache() {
+		this(DEFAULT_MAX_BYTES_PER_HOST);
+	}
+
+	/**
+	 * @param maxBytesPerHost budget of cached response bodies for a single host
+	 */
+	public HttpResponseCache(long maxBytesPerHost) {
+		if (maxBytesPerHost < 0) {
+			throw new IllegalArgumentException("maxBytesPerHost must not be negative: " + maxBytesPerHost);
+		}
+		this.maxBytesPerHost = maxBytesPerHost;
+	}
+
+	/**
+	 * Makes shared caches created from now on keep their records also on disk, in a subdirectory of given
+	 * directory per server, so that conditional requests can be used right after a restart.
+	 *
+	 * @param directory directory used exclusively by shared caches, or <code>null</code> to keep records
+	 *                  only in memory (default)
+	 */
+	public static void setSharedDiskCacheDirectory(@Nullable File directory) {
+		sharedDiskCacheDirectory = directory;
+	}
+
+	/**
+	 * @param server connection configuration
+	 * @return cache shared by all sessions created for given connection configuration. If the server with the same
+	 *         id had different connection data (url or credentials) so far, its previous cache is emptied and replaced.
+	 */
+	@NotNull
+	public static HttpResponseCache getSharedCache(@NotNull ConnectionCfg server) {
+		final String key = getSharedCacheKey(server);
+		SharedCache current = SHARED_CACHES.get(key);
+		if (current != null && current.server.equals(server)) {
+			return current.cache;
+		}
+		// opening the disk tier replays its index, so only callers of the same server wait for it;
+		// they also must not open (or clear) the same directory at once
+		synchronized (getSharedCacheLock(key)) {
+			current = SHARED_CACHES.get(key);
+			if (current != null) {
+				if (current.server.equals(server)) {
+					return current.cache;
+				}
+				// records of the previous credentials must not be served to the new ones
+				SHARED_CACHES.remove(key);
+				dispose(current.cache);
+			}
+			final HttpResponseCache cache = new HttpResponseCache();
+			final File parent = sharedDiskCacheDirectory;
+			if (parent != null) {
+				final File directory = new File(parent, StringUtil.sha1Hex(key));
+				try {
+					cache.setDiskCache(new DiskResponseCache(directory, DEFAULT_MAX_DISK_BYTES_PER_SERVER));
+				} catch (IOException e) {
+					LoggerImpl.getInstance().warn("Cannot open disk cache " + directory + ", using memory only", e);
+				}
+			}
+			SHARED_CACHES.put(key, new SharedCache(server, cache));
+			return cache;
+		}
+	}
+
+	/**
+	 * Drops and empties the cache shared for given server (e.g. when the server is removed or its
+	 * credentials change). Sessions already holding it keep using it until they are recreated.
+	 */
+	public static void removeSharedCache(@NotNull ConnectionCfg server) {
+		removeSharedCache(getSharedCacheKey(server));
+	}
+
+	/**
+	 * @param serverId id of the server, as returned by {@link ConnectionCfg#getId()}
+	 * @see #removeSharedCache(ConnectionCfg)
+	 */
+	public static void removeSharedCache(@NotNull String serverId) {
+		synchronized (getSharedCacheLock(serverId)) {
+			final SharedCache removed = SHARED_CACHES.remove(serverId);
+			if (removed != null) {
+				dispose(removed.cache);
+			}
+		}
+	}
+
+	private static Object getSharedCacheLock(String key) {
+		Object lock = SHARED_CACHE_LOCKS.get(key);
+		if (lock == null) {
+			final Object newLock = new Object();
+			lock = SHARED_CACHE_LOCKS.putIfAbsent(key, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	private static void dispose(HttpResponseCache cache) {
+		cache.invalidateAll();
+		final DiskResponseCache disk = cache.getDiskCache();
+		if (disk != null) {
+			cache.setDiskCache(null);
+			disk.close();
+		}
+	}
+
+	private static String getSharedCacheKey(ConnectionCfg server) {
+		return server.getId() != null ? server.getId() : server.getUrl();
+	}
+
+	public long getMaxBytesPerHost() {
+		return maxBytesPerHost;
+	}
+
+	@Nullable
+	public DiskResponseCache getDiskCache() {
+		return diskCache;
+	}
+
+	/**
+	 * @param diskCache persistent tier to use, or <code>null</code> to keep records only in memory
+	 */
+	public void setDiskCache(@Nullable DiskResponseCache diskCache) {
+		this.diskCache = diskCache;
+	}
+
+	@Nullable
+	public CacheRecord get(@NotNull String urlString) {
+		final Cache<String, CacheRecord> partition = getPartition(urlString);
+		CacheRecord record = partition.getIfPresent(urlString);
+		final DiskResponseCache disk = diskCache;
+		if (record == null && disk != null) {
+			record = disk.get(urlString);
+			if (record != null) {
+				partition.put(urlString, record);
+			}
+		}
+		return record;
+	}
+
+	public void put(@NotNull String urlString, @NotNull CacheRecord record) {
+		getPartition(urlString).put(urlString, record);
+		final DiskResponseCache disk = diskCache;
+		if (disk != null) {
+			disk.put(urlString, record);
+		}
+	}
+
+	public void invalidate(@NotNull String urlString) {
+		getPartition(urlString).invalidate(urlString);
+		final DiskResponseCache disk = diskCache;
+		if (disk != null) {
+			disk.remove(urlString);
+		}
+	}
+
+	public void invalidateHost(@NotNull String host) {
+		final Cache<String, CacheRecord> partition = partitions.remove(host);
+		if (partition != null) {
+			partition.invalidateAll();
+		}
+		final DiskResponseCache disk = diskCache;
+		if (disk != null) {
+			disk.removeHost(host);
+		}
+	}
+
+	public void invalidateAll() {
+		for (Cache<String, CacheRecord> partition : partitions.values()) {
+			partition.invalidateAll();
+		}
+		partitions.clear();
+		final DiskResponseCache disk = diskCache;
+		if (disk != null) {
+			disk.clear();
+		}
+	}
+
+	/**
+	 * @return number of cached responses in all partitions
+	 */
+	public long size() {
+		long size = 0;
+		for (Cache<String, CacheRecord> partition : partitions.values()) {
+			size += partition.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return approximate number of bytes held by all partitions
+	 */
+	public long getSizeInBytes() {
+		long bytes = 0;
+		for (Cache<String, CacheRecord> partition : partitions.values()) {
+			for (CacheRecord record : partition.asMap().values()) {
+				bytes += record.getWeight();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return hit, miss and eviction counters summed over all partitions
+	 */
+	@NotNull
+	public CacheStats getStats() {
+		CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+		for (Cache<String, CacheRecord> partition : partitions.values()) {
+			stats = stats.plus(partition.stats());
+		}
+		return stats;
+	}
+
+	/**
+	 * @return hit, miss and eviction counters of given host, or <code>null</code> if nothing was cached for it
+	 */
+	@Nullable
+	public CacheStats getStats(@NotNull String host) {
+		final Cache<String, CacheRecord> partition = partitions.get(host);
+		return partition != null ? partition.stats() : null;
+	}
+
+	private Cache<String, CacheRecord> getPartition(String urlString) {
+		final String host = AbstractHttpSession.getServerNameFromUrl(urlString);
+		Cache<String, CacheRecord> partition = partitions.get(host);
+		if (partition == null) {
+			// Guava splits the weight budget between segments, a single one lets one response use the whole budget
+			final Cache<String, CacheRecord> newPartition = CacheBuilder.newBuilder()
+					.concurrencyLevel(1)
+					.maximumWeight(maxBytesPerHost)
+					.weigher(new Weigher<String, CacheRecord>() {
+						public int weigh(String key, CacheRecord value) {
+							return 2 * key.length() + value.getWeight();
+						}
+					})
+					.recordStats()
+					.build();
+			partition = partitions.putIfAbsent(host, newPartition);
+			if (partition == null) {
+				partition = newPartition;
+			}
+		}
+		return partition;
+	}
+}
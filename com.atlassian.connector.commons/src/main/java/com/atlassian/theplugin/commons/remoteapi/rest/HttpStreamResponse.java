@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi.rest;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Body of an HTTP response read directly from the connection, as returned by
+ * {@link AbstractHttpSession#doUnconditionalGetForStream(String, String)}.
+ * <p/>
+ * The underlying connection stays allocated (and counts against the request limit of the session) until
+ * this stream is closed, so it must always be closed, preferably in a <code>finally</code> block.
+ */
+public class HttpStreamResponse extends FilterInputStream {
+
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+|\\*)");
+
+	private final HttpMethod method;
+
+	private final Semaphore permits;
+
+	private final int statusCode;
+
+	private final String charset;
+
+	private final long contentLength;
+
+	private final long rangeStart;
+
+	private final long totalLength;
+
+	private boolean eof;
+
+	private boolean closed;
+
+	HttpStreamResponse(@NotNull HttpMethod method, @NotNull Semaphore permits) throws IOException {
+		super(null);
+		this.method = method;
+		this.permits = permits;
+		this.statusCode = method.getStatusCode();
+		this.charset = method instanceof HttpMethodBase ? ((HttpMethodBase) method).getResponseCharSet() : null;
+
+		final Header lengthHeader = method.getResponseHeader("Content-Length");
+		long length = -1;
+		if (lengthHeader != null) {
+			try {
+				length = Long.parseLong(lengthHeader.getValue().trim());
+			} catch (NumberFormatException e) {
+				// unknown length
+			}
+		}
+		this.contentLength = length;
+
+		long start = statusCode == HttpStatus.SC_PARTIAL_CONTENT ? -1 : 0;
+		long total = statusCode == HttpStatus.SC_OK ? contentLength : -1;
+		final Header rangeHeader = method.getResponseHeader("Content-Range");
+		if (rangeHeader != null) {
+			final Matcher m = CONTENT_RANGE.matcher(rangeHeader.getValue());
+			if (m.find()) {
+				if (m.group(1) != null) {
+					start = Long.parseLong(m.group(1));
+				}
+				if (!"*".equals(m.group(3))) {
+					total = Long.parseLong(m.group(3));
+				}
+			}
+		}
+		this.rangeStart = start;
+		this.totalLength = total;
+
+		final InputStream body = statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE
+				? null : method.getResponseBodyAsStream();
+		in = body != null ? body : new ByteArrayInputStream(new byte[0]);
+	}
+
+	/**
+	 * @return {@link HttpStatus#SC_OK} for a complete body, {@link HttpStatus#SC_PARTIAL_CONTENT} for a requested
+	 *         range or {@link HttpStatus#SC_REQUESTED_RANGE_NOT_SATISFIABLE} if there is nothing in the requested range
+	 *         (then the stream is empty)
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public boolean isPartial() {
+		return statusCode == HttpStatus.SC_PARTIAL_CONTENT;
+	}
+
+	/**
+	 * @return charset declared in the response headers or ISO-8859-1 as HTTP mandates
+	 */
+	@NotNull
+	public String getCharset() {
+		return charset != null ? charset : "ISO-8859-1";
+	}
+
+	/**
+	 * @return number of bytes in this stream or -1 if not known
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * @return position of the first byte of this stream within the whole resource (0 for complete responses),
+	 *         or -1 if not known
+	 */
+	public long getRangeStart() {
+		return rangeStart;
+	}
+
+	/**
+	 * @return length of the whole resource or -1 if not known
+	 */
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	@Nullable
+	public String getResponseHeader(@NotNull String name) {
+		final Header header = method.getResponseHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int b = super.read();
+		if (b == -1) {
+			eof = true;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		final int count = super.read(b, off, len);
+		if (count == -1) {
+			eof = true;
+		}
+		return count;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (!eof) {
+				// do not download the rest of (possibly huge) body just to reuse the connection;
+				// closing the body of an aborted method would try to do just that
+				method.abort();
+			} else {
+				super.close();
+			}
+		} finally {
+			method.releaseConnection();
+			permits.release();
+		}
+	}
+}
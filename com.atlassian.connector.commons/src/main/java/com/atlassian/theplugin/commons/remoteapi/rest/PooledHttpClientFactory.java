@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi.rest;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+
+/**
+ * Creates {@link HttpClient} instances backed by a pooled {@link MultiThreadedHttpConnectionManager}, which may be
+ * returned from {@link HttpSessionCallback#getHttpClient} when sessions are allowed to run concurrent requests
+ * (see {@link AbstractHttpSession#setMaxConcurrentRequests(int)}).
+ * <p/>
+ * The connection manager is meant to be shared by all sessions talking to the same server and shut down with
+ * {@link MultiThreadedHttpConnectionManager#shutdown()} when the server is no longer used.
+ */
+public final class PooledHttpClientFactory {
+
+	public static final int DEFAULT_CONNECTION_TIMEOUT = 30000;
+
+	public static final int DEFAULT_CONNECTION_MANAGER_TIMEOUT = 80000;
+
+	public static final int DEFAULT_DATA_TIMEOUT = 60000;
+
+	///CLOVER:OFF
+	private PooledHttpClientFactory() {
+	}
+	///CLOVER:ON
+
+	/**
+	 * @param maxConnectionsPerHost maximum number of pooled connections to a single host, should not be lower than
+	 *                              the largest {@link AbstractHttpSession#getMaxConcurrentRequests()} of sessions using
+	 *                              this pool, otherwise requests will wait for a free connection
+	 * @param maxTotalConnections   maximum number of pooled connections altogether
+	 * @return new connection manager
+	 */
+	public static MultiThreadedHttpConnectionManager createConnectionManager(int maxConnectionsPerHost,
+			int maxTotalConnections) {
+		if (maxConnectionsPerHost < 1 || maxTotalConnections < maxConnectionsPerHost) {
+			throw new IllegalArgumentException("Invalid connection limits: " + maxConnectionsPerHost + " per host, "
+					+ maxTotalConnections + " total");
+		}
+		final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+		connectionManager.getParams().setConnectionTimeout(DEFAULT_CONNECTION_TIMEOUT);
+		connectionManager.getParams().setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		connectionManager.getParams().setMaxTotalConnections(maxTotalConnections);
+		return connectionManager;
+	}
+
+	public static HttpClient createClient(MultiThreadedHttpConnectionManager connectionManager) {
+		return createClient(connectionManager, DEFAULT_DATA_TIMEOUT);
+	}
+
+	public static HttpClient createClient(MultiThreadedHttpConnectionManager connectionManager, int dataTimeout) {
+		final HttpClient httpClient = new HttpClient(connectionManager);
+		httpClient.getParams().setConnectionManagerTimeout(DEFAULT_CONNECTION_MANAGER_TIMEOUT);
+		httpClient.getParams().setSoTimeout(dataTimeout);
+		return httpClient;
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi.rest;
+
+import com.atlassian.theplugin.commons.cfg.ConfigurationListenerAdapter;
+import com.atlassian.theplugin.commons.cfg.ServerId;
+import com.atlassian.theplugin.commons.remoteapi.ServerData;
+
+/**
+ * Drops caches shared through {@link HttpResponseCache#getSharedCache(com.atlassian.connector.commons.api.ConnectionCfg)}
+ * when a server is removed from the configuration or its connection data changes, so that responses of servers which
+ * are gone do not stay in memory. Register it with the configuration of each project.
+ */
+public class SharedResponseCacheListener extends ConfigurationListenerAdapter {
+
+	@Override
+	public void serverConnectionDataChanged(ServerId serverId) {
+		HttpResponseCache.removeSharedCache(serverId.getId());
+	}
+
+	@Override
+	public void serverDataChanged(ServerData serverData) {
+		HttpResponseCache.removeSharedCache(serverData);
+	}
+
+	@Override
+	public void serverRemoved(ServerData serverData) {
+		HttpResponseCache.removeSharedCache(serverData);
+	}
+}
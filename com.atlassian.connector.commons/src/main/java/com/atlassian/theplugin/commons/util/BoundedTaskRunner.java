@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.theplugin.commons.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batches of independent tasks (typically remote calls) with an upper bound on how many of them
+ * are executed at the same time.
+ * <p/>
+ * The calling thread always takes part in the work, so with parallelism of 1 all tasks are executed
+ * sequentially in the caller, exactly as a plain loop would do. Results are returned in the order of the tasks,
+ * regardless of the order in which they complete.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class BoundedTaskRunner {
+
+	private static final BoundedTaskRunner SHARED = new BoundedTaskRunner(
+			Executors.newCachedThreadPool(new DaemonThreadFactory("connector-commons-worker-")));
+
+	private final ExecutorService executor;
+
+	/**
+	 * @param executor executor providing helper threads. It should not have a bounded queue smaller than
+	 * the parallelism used, otherwise some of the work falls back to the calling thread.
+	 */
+	public BoundedTaskRunner(@NotNull ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return runner backed by a shared pool of daemon threads
+	 */
+	@NotNull
+	public static BoundedTaskRunner getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Executes all tasks, at most <code>maxParallelism</code> of them at a time, and waits for them to complete.
+	 *
+	 * @param tasks		  tasks to run
+	 * @param maxParallelism maximum number of tasks running at the same time (including the calling thread)
+	 * @return completed futures, in the same order as <code>tasks</code>
+	 * @throws InterruptedException when the calling thread was interrupted. Tasks which have not completed yet
+	 *                              are cancelled.
+	 */
+	@NotNull
+	public <T> List<Future<T>> invokeAll(@NotNull Collection<? extends Callable<T>> tasks, int maxParallelism)
+			throws InterruptedException {
+		if (maxParallelism < 1) {
+			throw new IllegalArgumentException("maxParallelism must be positive: " + maxParallelism);
+		}
+		final List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+		for (Callable<T> task : tasks) {
+			futures.add(new FutureTask<T>(task));
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		final Runnable worker = new Runnable() {
+			public void run() {
+				int i;
+				while ((i = next.getAndIncrement()) < futures.size()) {
+					futures.get(i).run();
+				}
+			}
+		};
+
+		final int helpers = Math.min(maxParallelism, futures.size()) - 1;
+		for (int i = 0; i < helpers; i++) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				// remaining work is picked up by the threads already started and the caller
+				break;
+			}
+		}
+		worker.run();
+
+		try {
+			for (FutureTask<T> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// reported to the caller through the future
+				} catch (CancellationException e) {
+					// reported to the caller through the future
+				}
+			}
+		} catch (InterruptedException e) {
+			next.set(futures.size());
+			for (FutureTask<T> future : futures) {
+				future.cancel(true);
+			}
+			throw e;
+		}
+		return new ArrayList<Future<T>>(futures);
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		private DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
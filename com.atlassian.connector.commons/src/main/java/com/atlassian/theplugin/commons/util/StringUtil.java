@@ -16,12 +16,15 @@
 package com.atlassian.theplugin.commons.util;
 
 import org.apache.commons.codec.binary.Base64;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joda.time.DateTimeConstants;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public final class StringUtil {
 	private static final int BUFFER_SIZE = 4096;
@@ -81,6 +84,42 @@ public final class StringUtil {
 		}
 	}
 
+	/**
+	 * @return lower case hex encoded SHA-1 digest of given data, e.g. to name cache files after their keys or contents
+	 */
+	@NotNull
+	public static String sha1Hex(@NotNull byte[] data) {
+		final byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			///CLOVER:OFF
+			// cannot happen
+			throw new IllegalStateException("SHA-1 is not available", e);
+			///CLOVER:ON
+		}
+		final StringBuilder hex = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * @return lower case hex encoded SHA-1 digest of UTF-8 bytes of given string
+	 */
+	@NotNull
+	public static String sha1Hex(@NotNull String text) {
+		try {
+			return sha1Hex(text.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			///CLOVER:OFF
+			// cannot happen
+			throw new RuntimeException("UTF-8 is not supported", e);
+			///CLOVER:ON
+		}
+	}
+
 	public static String slurp(InputStream in) throws IOException {
 		StringBuilder out = new StringBuilder();
 		byte[] b = new byte[BUFFER_SIZE];
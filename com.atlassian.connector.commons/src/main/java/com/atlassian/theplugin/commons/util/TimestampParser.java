@@ -0,0 +1,396 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.util.Date;
+
+/**
+ * Parser of the timestamp formats returned by Atlassian servers:
+ * <ul>
+ * <li>ISO 8601 date and time, e.g. <code>2010-10-26T09:12:48.000-07:00</code>, <code>2010-11-05T15:20:54.856Z</code>,
+ * <code>2009-03-11T16:23:42+0100</code> or <code>2010-10-26T09:12:48</code> (Crucible, FishEye, Bamboo)</li>
+ * <li>date and time separated by a space, e.g. <code>2008-01-30 13:40:11</code> (old Bamboo API)</li>
+ * <li>ISO 8601 date, e.g. <code>2010-10-26</code></li>
+ * <li>RFC 822 date, optionally followed by the zone name, e.g. <code>Tue, 6 Oct 2009 15:22:11 +0200 (CEST)</code>
+ * (JIRA RSS)</li>
+ * </ul>
+ * The format is recognized while the text is scanned, so no formatter has to be tried in turn and no exception is
+ * thrown for unexpected input - {@link #INVALID} is returned instead. Timestamps without zone information are
+ * interpreted in the default time zone, whose offset is cached between its transitions.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class TimestampParser {
+
+	/**
+	 * Returned by {@link #parseMillis(CharSequence)} for text which is not a timestamp in any supported format.
+	 */
+	public static final long INVALID = Long.MIN_VALUE;
+
+	/**
+	 * Option making trailing <code>Z</code> of ISO timestamps mean local time rather than UTC. This is how
+	 * Crucible timestamps have always been read.
+	 */
+	public static final int ZULU_AS_LOCAL_TIME = 1;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+	/**
+	 * Offsets of the default zone in two most recently used periods (typically standard and daylight saving time).
+	 */
+	private static volatile ZoneOffsetCache offsetCache;
+
+	private static volatile ZoneOffsetCache previousOffsetCache;
+
+	private TimestampParser() {
+	}
+
+	/**
+	 * @param text timestamp (surrounding whitespace is ignored)
+	 * @return milliseconds since epoch or {@link #INVALID}
+	 */
+	public static long parseMillis(@Nullable CharSequence text) {
+		return parseMillis(text, 0);
+	}
+
+	/**
+	 * @param text	timestamp (surrounding whitespace is ignored)
+	 * @param options 0 or {@link #ZULU_AS_LOCAL_TIME}
+	 * @return milliseconds since epoch or {@link #INVALID}
+	 */
+	public static long parseMillis(@Nullable CharSequence text, int options) {
+		if (text == null) {
+			return INVALID;
+		}
+		int end = text.length();
+		while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		int pos = 0;
+		while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+		if (pos == end) {
+			return INVALID;
+		}
+		return isAsciiLetter(text.charAt(pos))
+				? parseRfc822(text, pos, end)
+				: parseIso(text, pos, end, (options & ZULU_AS_LOCAL_TIME) != 0);
+	}
+
+	/**
+	 * @return parsed timestamp or <code>null</code> if <code>text</code> is not a timestamp in any supported format
+	 */
+	@Nullable
+	public static Date parseDate(@Nullable CharSequence text) {
+		final long millis = parseMillis(text);
+		return millis != INVALID ? new Date(millis) : null;
+	}
+
+	/**
+	 * @return parsed timestamp in the default time zone or <code>null</code> if <code>text</code> is not a timestamp
+	 *         in any supported format
+	 */
+	@Nullable
+	public static DateTime parseDateTime(@Nullable CharSequence text) {
+		final long millis = parseMillis(text);
+		return millis != INVALID ? new DateTime(millis) : null;
+	}
+
+	// yyyy-MM-dd[('T'|' ')HH:mm:ss[.S+][Z|+HH[[:]mm]]]
+	private static long parseIso(@NotNull CharSequence text, int pos, int end, boolean zuluAsLocal) {
+		if (end - pos < 10 || text.charAt(pos + 4) != '-' || text.charAt(pos + 7) != '-') {
+			return INVALID;
+		}
+		final int year = digits(text, pos, 4);
+		final int month = digits(text, pos + 5, 2);
+		final int day = digits(text, pos + 8, 2);
+		if (!isValidDate(year, month, day)) {
+			return INVALID;
+		}
+		pos += 10;
+		if (pos == end) {
+			return toUtc(localMillis(year, month, day, 0, 0, 0, 0));
+		}
+
+		final char separator = text.charAt(pos);
+		if ((separator != 'T' && separator != ' ') || end - pos < 9
+				|| text.charAt(pos + 3) != ':' || text.charAt(pos + 6) != ':') {
+			return INVALID;
+		}
+		final int hour = digits(text, pos + 1, 2);
+		final int minute = digits(text, pos + 4, 2);
+		final int second = digits(text, pos + 7, 2);
+		if (!isValidTime(hour, minute, second)) {
+			return INVALID;
+		}
+		pos += 9;
+
+		int millis = 0;
+		if (pos < end && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+			final int start = ++pos;
+			while (pos < end && isDigit(text.charAt(pos))) {
+				if (pos - start < 3) {
+					millis = millis * 10 + text.charAt(pos) - '0';
+				}
+				pos++;
+			}
+			if (pos == start) {
+				return INVALID;
+			}
+			for (int i = pos - start; i < 3; i++) {
+				millis *= 10;
+			}
+		}
+
+		final long local = localMillis(year, month, day, hour, minute, second, millis);
+		if (pos == end) {
+			return toUtc(local);
+		}
+		if (text.charAt(pos) == 'Z' && pos + 1 == end) {
+			return zuluAsLocal ? toUtc(local) : local;
+		}
+		final int offset = parseOffset(text, pos, end);
+		return offset != Integer.MIN_VALUE ? local - offset : INVALID;
+	}
+
+	// EEE, d MMM yyyy HH:mm:ss Z[ (z)]
+	private static long parseRfc822(@NotNull CharSequence text, int pos, int end) {
+		while (pos < end && isAsciiLetter(text.charAt(pos))) {
+			pos++;
+		}
+		if (pos == end || text.charAt(pos++) != ',') {
+			return INVALID;
+		}
+		pos = skipSpaces(text, pos, end);
+
+		final int dayStart = pos;
+		while (pos < end && isDigit(text.charAt(pos)) && pos - dayStart < 2) {
+			pos++;
+		}
+		if (pos == dayStart) {
+			return INVALID;
+		}
+		final int day = digits(text, dayStart, pos - dayStart);
+		pos = skipSpaces(text, pos, end);
+
+		if (end - pos < 3) {
+			return INVALID;
+		}
+		final int month = month(text, pos);
+		pos = skipSpaces(text, pos + 3, end);
+
+		if (end - pos < 4) {
+			return INVALID;
+		}
+		final int year = digits(text, pos, 4);
+		if (!isValidDate(year, month, day)) {
+			return INVALID;
+		}
+		pos = skipSpaces(text, pos + 4, end);
+
+		if (end - pos < 8 || text.charAt(pos + 2) != ':' || text.charAt(pos + 5) != ':') {
+			return INVALID;
+		}
+		final int hour = digits(text, pos, 2);
+		final int minute = digits(text, pos + 3, 2);
+		final int second = digits(text, pos + 6, 2);
+		if (!isValidTime(hour, minute, second)) {
+			return INVALID;
+		}
+		pos = skipSpaces(text, pos + 8, end);
+
+		// zone name following the offset is redundant
+		int offsetEnd = pos;
+		while (offsetEnd < end && text.charAt(offsetEnd) != ' ') {
+			offsetEnd++;
+		}
+		if (offsetEnd < end) {
+			final int nameStart = skipSpaces(text, offsetEnd, end);
+			if (text.charAt(nameStart) != '(' || text.charAt(end - 1) != ')') {
+				return INVALID;
+			}
+		}
+		final int offset = parseOffset(text, pos, offsetEnd);
+		return offset != Integer.MIN_VALUE ? localMillis(year, month, day, hour, minute, second, 0) - offset : INVALID;
+	}
+
+	/**
+	 * @return offset in milliseconds of <code>[+-]HH[[:]mm]</code> or <code>Integer.MIN_VALUE</code> if invalid
+	 */
+	private static int parseOffset(@NotNull CharSequence text, int pos, int end) {
+		final int length = end - pos;
+		if (length != 3 && length != 5 && length != 6) {
+			return Integer.MIN_VALUE;
+		}
+		final char sign = text.charAt(pos);
+		if (sign != '+' && sign != '-') {
+			return Integer.MIN_VALUE;
+		}
+		final int hours = digits(text, pos + 1, 2);
+		int minutes = 0;
+		if (length == 5) {
+			minutes = digits(text, pos + 3, 2);
+		} else if (length == 6) {
+			minutes = text.charAt(pos + 3) == ':' ? digits(text, pos + 4, 2) : -1;
+		}
+		if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+			return Integer.MIN_VALUE;
+		}
+		final int offset = (hours * 60 + minutes) * 60 * 1000;
+		return sign == '-' ? -offset : offset;
+	}
+
+	/**
+	 * @return value of <code>count</code> decimal digits or -1 if any of the characters is not a digit
+	 */
+	private static int digits(@NotNull CharSequence text, int pos, int count) {
+		int value = 0;
+		for (int i = pos; i < pos + count; i++) {
+			final char c = text.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			value = value * 10 + c - '0';
+		}
+		return value;
+	}
+
+	/**
+	 * @return month (1-12) of English abbreviation starting at <code>pos</code> or -1 if not recognized
+	 */
+	private static int month(@NotNull CharSequence text, int pos) {
+		final char c1 = Character.toLowerCase(text.charAt(pos));
+		final char c2 = Character.toLowerCase(text.charAt(pos + 1));
+		final char c3 = Character.toLowerCase(text.charAt(pos + 2));
+		for (int i = 0; i < MONTHS.length(); i += 3) {
+			if (MONTHS.charAt(i) == c1 && MONTHS.charAt(i + 1) == c2 && MONTHS.charAt(i + 2) == c3) {
+				return i / 3 + 1;
+			}
+		}
+		return -1;
+	}
+
+	private static int skipSpaces(@NotNull CharSequence text, int pos, int end) {
+		while (pos < end && text.charAt(pos) == ' ') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isAsciiLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isValidDate(int year, int month, int day) {
+		if (year < 1 || month < 1 || month > 12 || day < 1) {
+			return false;
+		}
+		final int length;
+		if (month == 2) {
+			length = (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+		} else if (month == 4 || month == 6 || month == 9 || month == 11) {
+			length = 30;
+		} else {
+			length = 31;
+		}
+		return day <= length;
+	}
+
+	private static boolean isValidTime(int hour, int minute, int second) {
+		return hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59;
+	}
+
+	/**
+	 * @return milliseconds since epoch of given time in UTC
+	 */
+	private static long localMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+		// days since 1970-01-01 in the proleptic Gregorian calendar (March-based year makes leap day the last one)
+		final int y = month <= 2 ? year - 1 : year;
+		final int era = y / 400;
+		final int yearOfEra = y - era * 400;
+		final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		final long days = era * 146097L + dayOfEra - 719468;
+		return days * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000 + millis;
+	}
+
+	/**
+	 * Converts local time in the default time zone to UTC.
+	 */
+	private static long toUtc(long local) {
+		final DateTimeZone zone = DateTimeZone.getDefault();
+		ZoneOffsetCache cache = offsetCache;
+		if (cache == null || !cache.contains(zone, local)) {
+			final ZoneOffsetCache previous = previousOffsetCache;
+			if (previous != null && previous.contains(zone, local)) {
+				cache = previous;
+			} else {
+				cache = new ZoneOffsetCache(zone, local);
+				previousOffsetCache = offsetCache;
+				offsetCache = cache;
+			}
+		}
+		return cache.offset != Integer.MIN_VALUE ? local - cache.offset : local - zone.getOffsetFromLocal(local);
+	}
+
+	/**
+	 * Offset of a time zone valid for a period of local time between two transitions of the zone.
+	 */
+	private static final class ZoneOffsetCache {
+		private final DateTimeZone zone;
+
+		private final long start;
+
+		private final long end;
+
+		/**
+		 * Offset valid in the period or <code>Integer.MIN_VALUE</code> if the period is too short to be cached.
+		 */
+		private final int offset;
+
+		private ZoneOffsetCache(@NotNull DateTimeZone zone, long local) {
+			this.zone = zone;
+			final int localOffset = zone.getOffsetFromLocal(local);
+			final long instant = local - localOffset;
+			final long previous = zone.previousTransition(instant);
+			final long next = zone.nextTransition(instant);
+			// both transitions are returned unchanged by zones without them; local time in the day around
+			// a transition may have different offset, as no zone changes its offset by a day or more
+			final long from = previous < instant ? previous + localOffset + MILLIS_PER_DAY : Long.MIN_VALUE;
+			final long to = next > instant ? next + localOffset - MILLIS_PER_DAY : Long.MAX_VALUE;
+			this.start = from;
+			this.end = to;
+			this.offset = from < to ? localOffset : Integer.MIN_VALUE;
+		}
+
+		private boolean contains(@NotNull DateTimeZone zone, long local) {
+			return this.zone == zone && local >= start && local < end;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.util;
+
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.jdom.xpath.XPath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reusable JDOM parsing objects shared by all remote sessions.
+ * <p/>
+ * Compiling an XPath expression and creating a SAX parser cost more than evaluating the expression or parsing
+ * a typical response, so both are done once per thread instead of once per request. A {@link SAXBuilder} keeps its
+ * parser between builds (JDOM reuses parsers by default). JDOM {@link XPath} and {@link SAXBuilder} instances are
+ * not thread-safe, hence each thread gets its own ones.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class XmlParserRegistry {
+
+	/**
+	 * Limit of compiled expressions kept per thread. Sessions use fixed expressions, so it is normally not reached.
+	 */
+	static final int MAX_EXPRESSIONS = 256;
+
+	private static final ThreadLocal<Map<String, XPath>> XPATHS = new ThreadLocal<Map<String, XPath>>() {
+		@Override
+		protected Map<String, XPath> initialValue() {
+			return new LinkedHashMap<String, XPath>(64, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, XPath> eldest) {
+					return size() > MAX_EXPRESSIONS;
+				}
+			};
+		}
+	};
+
+	private static final ThreadLocal<SAXBuilder> BUILDERS = new ThreadLocal<SAXBuilder>() {
+		@Override
+		protected SAXBuilder initialValue() {
+			return new SAXBuilder();
+		}
+	};
+
+	private XmlParserRegistry() {
+	}
+
+	/**
+	 * @param expression XPath expression
+	 * @return compiled expression, to be used by the calling thread only
+	 * @throws JDOMException when the expression is not valid
+	 */
+	@NotNull
+	public static XPath getXPath(@NotNull String expression) throws JDOMException {
+		final Map<String, XPath> xpaths = XPATHS.get();
+		XPath xpath = xpaths.get(expression);
+		if (xpath == null) {
+			xpath = XPath.newInstance(expression);
+			xpaths.put(expression, xpath);
+		}
+		return xpath;
+	}
+
+	/**
+	 * @return builder with default settings, to be used by the calling thread only
+	 */
+	@NotNull
+	public static SAXBuilder getSAXBuilder() {
+		return BUILDERS.get();
+	}
+}
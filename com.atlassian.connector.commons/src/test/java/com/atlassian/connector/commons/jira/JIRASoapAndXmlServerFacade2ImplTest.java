@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.beans.JIRASavedFilterBean;
+import com.atlassian.connector.commons.jira.rss.JIRARssClient;
+import com.atlassian.connector.commons.jira.rss.MockJiraRssClient;
+import com.atlassian.connector.commons.remoteapi.TestHttpSessionCallbackImpl;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+public class JIRASoapAndXmlServerFacade2ImplTest extends TestCase {
+
+	private static final String ISSUE_XML = "/si/jira.issueviews:issue-xml/PL-2818/PL-2818.xml";
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://my-jira-url/jira", "user", "password");
+
+	private final JIRASavedFilterBean filter = new JIRASavedFilterBean("My open issues", 10000);
+
+	private MockJiraRssClient rss;
+
+	/** issue the SOAP session was asked to complete */
+	private JIRAIssue detailsOf;
+
+	private JIRASoapAndXmlServerFacade2Impl facade;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		rss = new MockJiraRssClient(server);
+		rss.setResponse("/sr/jira.issueviews:searchrequest-xml/", "/mock/jira/search-summaries.xml");
+		rss.setResponse(ISSUE_XML, "/mock/jira/issue-PL-2818.xml");
+		facade = new JIRASoapAndXmlServerFacade2Impl(new TestHttpSessionCallbackImpl(),
+				new JIRASoapSessionManager.SessionFactory() {
+					@NotNull
+					public JIRASessionPartOne createSession(@NotNull ConnectionCfg server) {
+						return createSoapSession();
+					}
+
+					public boolean ping(@NotNull JIRASessionPartOne session) {
+						return true;
+					}
+				}, new JIRASoapAndXmlServerFacade2Impl.RssClientFactory() {
+					@NotNull
+					public JIRARssClient createClient(@NotNull ConnectionCfg server) {
+						return rss;
+					}
+				});
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		facade.reset();
+		super.tearDown();
+	}
+
+	public void testDetailsOfSummaryAreRetrievedWithFullIssue() throws Exception {
+		final List<JIRAIssue> summaries = facade.getIssueSummaries(server, filter, "updated", "DESC", 0, 50);
+		final JIRAIssue summary = summaries.get(0);
+		assertTrue(summary.isSummaryOnly());
+
+		final JIRAIssue details = facade.getIssueDetails(server, summary);
+		assertSame(detailsOf, details);
+		assertFalse(details.isSummaryOnly());
+		assertEquals("PL-2818", details.getKey());
+		assertEquals("<p>Favourite filters with quotes in JQL cannot be parsed.</p>", details.getDescription());
+		assertEquals(1, details.getComments().size());
+		assertEquals(1, details.getCustomFields().size());
+		assertTrue(rss.getUrls().get(1).endsWith(ISSUE_XML));
+	}
+
+	public void testDetailsOfFullIssueAreRetrievedWithoutXmlView() throws Exception {
+		final JIRAIssue issue = facade.getIssues(server, filter, "updated", "DESC", 0, 50).get(0);
+		assertFalse(issue.isSummaryOnly());
+
+		assertSame(issue, facade.getIssueDetails(server, issue));
+		assertSame(issue, detailsOf);
+		assertEquals(1, rss.getUrls().size());
+	}
+
+	/**
+	 * @return SOAP session which returns issues it is asked to complete as they are
+	 */
+	private JIRASessionPartOne createSoapSession() {
+		return (JIRASessionPartOne) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { JIRASessionPartOne.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws RemoteApiException {
+						final String name = method.getName();
+						if (name.equals("login")) {
+							return null;
+						} else if (name.equals("isLoggedIn")) {
+							return true;
+						} else if (name.equals("getIssueDetails")) {
+							detailsOf = (JIRAIssue) args[0];
+							return detailsOf;
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.google.common.base.Ticker;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class JIRASoapSessionManagerTest extends TestCase {
+
+	private static final String TOKEN_EXPIRED = "com.atlassian.jira.rpc.exception.RemoteAuthenticationException: "
+			+ "User not authenticated yet, or session timed out.";
+
+	private static final int CALLERS = 8;
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://localhost:1", "user", "password");
+
+	private CountingFactory factory;
+
+	private ManualTicker ticker;
+
+	private JIRASoapSessionManager manager;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		factory = new CountingFactory();
+		ticker = new ManualTicker();
+		manager = new JIRASoapSessionManager(factory, ticker);
+		manager.setKeepAliveInterval(0);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		manager.clear();
+		super.tearDown();
+	}
+
+	public void testSessionIsReused() throws Exception {
+		assertEquals("ok", manager.execute(server, new Result("ok")));
+		assertEquals("ok", manager.execute(server, new Result("ok")));
+		assertEquals(1, factory.logins.get());
+	}
+
+	public void testSessionsAreKeptPerCredentials() throws Exception {
+		manager.execute(server, new Result("ok"));
+		manager.execute(new ConnectionCfg("id", "http://localhost:1", "other", "password"), new Result("ok"));
+		assertEquals(2, factory.logins.get());
+	}
+
+	public void testConcurrentCallersShareLogin() throws Exception {
+		factory.loginDelay = 100;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread[] threads = new Thread[CALLERS];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						manager.execute(server, new Result("ok"));
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures.get());
+		assertEquals(1, factory.logins.get());
+	}
+
+	public void testRejectedTokenLogsInAgainAndRetriesOnce() throws Exception {
+		manager.execute(server, new Result("ok"));
+		final AtomicInteger calls = new AtomicInteger();
+		final String result = manager.execute(server, new JIRASoapSessionManager.SoapCall<String>() {
+			public String call(@NotNull JIRASessionPartOne session) throws RemoteApiException {
+				if (calls.incrementAndGet() == 1) {
+					throw new RemoteApiException(TOKEN_EXPIRED);
+				}
+				return "retried";
+			}
+		});
+		assertEquals("retried", result);
+		assertEquals(2, calls.get());
+		assertEquals(2, factory.logins.get());
+	}
+
+	public void testRejectedTokenIsNotRetriedTwice() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			manager.execute(server, new JIRASoapSessionManager.SoapCall<String>() {
+				public String call(@NotNull JIRASessionPartOne session) throws RemoteApiException {
+					calls.incrementAndGet();
+					throw new RemoteApiException(TOKEN_EXPIRED);
+				}
+			});
+			fail("RemoteApiException expected");
+		} catch (RemoteApiException e) {
+			// expected
+		}
+		assertEquals(2, calls.get());
+		assertEquals(2, factory.logins.get());
+	}
+
+	public void testOtherErrorsKeepSession() throws Exception {
+		try {
+			manager.execute(server, new JIRASoapSessionManager.SoapCall<String>() {
+				public String call(@NotNull JIRASessionPartOne session) throws RemoteApiException {
+					throw new RemoteApiException("Issue does not exist");
+				}
+			});
+			fail("RemoteApiException expected");
+		} catch (RemoteApiException e) {
+			assertEquals("Issue does not exist", e.getMessage());
+		}
+		manager.execute(server, new Result("ok"));
+		assertEquals(1, factory.logins.get());
+	}
+
+	public void testIdleSessionIsLoggedInBeforeUse() throws Exception {
+		manager.setTokenTimeout(20);
+		manager.execute(server, new Result("ok"));
+		ticker.advance(50);
+		manager.execute(server, new Result("ok"));
+		assertEquals(2, factory.logins.get());
+	}
+
+	public void testKeepAliveKeepsTokenValid() throws Exception {
+		manager.setTokenTimeout(100);
+		manager.execute(server, new Result("ok"));
+		for (int i = 0; i < 4; i++) {
+			ticker.advance(40);
+			manager.keepAlive();
+		}
+		manager.execute(server, new Result("ok"));
+		assertEquals(4, factory.pings.get());
+		assertEquals(1, factory.logins.get());
+	}
+
+	public void testRejectedPingLogsInAgain() throws Exception {
+		manager.execute(server, new Result("ok"));
+		factory.pingResult = false;
+		manager.keepAlive();
+		manager.execute(server, new Result("ok"));
+		assertEquals(2, factory.logins.get());
+	}
+
+	public void testFailedPingKeepsSession() throws Exception {
+		manager.execute(server, new Result("ok"));
+		factory.pingFailure = new RemoteApiException("Connection refused");
+		manager.keepAlive();
+		manager.execute(server, new Result("ok"));
+		assertEquals(1, factory.logins.get());
+	}
+
+	public void testUnusedSessionsAreForgotten() throws Exception {
+		manager.setMaxIdleTime(20);
+		manager.execute(server, new Result("ok"));
+		ticker.advance(50);
+		manager.keepAlive();
+		assertEquals(0, factory.pings.get());
+		assertTrue(manager.getRegistry().getSessions().isEmpty());
+	}
+
+	public void testTokenRejectedDetection() {
+		assertTrue(JIRASoapSessionManager.isTokenRejected(new RemoteApiException(TOKEN_EXPIRED)));
+		assertTrue(JIRASoapSessionManager.isTokenRejected(
+				new RemoteApiException("call failed", new Exception(TOKEN_EXPIRED))));
+		assertFalse(JIRASoapSessionManager.isTokenRejected(new RemoteApiException("Issue does not exist")));
+		assertFalse(JIRASoapSessionManager.isTokenRejected(new RemoteApiException((String) null)));
+	}
+
+	private static final class Result implements JIRASoapSessionManager.SoapCall<String> {
+		private final String result;
+
+		private Result(String result) {
+			this.result = result;
+		}
+
+		public String call(@NotNull JIRASessionPartOne session) throws RemoteApiException {
+			assertTrue(session.isLoggedIn());
+			return result;
+		}
+	}
+
+	private static final class ManualTicker extends Ticker {
+		private final AtomicLong nanos = new AtomicLong();
+
+		private void advance(long millis) {
+			nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	}
+
+	private static final class CountingFactory implements JIRASoapSessionManager.SessionFactory {
+		private final AtomicInteger logins = new AtomicInteger();
+
+		private final AtomicInteger pings = new AtomicInteger();
+
+		private volatile long loginDelay;
+
+		private volatile boolean pingResult = true;
+
+		private volatile RemoteApiException pingFailure;
+
+		@NotNull
+		public JIRASessionPartOne createSession(@NotNull ConnectionCfg server) {
+			return (JIRASessionPartOne) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { JIRASessionPartOne.class }, new InvocationHandler() {
+						private boolean loggedIn;
+
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if (method.getName().equals("login")) {
+								Thread.sleep(loginDelay);
+								logins.incrementAndGet();
+								loggedIn = true;
+								return null;
+							}
+							if (method.getName().equals("isLoggedIn")) {
+								return loggedIn;
+							}
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+
+		public boolean ping(@NotNull JIRASessionPartOne session) throws RemoteApiException {
+			if (pingFailure != null) {
+				throw pingFailure;
+			}
+			pings.incrementAndGet();
+			return pingResult;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.jira.rss.JIRAException;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JiraIssueStreamTest extends TestCase {
+
+	public void testReadsAllPagesInOrder() throws Exception {
+		final FakeServer server = new FakeServer(25);
+		final JiraIssueStream stream = new JiraIssueStream(server, 10, -1);
+
+		final List<JIRAIssue> issues = stream.readAll();
+
+		assertEquals(25, issues.size());
+		for (int i = 0; i < 25; i++) {
+			assertEquals("TST-" + i, issues.get(i).getKey());
+		}
+		assertEquals(25, stream.getReturnedCount());
+		assertTrue(stream.isClosed());
+		// the third page is not full, so only pages already requested ahead of it are made beyond it
+		assertTrue(server.startsAbove(20).size() <= stream.getPrefetchPages());
+	}
+
+	public void testStopsAtMaxIssues() throws Exception {
+		final FakeServer server = new FakeServer(100);
+		final JiraIssueStream stream = new JiraIssueStream(server, 0, 10, 5, 15);
+
+		assertEquals(15, stream.readAll().size());
+		assertEquals(2, server.requests.get());
+		// the last page is shortened to the remaining number of issues
+		assertTrue(server.sizes.contains(5));
+	}
+
+	public void testEmptyResult() throws Exception {
+		final JiraIssueStream stream = new JiraIssueStream(new FakeServer(0), 10, -1);
+
+		assertFalse(stream.hasNext());
+		try {
+			stream.next();
+			fail();
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	public void testPrefetchesPagesConcurrently() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(3);
+		final FakeServer server = new FakeServer(1000) {
+			@Override
+			protected void beforeLoad(int start) throws InterruptedException {
+				started.countDown();
+				release.await();
+			}
+		};
+
+		final JiraIssueStream stream = new JiraIssueStream(server, 0, 10, 2, -1);
+
+		// the first page and two following ones are being retrieved at the same time, before anything is read
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		stream.close();
+	}
+
+	public void testCloseCancelsPendingPages() throws Exception {
+		final CountDownLatch prefetchStarted = new CountDownLatch(1);
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger interrupted = new AtomicInteger();
+		final FakeServer server = new FakeServer(1000) {
+			@Override
+			protected void beforeLoad(int start) throws InterruptedException {
+				if (start > 0) {
+					started.incrementAndGet();
+					prefetchStarted.countDown();
+					try {
+						Thread.sleep(5000);
+					} catch (InterruptedException e) {
+						interrupted.incrementAndGet();
+						throw e;
+					}
+				}
+			}
+		};
+
+		final JiraIssueStream stream = new JiraIssueStream(server, 0, 10, 2, -1);
+		assertEquals("TST-0", stream.next().getKey());
+		assertTrue(prefetchStarted.await(5, TimeUnit.SECONDS));
+		stream.close();
+
+		assertFalse(stream.hasNext());
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (interrupted.get() < started.get() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		// the prefetched pages have been interrupted (or not started at all) instead of being read to the end
+		assertTrue(started.get() > 0);
+		assertEquals(started.get(), interrupted.get());
+	}
+
+	public void testPropagatesErrors() throws Exception {
+		final FakeServer server = new FakeServer(100) {
+			@Override
+			protected void beforeLoad(int start) throws JIRAException {
+				if (start == 10) {
+					throw new JIRAException("server down");
+				}
+			}
+		};
+
+		final JiraIssueStream stream = new JiraIssueStream(server, 0, 10, 0, -1);
+		for (int i = 0; i < 10; i++) {
+			stream.next();
+		}
+		try {
+			stream.hasNext();
+			fail();
+		} catch (JIRAException e) {
+			assertEquals("server down", e.getMessage());
+		}
+		assertTrue(stream.isClosed());
+		assertFalse(stream.hasNext());
+	}
+
+	public void testWrapsUnexpectedErrors() throws Exception {
+		final FakeServer server = new FakeServer(100) {
+			@Override
+			protected void beforeLoad(int start) {
+				throw new IllegalStateException("broken");
+			}
+		};
+
+		try {
+			new JiraIssueStream(server, 10, -1).hasNext();
+			fail();
+		} catch (JIRAException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	public void testSkipsIssuesReturnedTwice() throws Exception {
+		final FakeServer server = new FakeServer(30) {
+			@Override
+			protected int keyOffset(int start) {
+				// an issue has moved down to the second page while the search was being read
+				return start == 10 ? -1 : 0;
+			}
+		};
+
+		final List<String> keys = new ArrayList<String>();
+		for (JIRAIssue issue : new JiraIssueStream(server, 10, -1).readAll()) {
+			keys.add(issue.getKey());
+		}
+
+		assertEquals(29, keys.size());
+		assertEquals("TST-9", keys.get(9));
+		assertEquals("TST-10", keys.get(10));
+	}
+
+	private static class FakeServer implements JiraIssueStream.PageLoader {
+		private final int total;
+
+		private final List<Integer> starts = Collections.synchronizedList(new ArrayList<Integer>());
+
+		private final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+		private final AtomicInteger requests = new AtomicInteger();
+
+		FakeServer(int total) {
+			this.total = total;
+		}
+
+		public List<JIRAIssue> loadPage(int start, int size) throws JIRAException {
+			requests.incrementAndGet();
+			starts.add(start);
+			sizes.add(size);
+			try {
+				beforeLoad(start);
+			} catch (InterruptedException e) {
+				throw new JIRAException("interrupted", e);
+			}
+			final List<JIRAIssue> page = new ArrayList<JIRAIssue>();
+			for (int i = start; i < Math.min(start + size, total); i++) {
+				page.add(issue("TST-" + (i + keyOffset(start))));
+			}
+			return page;
+		}
+
+		protected void beforeLoad(int start) throws InterruptedException, JIRAException {
+		}
+
+		protected int keyOffset(int start) {
+			return 0;
+		}
+
+		List<Integer> startsAbove(int start) {
+			final List<Integer> above = new ArrayList<Integer>();
+			synchronized (starts) {
+				for (Integer s : starts) {
+					if (s > start) {
+						above.add(s);
+					}
+				}
+			}
+			return above;
+		}
+	}
+
+	private static JIRAIssue issue(final String key) {
+		return (JIRAIssue) Proxy.newProxyInstance(JIRAIssue.class.getClassLoader(), new Class<?>[] { JIRAIssue.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getKey".equals(method.getName())) {
+							return key;
+						}
+						if ("toString".equals(method.getName())) {
+							return key;
+						}
+						return null;
+					}
+				});
+	}
+}
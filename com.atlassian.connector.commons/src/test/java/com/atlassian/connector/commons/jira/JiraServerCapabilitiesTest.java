@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.rss.JIRAException;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JiraServerCapabilitiesTest extends TestCase {
+
+	private static final int JIRA_4_BUILD_NUMBER = 600;
+
+	private static final int JIRA_5_BUILD_NUMBER = 700;
+
+	private static final int JIRA_6_BUILD_NUMBER = 6094;
+
+	private static final int CALLERS = 8;
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://jira", "user", "password");
+
+	private File tempDir;
+
+	private CountingProbe probe;
+
+	private final QueuedExecutor refresher = new QueuedExecutor();
+
+	private JiraServerCapabilities capabilities;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		tempDir = new File(System.getProperty("java.io.tmpdir"), "jira-capabilities-test-" + System.nanoTime());
+		assertTrue(tempDir.mkdirs());
+		probe = new CountingProbe(JIRA_5_BUILD_NUMBER);
+		capabilities = new JiraServerCapabilities(probe);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tempDir);
+		super.tearDown();
+	}
+
+	public void testServerIsProbedOnce() throws Exception {
+		assertTrue(capabilities.usesRest(server));
+		assertTrue(capabilities.usesRest(server));
+		assertTrue(capabilities.usesRest(new ConnectionCfg("id2", "http://jira", "other", "password")));
+		assertEquals(1, probe.probes.get());
+		assertEquals(JIRA_5_BUILD_NUMBER, capabilities.getBuildNumber(server));
+	}
+
+	public void testOldServerUsesSoap() throws Exception {
+		probe.buildNumber = JIRA_4_BUILD_NUMBER;
+		assertFalse(capabilities.usesRest(server));
+	}
+
+	public void testServerWithoutRestApiIsRemembered() throws Exception {
+		probe.buildNumber = JiraRESTSupportTester.NO_REST_API;
+		assertFalse(capabilities.usesRest(server));
+		assertFalse(capabilities.usesRest(server));
+		assertEquals(1, probe.probes.get());
+		assertEquals(JiraRESTSupportTester.NO_REST_API, capabilities.getBuildNumber(server));
+	}
+
+	public void testUnreachableServerIsProbedAgain() throws Exception {
+		probe.failure = new JIRAException("Connection refused");
+		for (int i = 0; i < 2; i++) {
+			try {
+				capabilities.usesRest(server);
+				fail("JIRAException expected");
+			} catch (JIRAException e) {
+				assertSame(probe.failure, e.getCause());
+			}
+		}
+		assertEquals(2, probe.probes.get());
+		assertEquals(-1, capabilities.getBuildNumber(server));
+
+		probe.failure = null;
+		assertTrue(capabilities.usesRest(server));
+	}
+
+	public void testConcurrentCallersShareProbe() throws Exception {
+		probe.delay = 100;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread[] threads = new Thread[CALLERS];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						if (!capabilities.usesRest(server)) {
+							failures.incrementAndGet();
+						}
+					} catch (InterruptedException e) {
+						failures.incrementAndGet();
+					} catch (JIRAException e) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures.get());
+		assertEquals(1, probe.probes.get());
+	}
+
+	public void testInvalidate() throws Exception {
+		capabilities.usesRest(server);
+		capabilities.invalidate(server);
+		probe.buildNumber = JIRA_4_BUILD_NUMBER;
+		assertFalse(capabilities.usesRest(server));
+		assertEquals(2, probe.probes.get());
+	}
+
+	public void testResultsAreStored() throws Exception {
+		final File file = new File(tempDir, "capabilities.properties");
+		capabilities.setStoreFile(file);
+		assertTrue(capabilities.usesRest(server));
+		assertTrue(file.isFile());
+
+		final CountingProbe otherProbe = new CountingProbe(JIRA_4_BUILD_NUMBER);
+		final JiraServerCapabilities restored = new JiraServerCapabilities(otherProbe);
+		restored.setStoreFile(file);
+		assertTrue(restored.usesRest(server));
+		assertEquals(0, otherProbe.probes.get());
+	}
+
+	public void testFailuresAreNotStored() throws Exception {
+		final File file = new File(tempDir, "capabilities.properties");
+		capabilities.setStoreFile(file);
+		probe.failure = new JIRAException("Connection refused");
+		try {
+			capabilities.usesRest(server);
+			fail("JIRAException expected");
+		} catch (JIRAException e) {
+			// expected
+		}
+
+		final CountingProbe otherProbe = new CountingProbe(JIRA_5_BUILD_NUMBER);
+		final JiraServerCapabilities restored = new JiraServerCapabilities(otherProbe);
+		restored.setStoreFile(file);
+		assertTrue(restored.usesRest(server));
+		assertEquals(1, otherProbe.probes.get());
+	}
+
+	public void testChangedBuildNumberIsNoticedInBackground() throws Exception {
+		capabilities = new JiraServerCapabilities(probe, refresher);
+		capabilities.setStoreFile(createOldResult(JIRA_5_BUILD_NUMBER));
+		probe.buildNumber = JIRA_6_BUILD_NUMBER;
+
+		// the known route is used while the server is probed again
+		assertTrue(capabilities.usesRest(server));
+		assertEquals(JIRA_5_BUILD_NUMBER, capabilities.getBuildNumber(server));
+		assertEquals(0, probe.probes.get());
+		assertEquals(1, refresher.tasks.size());
+
+		refresher.runAll();
+		assertEquals(JIRA_6_BUILD_NUMBER, capabilities.getBuildNumber(server));
+		assertEquals(1, probe.probes.get());
+	}
+
+	public void testKnownServerKeepsRouteWhenRevalidationFails() throws Exception {
+		capabilities = new JiraServerCapabilities(probe, refresher);
+		capabilities.setStoreFile(createOldResult(JIRA_5_BUILD_NUMBER));
+		probe.failure = new JIRAException("Connection refused");
+		assertTrue(capabilities.usesRest(server));
+
+		refresher.runAll();
+		assertEquals(1, probe.probes.get());
+		assertTrue(capabilities.usesRest(server));
+		assertEquals(JIRA_5_BUILD_NUMBER, capabilities.getBuildNumber(server));
+		assertTrue(refresher.tasks.isEmpty());
+	}
+
+	/**
+	 * @return store file with a result for the server which is old enough to be revalidated
+	 */
+	private File createOldResult(int buildNumber) throws IOException {
+		final File file = new File(tempDir, "capabilities.properties");
+		FileUtils.writeStringToFile(file, server.getUrl().replace(":", "\\:") + "=" + buildNumber + ",0\n");
+		return file;
+	}
+
+	/**
+	 * Runs background probes only when the test asks for it.
+	 */
+	private static final class QueuedExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		public synchronized void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		private void runAll() {
+			final List<Runnable> queued;
+			synchronized (this) {
+				queued = new ArrayList<Runnable>(tasks);
+				tasks.clear();
+			}
+			for (Runnable task : queued) {
+				task.run();
+			}
+		}
+	}
+
+	private static final class CountingProbe implements JiraRESTSupportTester {
+		private final AtomicInteger probes = new AtomicInteger();
+
+		private volatile int buildNumber;
+
+		private volatile long delay;
+
+		private volatile JIRAException failure;
+
+		private CountingProbe(int buildNumber) {
+			this.buildNumber = buildNumber;
+		}
+
+		public boolean supportsRest(ConnectionCfg server) throws JIRAException {
+			return getServerBuildNumber(server) >= JIRA_5_BUILD_NUMBER;
+		}
+
+		public int getServerBuildNumber(ConnectionCfg server) throws JIRAException {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				throw new JIRAException("interrupted", e);
+			}
+			probes.incrementAndGet();
+			if (failure != null) {
+				throw failure;
+			}
+			return buildNumber;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira.rest;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.JIRAActionBean;
+import com.atlassian.connector.commons.jira.JIRAIssueBean;
+import com.atlassian.jira.rest.client.IssueRestClient;
+import com.atlassian.jira.rest.client.JiraRestClient;
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class JiraRestSessionImplTest extends TestCase {
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://my-jira-url/jira", "user", "password");
+
+	private final List<String> calls = new ArrayList<String>();
+
+	private JiraRestSessionImpl session;
+
+	private JIRAIssueBean summary;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		final IssueRestClient issueClient = (IssueRestClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { IssueRestClient.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						final String name = method.getName();
+						if (name.equals("getIssue")) {
+							calls.add("getIssue " + args[0]);
+							return null;
+						} else if (name.equals("getTransitions")) {
+							calls.add("getTransitions");
+							return Collections.emptyList();
+						} else if (name.equals("transition")) {
+							calls.add("transition");
+							return null;
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+		final JiraRestClient restClient = (JiraRestClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { JiraRestClient.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getIssueClient")) {
+							return issueClient;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+		session = new JiraRestSessionImpl(server, restClient);
+
+		final InputStream in = getClass().getResourceAsStream("/mock/jira/search-summaries.json");
+		try {
+			summary = new JIRAIssueBean(server.getUrl(),
+					new JSONObject(IOUtils.toString(in)).getJSONArray("issues").getJSONObject(0));
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testActionsOfSummaryAreRetrievedForFullIssue() throws Exception {
+		assertTrue(summary.isSummaryOnly());
+		assertTrue(session.getAvailableActions(summary).isEmpty());
+		assertEquals(Arrays.asList("getIssue PL-2818", "getTransitions"), calls);
+	}
+
+	public void testWorkflowActionOnSummaryRetrievesFullIssue() throws Exception {
+		session.progressWorkflowAction(summary, new JIRAActionBean(5, "Resolve Issue"), null);
+		assertEquals(Arrays.asList("getIssue PL-2818", "transition"), calls);
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira.rss;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.JIRAIssue;
+import com.atlassian.connector.commons.jira.JIRAIssueBean;
+import com.atlassian.connector.commons.jira.beans.JIRASavedFilterBean;
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class JIRARssClientTest extends TestCase {
+
+	private static final String SEARCH_REQUEST = "/sr/jira.issueviews:searchrequest-xml/";
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://my-jira-url/jira", "user", "password");
+
+	private final JIRASavedFilterBean filter = new JIRASavedFilterBean("My open issues", 10000);
+
+	private MockJiraRssClient client;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		client = new MockJiraRssClient(server);
+	}
+
+	public void testIssueSummariesAskForSummaryFieldsOnly() throws Exception {
+		client.setResponse(SEARCH_REQUEST, "/mock/jira/search-summaries.xml");
+		client.getIssueSummaries(filter, "updated", "DESC", 0, 50);
+		client.getSavedFilterIssueSummaries(filter, "updated", "DESC", 0, 50);
+
+		assertEquals(2, client.getUrls().size());
+		for (String url : client.getUrls()) {
+			assertTrue(url, url.contains("&field=key"));
+			for (String field : JIRAIssueBean.SUMMARY_FIELDS) {
+				assertTrue(url, url.contains("&field=" + field));
+			}
+		}
+	}
+
+	public void testFullIssuesDoNotLimitFields() throws Exception {
+		client.setResponse(SEARCH_REQUEST, "/mock/jira/search-summaries.xml");
+		final List<JIRAIssue> issues = client.getIssues(filter, "updated", "DESC", 0, 50);
+		client.getSavedFilterIssues(filter, "updated", "DESC", 0, 50);
+
+		for (String url : client.getUrls()) {
+			assertFalse(url, url.contains("&field="));
+		}
+		assertFalse(issues.get(0).isSummaryOnly());
+	}
+
+	public void testIssueSummaries() throws Exception {
+		client.setResponse(SEARCH_REQUEST, "/mock/jira/search-summaries.xml");
+		final List<JIRAIssue> issues = client.getIssueSummaries(filter, "updated", "DESC", 0, 50);
+		assertEquals(2, issues.size());
+
+		final JIRAIssue issue = issues.get(0);
+		assertTrue(issue.isSummaryOnly());
+		assertFalse(issue.usesRest());
+		assertEquals(Long.valueOf(10201), issue.getId());
+		assertEquals("PL-2818", issue.getKey());
+		assertEquals("Cannot parse favourite filters", issue.getSummary());
+		assertEquals("In Progress", issue.getStatus());
+		assertEquals(3, issue.getStatusId());
+		assertEquals("Critical", issue.getPriority());
+		assertEquals(2, issue.getPriorityId());
+		assertEquals("kalamon", issue.getAssigneeId());
+		assertEquals("Janusz Kalamon", issue.getAssignee());
+		assertEquals("Tue, 2 Apr 2013 16:56:12 +0200", issue.getUpdated());
+
+		// not sent by the server
+		assertNull(issue.getDescription());
+		assertNull(issue.getComments());
+		assertTrue(issue.getCustomFields().isEmpty());
+
+		final JIRAIssue unassigned = issues.get(1);
+		assertTrue(unassigned.isSummaryOnly());
+		assertEquals("PL-2819", unassigned.getKey());
+		assertEquals("Unknown", unassigned.getPriority());
+		assertEquals("Unassigned", unassigned.getAssignee());
+
+		// copies keep telling that details have not been retrieved yet
+		assertTrue(new JIRAIssueBean(issue).isSummaryOnly());
+	}
+
+	public void testFullIssue() throws Exception {
+		client.setResponse("/si/jira.issueviews:issue-xml/PL-2818/PL-2818.xml", "/mock/jira/issue-PL-2818.xml");
+		final JIRAIssue issue = client.getIssue("PL-2818");
+
+		assertFalse(issue.isSummaryOnly());
+		assertEquals("PL-2818", issue.getKey());
+		assertEquals("<p>Favourite filters with quotes in JQL cannot be parsed.</p>", issue.getDescription());
+		assertEquals(1, issue.getComments().size());
+		assertEquals("Still happens with the latest build.", issue.getComments().get(0).getBody());
+		assertEquals(1, issue.getCustomFields().size());
+		assertEquals("Severity", issue.getCustomFields().get(0).getName());
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.jira.rss;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.remoteapi.TestHttpSessionCallbackImpl;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
+import org.jdom.Document;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RSS/XML client which answers requests with XML documents from test resources instead of asking a server.
+ * Logging in always succeeds.
+ */
+public class MockJiraRssClient extends JIRARssClient {
+
+	private final Map<String, String> responses = new LinkedHashMap<String, String>();
+
+	private final List<String> urls = new ArrayList<String>();
+
+	public MockJiraRssClient(ConnectionCfg server) throws RemoteApiMalformedUrlException {
+		super(server, new TestHttpSessionCallbackImpl());
+	}
+
+	/**
+	 * @param urlFragment  part of the URL of requests answered with the resource
+	 * @param resourcePath path of the XML document in test resources
+	 */
+	public void setResponse(String urlFragment, String resourcePath) {
+		responses.put(urlFragment, resourcePath);
+	}
+
+	/**
+	 * @return URLs of all requests made so far
+	 */
+	public List<String> getUrls() {
+		return urls;
+	}
+
+	@Override
+	public void login() {
+	}
+
+	@Override
+	protected Document retrieveGetResponse(String urlString) throws IOException, JDOMException {
+		urls.add(urlString);
+		for (Map.Entry<String, String> response : responses.entrySet()) {
+			if (urlString.contains(response.getKey())) {
+				final InputStream in = MockJiraRssClient.class.getResourceAsStream(response.getValue());
+				if (in == null) {
+					throw new IOException("Cannot open resource [" + response.getValue() + "]");
+				}
+				try {
+					return new SAXBuilder().build(in);
+				} finally {
+					in.close();
+				}
+			}
+		}
+		throw new IOException("Unexpected request " + urlString);
+	}
+}
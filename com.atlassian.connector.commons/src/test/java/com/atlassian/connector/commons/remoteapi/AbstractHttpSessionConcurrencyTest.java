@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.remoteapi;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.exception.HttpProxySettingsException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
+import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
+import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallbackImpl;
+import com.atlassian.theplugin.commons.remoteapi.rest.PooledHttpClientFactory;
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.Cookie;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+import org.jdom.Document;
+import org.jdom.JDOMException;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.servlet.ServletHandler;
+import org.mortbay.jetty.servlet.ServletHolder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that a single session runs as many requests at once as {@link AbstractHttpSession#setMaxConcurrentRequests(int)}
+ * allows, and never more.
+ */
+public class AbstractHttpSessionConcurrencyTest extends TestCase {
+
+	private static final int RESPONSE_DELAY = 200;
+
+	private static final int CALLERS = 8;
+
+	private static final int REQUESTS_PER_CALLER = 3;
+
+	private Server httpServer;
+
+	private SlowServlet servlet;
+
+	private String mockBaseUrl;
+
+	private MultiThreadedHttpConnectionManager connectionManager;
+
+	@Override
+	protected void setUp() throws Exception {
+		servlet = new SlowServlet();
+		httpServer = new Server(0);
+		final ServletHandler handler = new ServletHandler();
+		handler.addServletWithMapping(new ServletHolder(servlet), "/*");
+		httpServer.setHandler(handler);
+		httpServer.start();
+		mockBaseUrl = "http://localhost:" + httpServer.getConnectors()[0].getLocalPort() + "/slow";
+		connectionManager = PooledHttpClientFactory.createConnectionManager(CALLERS, CALLERS);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connectionManager.shutdown();
+		httpServer.stop();
+	}
+
+	public void testRequestsAreSerializedByDefault() throws Exception {
+		final TestHttpSession session = new TestHttpSession(new PooledCallback(connectionManager));
+		assertEquals(AbstractHttpSession.DEFAULT_MAX_CONCURRENT_REQUESTS, session.getMaxConcurrentRequests());
+
+		runCallers(session, 4, 1);
+		assertEquals(1, servlet.getMaxInFlight());
+	}
+
+	public void testLimitIsRespected() throws Exception {
+		final TestHttpSession session = new TestHttpSession(new PooledCallback(connectionManager));
+		session.setMaxConcurrentRequests(3);
+		// the first three requests only complete together, later ones pass the exhausted barrier straight away
+		servlet.setBarrier(new CountDownLatch(3));
+
+		runCallers(session, CALLERS, REQUESTS_PER_CALLER);
+		assertEquals(3, servlet.getMaxInFlight());
+	}
+
+	public void testNonPooledClientIsStillSerialized() throws Exception {
+		final TestHttpSession session = new TestHttpSession(new HttpSessionCallbackImpl() {
+			public HttpClient getHttpClient(ConnectionCfg server) throws HttpProxySettingsException {
+				return new HttpClient(new SimpleHttpConnectionManager());
+			}
+
+			public void disposeClient(ConnectionCfg server) {
+			}
+
+			public Cookie[] getCookiesHeaders(ConnectionCfg server) {
+				return new Cookie[0];
+			}
+		});
+		session.setMaxConcurrentRequests(CALLERS);
+
+		runCallers(session, 4, 1);
+		assertEquals(1, servlet.getMaxInFlight());
+	}
+
+	public void testInvalidLimit() throws Exception {
+		final TestHttpSession session = new TestHttpSession(new PooledCallback(connectionManager));
+		try {
+			session.setMaxConcurrentRequests(0);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testAllCallersRunConcurrently() throws Exception {
+		final TestHttpSession session = new TestHttpSession(new PooledCallback(connectionManager));
+		session.setMaxConcurrentRequests(CALLERS);
+		// every request waits until all callers have a request in flight
+		final CountDownLatch allInFlight = new CountDownLatch(CALLERS);
+		servlet.setBarrier(allInFlight);
+
+		runCallers(session, CALLERS, 1);
+		assertEquals(0, allInFlight.getCount());
+		assertEquals(CALLERS, servlet.getMaxInFlight());
+	}
+
+	private void runCallers(final TestHttpSession session, int callers, final int requestsPerCaller)
+			throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(callers);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		for (int i = 0; i < callers; i++) {
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < requestsPerCaller; j++) {
+							session.get(mockBaseUrl);
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		if (!errors.isEmpty()) {
+			throw new AssertionError(errors.get(0));
+		}
+		assertEquals(callers * requestsPerCaller, servlet.getRequestCount());
+	}
+
+	private static class SlowServlet extends HttpServlet {
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+		private final AtomicInteger requestCount = new AtomicInteger();
+		private volatile CountDownLatch barrier;
+
+		@Override
+		protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			final int current = inFlight.incrementAndGet();
+			requestCount.incrementAndGet();
+			int max;
+			do {
+				max = maxInFlight.get();
+			} while (current > max && !maxInFlight.compareAndSet(max, current));
+			try {
+				if (barrier != null) {
+					barrier.countDown();
+					if (!barrier.await(10, TimeUnit.SECONDS)) {
+						throw new IOException("Requests were not run concurrently");
+					}
+				} else {
+					Thread.sleep(RESPONSE_DELAY);
+				}
+				response.setContentType("text/xml");
+				response.getOutputStream().write("<a/>".getBytes("UTF-8"));
+			} catch (InterruptedException e) {
+				throw new IOException(e.getMessage());
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		public int getMaxInFlight() {
+			return maxInFlight.get();
+		}
+
+		public int getRequestCount() {
+			return requestCount.get();
+		}
+
+		public void setBarrier(CountDownLatch barrier) {
+			this.barrier = barrier;
+		}
+	}
+
+	private static class PooledCallback extends HttpSessionCallbackImpl {
+		private final MultiThreadedHttpConnectionManager connectionManager;
+
+		public PooledCallback(MultiThreadedHttpConnectionManager connectionManager) {
+			this.connectionManager = connectionManager;
+		}
+
+		public HttpClient getHttpClient(ConnectionCfg server) throws HttpProxySettingsException {
+			return PooledHttpClientFactory.createClient(connectionManager);
+		}
+
+		public void disposeClient(ConnectionCfg server) {
+		}
+
+		public Cookie[] getCookiesHeaders(ConnectionCfg server) {
+			return new Cookie[0];
+		}
+	}
+
+	private class TestHttpSession extends AbstractHttpSession {
+
+		private TestHttpSession(HttpSessionCallbackImpl callback) throws RemoteApiMalformedUrlException {
+			super(new ConnectionCfg("id", mockBaseUrl, null, null), callback);
+		}
+
+		public Document get(String urlString) throws IOException, JDOMException, RemoteApiSessionExpiredException {
+			return retrieveGetResponse(urlString);
+		}
+
+		@Override
+		protected void adjustHttpHeader(HttpMethod method) {
+		}
+
+		@Override
+		protected void preprocessResult(Document doc) throws JDOMException, RemoteApiSessionExpiredException {
+		}
+
+		@Override
+		protected void preprocessMethodResult(HttpMethod method) {
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.remoteapi;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.remoteapi.rest.AbstractHttpSession;
+import com.atlassian.theplugin.commons.remoteapi.rest.DiskResponseCache;
+import com.atlassian.theplugin.commons.remoteapi.rest.HttpResponseCache;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class DiskResponseCacheTest extends TestCase {
+
+	private static final String URL = "http://localhost:8060/rest-service/reviews-v1/CR-1/details";
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("disk-response-cache", "");
+		assertTrue(directory.delete());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void testRecordsSurviveRestart() throws IOException {
+		DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+		cache.put(URL, record("<review/>", "etag-1"));
+		cache.put(URL + "?x", record("<other/>", "etag-2"));
+		cache.put(URL, record("<review>changed</review>", "etag-3"));
+		cache.close();
+
+		cache = new DiskResponseCache(directory, 1024 * 1024);
+		assertEquals(2, cache.size());
+		final HttpResponseCache.CacheRecord record = cache.get(URL);
+		assertNotNull(record);
+		assertEquals("etag-3", record.getEtag());
+		assertTrue(Arrays.equals("<review>changed</review>".getBytes("UTF-8"), record.getDocument()));
+		assertEquals("etag-2", cache.get(URL + "?x").getEtag());
+		cache.close();
+	}
+
+	public void testIdenticalBodiesAreStoredOnce() throws IOException {
+		final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+		cache.put(URL, record("<same/>", "etag-1"));
+		cache.put(URL + "?x", record("<same/>", "etag-1"));
+		assertEquals("<same/>".length(), cache.getSizeInBytes());
+
+		cache.remove(URL);
+		assertNotNull(cache.get(URL + "?x"));
+		cache.close();
+	}
+
+	public void testUnchangedBodyIsNotWrittenAgain() throws IOException {
+		final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+		cache.put(URL, record("<review/>", "etag-1"));
+		final File[] bodies = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return !name.startsWith("index");
+			}
+		});
+		assertEquals(1, bodies.length);
+		assertTrue(bodies[0].setLastModified(0));
+
+		cache.put(URL, record("<review/>", "etag-2"));
+		assertEquals(0, bodies[0].lastModified());
+		assertEquals("etag-2", cache.get(URL).getEtag());
+		assertEquals("<review/>".length(), cache.getSizeInBytes());
+		cache.close();
+	}
+
+	public void testTornIndexTailIsDropped() throws IOException {
+		DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+		cache.put(URL, record("<review/>", "etag-1"));
+		cache.put(URL + "?x", record("<other/>", "etag-2"));
+		cache.close();
+
+		final RandomAccessFile index = new RandomAccessFile(new File(directory, "index.dat"), "rw");
+		try {
+			index.setLength(index.length() - 3);
+		} finally {
+			index.close();
+		}
+
+		cache = new DiskResponseCache(directory, 1024 * 1024);
+		assertNotNull(cache.get(URL));
+		assertNull(cache.get(URL + "?x"));
+		// the cache must still be writable after recovery
+		cache.put(URL + "?x", record("<other/>", "etag-2"));
+		cache.close();
+
+		cache = new DiskResponseCache(directory, 1024 * 1024);
+		assertEquals(2, cache.size());
+		cache.close();
+	}
+
+	public void testSizeCapEvictsLeastRecentlyUsed() throws IOException {
+		final DiskResponseCache cache = new DiskResponseCache(directory, 100);
+		cache.put(URL + 1, record(repeat('a', 40), "etag-1"));
+		cache.put(URL + 2, record(repeat('b', 40), "etag-2"));
+		assertNotNull(cache.get(URL + 1));
+		cache.put(URL + 3, record(repeat('c', 40), "etag-3"));
+
+		assertTrue(cache.getSizeInBytes() <= 100);
+		assertNotNull(cache.get(URL + 1));
+		assertNull(cache.get(URL + 2));
+		assertNotNull(cache.get(URL + 3));
+		cache.close();
+	}
+
+	public void testMemoryCacheFallsBackToDisk() throws IOException {
+		final DiskResponseCache disk = new DiskResponseCache(directory, 1024 * 1024);
+		HttpResponseCache cache = new HttpResponseCache();
+		cache.setDiskCache(disk);
+		cache.put(URL, record("<review/>", "etag-1"));
+
+		// simulates restart - new memory tier on top of the same disk tier
+		cache = new HttpResponseCache();
+		cache.setDiskCache(disk);
+		assertEquals("etag-1", cache.get(URL).getEtag());
+		assertEquals(1, cache.size());
+		disk.close();
+	}
+
+	public void testInvalidationClearsDiskTier() throws IOException {
+		final String otherHost = "http://other:8080/rest/plan";
+		final DiskResponseCache disk = new DiskResponseCache(directory, 1024 * 1024);
+		final HttpResponseCache cache = new HttpResponseCache();
+		cache.setDiskCache(disk);
+		cache.put(URL, record("<review/>", "etag-1"));
+		cache.put(otherHost, record("<plan/>", "etag-2"));
+
+		cache.invalidateHost(AbstractHttpSession.getServerNameFromUrl(URL));
+		assertNull("Invalidated record must not be promoted back from disk", cache.get(URL));
+		assertNotNull(cache.get(otherHost));
+
+		cache.invalidateAll();
+		assertNull(cache.get(otherHost));
+		assertEquals(0, disk.size());
+		disk.close();
+	}
+
+	public void testSharedCachesUseDiskDirectory() throws IOException {
+		final ConnectionCfg cfg = new ConnectionCfg("disk", "http://localhost:8060", "user", "pass");
+		HttpResponseCache.setSharedDiskCacheDirectory(directory);
+		try {
+			final HttpResponseCache shared = HttpResponseCache.getSharedCache(cfg);
+			final DiskResponseCache disk = shared.getDiskCache();
+			assertNotNull(disk);
+			shared.put(URL, record("<review/>", "etag-1"));
+			assertEquals(1, disk.size());
+
+			HttpResponseCache.removeSharedCache(cfg);
+			assertEquals(0, disk.size());
+			assertNull(shared.getDiskCache());
+		} finally {
+			HttpResponseCache.setSharedDiskCacheDirectory(null);
+			HttpResponseCache.removeSharedCache(cfg);
+		}
+	}
+
+	private static String repeat(char c, int count) {
+		final char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static HttpResponseCache.CacheRecord record(String body, String etag) throws IOException {
+		return new HttpResponseCache.CacheRecord(body.getBytes("UTF-8"), "Mon, 01 Jan 2010 00:00:00 GMT", etag);
+	}
+}
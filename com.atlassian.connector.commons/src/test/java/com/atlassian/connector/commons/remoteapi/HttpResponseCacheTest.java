@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.connector.commons.remoteapi;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.remoteapi.rest.HttpResponseCache;
+import junit.framework.TestCase;
+
+public class HttpResponseCacheTest extends TestCase {
+
+	private static final String HOST_A = "http://host-a:8060/rest-service/reviews-v1/";
+
+	private static final String HOST_B = "http://host-b:8085/api/rest/";
+
+	public void testHitAndMiss() {
+		final HttpResponseCache cache = new HttpResponseCache();
+		assertNull(cache.get(HOST_A + "CR-1"));
+
+		cache.put(HOST_A + "CR-1", record(10));
+		// a different String instance must hit the same entry
+		final HttpResponseCache.CacheRecord record = cache.get(new StringBuilder(HOST_A).append("CR-1").toString());
+		assertNotNull(record);
+		assertEquals("etag", record.getEtag());
+		assertEquals(1, cache.getStats().hitCount());
+		assertEquals(1, cache.getStats().missCount());
+	}
+
+	public void testByteBudgetEvictsLeastRecentlyUsed() {
+		final HttpResponseCache cache = new HttpResponseCache(10000);
+		for (int i = 0; i < 10; i++) {
+			cache.put(HOST_A + i, record(2000));
+			// keep the first entry hot
+			assertNotNull(cache.get(HOST_A + 0));
+		}
+		assertTrue(cache.getSizeInBytes() <= 10000);
+		assertNotNull(cache.get(HOST_A + 0));
+		assertNull(cache.get(HOST_A + 1));
+		assertTrue(cache.getStats().evictionCount() > 0);
+	}
+
+	public void testHostsArePartitioned() {
+		final HttpResponseCache cache = new HttpResponseCache(10000);
+		cache.put(HOST_B + "plan", record(100));
+		for (int i = 0; i < 20; i++) {
+			cache.put(HOST_A + i, record(2000));
+		}
+		assertNotNull("Large responses of one host must not evict other hosts", cache.get(HOST_B + "plan"));
+		assertEquals(0, cache.getStats("host-b:8085").evictionCount());
+
+		cache.invalidateHost("host-b:8085");
+		assertNull(cache.get(HOST_B + "plan"));
+		assertNotNull(cache.get(HOST_A + 19));
+	}
+
+	public void testSharedCache() {
+		final ConnectionCfg cfg = new ConnectionCfg("id", "http://localhost", "user", "pass");
+		final HttpResponseCache shared = HttpResponseCache.getSharedCache(cfg);
+		assertSame(shared, HttpResponseCache.getSharedCache(new ConnectionCfg("id", "http://localhost", "user", "pass")));
+		assertNotSame(shared, HttpResponseCache.getSharedCache(new ConnectionCfg("id", "http://localhost", "other", "pass")));
+
+		HttpResponseCache.removeSharedCache(cfg);
+		assertNotSame(shared, HttpResponseCache.getSharedCache(cfg));
+	}
+
+	public void testSharedCacheIsReplacedWhenServerChanges() {
+		final HttpResponseCache shared = HttpResponseCache.getSharedCache(
+				new ConnectionCfg("edited", "http://localhost", "user", "pass"));
+		shared.put(HOST_A + "CR-1", record(10));
+
+		final HttpResponseCache replaced = HttpResponseCache.getSharedCache(
+				new ConnectionCfg("edited", "http://localhost", "user", "new-pass"));
+		assertNotSame(shared, replaced);
+		assertEquals("Cache of the old connection data must be emptied", 0, shared.size());
+
+		replaced.put(HOST_A + "CR-1", record(10));
+		HttpResponseCache.removeSharedCache("edited");
+		assertEquals(0, replaced.size());
+	}
+
+	private static HttpResponseCache.CacheRecord record(int size) {
+		return new HttpResponseCache.CacheRecord(new byte[size], "Mon, 01 Jan 2010 00:00:00 GMT", "etag");
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.bamboo.api.bamboomock;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import org.ddsteps.mock.httpserver.JettyMockServer;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves one page of a paged Bamboo 4.0+ REST list.
+ */
+public class PagedListCallback40 implements JettyMockServer.Callback {
+	private final String expectedPath;
+	private final int expectedStartIndex;
+	private final String resource;
+
+	public PagedListCallback40(String expectedPath, int expectedStartIndex, String resource) {
+		this.expectedPath = expectedPath;
+		this.expectedStartIndex = expectedStartIndex;
+		this.resource = resource;
+	}
+
+	public void onExpectedRequest(String target, HttpServletRequest request, HttpServletResponse response)
+			throws Exception {
+		assertTrue(request.getPathInfo().endsWith(expectedPath));
+		assertEquals(String.valueOf(expectedStartIndex), request.getParameter("start-index"));
+		assertTrue(request.getParameter("max-results") != null);
+
+		Util.copyResourceWithFullPath(response.getOutputStream(), Util.RESOURCE_BASE_4_0 + resource);
+		response.getOutputStream().flush();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BambooPlanCatalogTest extends TestCase {
+
+	private final BambooPlan plan1 = new BambooPlan("Plan 1", "PRJ-P1", null, true);
+
+	private final BambooPlan plan2 = new BambooPlan("Plan 2", "PRJ-P2", null, false, true);
+
+	private final BambooPlan branch1 = new BambooPlan("Branch 1", "PRJ-P11", "PRJ-P1", true);
+
+	private final BambooPlan branch2 = new BambooPlan("Branch 2", "PRJ-P12", "PRJ-P1", false);
+
+	private final BambooPlanCatalog catalog = new BambooPlanCatalog(Arrays.asList(plan1, plan2, branch1, branch2));
+
+	public void testLookup() {
+		assertSame(plan2, catalog.getPlan("PRJ-P2"));
+		assertNull(catalog.getPlan("PRJ-NONE"));
+		assertEquals(Boolean.TRUE, catalog.isPlanEnabled("PRJ-P1"));
+		assertEquals(Boolean.FALSE, catalog.isPlanEnabled("PRJ-P2"));
+		assertNull(catalog.isPlanEnabled("PRJ-NONE"));
+		assertTrue(catalog.isFavourite("PRJ-P2"));
+		assertFalse(catalog.isFavourite("PRJ-P1"));
+		assertEquals(Arrays.asList(plan2), catalog.getFavourites());
+	}
+
+	public void testBranches() {
+		assertEquals(Arrays.asList(branch1, branch2), catalog.getBranches("PRJ-P1"));
+		assertTrue(catalog.getBranches("PRJ-P2").isEmpty());
+		assertEquals("PRJ-P1", catalog.getMasterPlanKey("PRJ-P12"));
+		assertNull(catalog.getMasterPlanKey("PRJ-P1"));
+	}
+
+	public void testIsCollectionInServerOrder() {
+		assertEquals(4, catalog.size());
+		assertEquals(Arrays.asList(plan1, plan2, branch1, branch2), new ArrayList<BambooPlan>(catalog));
+		assertTrue(catalog.contains(new BambooPlan(null, "PRJ-P11", null)));
+		assertFalse(catalog.contains(new BambooPlan(null, "PRJ-NONE", null)));
+		assertSame(catalog, BambooPlanCatalog.of(catalog));
+		assertTrue(BambooPlanCatalog.empty().isEmpty());
+	}
+
+	public void testFirstOfDuplicateKeysWins() {
+		final BambooPlan duplicate = new BambooPlan("Duplicate", "PRJ-P1", null, false);
+		final BambooPlanCatalog withDuplicate = BambooPlanCatalog.of(Arrays.asList(plan1, duplicate));
+		assertSame(plan1, withDuplicate.getPlan("PRJ-P1"));
+		assertEquals(2, withDuplicate.size());
+	}
+
+	public void testWithFavourites() {
+		final BambooPlanCatalog favourites = catalog.withFavourites(Arrays.asList("prj-p1", "PRJ-P12", "PRJ-NONE"));
+		final List<String> keys = new ArrayList<String>();
+		for (BambooPlan plan : favourites.getFavourites()) {
+			keys.add(plan.getKey());
+		}
+		assertEquals(Arrays.asList("PRJ-P1", "PRJ-P2", "PRJ-P12"), keys);
+		assertEquals(Boolean.FALSE, favourites.isPlanEnabled("PRJ-P12"));
+		assertFalse(catalog.isFavourite("PRJ-P1"));
+		assertSame(catalog, catalog.withFavourites(Collections.<String>emptyList()));
+	}
+
+	public void testLookupOfManyPlans() {
+		final int count = 5000;
+		final List<BambooPlan> plans = new ArrayList<BambooPlan>();
+		for (int i = 0; i < count; i++) {
+			plans.add(new BambooPlan("Plan " + i, "PRJ-PLAN" + i, null, i % 2 == 0));
+		}
+
+		final BambooPlanCatalog index = BambooPlanCatalog.of(plans);
+		for (BambooPlan plan : plans) {
+			assertSame(plan, index.getPlan(plan.getKey()));
+			assertEquals(Boolean.valueOf(plan.isEnabled()), index.isPlanEnabled(plan.getKey()));
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that incremental refresh retrieves full builds only for plans whose latest build changed
+ * and that the plan list is not retrieved on every refresh.
+ */
+public class BambooServerFacadeIncrementalRefreshTest extends TestCase {
+
+	private static final int PLANS = 200;
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://bamboo.example.com", "user", "pass");
+
+	private MockBamboo bamboo;
+
+	private BambooServerFacadeImpl facade;
+
+	@Override
+	protected void setUp() throws Exception {
+		bamboo = new MockBamboo();
+		facade = bamboo.createFacade();
+	}
+
+	public void testOnlyChangedPlansAreRetrieved() throws Exception {
+		final List<SubscribedPlan> plans = getPlans(PLANS);
+
+		final SubscribedPlansUpdate first = facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertTrue(first.isFullRefresh());
+		assertEquals(PLANS, first.getBuilds().size());
+		assertEquals(PLANS, first.getChangedBuilds().size());
+		assertEquals(PLANS, bamboo.fullBuildCalls.get());
+
+		bamboo.fullBuildCalls.set(0);
+		final SubscribedPlansUpdate second = facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertFalse(second.isFullRefresh());
+		assertTrue(second.isEmpty());
+		assertEquals(0, bamboo.fullBuildCalls.get());
+		assertEquals(new ArrayList<BambooBuild>(first.getBuilds()), new ArrayList<BambooBuild>(second.getBuilds()));
+		assertSame(first.getBuilds().iterator().next(), second.getBuilds().iterator().next());
+
+		// a build started on one plan, another one was queued (same number, new life cycle state)
+		bamboo.summaries.put("PRJ-PLAN7", new BambooBuildSummary("PRJ-PLAN7", 2, "Unknown", "InProgress"));
+		bamboo.summaries.put("PRJ-PLAN9", new BambooBuildSummary("PRJ-PLAN9", 1, "Successful", "Queued"));
+		bamboo.fullBuildCalls.set(0);
+		final SubscribedPlansUpdate third = facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertEquals(2, bamboo.fullBuildCalls.get());
+		assertEquals(Arrays.asList("PRJ-PLAN7"), getKeys(third.getChangedBuilds()));
+		assertEquals(PLANS, third.getBuilds().size());
+
+		// unsubscribed plan is reported as removed
+		final SubscribedPlansUpdate fourth = facade.getSubscribedPlansUpdate(server, plans.subList(1, PLANS), false,
+				false, false, 0);
+		assertEquals(Arrays.asList("PRJ-PLAN0"), new ArrayList<String>(fourth.getRemovedPlanKeys()));
+		assertTrue(fourth.getChangedBuilds().isEmpty());
+	}
+
+	public void testDifferentOptionsOrResetStartOver() throws Exception {
+		final List<SubscribedPlan> plans = getPlans(3);
+		facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertTrue(facade.getSubscribedPlansUpdate(server, plans, false, false, false, 60).isFullRefresh());
+		assertFalse(facade.getSubscribedPlansUpdate(server, plans, false, false, false, 60).isFullRefresh());
+
+		facade.resetSubscribedPlansUpdate(server);
+		bamboo.fullBuildCalls.set(0);
+		final SubscribedPlansUpdate update = facade.getSubscribedPlansUpdate(server, plans, false, false, false, 60);
+		assertTrue(update.isFullRefresh());
+		assertEquals(3, update.getChangedBuilds().size());
+		assertEquals(3, bamboo.fullBuildCalls.get());
+	}
+
+	public void testPlanListIsCachedForTtl() throws Exception {
+		final List<SubscribedPlan> plans = getPlans(3);
+		facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertEquals(1, bamboo.planListCalls.get());
+		assertEquals(Boolean.TRUE, facade.getPlanList(server).isPlanEnabled("PRJ-PLAN1"));
+		assertEquals(1, bamboo.planListCalls.get());
+
+		facade.invalidatePlanList(server);
+		facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertEquals(2, bamboo.planListCalls.get());
+
+		facade.setPlanListTtl(0);
+		facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		facade.getSubscribedPlansUpdate(server, plans, false, false, false, 0);
+		assertEquals(4, bamboo.planListCalls.get());
+	}
+
+	private static List<SubscribedPlan> getPlans(int count) {
+		final List<SubscribedPlan> plans = new ArrayList<SubscribedPlan>();
+		for (int i = 0; i < count; i++) {
+			plans.add(new SubscribedPlan("PRJ-PLAN" + i));
+		}
+		return plans;
+	}
+
+	private static List<String> getKeys(Iterable<BambooBuild> builds) {
+		final List<String> keys = new ArrayList<String>();
+		for (BambooBuild build : builds) {
+			keys.add(build.getPlanKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * Bamboo 4.0 session where the latest build of each plan is described by its summary.
+	 */
+	private class MockBamboo extends MockBambooSession {
+		private final Map<String, BambooBuildSummary> summaries = new HashMap<String, BambooBuildSummary>();
+
+		private final AtomicInteger fullBuildCalls = new AtomicInteger();
+
+		private final AtomicInteger planListCalls = new AtomicInteger();
+
+		MockBamboo() {
+			for (int i = 0; i < PLANS; i++) {
+				summaries.put("PRJ-PLAN" + i, new BambooBuildSummary("PRJ-PLAN" + i, 1, "Successful", "Finished"));
+			}
+		}
+
+		@Override
+		protected Object call(String name, Object[] args) throws Exception {
+			if ("getBamboBuildNumber".equals(name)) {
+				return 2906;
+			} else if ("getPlanList".equals(name)) {
+				planListCalls.incrementAndGet();
+				final List<BambooPlan> plans = new ArrayList<BambooPlan>();
+				for (int i = 0; i < PLANS; i++) {
+					plans.add(new BambooPlan("Plan " + i, "PRJ-PLAN" + i, null, true));
+				}
+				return plans;
+			} else if ("getLatestBuildSummaries".equals(name)) {
+				return new HashMap<String, BambooBuildSummary>(summaries);
+			} else if ("getLatestBuildForPlanNew".equals(name)) {
+				fullBuildCalls.incrementAndGet();
+				final BambooBuildSummary summary = summaries.get((String) args[0]);
+				final boolean building = "InProgress".equals(summary.getLifeCycleState());
+				return new BambooBuildInfo.Builder((String) args[0], null, server, null,
+						building ? summary.getNumber() - 1 : summary.getNumber(), BuildStatus.SUCCESS)
+						.planState(building ? PlanState.BUILDING : PlanState.STANDING)
+						.enabled((Boolean) args[2]).build();
+			}
+			return super.call(name, args);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.theplugin.commons.cfg.SubscribedPlan;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks subscribed plans refresh against a mocked Bamboo server: remote calls run concurrently up to
+ * the per-server limit and results come back in a deterministic order, with failed plans skipped.
+ */
+public class BambooServerFacadeParallelRefreshTest extends TestCase {
+
+	private static final int PLANS = 12;
+
+	private static final int BRANCHES_PER_PLAN = 2;
+
+	private static final String FAILING_PLAN = "PRJ-PLAN5";
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://bamboo.example.com", "user", "pass");
+
+	private MockBamboo bamboo;
+
+	@Override
+	protected void setUp() throws Exception {
+		bamboo = new MockBamboo();
+	}
+
+	public void testSequentialByDefault() throws Exception {
+		final BambooServerFacadeImpl facade = bamboo.createFacade();
+		assertEquals(1, facade.getMaxConcurrentRequestsPerServer());
+		refresh(facade);
+		assertEquals(1, bamboo.maxInFlight.get());
+	}
+
+	public void testResultsOrderDoesNotDependOnLimit() throws Exception {
+		final BambooServerFacadeImpl facade = bamboo.createFacade();
+		final List<String> sequential = getKeys(refresh(facade));
+
+		facade.setMaxConcurrentRequestsPerServer(6);
+		final List<String> parallel = getKeys(refresh(facade));
+		assertEquals(sequential, parallel);
+		assertTrue(bamboo.maxInFlight.get() <= 6);
+
+		// failing plan is skipped, every other plan gets its branches followed by the master plan
+		assertEquals((PLANS - 1) * (BRANCHES_PER_PLAN + 1), parallel.size());
+		assertFalse(parallel.contains(FAILING_PLAN));
+		assertEquals("PRJ-PLAN0-BR0", parallel.get(0));
+		assertEquals("PRJ-PLAN0-BR1", parallel.get(1));
+		assertEquals("PRJ-PLAN0", parallel.get(2));
+	}
+
+	public void testCallsRunConcurrentlyUpToLimit() throws Exception {
+		final BambooServerFacadeImpl facade = bamboo.createFacade();
+		facade.setMaxConcurrentRequestsPerServer(4);
+		// the first four calls only return when all of them are in flight
+		bamboo.barrier = new CountDownLatch(4);
+
+		assertEquals((PLANS - 1) * (BRANCHES_PER_PLAN + 1), refresh(facade).size());
+		assertFalse("Calls were not run concurrently", bamboo.barrierTimedOut.get());
+		assertEquals(4, bamboo.maxInFlight.get());
+	}
+
+	private Collection<BambooBuild> refresh(BambooServerFacadeImpl facade) throws Exception {
+		final List<SubscribedPlan> plans = new ArrayList<SubscribedPlan>();
+		for (int i = 0; i < PLANS; i++) {
+			plans.add(new SubscribedPlan("PRJ-PLAN" + i));
+		}
+		return facade.getSubscribedPlansResultsNew(server, plans, false, true, false, 0);
+	}
+
+	private static List<String> getKeys(Collection<BambooBuild> builds) {
+		final List<String> keys = new ArrayList<String>();
+		for (BambooBuild build : builds) {
+			keys.add(build.getPlanKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * Bamboo session recording the number of calls in flight.
+	 */
+	private class MockBamboo extends MockBambooSession {
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		private final AtomicBoolean barrierTimedOut = new AtomicBoolean();
+
+		private volatile CountDownLatch barrier;
+
+		@Override
+		protected Object call(String method, Object[] args) throws Exception {
+			if ("getPlanList".equals(method)) {
+				final List<BambooPlan> plans = new ArrayList<BambooPlan>();
+				for (int i = 0; i < PLANS; i++) {
+					plans.add(new BambooPlan("Plan " + i, "PRJ-PLAN" + i, null, true));
+				}
+				return plans;
+			} else if ("getBranchKeys".equals(method)) {
+				remoteCall();
+				final String planKey = (String) args[0];
+				if (FAILING_PLAN.equals(planKey)) {
+					throw new RemoteApiException("Plan " + planKey + " not found");
+				}
+				final List<String> branches = new ArrayList<String>();
+				for (int i = 0; i < BRANCHES_PER_PLAN; i++) {
+					branches.add(planKey + "-BR" + i);
+				}
+				return branches;
+			} else if ("getLatestBuildForPlanNew".equals(method)) {
+				remoteCall();
+				return new BambooBuildInfo.Builder((String) args[0], server, BuildStatus.SUCCESS)
+						.enabled((Boolean) args[2]).build();
+			}
+			return super.call(method, args);
+		}
+
+		private void remoteCall() throws InterruptedException {
+			final int current = inFlight.incrementAndGet();
+			synchronized (maxInFlight) {
+				maxInFlight.set(Math.max(current, maxInFlight.get()));
+			}
+			try {
+				final CountDownLatch latch = barrier;
+				if (latch != null) {
+					latch.countDown();
+					if (!latch.await(10, TimeUnit.SECONDS)) {
+						barrierTimedOut.set(true);
+					}
+				}
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+	}
+}
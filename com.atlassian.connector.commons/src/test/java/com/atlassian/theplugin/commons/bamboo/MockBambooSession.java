@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.remoteapi.TestHttpSessionCallbackImpl;
+import com.atlassian.theplugin.commons.bamboo.api.BambooSession;
+import com.atlassian.theplugin.commons.remoteapi.ProductSession;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiMalformedUrlException;
+import com.atlassian.theplugin.commons.remoteapi.rest.HttpSessionCallback;
+import com.atlassian.theplugin.commons.util.LoggerImpl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * In-memory Bamboo session for facade tests. The session accepts any credentials and is always logged in,
+ * other calls of {@link BambooSession} are passed to {@link #call(String, Object[])}, which subclasses
+ * override to answer the calls the tested code makes.
+ */
+public class MockBambooSession implements InvocationHandler {
+
+	public BambooSession createSession() {
+		return (BambooSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { BambooSession.class }, this);
+	}
+
+	/**
+	 * @return facade which uses a session of this mock for every server
+	 */
+	public BambooServerFacadeImpl createFacade() {
+		final BambooSession session = createSession();
+		return new BambooServerFacadeImpl(LoggerImpl.getInstance(), new BambooSessionFactory() {
+			public BambooSession createSession(ConnectionCfg serverData, HttpSessionCallback callback) {
+				return session;
+			}
+
+			public ProductSession createLoginSession(ConnectionCfg serverData, HttpSessionCallback callback)
+					throws RemoteApiMalformedUrlException {
+				throw new UnsupportedOperationException();
+			}
+		}, new TestHttpSessionCallbackImpl());
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		final String name = method.getName();
+		if ("isLoggedIn".equals(name)) {
+			return true;
+		} else if ("login".equals(name) || "logout".equals(name)) {
+			return null;
+		} else if ("toString".equals(name) || "hashCode".equals(name) || "equals".equals(name)) {
+			try {
+				return method.invoke(this, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+		return call(name, args);
+	}
+
+	/**
+	 * @param method name of the called {@link BambooSession} method
+	 * @param args   its arguments
+	 * @return result of the call
+	 * @throws Exception thrown to the caller of the session
+	 */
+	protected Object call(String method, Object[] args) throws Exception {
+		throw new UnsupportedOperationException(method);
+	}
+}
@@ -29,6 +29,8 @@ import com.atlassian.theplugin.commons.util.LoggerImpl;
 import com.spartez.util.junit3.IAction;
 import com.spartez.util.junit3.TestUtil;
 import junit.framework.Assert;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.ddsteps.mock.httpserver.JettyMockServer;
 import org.jetbrains.annotations.Nullable;
 import org.joda.time.DateTime;
@@ -38,11 +40,16 @@ import org.joda.time.format.ISODateTimeFormat;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -167,6 +174,105 @@ public class BambooSessionTest extends AbstractSessionTest {
 		mockServer.verify();
 	}
 
+	public void testGetLatestBuildsForPlansBatched() throws Exception {
+		mockServer.expect("/api/rest/login.action", new LoginCallback(USER_NAME, PASSWORD));
+		mockServer.expect("/api/rest/getBambooBuildNumber.action", new BamboBuildNumberCalbackHttp500());
+		mockServer.expect("/rest/api/latest/info", new BamboBuildNumberCalback40());
+		// both plans are on the first page, the second one is not requested
+		mockServer.expect("/rest/api/latest/plan", new PagedListCallback40("/rest/api/latest/plan", 0,
+				"planListPage1Response.xml"));
+		mockServer.expect("/rest/api/latest/result", new PagedListCallback40("/rest/api/latest/result", 0,
+				"latestResultsResponse.xml"));
+		mockServer.expect("/api/rest/logout.action", new LogoutCallback());
+
+		BambooSession apiHandler = createBambooSession(mockBaseUrl);
+		apiHandler.login(USER_NAME, PASSWORD.toCharArray());
+		final List<BambooBuild> builds = new ArrayList<BambooBuild>(apiHandler.getLatestBuildsForPlans(
+				Arrays.asList(new BambooPlan("First Plan", "PO-FP", null, true),
+						new BambooPlan("Second Plan", "PO-SECPLAN", null, false)), false, false, false, 0));
+		apiHandler.logout();
+		mockServer.verify();
+
+		assertEquals(2, builds.size());
+		final BambooBuild first = builds.get(0);
+		assertEquals("PO-FP", first.getPlanKey());
+		assertEquals(12, first.getNumber());
+		assertEquals(BuildStatus.SUCCESS, first.getStatus());
+		assertEquals(PlanState.BUILDING, first.getPlanState());
+		assertTrue(first.getEnabled());
+		assertEquals(2, first.getCommiters().size());
+		assertTrue(first.getCommiters().contains("alice"));
+
+		final BambooBuild second = builds.get(1);
+		assertEquals("PO-SECPLAN", second.getPlanKey());
+		assertEquals(3, second.getNumber());
+		assertEquals(BuildStatus.FAILURE, second.getStatus());
+		assertEquals(PlanState.STANDING, second.getPlanState());
+		assertFalse(second.getEnabled());
+		assertTrue(second.getCommiters().isEmpty());
+	}
+
+	public void testGetLatestBuildsForPlansBatchedWithBranches() throws Exception {
+		mockServer.expect("/api/rest/login.action", new LoginCallback(USER_NAME, PASSWORD));
+		mockServer.expect("/api/rest/getBambooBuildNumber.action", new BamboBuildNumberCalbackHttp500());
+		mockServer.expect("/rest/api/latest/info", new BamboBuildNumberCalback40());
+		mockServer.expect("/rest/api/latest/plan", new PagedListCallback40("/rest/api/latest/plan", 0,
+				"planListWithBranchesResponse.xml"));
+		mockServer.expect("/rest/api/latest/result", new PagedListCallback40("/rest/api/latest/result", 0,
+				"latestResultsResponse.xml"));
+		mockServer.expect("/api/rest/logout.action", new LogoutCallback());
+
+		BambooSession apiHandler = createBambooSession(mockBaseUrl);
+		apiHandler.login(USER_NAME, PASSWORD.toCharArray());
+		final List<BambooBuild> builds = new ArrayList<BambooBuild>(apiHandler.getLatestBuildsForPlans(
+				Arrays.asList(new BambooPlan("First Plan", "PO-FP", null, true)), true, false, false, 0));
+		apiHandler.logout();
+		// no per branch requests
+		mockServer.verify();
+
+		assertEquals(3, builds.size());
+		final BambooBuild feature = builds.get(0);
+		assertEquals("PO-FP0", feature.getPlanKey());
+		assertEquals("PO-FP", feature.getMasterPlanKey());
+		assertEquals(5, feature.getNumber());
+		assertEquals(BuildStatus.SUCCESS, feature.getStatus());
+		assertEquals(PlanState.STANDING, feature.getPlanState());
+		assertEquals(1, feature.getCommiters().size());
+		assertTrue(feature.getCommiters().contains("carol"));
+
+		final BambooBuild bugfix = builds.get(1);
+		assertEquals("PO-FP1", bugfix.getPlanKey());
+		assertEquals(2, bugfix.getNumber());
+		assertEquals(BuildStatus.FAILURE, bugfix.getStatus());
+		assertEquals(PlanState.IN_QUEUE, bugfix.getPlanState());
+
+		final BambooBuild master = builds.get(2);
+		assertEquals("PO-FP", master.getPlanKey());
+		assertNull(master.getMasterPlanKey());
+		assertEquals(12, master.getNumber());
+		assertEquals(PlanState.BUILDING, master.getPlanState());
+	}
+
+	public void testGetLatestBuildSummaries() throws Exception {
+		mockServer.expect("/api/rest/login.action", new LoginCallback(USER_NAME, PASSWORD));
+		mockServer.expect("/api/rest/getBambooBuildNumber.action", new BamboBuildNumberCalbackHttp500());
+		mockServer.expect("/rest/api/latest/info", new BamboBuildNumberCalback40());
+		mockServer.expect("/rest/api/latest/result", new PagedListCallback40("/rest/api/latest/result", 0,
+				"latestResultsResponse.xml"));
+		mockServer.expect("/api/rest/logout.action", new LogoutCallback());
+
+		BambooSession apiHandler = createBambooSession(mockBaseUrl);
+		apiHandler.login(USER_NAME, PASSWORD.toCharArray());
+		final Map<String, BambooBuildSummary> summaries = apiHandler.getLatestBuildSummaries();
+		apiHandler.logout();
+		mockServer.verify();
+
+		assertEquals(2, summaries.size());
+		assertEquals(new BambooBuildSummary("PO-FP", 12, "Successful", "Finished"), summaries.get("PO-FP"));
+		assertEquals(3, summaries.get("PO-SECPLAN").getNumber().intValue());
+		assertEquals("Failed", summaries.get("PO-SECPLAN").getState());
+	}
+
     public void testFavouritePlanList() throws Exception {
         mockServer.expect("/api/rest/login.action", new LoginCallback(USER_NAME, PASSWORD));
         mockServer.expect("/api/rest/getLatestUserBuilds.action", new FavouritePlanListCallback());
@@ -1075,6 +1181,133 @@ public class BambooSessionTest extends AbstractSessionTest {
         }
     }
 
+    public void testGetBuildLogTailAndChunks() throws Exception {
+        final String log = "line 1\nline 2\nline 3\n";
+        final String grownLog = log + "line 4\nline";
+        mockServer.expect("/api/rest/login.action", new LoginCallback(USER_NAME, PASSWORD));
+        mockServer.expect("/api/rest/getBambooBuildNumber.action", new BamboBuildNumberCalback());
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log", new RangeBuildLogCallback(log, "bytes=-10"));
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log",
+                new RangeBuildLogCallback(log, chunkRange(0)));
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log", new RangeBuildLogCallback(grownLog, chunkRange(21)));
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log", new RangeBuildLogCallback(grownLog, chunkRange(28)));
+        mockServer.expect("/api/rest/logout.action", new LogoutCallback());
+
+        final BambooSession session = createBambooSession(mockBaseUrl);
+        session.login(USER_NAME, PASSWORD.toCharArray());
+
+        // partial first line is dropped
+        final BuildLogChunk tail = session.getBuildLogTail("myplan", 123, 10);
+        assertEquals("line 3\n", tail.getText());
+        assertEquals(14, tail.getOffset());
+        assertEquals(21, tail.getNextOffset());
+        assertEquals(21, tail.getTotalLength());
+
+        final BuildLogChunk first = session.getBuildLogChunk("myplan", 123, 0);
+        assertEquals(log, first.getText());
+        assertEquals(21, first.getNextOffset());
+
+        // incomplete last line is left for the next chunk
+        final BuildLogChunk second = session.getBuildLogChunk("myplan", 123, first.getNextOffset());
+        assertEquals("line 4\n", second.getText());
+        assertEquals(28, second.getNextOffset());
+
+        final BuildLogChunk third = session.getBuildLogChunk("myplan", 123, second.getNextOffset());
+        assertTrue(third.isEmpty());
+        assertEquals(28, third.getNextOffset());
+
+        session.logout();
+        mockServer.verify();
+    }
+
+    public void testGetBuildLogReaderWithCache() throws Exception {
+        final String log = "line 1\nline 2\n";
+        final String grownLog = log + "line 3\n";
+        mockServer.expect("/api/rest/login.action", new LoginCallback(USER_NAME, PASSWORD));
+        mockServer.expect("/api/rest/getBambooBuildNumber.action", new BamboBuildNumberCalback());
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log", new RangeBuildLogCallback(log, null));
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log", new RangeBuildLogCallback(log, "bytes=14-"));
+        mockServer.expect("/download/myplan/build_logs/myplan-123.log", new RangeBuildLogCallback(grownLog, "bytes=14-"));
+        mockServer.expect("/api/rest/logout.action", new LogoutCallback());
+
+        final File dir = File.createTempFile("buildlogs", "");
+        dir.delete();
+        final BambooSessionImpl session = createBambooSession(mockBaseUrl);
+        session.setBuildLogCache(new BuildLogCache(dir, 1024 * 1024));
+        try {
+            session.login(USER_NAME, PASSWORD.toCharArray());
+
+            assertEquals(log, readFully(session.getBuildLogReader("myplan", 123)));
+            // nothing appended since
+            assertEquals(log, readFully(session.getBuildLogReader("myplan", 123)));
+            // only the appended line is transferred
+            assertEquals(grownLog, readFully(session.getBuildLogReader("myplan", 123)));
+            assertEquals(grownLog.length(), session.getBuildLogCache().getSizeInBytes());
+
+            session.logout();
+            mockServer.verify();
+        } finally {
+            session.getBuildLogCache().clear();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static String chunkRange(final int offset) {
+        return "bytes=" + offset + "-" + (offset + BambooSessionImpl.MAX_BUILD_LOG_CHUNK_BYTES - 1);
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        try {
+            return IOUtils.toString(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Serves the log honouring HTTP Range header and checks that expected range was requested.
+     */
+    private static class RangeBuildLogCallback implements JettyMockServer.Callback {
+        private final byte[] log;
+        private final String expectedRange;
+
+        public RangeBuildLogCallback(final String log, @Nullable final String expectedRange) throws IOException {
+            this.log = log.getBytes("UTF-8");
+            this.expectedRange = expectedRange;
+        }
+
+        public void onExpectedRequest(final String target, final HttpServletRequest request,
+                                      final HttpServletResponse response) throws Exception {
+            final String range = request.getHeader("Range");
+            assertEquals(expectedRange, range);
+            response.setContentType("text/plain; charset=UTF-8");
+            int start = 0;
+            int end = log.length - 1;
+            if (range != null) {
+                final String spec = range.substring("bytes=".length());
+                final int dash = spec.indexOf('-');
+                if (dash == 0) {
+                    start = Math.max(0, log.length - Integer.parseInt(spec.substring(1)));
+                } else {
+                    start = Integer.parseInt(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        end = Math.min(end, Integer.parseInt(spec.substring(dash + 1)));
+                    }
+                }
+                if (start >= log.length) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader("Content-Range", "bytes */" + log.length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + log.length);
+            }
+            final ServletOutputStream out = response.getOutputStream();
+            out.write(log, start, end - start + 1);
+            out.close();
+        }
+    }
+
     public static BambooSessionImpl createBambooSession(@Nullable String url) throws RemoteApiMalformedUrlException {
         return new BambooSessionImpl(new ConnectionCfg("", url, "", ""), new TestHttpSessionCallbackImpl(), LoggerImpl
                 .getInstance());
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.bamboo.api;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BuildLogCacheTest extends TestCase {
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("buildlogcache", "");
+		dir.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+		super.tearDown();
+	}
+
+	public void testStoreAndAppend() throws IOException {
+		final BuildLogCache cache = new BuildLogCache(dir, 1000);
+		final String url = "http://bamboo/download/PLAN/build_logs/PLAN-1.log";
+		assertFalse(cache.getFile(url).exists());
+		assertNull(cache.getCharset(url));
+
+		cache.store(url, stream("abc\n"), "UTF-16");
+		cache.append(url, stream("def\n"));
+		assertEquals("abc\ndef\n", FileUtils.readFileToString(cache.getFile(url), "ISO-8859-1"));
+		assertEquals("UTF-16", cache.getCharset(url));
+		assertEquals(8, cache.getSizeInBytes());
+
+		cache.store(url, stream("x\n"), "UTF-8");
+		assertEquals("x\n", FileUtils.readFileToString(cache.getFile(url), "ISO-8859-1"));
+		assertEquals("UTF-8", cache.getCharset(url));
+
+		cache.remove(url);
+		assertFalse(cache.getFile(url).exists());
+		assertNull(cache.getCharset(url));
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		final BuildLogCache cache = new BuildLogCache(dir, 25);
+		cache.store("a", stream("0123456789"), "UTF-8");
+		cache.getFile("a").setLastModified(1000000L);
+		cache.store("b", stream("0123456789"), "UTF-8");
+		cache.getFile("b").setLastModified(3000000L);
+		cache.store("c", stream("0123456789"), "UTF-8");
+
+		assertFalse(cache.getFile("a").exists());
+		assertNull(cache.getCharset("a"));
+		assertTrue(cache.getFile("b").exists());
+		assertTrue(cache.getFile("c").exists());
+		assertEquals(20, cache.getSizeInBytes());
+	}
+
+	public void testKeepsCurrentLogEvenIfTooBig() throws IOException {
+		final BuildLogCache cache = new BuildLogCache(dir, 5);
+		cache.store("a", stream("0123456789"), "UTF-8");
+		assertTrue(cache.getFile("a").exists());
+
+		cache.clear();
+		assertEquals(0, cache.getSizeInBytes());
+	}
+
+	public void testSkipsLogsInUseWhenEvicting() throws Exception {
+		final BuildLogCache cache = new BuildLogCache(dir, 25);
+		cache.store("a", stream("0123456789"), "UTF-8");
+		cache.getFile("a").setLastModified(1000000L);
+		cache.store("b", stream("0123456789"), "UTF-8");
+		cache.getFile("b").setLastModified(3000000L);
+
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread reader = new Thread() {
+			@Override
+			public void run() {
+				cache.getLock("a").lock();
+				try {
+					locked.countDown();
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// finish
+				} finally {
+					cache.getLock("a").unlock();
+				}
+			}
+		};
+		reader.start();
+		try {
+			assertTrue(locked.await(10, TimeUnit.SECONDS));
+			cache.store("c", stream("0123456789"), "UTF-8");
+		} finally {
+			release.countDown();
+			reader.join();
+		}
+
+		// least recently used log is being read, so the next one is deleted instead
+		assertTrue(cache.getFile("a").exists());
+		assertFalse(cache.getFile("b").exists());
+		assertTrue(cache.getFile("c").exists());
+	}
+
+	private static ByteArrayInputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes());
+	}
+}
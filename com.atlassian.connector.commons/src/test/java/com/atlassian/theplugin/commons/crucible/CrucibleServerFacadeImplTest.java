@@ -18,11 +18,15 @@ package com.atlassian.theplugin.commons.crucible;
 import com.atlassian.connector.commons.api.ConnectionCfg;
 import com.atlassian.connector.commons.remoteapi.TestHttpSessionCallbackImpl;
 import com.atlassian.theplugin.commons.crucible.api.CrucibleSession;
+import com.atlassian.theplugin.commons.crucible.api.ReviewItemCommentsHandler;
 import com.atlassian.theplugin.commons.crucible.api.model.BasicProject;
+import com.atlassian.theplugin.commons.crucible.api.model.CrucibleFileInfo;
+import com.atlassian.theplugin.commons.crucible.api.model.CrucibleVersionInfo;
 import com.atlassian.theplugin.commons.crucible.api.model.PermId;
 import com.atlassian.theplugin.commons.crucible.api.model.Review;
 import com.atlassian.theplugin.commons.crucible.api.model.ReviewTestUtil;
 import com.atlassian.theplugin.commons.crucible.api.model.Reviewer;
+import com.atlassian.theplugin.commons.crucible.api.model.VersionedComment;
 import com.atlassian.theplugin.commons.exception.ServerPasswordNotProvidedException;
 import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
 import com.atlassian.theplugin.commons.util.LoggerImpl;
@@ -30,6 +34,9 @@ import com.atlassian.theplugin.commons.util.MiscUtil;
 import com.spartez.util.junit3.TestUtil;
 import org.easymock.EasyMock;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import junit.framework.TestCase;
 
 public class CrucibleServerFacadeImplTest extends TestCase {
@@ -97,4 +104,118 @@ public class CrucibleServerFacadeImplTest extends TestCase {
 		TestUtil.assertHasOnlyElements(crucibleServerFacade.getProjects(SERVER_DATA), PR_3);
 
 	}
+
+	public void testGetReviewWithCommentsFromOldServer() throws Exception {
+		final CrucibleSession mock = EasyMock.createMock(CrucibleSession.class);
+		final CrucibleServerFacadeImpl crucibleServerFacade = createFacade(mock);
+		final Review review = ReviewTestUtil.createReview(SERVER_DATA.getUrl());
+		review.setPermId(new PermId("CR-1"));
+		final CrucibleFileInfo file1 = new CrucibleFileInfo(null, null, new PermId("CRF:1"));
+		final CrucibleFileInfo file2 = new CrucibleFileInfo(null, null, new PermId("CRF:2"));
+		final VersionedComment comment1 = new VersionedComment(review, file1);
+		final VersionedComment comment2 = new VersionedComment(review, file2);
+
+		EasyMock.expect(mock.getReview(review.getPermId())).andReturn(review);
+		EasyMock.expect(mock.getCrucibleVersionInfo()).andReturn(new CrucibleVersionInfo("1.6.3", ""));
+		EasyMock.expect(mock.getFiles(review.getPermId())).andReturn(MiscUtil.buildHashSet(file1, file2));
+		EasyMock.expect(mock.getVersionedComments(review, file1)).andReturn(MiscUtil.buildArrayList(comment1));
+		EasyMock.expect(mock.getVersionedComments(review, file2)).andReturn(MiscUtil.buildArrayList(comment2));
+		EasyMock.replay(mock);
+
+		final Map<CrucibleFileInfo, List<VersionedComment>> handled = new HashMap<CrucibleFileInfo, List<VersionedComment>>();
+		final Review result = crucibleServerFacade.getReviewWithComments(SERVER_DATA, review.getPermId(),
+				new ReviewItemCommentsHandler() {
+					public void handle(CrucibleFileInfo reviewItem, List<VersionedComment> comments) {
+						assertNull(handled.put(reviewItem, comments));
+					}
+				});
+		EasyMock.verify(mock);
+
+		assertSame(review, result);
+		TestUtil.assertHasOnlyElements(result.getFiles(), file1, file2);
+		TestUtil.assertHasOnlyElements(file1.getVersionedComments(), comment1);
+		TestUtil.assertHasOnlyElements(file2.getVersionedComments(), comment2);
+		assertEquals(2, handled.size());
+		TestUtil.assertHasOnlyElements(handled.get(file1), comment1);
+		TestUtil.assertHasOnlyElements(handled.get(file2), comment2);
+	}
+
+	public void testGetReviewWithCommentsFromNewServer() throws Exception {
+		final CrucibleSession mock = EasyMock.createMock(CrucibleSession.class);
+		final CrucibleServerFacadeImpl crucibleServerFacade = createFacade(mock);
+		final Review review = ReviewTestUtil.createReview(SERVER_DATA.getUrl());
+		review.setPermId(new PermId("CR-1"));
+		final CrucibleFileInfo file = new CrucibleFileInfo(null, null, new PermId("CRF:1"));
+		final VersionedComment comment = new VersionedComment(review, file);
+		review.setFilesAndVersionedComments(MiscUtil.buildArrayList(file), MiscUtil.buildArrayList(comment));
+
+		// everything comes with the review itself, no per-item requests
+		EasyMock.expect(mock.getReview(review.getPermId())).andReturn(review);
+		EasyMock.expect(mock.getCrucibleVersionInfo()).andReturn(new CrucibleVersionInfo("2.1.0", ""));
+		EasyMock.replay(mock);
+
+		final List<CrucibleFileInfo> handled = new ArrayList<CrucibleFileInfo>();
+		final Review result = crucibleServerFacade.getReviewWithComments(SERVER_DATA, review.getPermId(),
+				new ReviewItemCommentsHandler() {
+					public void handle(CrucibleFileInfo reviewItem, List<VersionedComment> comments) {
+						handled.add(reviewItem);
+						TestUtil.assertHasOnlyElements(comments, comment);
+					}
+				});
+		EasyMock.verify(mock);
+
+		assertSame(review, result);
+		TestUtil.assertHasOnlyElements(handled, file);
+	}
+
+	public void testGetReviewWithCommentsPropagatesErrors() throws Exception {
+		final CrucibleSession mock = EasyMock.createMock(CrucibleSession.class);
+		final CrucibleServerFacadeImpl crucibleServerFacade = createFacade(mock);
+		final Review review = ReviewTestUtil.createReview(SERVER_DATA.getUrl());
+		review.setPermId(new PermId("CR-1"));
+		final CrucibleFileInfo file = new CrucibleFileInfo(null, null, new PermId("CRF:1"));
+		final RemoteApiException error = new RemoteApiException("boom");
+
+		EasyMock.expect(mock.getReview(review.getPermId())).andReturn(review);
+		EasyMock.expect(mock.getCrucibleVersionInfo()).andReturn(new CrucibleVersionInfo("1.6.3", ""));
+		EasyMock.expect(mock.getFiles(review.getPermId())).andReturn(MiscUtil.buildHashSet(file));
+		EasyMock.expect(mock.getVersionedComments(review, file)).andThrow(error);
+		EasyMock.replay(mock);
+
+		try {
+			crucibleServerFacade.getReviewWithComments(SERVER_DATA, review.getPermId(), null);
+			fail("RemoteApiException expected");
+		} catch (RemoteApiException e) {
+			assertSame(error, e.getCause());
+			assertEquals("boom", e.getMessage());
+		}
+		EasyMock.verify(mock);
+	}
+
+	public void testSetMaxConcurrentRequestsPerServer() {
+		final CrucibleServerFacadeImpl crucibleServerFacade = new CrucibleServerFacadeImpl(LoggerImpl.getInstance(), null,
+				new TestHttpSessionCallbackImpl());
+		assertEquals(1, crucibleServerFacade.getMaxConcurrentRequestsPerServer());
+		crucibleServerFacade.setMaxConcurrentRequestsPerServer(4);
+		assertEquals(4, crucibleServerFacade.getMaxConcurrentRequestsPerServer());
+		try {
+			crucibleServerFacade.setMaxConcurrentRequestsPerServer(0);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @return facade which uses given session for every server
+	 */
+	private static CrucibleServerFacadeImpl createFacade(final CrucibleSession session) {
+		return new CrucibleServerFacadeImpl(LoggerImpl.getInstance(), null, new TestHttpSessionCallbackImpl()) {
+			@Override
+			public CrucibleSession getSession(final ConnectionCfg server)
+					throws RemoteApiException, ServerPasswordNotProvidedException {
+				return session;
+			}
+		};
+	}
 }
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.theplugin.commons.crucible.api.model;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.crucible.CrucibleServerFacade2;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CrucibleUserDirectoryTest extends TestCase {
+
+	private static final ConnectionCfg SERVER = new ConnectionCfg("crucible", "http://crucible", "user", "pass");
+
+	private final List<Runnable> backgroundTasks = new ArrayList<Runnable>();
+
+	private CrucibleUserDirectory directory;
+
+	private UserSource users;
+
+	private CrucibleServerFacade2 facade;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		directory = new CrucibleUserDirectory(new Executor() {
+			public void execute(Runnable command) {
+				backgroundTasks.add(command);
+			}
+		});
+		users = new UserSource(new User("wseliga", "Wojciech Seliga", "http://crucible/avatar/default.png"),
+				new User("jgorycki", "Janusz Gorycki", "http://crucible/avatar/default.png"),
+				new User("mwent", "Marek Went"), new User("pmaruszak", null));
+		facade = users.createFacade();
+	}
+
+	public void testWholeListFetchedOnce() {
+		assertEquals("Wojciech Seliga", directory.getUser(facade, SERVER, "wseliga", true).getDisplayName());
+		assertEquals("Marek Went", directory.getUser(facade, SERVER, "mwent", true).getDisplayName());
+		assertEquals("pmaruszak", directory.getUser(facade, SERVER, "pmaruszak", true).getDisplayName());
+		assertEquals(1, users.requests.get());
+	}
+
+	public void testNothingFetchedUnlessAsked() {
+		assertNull(directory.getUser(facade, SERVER, "wseliga", false));
+		assertEquals(0, users.requests.get());
+	}
+
+	public void testUnknownUserDoesNotCauseRequests() {
+		assertNotNull(directory.getUser(facade, SERVER, "wseliga", true));
+		for (int i = 0; i < 100; i++) {
+			assertNull(directory.getUser(facade, SERVER, "nobody", true));
+		}
+		assertEquals(1, users.requests.get());
+		assertTrue(backgroundTasks.isEmpty());
+	}
+
+	public void testExpiredListRefreshedInBackground() {
+		assertNotNull(directory.getUser(facade, SERVER, "wseliga", true));
+		directory.setTtl(0);
+		users.add(new User("sginter", "Sebastian Ginter"));
+
+		// old list is still used while the new one is being fetched
+		assertNull(directory.getUser(facade, SERVER, "sginter", true));
+		assertNull(directory.getUser(facade, SERVER, "sginter", true));
+		assertEquals(1, backgroundTasks.size());
+
+		backgroundTasks.remove(0).run();
+		assertEquals("Sebastian Ginter", directory.getUser(facade, SERVER, "sginter", true).getDisplayName());
+		assertEquals(2, users.requests.get());
+	}
+
+	public void testFailedFetchIsRetriedLater() {
+		users.failure = new RemoteApiException("boom");
+		assertNull(directory.getUser(facade, SERVER, "wseliga", true));
+		assertNull(directory.getUser(facade, SERVER, "wseliga", true));
+		assertEquals(1, users.requests.get());
+
+		users.failure = null;
+		directory.invalidate(SERVER);
+		assertNotNull(directory.getUser(facade, SERVER, "wseliga", true));
+		assertEquals(2, users.requests.get());
+	}
+
+	public void testAddedUser() {
+		final User added = new User("sginter", "Sebastian Ginter");
+		directory.addUser(SERVER, added);
+		assertSame(added, directory.getUser(facade, SERVER, "sginter", false));
+		assertSame(added, directory.getUser(facade, SERVER, "sginter", true));
+		assertEquals(1, users.requests.get());
+	}
+
+	public void testUserNamesAndAvatarUrlsAreShared() {
+		final User wseliga = directory.getUser(facade, SERVER, new String("wseliga"), true);
+		final User jgorycki = directory.getUser(facade, SERVER, "jgorycki", true);
+		assertSame("wseliga", wseliga.getUsername());
+		assertEquals("http://crucible/avatar/default.png", wseliga.getAvatarUrl());
+		assertSame(wseliga.getAvatarUrl(), jgorycki.getAvatarUrl());
+	}
+
+	public void testFindUsers() {
+		assertEquals(Arrays.asList("wseliga"), getNames(directory.findUsers(facade, SERVER, "WS", 10)));
+		// display name and its words
+		assertEquals(Arrays.asList("wseliga"), getNames(directory.findUsers(facade, SERVER, "sel", 10)));
+		assertEquals(Arrays.asList("mwent", "wseliga"), getNames(directory.findUsers(facade, SERVER, "w", 10)));
+		assertEquals(Arrays.asList("jgorycki"), getNames(directory.findUsers(facade, SERVER, "janusz g", 10)));
+		assertEquals(1, directory.findUsers(facade, SERVER, "", 1).size());
+		assertEquals(4, directory.findUsers(facade, SERVER, "", 10).size());
+		assertTrue(directory.findUsers(facade, SERVER, "x", 10).isEmpty());
+		assertEquals(1, users.requests.get());
+	}
+
+	public void testConcurrentCallersShareRequest() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicInteger errors = new AtomicInteger();
+		for (int i = 0; i < 8; i++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						if (directory.getUser(facade, SERVER, "mwent", true) == null) {
+							errors.incrementAndGet();
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+		assertEquals(1, users.requests.get());
+	}
+
+	public void testManyUsersAreLoadedOnce() {
+		final List<User> many = new ArrayList<User>();
+		for (int i = 0; i < 5000; i++) {
+			many.add(new User("user" + i, "First" + i + " Last" + i, "http://crucible/avatar/default.png"));
+		}
+		final UserSource source = new UserSource(many.toArray(new User[many.size()]));
+		final CrucibleServerFacade2 manyFacade = source.createFacade();
+
+		for (int i = 0; i < 5000; i++) {
+			assertEquals("user" + i, directory.getUser(manyFacade, SERVER, "user" + i, true).getUsername());
+		}
+		assertEquals(Arrays.asList("user4999"), getNames(directory.findUsers(manyFacade, SERVER, "last4999", 20)));
+		assertEquals(11, directory.findUsers(manyFacade, SERVER, "last499", 20).size());
+		assertEquals(1, source.requests.get());
+	}
+
+	private static List<String> getNames(List<User> found) {
+		final List<String> names = new ArrayList<String>();
+		for (User user : found) {
+			names.add(user.getUsername());
+		}
+		return names;
+	}
+
+	private static final class UserSource implements InvocationHandler {
+		private final List<User> users;
+
+		private final AtomicInteger requests = new AtomicInteger();
+
+		private volatile RemoteApiException failure;
+
+		private UserSource(User... users) {
+			this.users = new ArrayList<User>(Arrays.asList(users));
+		}
+
+		private synchronized void add(User user) {
+			users.add(user);
+		}
+
+		private CrucibleServerFacade2 createFacade() {
+			return (CrucibleServerFacade2) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { CrucibleServerFacade2.class }, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (!method.getName().equals("getUsers")) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+			requests.incrementAndGet();
+			try {
+				// give concurrent callers a chance to pile up
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				throw new RemoteApiException(e);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			synchronized (this) {
+				// fresh instances, as if parsed from a response
+				final List<User> copy = new ArrayList<User>();
+				for (User user : users) {
+					copy.add(new User(new String(user.getUsername()), user.displayName,
+							user.getAvatarUrl() != null ? new String(user.getAvatarUrl()) : null));
+				}
+				return copy;
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.theplugin.commons.crucible.api.model.notification;
+
+import com.atlassian.theplugin.commons.VersionedVirtualFile;
+import com.atlassian.theplugin.commons.crucible.api.model.Comment;
+import com.atlassian.theplugin.commons.crucible.api.model.CrucibleFileInfo;
+import com.atlassian.theplugin.commons.crucible.api.model.GeneralComment;
+import com.atlassian.theplugin.commons.crucible.api.model.PermId;
+import com.atlassian.theplugin.commons.crucible.api.model.Review;
+import com.atlassian.theplugin.commons.crucible.api.model.Reviewer;
+import com.atlassian.theplugin.commons.crucible.api.model.State;
+import com.atlassian.theplugin.commons.crucible.api.model.VersionedComment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ReviewFingerprintTest extends TestCase {
+
+	private final Date date = new Date();
+
+	public void testSameContentSameFingerprint() {
+		final ReviewFingerprint print1 = ReviewFingerprint.of(createReview(10, 5));
+		final ReviewFingerprint print2 = ReviewFingerprint.of(createReview(10, 5));
+		assertTrue(print1.hasSameComments(print2));
+		assertTrue(print1.hasSameGeneralComments(print2));
+		assertTrue(print1.hasSameVersionedComments(print2, new PermId("CRF:3")));
+	}
+
+	public void testChangedCommentChangesOnlyItsFile() {
+		final Review review = createReview(10, 5);
+		final ReviewFingerprint before = ReviewFingerprint.of(review);
+		final CrucibleFileInfo file = review.getFileByPermId(new PermId("CRF:3"));
+		file.getVersionedComments().get(2).setMessage("changed");
+		final ReviewFingerprint after = ReviewFingerprint.of(review);
+
+		assertFalse(before.hasSameComments(after));
+		assertTrue(before.hasSameGeneralComments(after));
+		assertFalse(before.hasSameVersionedComments(after, new PermId("CRF:3")));
+		assertTrue(before.hasSameVersionedComments(after, new PermId("CRF:4")));
+	}
+
+	public void testEveryReportedPropertyChangesFingerprint() {
+		final ReviewFingerprint original = ReviewFingerprint.of(createReview(1, 1));
+		Review review = createReview(1, 1);
+		review.getGeneralComments().get(0).setDefectRaised(true);
+		assertFalse(original.hasSameComments(ReviewFingerprint.of(review)));
+
+		review = createReview(1, 1);
+		review.getGeneralComments().get(0).setDraft(true);
+		assertFalse(original.hasSameComments(ReviewFingerprint.of(review)));
+
+		review = createReview(1, 1);
+		review.getGeneralComments().get(0).setReadState(Comment.ReadState.READ);
+		assertFalse(original.hasSameComments(ReviewFingerprint.of(review)));
+
+		review = createReview(1, 1);
+		review.getGeneralComments().get(0).getReplies().get(0).setMessage("changed");
+		assertFalse(original.hasSameComments(ReviewFingerprint.of(review)));
+
+		review = createReview(1, 1);
+		// String.hashCode() of these two is the same
+		review.getGeneralComments().get(0).setMessage("Aa");
+		final Review other = createReview(1, 1);
+		other.getGeneralComments().get(0).setMessage("BB");
+		assertFalse(ReviewFingerprint.of(review).hasSameComments(ReviewFingerprint.of(other)));
+	}
+
+	public void testOrderOfCommentsDoesNotMatter() {
+		final Review review = createReview(1, 3);
+		final ReviewFingerprint before = ReviewFingerprint.of(review);
+		final List<VersionedComment> comments = review.getFiles().iterator().next().getVersionedComments();
+		comments.add(comments.remove(0));
+		assertTrue(before.hasSameComments(ReviewFingerprint.of(review)));
+	}
+
+	public void testCommentWithoutIdIsAlwaysCompared() {
+		final Review review = createReview(1, 1);
+		review.getGeneralComments().get(0).setPermId(null);
+		final ReviewFingerprint print = ReviewFingerprint.of(review);
+		assertFalse(print.hasSameComments(print));
+		assertFalse(print.hasSameGeneralComments(print));
+		assertTrue(print.hasSameVersionedComments(print, new PermId("CRF:0")));
+	}
+
+	public void testStoredFingerprintIsUsed() {
+		final Review review1 = createReview(3, 3);
+		final ReviewDifferenceProducer producer1 = new ReviewDifferenceProducer(review1, review1);
+		assertTrue(producer1.getDiff().isEmpty());
+
+		final Review review2 = createReview(3, 3);
+		review2.getGeneralComments().get(1).setMessage("changed");
+		final ReviewDifferenceProducer producer2 = new ReviewDifferenceProducer(review1, producer1.getNewFingerprint(),
+				review2);
+		final List<CrucibleNotification> diff = producer2.getDiff();
+		assertEquals(1, diff.size());
+		assertTrue(diff.get(0) instanceof UpdatedCommentNotification);
+		assertEquals(1, producer2.getCommentChangesCount());
+	}
+
+	public void testDiffOfLargeReview() {
+		final Review oldReview = createReview(1000, 10);
+		final Review sameReview = createReview(1000, 10);
+		final Review changedReview = createReview(1000, 10);
+		changedReview.getFileByPermId(new PermId("CRF:500")).getVersionedComments().get(5).setMessage("changed");
+
+		final ReviewFingerprint oldPrint = ReviewFingerprint.of(oldReview);
+		assertTrue(new ReviewDifferenceProducer(oldReview, oldPrint, sameReview).getDiff().isEmpty());
+		final List<CrucibleNotification> diff = new ReviewDifferenceProducer(oldReview, oldPrint, changedReview)
+				.getDiff();
+		assertEquals(1, diff.size());
+		assertTrue(diff.get(0) instanceof UpdatedCommentNotification);
+	}
+
+	private Review createReview(int files, int commentsPerFile) {
+		final Review review = new Review("http://bogus", "TEST", new Reviewer("bob", "Bob"),
+				new Reviewer("alice", "Alice"));
+		review.setPermId(new PermId("CR-1"));
+		review.setState(State.REVIEW);
+		review.setReviewers(new HashSet<Reviewer>());
+		final List<Comment> generalComments = new ArrayList<Comment>();
+		for (int i = 0; i < 2; i++) {
+			final GeneralComment comment = new GeneralComment(review, null);
+			comment.setPermId(new PermId("CMT:" + i));
+			comment.setMessage("general comment " + i);
+			comment.setCreateDate(date);
+			final GeneralComment reply = new GeneralComment(review, comment);
+			reply.setPermId(new PermId("CMT:" + i + "0"));
+			reply.setMessage("reply " + i);
+			reply.setCreateDate(date);
+			comment.getReplies().add(reply);
+			generalComments.add(comment);
+		}
+		review.setGeneralComments(generalComments);
+
+		final Set<CrucibleFileInfo> fileInfos = new HashSet<CrucibleFileInfo>();
+		for (int i = 0; i < files; i++) {
+			final CrucibleFileInfo file = new CrucibleFileInfo(new VersionedVirtualFile("src/File" + i + ".java", "1.2"),
+					new VersionedVirtualFile("src/File" + i + ".java", "1.1"), new PermId("CRF:" + i));
+			final List<VersionedComment> comments = new ArrayList<VersionedComment>();
+			for (int j = 0; j < commentsPerFile; j++) {
+				final VersionedComment comment = new VersionedComment(review, file);
+				comment.setPermId(new PermId("CMT:" + i + "-" + j));
+				comment.setMessage("comment " + j + " of file " + i);
+				comment.setCreateDate(date);
+				comments.add(comment);
+			}
+			file.setVersionedComments(comments);
+			fileInfos.add(file);
+		}
+		review.setFiles(fileInfos);
+		return review;
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.model.PermId;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.atlassian.theplugin.commons.util.LoggerImpl;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CommentReadStateQueueTest extends TestCase {
+
+	private static final PermId REVIEW1 = new PermId("CR-1");
+
+	private static final PermId REVIEW2 = new PermId("CR-2");
+
+	private RecordingSender sender;
+
+	private RecordingLogger logger;
+
+	private ScheduledExecutorService scheduler;
+
+	private CommentReadStateQueue queue;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		sender = new RecordingSender();
+		logger = new RecordingLogger();
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		queue = new CommentReadStateQueue(sender, logger, scheduler);
+		// long enough for nothing to be sent in the background unless a test wants it
+		queue.setDelay(60000);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		scheduler.shutdownNow();
+		super.tearDown();
+	}
+
+	public void testChangesAreCollectedUntilFlush() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW1, new PermId("c2"), true);
+		assertTrue(sender.sent.isEmpty());
+		assertTrue(queue.hasPendingChanges());
+
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c1:read", "CR-1/c2:leaveUnread"), sender.sent);
+		assertFalse(queue.hasPendingChanges());
+
+		queue.flush(REVIEW1);
+		assertEquals(2, sender.sent.size());
+	}
+
+	public void testLastChangeOfCommentWins() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW1, new PermId("c2"), false);
+		queue.add(REVIEW1, new PermId("c1"), true);
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c2:read", "CR-1/c1:read"), sender.sent);
+	}
+
+	public void testReviewsAreFlushedSeparately() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW2, new PermId("c2"), false);
+		queue.flush(REVIEW2);
+		assertEquals(Arrays.asList("CR-2/c2:read"), sender.sent);
+		assertTrue(queue.hasPendingChanges());
+
+		queue.flushAll();
+		assertEquals(Arrays.asList("CR-2/c2:read", "CR-1/c1:read"), sender.sent);
+		assertFalse(queue.hasPendingChanges());
+	}
+
+	public void testMarkAllReadDropsPendingReadMarks() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW1, new PermId("c2"), true);
+		queue.add(REVIEW1, new PermId("c3"), false);
+		queue.add(REVIEW2, new PermId("c4"), false);
+		queue.markAllRead(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c2:leaveUnread", "CR-1:allRead"), sender.sent);
+
+		queue.flushAll();
+		assertEquals(Arrays.asList("CR-1/c2:leaveUnread", "CR-1:allRead", "CR-2/c4:read"), sender.sent);
+	}
+
+	public void testDiscard() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW1, new PermId("c2"), false);
+		queue.discard(REVIEW1, new PermId("c1"));
+		queue.discard(REVIEW2, new PermId("c1"));
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c2:read"), sender.sent);
+	}
+
+	public void testZeroDelaySendsImmediately() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), true);
+		queue.setDelay(0);
+		queue.add(REVIEW1, new PermId("c2"), false);
+		// earlier pending changes go first
+		assertEquals(Arrays.asList("CR-1/c1:leaveUnread", "CR-1/c2:read"), sender.sent);
+		assertFalse(queue.hasPendingChanges());
+
+		sender.failure = new RemoteApiException("boom");
+		try {
+			queue.add(REVIEW1, new PermId("c3"), false);
+			fail();
+		} catch (RemoteApiException e) {
+			assertSame(sender.failure, e);
+		}
+	}
+
+	public void testNegativeDelayRejected() {
+		try {
+			queue.setDelay(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(60000, queue.getDelay());
+	}
+
+	public void testChangesAreSentInBackground() throws Exception {
+		queue.setDelay(50);
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW1, new PermId("c2"), false);
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (queue.hasPendingChanges() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		// flush waits for a send in progress
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c1:read", "CR-1/c2:read"), sender.sent);
+	}
+
+	public void testFailedChangesAreQueuedAgain() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW1, new PermId("c2"), false);
+		queue.add(REVIEW1, new PermId("c3"), false);
+		sender.failAfter(1, new RemoteApiException("boom"));
+		queue.flush(REVIEW1);
+		assertEquals(1, logger.warnings.size());
+		assertSame(sender.failure, logger.warnings.get(0));
+		assertTrue(queue.hasPendingChanges());
+
+		// changes made in the meantime go after the unsent ones and replace them
+		queue.add(REVIEW1, new PermId("c2"), true);
+		queue.add(REVIEW1, new PermId("c4"), false);
+		sender.failure = null;
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c1:read", "CR-1/c3:read", "CR-1/c2:leaveUnread", "CR-1/c4:read"),
+				sender.sent);
+		assertFalse(queue.hasPendingChanges());
+	}
+
+	public void testRepeatedFailureIsReportedToNextCaller() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), false);
+		final RemoteApiException failure = new RemoteApiException("boom");
+		sender.failure = failure;
+		for (int i = 0; i < CommentReadStateQueue.MAX_ATTEMPTS; i++) {
+			assertTrue(queue.hasPendingChanges());
+			queue.flush(REVIEW1);
+		}
+		assertFalse(queue.hasPendingChanges());
+		assertEquals(CommentReadStateQueue.MAX_ATTEMPTS, logger.warnings.size());
+
+		sender.failure = null;
+		// other reviews are not affected
+		queue.add(REVIEW2, new PermId("c2"), false);
+		try {
+			queue.add(REVIEW1, new PermId("c3"), false);
+			fail("RemoteApiException expected");
+		} catch (RemoteApiException e) {
+			assertSame(failure, e.getCause());
+		}
+		// reported once
+		queue.add(REVIEW1, new PermId("c4"), false);
+		queue.flushAll();
+		// the change which got the report is queued as well
+		assertEquals(Arrays.asList("CR-2/c2:read", "CR-1/c3:read", "CR-1/c4:read"), sender.sent);
+	}
+
+	public void testReviewBeingSentDoesNotBlockOtherReviews() throws Exception {
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		sender.block(REVIEW1, sending, release);
+		queue.add(REVIEW1, new PermId("c1"), false);
+		queue.add(REVIEW2, new PermId("c2"), false);
+		final Thread flushing = new Thread() {
+			@Override
+			public void run() {
+				queue.flush(REVIEW1);
+			}
+		};
+		flushing.start();
+		try {
+			assertTrue(sending.await(10, TimeUnit.SECONDS));
+			queue.flush(REVIEW2);
+			queue.add(REVIEW1, new PermId("c3"), true);
+			assertEquals(Arrays.asList("CR-2/c2:read"), sender.sent);
+		} finally {
+			release.countDown();
+			flushing.join();
+		}
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-2/c2:read", "CR-1/c1:read", "CR-1/c3:leaveUnread"), sender.sent);
+	}
+
+	public void testMarkAllReadFailureKeepsPendingChanges() throws Exception {
+		queue.add(REVIEW1, new PermId("c1"), true);
+		queue.add(REVIEW1, new PermId("c2"), false);
+		sender.failure = new RemoteApiException("boom");
+		try {
+			queue.markAllRead(REVIEW1);
+			fail("RemoteApiException expected");
+		} catch (RemoteApiException e) {
+			assertSame(sender.failure, e);
+		}
+
+		sender.failure = null;
+		queue.flush(REVIEW1);
+		assertEquals(Arrays.asList("CR-1/c1:leaveUnread", "CR-1/c2:read"), sender.sent);
+	}
+
+	private static class RecordingSender implements CommentReadStateQueue.Sender {
+		private final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+
+		private volatile RemoteApiException failure;
+
+		private volatile int failAfter;
+
+		private volatile PermId blockedReview;
+
+		private volatile CountDownLatch sending;
+
+		private volatile CountDownLatch release;
+
+		/**
+		 * Makes the sender wait for <code>release</code> before sending a change of given review.
+		 */
+		private void block(PermId reviewId, CountDownLatch sending, CountDownLatch release) {
+			this.sending = sending;
+			this.release = release;
+			blockedReview = reviewId;
+		}
+
+		/**
+		 * Makes the sender fail once the given number of further changes has been sent.
+		 */
+		private void failAfter(int count, RemoteApiException e) {
+			failAfter = sent.size() + count;
+			failure = e;
+		}
+
+		public void sendReadState(@NotNull PermId reviewId, @NotNull PermId commentId, boolean leaveUnread)
+				throws RemoteApiException {
+			if (reviewId.equals(blockedReview)) {
+				sending.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RemoteApiException(e);
+				}
+			}
+			if (failure != null && sent.size() >= failAfter) {
+				throw failure;
+			}
+			sent.add(reviewId.getId() + "/" + commentId.getId() + (leaveUnread ? ":leaveUnread" : ":read"));
+		}
+
+		public void sendAllRead(@NotNull PermId reviewId) throws RemoteApiException {
+			if (failure != null) {
+				throw failure;
+			}
+			sent.add(reviewId.getId() + ":allRead");
+		}
+	}
+
+	private static class RecordingLogger extends LoggerImpl {
+		private final List<Throwable> warnings = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		public void log(int level, String msg, Throwable t) {
+			if (level == LOG_WARN) {
+				warnings.add(t);
+			}
+		}
+	}
+}
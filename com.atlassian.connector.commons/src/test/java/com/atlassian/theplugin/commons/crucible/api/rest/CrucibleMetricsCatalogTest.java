@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.model.CustomFieldDef;
+import com.atlassian.theplugin.commons.crucible.api.model.CustomFieldDefBean;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiSessionExpiredException;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CrucibleMetricsCatalogTest extends TestCase {
+
+	private CrucibleMetricsCatalog catalog;
+
+	private CountingLoader loader;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		catalog = new CrucibleMetricsCatalog();
+		loader = new CountingLoader();
+	}
+
+	public void testEachVersionFetchedOnce() throws Exception {
+		final List<CustomFieldDef> metrics = catalog.get(1, loader);
+		assertEquals(1, metrics.size());
+		assertEquals("metric1", metrics.get(0).getName());
+		assertSame(metrics, catalog.get(1, loader));
+		assertEquals(1, loader.requests.get());
+
+		assertEquals("metric2", catalog.get(2, loader).get(0).getName());
+		assertEquals(2, loader.requests.get());
+	}
+
+	public void testGetIfLoadedNeverFetches() throws Exception {
+		assertNull(catalog.getIfLoaded(1));
+		assertEquals(0, loader.requests.get());
+		final List<CustomFieldDef> metrics = catalog.get(1, loader);
+		assertSame(metrics, catalog.getIfLoaded(1));
+		assertEquals(1, loader.requests.get());
+	}
+
+	public void testFailureIsNotRemembered() throws Exception {
+		loader.failure = new RemoteApiException("boom");
+		try {
+			catalog.get(1, loader);
+			fail();
+		} catch (RemoteApiException e) {
+			assertNotSame(loader.failure, e);
+			assertSame(loader.failure, e.getCause());
+			assertEquals("boom", e.getMessage());
+		}
+		assertNull(catalog.getIfLoaded(1));
+
+		loader.failure = null;
+		assertEquals(1, catalog.get(1, loader).size());
+		assertEquals(2, loader.requests.get());
+	}
+
+	public void testFailureKeepsItsKind() throws Exception {
+		loader.failure = new RemoteApiSessionExpiredException("expired");
+		try {
+			catalog.get(1, loader);
+			fail();
+		} catch (RemoteApiSessionExpiredException e) {
+			assertSame(loader.failure, e.getCause());
+		}
+	}
+
+	public void testInvalidate() throws Exception {
+		catalog.get(1, loader);
+		catalog.invalidate();
+		assertNull(catalog.getIfLoaded(1));
+		catalog.get(1, loader);
+		assertEquals(2, loader.requests.get());
+	}
+
+	public void testMetricsCannotBeModified() throws Exception {
+		try {
+			catalog.get(1, loader).clear();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testConcurrentCallersShareRequest() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicInteger errors = new AtomicInteger();
+		for (int i = 0; i < 8; i++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						catalog.get(1, loader);
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+		assertEquals(1, loader.requests.get());
+	}
+
+	private static final class CountingLoader implements CrucibleMetricsCatalog.MetricsLoader {
+		private final AtomicInteger requests = new AtomicInteger();
+
+		private volatile RemoteApiException failure;
+
+		@NotNull
+		public List<CustomFieldDef> loadMetrics(int version) throws RemoteApiException {
+			requests.incrementAndGet();
+			try {
+				// give concurrent callers a chance to pile up
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				throw new RemoteApiException(e);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			final CustomFieldDefBean metric = new CustomFieldDefBean();
+			metric.setName("metric" + version);
+			metric.setConfigVersion(version);
+			return Arrays.<CustomFieldDef>asList(metric);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.model.Repository;
+import com.atlassian.theplugin.commons.crucible.api.model.SvnRepository;
+import com.atlassian.theplugin.commons.remoteapi.RemoteApiException;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CrucibleRepositoryCatalogTest extends TestCase {
+
+	private CrucibleRepositoryCatalog catalog;
+
+	private CountingLoader loader;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		catalog = new CrucibleRepositoryCatalog();
+		loader = new CountingLoader(new Repository("CR", "git", true), new Repository("SVN1", "svn", true),
+				new Repository("SVN2", "svn", true), new Repository("SVN3", "svn", true));
+	}
+
+	public void testAllRepositoriesResolvedWithOneListRequest() throws Exception {
+		final Map<String, Repository> repositories = catalog.resolve(
+				Arrays.asList("CR", "SVN1", "SVN2", "SVN3", "SVN1"), loader);
+		assertEquals(4, repositories.size());
+		assertEquals("git", repositories.get("CR").getType());
+		assertEquals("http://svn/SVN2", ((SvnRepository) repositories.get("SVN2")).getUrl());
+		assertEquals(1, loader.lists.get());
+		assertEquals(3, loader.details.get());
+
+		// everything known now
+		catalog.resolve(Arrays.asList("CR", "SVN1", "SVN2", "SVN3"), loader);
+		assertEquals(1, loader.lists.get());
+		assertEquals(3, loader.details.get());
+	}
+
+	public void testUnknownRepositoryIsOmitted() throws Exception {
+		final Map<String, Repository> repositories = catalog.resolve(Arrays.asList("CR", "OTHER"), loader);
+		assertEquals(1, repositories.size());
+		// list has just been fetched, so it is not fetched again
+		catalog.resolve(Arrays.asList("OTHER"), loader);
+		assertEquals(1, loader.lists.get());
+	}
+
+	public void testNothingFetchedForNoNames() throws Exception {
+		assertTrue(catalog.resolve(Collections.<String>emptyList(), loader).isEmpty());
+		assertEquals(0, loader.lists.get());
+	}
+
+	public void testExpiredListIsFetchedAgain() throws Exception {
+		catalog.resolve(Arrays.asList("SVN1"), loader);
+		catalog.setTtl(0);
+		catalog.resolve(Arrays.asList("SVN1"), loader);
+		assertEquals(2, loader.lists.get());
+		// details belong to the list they were fetched with
+		assertEquals(2, loader.details.get());
+	}
+
+	public void testInvalidateAndUpdate() throws Exception {
+		catalog.update(Arrays.asList(new Repository("CR", "git", true)));
+		assertEquals(1, catalog.resolve(Arrays.asList("CR"), loader).size());
+		assertEquals(0, loader.lists.get());
+
+		catalog.invalidate();
+		catalog.resolve(Arrays.asList("CR"), loader);
+		assertEquals(1, loader.lists.get());
+	}
+
+	public void testMissingDetailsAreNotFetchedAgain() throws Exception {
+		loader.detailsAvailable = false;
+		final Repository repository = catalog.resolve(Arrays.asList("SVN1"), loader).get("SVN1");
+		assertFalse(repository instanceof SvnRepository);
+		catalog.resolve(Arrays.asList("SVN1"), loader);
+		assertEquals(1, loader.details.get());
+	}
+
+	public void testFailureIsReported() throws Exception {
+		loader.failure = new RemoteApiException("boom");
+		try {
+			catalog.resolve(Arrays.asList("SVN1", "SVN2"), loader);
+			fail();
+		} catch (RemoteApiException e) {
+			assertSame(loader.failure, e);
+		}
+	}
+
+	public void testConcurrentCallersShareListRequest() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicInteger errors = new AtomicInteger();
+		for (int i = 0; i < 8; i++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						catalog.resolve(Arrays.asList("CR"), loader);
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+		assertEquals(1, loader.lists.get());
+	}
+
+	private static final class CountingLoader implements CrucibleRepositoryCatalog.RepositoryLoader {
+		private final List<Repository> repositories;
+
+		private final AtomicInteger lists = new AtomicInteger();
+
+		private final AtomicInteger details = new AtomicInteger();
+
+		private volatile boolean detailsAvailable = true;
+
+		private volatile RemoteApiException failure;
+
+		private CountingLoader(Repository... repositories) {
+			this.repositories = Arrays.asList(repositories);
+		}
+
+		@NotNull
+		public List<Repository> loadRepositories() throws RemoteApiException {
+			lists.incrementAndGet();
+			try {
+				// give concurrent callers a chance to pile up
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				throw new RemoteApiException(e);
+			}
+			return repositories;
+		}
+
+		@Nullable
+		public Repository loadRepositoryDetails(@NotNull Repository repository) throws RemoteApiException {
+			details.incrementAndGet();
+			if (failure != null) {
+				throw failure;
+			}
+			return detailsAvailable ? new SvnRepository(repository.getName(), "svn", true,
+					"http://svn/" + repository.getName(), "trunk") : null;
+		}
+	}
+}
@@ -262,8 +262,10 @@ public class CrucibleRestXmlHelperTest extends TestCase {
 
         Date d = COMMENT_TIME_FORMATS[0].parseDateTime("2010-10-26T09:12:48.000-07:00").toDate();
         assertEquals(d, CrucibleRestXmlHelper.parseDateTime("2010-10-26T09:12:48.000-07:00"));
+        // FishEye and Bamboo format, accepted since all products share one parser
+        assertEquals(d, CrucibleRestXmlHelper.parseDateTime("2010-10-26T09:12:48-0700"));
         try {
-            CrucibleRestXmlHelper.parseDateTime("2010-10-26T09:12:48-0700");
+            CrucibleRestXmlHelper.parseDateTime("2010-10-26T09:12:48-07:0");
             fail();
         } catch (IllegalArgumentException e) {
 
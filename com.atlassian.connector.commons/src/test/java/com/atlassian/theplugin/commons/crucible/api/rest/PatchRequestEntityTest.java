@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
+import org.jdom.Document;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+
+public class PatchRequestEntityTest extends TestCase {
+
+	public void testCdataTextIsTrimmed() throws Exception {
+		assertEquals("a \n b", writeCdataText(" \r\n\ta \n b \n\n"));
+		assertEquals("", writeCdataText(" \n "));
+		assertEquals("", writeCdataText(""));
+	}
+
+	public void testCdataEndIsEscaped() throws Exception {
+		assertEquals("a&#x5D;&#x5D;>b", writeCdataText("a]]>b"));
+		assertEquals("]&#x5D;&#x5D;>", writeCdataText("]]]>"));
+		assertEquals("&#x5D;&#x5D;>&#x5D;&#x5D;>", writeCdataText("]]>]]>"));
+		assertEquals("]>]] >]]", writeCdataText("]>]] >]]"));
+		assertEquals("]] \n]", writeCdataText("]] \n] \n"));
+	}
+
+	public void testLongTextAcrossBuffers() throws Exception {
+		final StringBuilder text = new StringBuilder();
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			text.append("line ").append(i).append(" ]]>\n");
+			expected.append("line ").append(i).append(" &#x5D;&#x5D;>\n");
+		}
+		assertEquals(expected.toString().trim(), writeCdataText(text.toString()));
+	}
+
+	public void testSameRequestAsDocument() throws Exception {
+		final String patch = "\n--- a.txt\n+++ a.txt\n@@ -1 +1 @@\n-]]>\n+ąć\n\n";
+		final String expected = new XMLOutputter(Format.getPrettyFormat()).outputString(
+				CrucibleRestXmlHelper.prepareAddPatchNode("repo", patch));
+
+		final String placeholder = PatchRequestEntity.createPlaceholder();
+		final Document request = CrucibleRestXmlHelper.prepareAddPatchNode("repo", placeholder);
+		final PatchRequestEntity entity = new PatchRequestEntity(request, placeholder,
+				new ByteArrayPartSource(null, patch.getBytes("UTF-16")), "UTF-16");
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeRequest(out);
+		assertEquals(expected, out.toString("UTF-8"));
+
+		// repeatable
+		out.reset();
+		entity.writeRequest(out);
+		assertEquals(expected, out.toString("UTF-8"));
+	}
+
+	public void testUnsupportedCharset() throws Exception {
+		final String placeholder = PatchRequestEntity.createPlaceholder();
+		try {
+			new PatchRequestEntity(CrucibleRestXmlHelper.prepareAddPatchNode("repo", placeholder), placeholder,
+					new ByteArrayPartSource(null, new byte[0]), "no-such-charset");
+			fail();
+		} catch (UnsupportedEncodingException e) {
+			// expected
+		}
+	}
+
+	private static String writeCdataText(String text) throws IOException {
+		final StringWriter out = new StringWriter();
+		PatchRequestEntity.writeCdataText(new StringReader(text), out);
+		return out.toString();
+	}
+}
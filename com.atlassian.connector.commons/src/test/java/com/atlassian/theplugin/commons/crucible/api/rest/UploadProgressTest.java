@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.UploadProgressListener;
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
+import org.apache.commons.httpclient.methods.multipart.PartSource;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class UploadProgressTest extends TestCase {
+
+	private final List<Long> reported = new ArrayList<Long>();
+
+	private final UploadProgressListener listener = new UploadProgressListener() {
+		public void progress(long bytesSent, long bytesTotal) {
+			reported.add(bytesSent);
+			assertEquals(30, bytesTotal);
+		}
+	};
+
+	public void testTotalOfAllSources() {
+		final PartSource unknown = new ByteArrayPartSource("c", new byte[5]) {
+			@Override
+			public long getLength() {
+				return -1;
+			}
+		};
+		assertEquals(30, new UploadProgress(null, Arrays.asList(source(10), null, source(20))).getTotal());
+		assertEquals(0, new UploadProgress(null, new ArrayList<PartSource>()).getTotal());
+		assertEquals(-1, new UploadProgress(null, Arrays.asList(source(10), unknown)).getTotal());
+	}
+
+	public void testBytesReadAreReported() throws Exception {
+		final PartSource first = source(10);
+		final PartSource second = source(20);
+		final UploadProgress progress = new UploadProgress(listener, Arrays.asList(first, second));
+
+		final PartSource tracked = progress.track(first, "renamed");
+		assertEquals("renamed", tracked.getFileName());
+		assertEquals(10, tracked.getLength());
+		final InputStream in = tracked.createInputStream();
+		assertEquals(0, in.read());
+		assertEquals(4, in.read(new byte[4]));
+		assertEquals(5, IOUtils.toByteArray(in).length);
+		assertEquals(-1, in.read());
+		assertEquals(10, progress.getSent());
+
+		IOUtils.toByteArray(progress.track(second).createInputStream());
+		assertEquals(30, progress.getSent());
+		assertEquals(Long.valueOf(30), reported.get(reported.size() - 1));
+	}
+
+	public void testContentReadAgainIsCountedOnce() throws Exception {
+		final PartSource first = source(10);
+		final UploadProgress progress = new UploadProgress(listener, Arrays.asList(first, source(20)));
+		final PartSource tracked = progress.track(first);
+		read(tracked, 6);
+		assertEquals(6, progress.getSent());
+
+		// e.g. the request is sent again after a redirect
+		IOUtils.toByteArray(tracked.createInputStream());
+		assertEquals(10, progress.getSent());
+		assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 0L, 10L), reported);
+	}
+
+	private static PartSource source(int length) {
+		return new ByteArrayPartSource("file", new byte[length]);
+	}
+
+	private static void read(PartSource source, int bytes) throws IOException {
+		final InputStream in = source.createInputStream();
+		for (int i = 0; i < bytes; i++) {
+			in.read();
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.remoteapi;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ServerSessionRegistryTest extends TestCase {
+
+	private ServerSessionRegistry<String> registry;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		registry = new ServerSessionRegistry<String>();
+	}
+
+	public void testReadySessionIsReused() throws Exception {
+		final CountingLoader loader = new CountingLoader(null);
+		assertEquals("session1", registry.getSession("a", loader));
+		assertEquals("session1", registry.getSession("a", loader));
+		assertEquals(1, loader.loads.get());
+	}
+
+	public void testSessionWhichIsNotReadyIsReloaded() throws Exception {
+		final CountingLoader loader = new CountingLoader(null) {
+			@Override
+			public boolean isReady(@NotNull String session) {
+				return false;
+			}
+		};
+		registry.getSession("a", loader);
+		registry.getSession("a", loader);
+		assertEquals(2, loader.loads.get());
+		assertEquals("session1", loader.lastStale.get());
+	}
+
+	public void testConcurrentCallersShareSingleLogin() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountingLoader loader = new CountingLoader(release);
+		final Thread[] threads = new Thread[8];
+		final String[] results = new String[threads.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						results[index] = registry.getSession("a", loader);
+					} catch (RemoteApiException e) {
+						fail(e.getMessage());
+					}
+				}
+			};
+			threads[i].start();
+		}
+		// let all threads queue up behind the first login
+		Thread.sleep(100);
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+		assertEquals(1, loader.loads.get());
+		for (String result : results) {
+			assertEquals("session1", result);
+		}
+	}
+
+	public void testOtherServersDoNotWaitForSlowLogin() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountingLoader slowLoader = new CountingLoader(release);
+		final Thread slow = new Thread() {
+			@Override
+			public void run() {
+				try {
+					registry.getSession("slow", slowLoader);
+				} catch (RemoteApiException e) {
+					// ignored
+				}
+			}
+		};
+		slow.start();
+		while (slowLoader.started.get() == 0) {
+			Thread.sleep(5);
+		}
+		try {
+			assertEquals("session1", registry.getSession("fast", new CountingLoader(null)));
+		} finally {
+			release.countDown();
+			slow.join(5000);
+		}
+	}
+
+	public void testFailureIsRememberedWithinRetryDelay() throws Exception {
+		registry.setFailureRetryDelay(60 * 1000L);
+		final RemoteApiException failure = new RemoteApiLoginFailedException("bad password");
+		final FailingLoader loader = new FailingLoader(failure);
+		try {
+			registry.getSession("a", loader);
+			fail("login failure expected");
+		} catch (RemoteApiException e) {
+			assertSame(failure, e);
+		}
+		final Set<RemoteApiException> thrown = new HashSet<RemoteApiException>();
+		for (int i = 0; i < 2; i++) {
+			try {
+				registry.getSession("a", loader);
+				fail("login failure expected");
+			} catch (RemoteApiLoginFailedException e) {
+				// remembered failure is reported as a new exception of the same kind
+				assertSame(failure, e.getCause());
+				assertEquals("bad password", e.getMessage());
+				assertTrue(thrown.add(e));
+			}
+		}
+		assertEquals(1, loader.attempts.get());
+
+		// other credentials (i.e. other key) are not affected
+		assertEquals("session1", registry.getSession("b", new CountingLoader(null)));
+
+		registry.remove("a");
+		try {
+			registry.getSession("a", loader);
+			fail("login failure expected");
+		} catch (RemoteApiException e) {
+			assertSame(failure, e);
+		}
+		assertEquals(2, loader.attempts.get());
+	}
+
+	public void testFailureIsRetriedWithoutDelay() throws Exception {
+		registry.setFailureRetryDelay(0);
+		final FailingLoader loader = new FailingLoader(new RemoteApiLoginException("server down"));
+		for (int i = 0; i < 3; i++) {
+			try {
+				registry.getSession("a", loader);
+				fail("login failure expected");
+			} catch (RemoteApiException e) {
+				// expected
+			}
+		}
+		assertEquals(3, loader.attempts.get());
+	}
+
+	public void testNegativeRetryDelayIsRejected() {
+		try {
+			registry.setFailureRetryDelay(-1);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static class CountingLoader implements ServerSessionRegistry.SessionLoader<String> {
+		private final CountDownLatch release;
+
+		private final AtomicInteger started = new AtomicInteger();
+
+		private final AtomicInteger loads = new AtomicInteger();
+
+		private final AtomicReference<String> lastStale = new AtomicReference<String>();
+
+		CountingLoader(@Nullable CountDownLatch release) {
+			this.release = release;
+		}
+
+		public boolean isReady(@NotNull String session) {
+			return true;
+		}
+
+		@NotNull
+		public String load(@Nullable String session) throws RemoteApiException {
+			started.incrementAndGet();
+			lastStale.set(session);
+			if (release != null) {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new RemoteApiException(e);
+				}
+			}
+			return "session" + loads.incrementAndGet();
+		}
+	}
+
+	private static class FailingLoader implements ServerSessionRegistry.SessionLoader<String> {
+		private final RemoteApiException failure;
+
+		private final AtomicInteger attempts = new AtomicInteger();
+
+		FailingLoader(@NotNull RemoteApiException failure) {
+			this.failure = failure;
+		}
+
+		public boolean isReady(@NotNull String session) {
+			return true;
+		}
+
+		@NotNull
+		public String load(@Nullable String session) throws RemoteApiException {
+			attempts.incrementAndGet();
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.theplugin.commons.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BoundedTaskRunnerTest extends TestCase {
+
+	public void testResultsKeepTaskOrder() throws Exception {
+		final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 20; i++) {
+			final int value = i;
+			tasks.add(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					// later tasks complete first
+					Thread.sleep(20 - value);
+					return value;
+				}
+			});
+		}
+		final List<Future<Integer>> results = BoundedTaskRunner.getShared().invokeAll(tasks, 5);
+		assertEquals(20, results.size());
+		for (int i = 0; i < 20; i++) {
+			assertTrue(results.get(i).isDone());
+			assertEquals(Integer.valueOf(i), results.get(i).get());
+		}
+	}
+
+	public void testParallelismOfOneRunsInCallerThread() throws Exception {
+		final Thread caller = Thread.currentThread();
+		final List<Callable<Thread>> tasks = new ArrayList<Callable<Thread>>();
+		for (int i = 0; i < 5; i++) {
+			tasks.add(new Callable<Thread>() {
+				public Thread call() {
+					return Thread.currentThread();
+				}
+			});
+		}
+		for (Future<Thread> result : BoundedTaskRunner.getShared().invokeAll(tasks, 1)) {
+			assertSame(caller, result.get());
+		}
+	}
+
+	public void testLimitIsRespected() throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < 30; i++) {
+			tasks.add(new Callable<Object>() {
+				public Object call() throws Exception {
+					final int current = inFlight.incrementAndGet();
+					synchronized (maxInFlight) {
+						maxInFlight.set(Math.max(current, maxInFlight.get()));
+					}
+					Thread.sleep(10);
+					inFlight.decrementAndGet();
+					return null;
+				}
+			});
+		}
+		BoundedTaskRunner.getShared().invokeAll(tasks, 4);
+		assertTrue("Too many tasks running: " + maxInFlight.get(), maxInFlight.get() <= 4);
+		assertTrue(maxInFlight.get() > 1);
+	}
+
+	public void testFailureDoesNotStopOtherTasks() throws Exception {
+		final List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		tasks.add(new Callable<String>() {
+			public String call() throws Exception {
+				throw new IOException("broken");
+			}
+		});
+		tasks.add(new Callable<String>() {
+			public String call() {
+				return "ok";
+			}
+		});
+		final List<Future<String>> results = BoundedTaskRunner.getShared().invokeAll(tasks, 2);
+		try {
+			results.get(0).get();
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals("ok", results.get(1).get());
+	}
+
+	public void testInvalidParallelism() throws Exception {
+		try {
+			BoundedTaskRunner.getShared().invokeAll(new ArrayList<Callable<Object>>(), 0);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.util;
+
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
+
+public class TimestampParserTest extends TestCase {
+
+	private static final DateTimeZone PDT = DateTimeZone.forOffsetHours(-7);
+
+	public void testIso() {
+		final long expected = new DateTime(2010, 10, 26, 9, 12, 48, 0, PDT).getMillis();
+		assertEquals(expected, TimestampParser.parseMillis("2010-10-26T09:12:48.000-07:00"));
+		assertEquals(expected, TimestampParser.parseMillis("2010-10-26T09:12:48-0700"));
+		assertEquals(expected, TimestampParser.parseMillis("2010-10-26T09:12:48-07"));
+		assertEquals(expected + 123, TimestampParser.parseMillis("2010-10-26T09:12:48.123-07:00"));
+		assertEquals(expected + 120, TimestampParser.parseMillis("2010-10-26T09:12:48.12-07:00"));
+		assertEquals(expected + 123, TimestampParser.parseMillis("2010-10-26T09:12:48.123456-07:00"));
+		assertEquals(expected, TimestampParser.parseMillis(" 2010-10-26T09:12:48.000-07:00\n"));
+
+		final long utc = new DateTime(2010, 11, 5, 15, 20, 54, 856, DateTimeZone.UTC).getMillis();
+		assertEquals(utc, TimestampParser.parseMillis("2010-11-05T15:20:54.856Z"));
+		assertEquals(utc, TimestampParser.parseMillis("2010-11-05T15:20:54.856+00:00"));
+		assertEquals(new DateTime(2010, 11, 5, 15, 20, 54, 856).getMillis(),
+				TimestampParser.parseMillis("2010-11-05T15:20:54.856Z", TimestampParser.ZULU_AS_LOCAL_TIME));
+		assertEquals(new DateTime(2010, 10, 26, 9, 12, 48, 0).getMillis(),
+				TimestampParser.parseMillis("2010-10-26T09:12:48"));
+		assertEquals(new DateTime(2008, 1, 30, 13, 40, 11, 0).getMillis(),
+				TimestampParser.parseMillis("2008-01-30 13:40:11"));
+		assertEquals(new DateTime(2010, 10, 26, 0, 0, 0, 0).getMillis(), TimestampParser.parseMillis("2010-10-26"));
+		assertEquals(new DateTime(2012, 2, 29, 0, 0, 0, 0, DateTimeZone.UTC).getMillis(),
+				TimestampParser.parseMillis("2012-02-29T00:00:00Z"));
+		assertEquals(new DateTime(1969, 12, 31, 23, 59, 59, 0, DateTimeZone.UTC).getMillis(),
+				TimestampParser.parseMillis("1969-12-31T23:59:59Z"));
+	}
+
+	public void testRfc822() {
+		final long expected = new DateTime(2009, 10, 6, 15, 22, 11, 0, DateTimeZone.forOffsetHours(2)).getMillis();
+		assertEquals(expected, TimestampParser.parseMillis("Tue, 6 Oct 2009 15:22:11 +0200 (CEST)"));
+		assertEquals(expected, TimestampParser.parseMillis("Tue, 6 Oct 2009 15:22:11 +0200"));
+		assertEquals(expected, TimestampParser.parseMillis("Tue, 06 OCT 2009 15:22:11 +0200"));
+		assertEquals(new DateTime(2009, 12, 31, 23, 0, 0, 0, DateTimeZone.forOffsetHoursMinutes(-3, 30)).getMillis(),
+				TimestampParser.parseMillis("Thu, 31 Dec 2009 23:00:00 -0330 (NST)"));
+	}
+
+	public void testInvalid() {
+		final String[] invalid = {null, "", "  ", "Unknown", "2010", "2010-10-26X", "2010-13-01", "2010-02-30",
+				"2011-02-29", "2010-10-26T24:00:00", "2010-10-26T09:60:00", "2010-10-26T09:12", "2010-10-26T09:12:48.",
+				"2010-10-26T09:12:48-07:0", "2010-10-26T09:12:48+2500", "2010-10-26T09:12:48Zulu",
+				"2010-10-26T09:12:48.000-07:00 x", "10/26/2010", "Tue, 6 Okt 2009 15:22:11 +0200",
+				"Tue, 6 Oct 2009 15:22:11", "Tue, 6 Oct 2009 15:22:11 +0200 CEST", "Tue 6 Oct 2009 15:22:11 +0200"};
+		for (String text : invalid) {
+			assertEquals(text, TimestampParser.INVALID, TimestampParser.parseMillis(text));
+		}
+		assertNull(TimestampParser.parseDate("Unknown"));
+		assertNull(TimestampParser.parseDateTime("Unknown"));
+	}
+
+	public void testLocalTimeAcrossTransitions() {
+		final DateTimeZone defaultZone = DateTimeZone.getDefault();
+		try {
+			for (String id : new String[]{"Europe/Warsaw", "America/Los_Angeles", "Australia/Adelaide", "UTC"}) {
+				final DateTimeZone zone = DateTimeZone.forID(id);
+				DateTimeZone.setDefault(zone);
+				// every 20 minutes of two years, including the hours skipped and repeated by DST changes
+				final long start = new DateTime(2009, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC).getMillis();
+				for (long local = start; local < start + 2 * 366 * 24 * 60 * 60 * 1000L; local += 20 * 60 * 1000) {
+					final String text = ISODateTimeFormat.dateHourMinuteSecond().withZone(DateTimeZone.UTC).print(local);
+					assertEquals(id + " " + text, local - zone.getOffsetFromLocal(local), TimestampParser.parseMillis(text));
+				}
+			}
+		} finally {
+			DateTimeZone.setDefault(defaultZone);
+		}
+	}
+
+	public void testConversions() {
+		final long millis = TimestampParser.parseMillis("2010-10-26T09:12:48.000-07:00");
+		assertEquals(millis, TimestampParser.parseDate("2010-10-26T09:12:48.000-07:00").getTime());
+		final DateTime dateTime = TimestampParser.parseDateTime("2010-10-26T09:12:48.000-07:00");
+		assertEquals(millis, dateTime.getMillis());
+		assertEquals(DateTimeZone.getDefault(), dateTime.getZone());
+	}
+}
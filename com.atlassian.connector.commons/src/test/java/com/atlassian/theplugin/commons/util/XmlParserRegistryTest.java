@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.commons.util;
+
+import junit.framework.TestCase;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.jdom.xpath.XPath;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class XmlParserRegistryTest extends TestCase {
+
+	private static final String RESPONSE = "<detailedReviews>"
+			+ "<detailedReviewData><permaId><id>CR-1</id></permaId><name>first</name></detailedReviewData>"
+			+ "<detailedReviewData><permaId><id>CR-2</id></permaId><name>second</name></detailedReviewData>"
+			+ "</detailedReviews>";
+
+	public void testExpressionsAreReusedWithinThread() throws Exception {
+		final XPath xpath = XmlParserRegistry.getXPath("/detailedReviews/detailedReviewData");
+		assertSame(xpath, XmlParserRegistry.getXPath("/detailedReviews/detailedReviewData"));
+		assertNotSame(xpath, XmlParserRegistry.getXPath("/detailedReviews"));
+		assertSame(XmlParserRegistry.getSAXBuilder(), XmlParserRegistry.getSAXBuilder());
+
+		final Document doc = XmlParserRegistry.getSAXBuilder().build(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")));
+		@SuppressWarnings("unchecked")
+		final List<Element> elements = xpath.selectNodes(doc);
+		assertEquals(2, elements.size());
+		assertEquals("CR-2", XmlParserRegistry.getXPath("permaId/id").valueOf(elements.get(1)));
+	}
+
+	public void testThreadsGetOwnInstances() throws Exception {
+		final XPath xpath = XmlParserRegistry.getXPath("/detailedReviews/detailedReviewData");
+		final SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+		final AtomicReference<Object> otherXPath = new AtomicReference<Object>();
+		final AtomicReference<Object> otherBuilder = new AtomicReference<Object>();
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					otherXPath.set(XmlParserRegistry.getXPath("/detailedReviews/detailedReviewData"));
+				} catch (Exception e) {
+					otherXPath.set(e);
+				}
+				otherBuilder.set(XmlParserRegistry.getSAXBuilder());
+			}
+		};
+		thread.start();
+		thread.join();
+		assertTrue(otherXPath.get() instanceof XPath);
+		assertNotSame(xpath, otherXPath.get());
+		assertNotSame(builder, otherBuilder.get());
+	}
+
+	public void testBuilderCanBeUsedAfterMalformedResponse() throws Exception {
+		final SAXBuilder builder = XmlParserRegistry.getSAXBuilder();
+		try {
+			builder.build(new ByteArrayInputStream("<detailedReviews><detailedReviewData>".getBytes("UTF-8")));
+			fail("JDOMException expected");
+		} catch (JDOMException e) {
+			// expected
+		}
+		final Document doc = builder.build(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")));
+		assertEquals(2, doc.getRootElement().getChildren("detailedReviewData").size());
+	}
+
+	public void testNumberOfExpressionsIsLimited() throws Exception {
+		final XPath first = XmlParserRegistry.getXPath("/a0");
+		for (int i = 1; i <= XmlParserRegistry.MAX_EXPRESSIONS; i++) {
+			XmlParserRegistry.getXPath("/a" + i);
+		}
+		assertNotSame(first, XmlParserRegistry.getXPath("/a0"));
+	}
+}
@@ -27,6 +27,7 @@ import com.atlassian.theplugin.commons.cfg.ServerIdImpl;
 import com.atlassian.theplugin.commons.configuration.ConfigurationFactory;
 import com.atlassian.theplugin.commons.configuration.PluginConfigurationBean;
 import com.atlassian.theplugin.commons.crucible.api.CrucibleSession;
+import com.atlassian.theplugin.commons.crucible.api.ReviewHandler;
 import com.atlassian.theplugin.commons.crucible.api.model.*;
 import com.atlassian.theplugin.commons.crucible.api.model.changes.Changes;
 import com.atlassian.theplugin.commons.crucible.api.rest.CrucibleSessionImpl;
@@ -38,6 +39,7 @@ import com.atlassian.theplugin.crucible.api.rest.cruciblemock.*;
 import com.spartez.util.junit3.TestUtil;
 import junit.framework.TestCase;
 import org.ddsteps.mock.httpserver.JettyMockServer;
+import org.jetbrains.annotations.NotNull;
 import org.mortbay.jetty.Server;
 
 import javax.servlet.http.HttpServletRequest;
@@ -1123,6 +1125,26 @@ public class CrucibleSessionTest extends TestCase {
 				CrucibleAction.REOPEN), lastReview.getActions());
 	}
 
+	public void testGetReviewsForFilterWithHandler() throws RemoteApiException {
+		mockServer.expect("/rest-service/reviews-v1/versionInfo", new VersionInfoCallback(true));
+		mockServer.expect("/rest-service/auth-v1/login", new LoginCallback(USER_NAME, PASSWORD));
+		mockServer.expect("/rest-service/reviews-v1/filter/open/details", new ResourceCallback(
+				"open-reviews-filter-results-cru-1.6.xml"));
+		CrucibleSession session = createCrucibleSession(mockBaseUrl, USER_NAME, PASSWORD);
+		session.login();
+		final List<BasicReview> reviews = new ArrayList<BasicReview>();
+		session.getReviewsForFilter(PredefinedFilter.Open, new ReviewHandler() {
+			public boolean handle(@NotNull BasicReview review) {
+				reviews.add(review);
+				// stop reading the rest of the response
+				return reviews.size() < 5;
+			}
+		});
+		mockServer.verify();
+		assertEquals(5, reviews.size());
+		assertEquals("CR-PLE-61", reviews.get(0).getPermId().getId());
+	}
+
 	private Review getReview(final PermId permId, final String resource, int numRepos) throws RemoteApiException {
 		final int size = 4;
 		mockServer.expect("/rest-service/reviews-v1/versionInfo", new VersionInfoCallback(true));
@@ -1134,9 +1156,8 @@ public class CrucibleSessionTest extends TestCase {
 				response.getOutputStream().flush();
 			}
 		});
-		for (int i = 0; i < numRepos; i++) {
-			mockServer.expect("/rest-service/auth-v1/login", new LoginCallback(USER_NAME, PASSWORD));
-			mockServer.expect("/rest-service/auth-v1/login", new LoginCallback(USER_NAME, PASSWORD));
+		if (numRepos > 0) {
+			// all repositories are resolved with one request
 			mockServer.expect("/rest-service/repositories-v1", new GetRepositoriesCallback(size));
 		}
 		CrucibleSession apiHandler = createCrucibleSession(mockBaseUrl, USER_NAME, PASSWORD);
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2008 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.theplugin.crucible.api.rest;
+
+import com.atlassian.theplugin.commons.crucible.api.ReviewHandler;
+import com.atlassian.theplugin.commons.crucible.api.model.BasicReview;
+import com.atlassian.theplugin.commons.crucible.api.rest.CrucibleRestXmlHelper;
+import com.atlassian.theplugin.commons.crucible.api.rest.StreamingReviewParser;
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+import org.jdom.xpath.XPath;
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamingReviewParserTest extends TestCase {
+
+	private static final String SERVER_URL = "http://localhost/crucible";
+
+	private byte[] openReviews;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		final InputStream in = getClass().getResourceAsStream(
+				"/mock/crucible/api/rest/open-reviews-filter-results-cru-1.6.xml");
+		try {
+			openReviews = IOUtils.toByteArray(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	public void testSameReviewsAsJdom() throws Exception {
+		final List<BasicReview> expected = parseWithJdom(openReviews);
+		final List<BasicReview> reviews = new ArrayList<BasicReview>();
+		final int count = new StreamingReviewParser(SERVER_URL, true).parse(new ByteArrayInputStream(openReviews),
+				new CollectingHandler(reviews, Integer.MAX_VALUE));
+
+		assertEquals(46, count);
+		assertEquals(expected.size(), reviews.size());
+		for (int i = 0; i < expected.size(); i++) {
+			final BasicReview e = expected.get(i);
+			final BasicReview r = reviews.get(i);
+			assertEquals(e.getPermId(), r.getPermId());
+			assertEquals(e.getName(), r.getName());
+			assertEquals(e.getDescription(), r.getDescription());
+			assertEquals(e.getState(), r.getState());
+			assertEquals(e.getAuthor(), r.getAuthor());
+			assertEquals(e.getModerator(), r.getModerator());
+			assertEquals(e.getReviewers(), r.getReviewers());
+			assertEquals(e.getActions(), r.getActions());
+			assertEquals(e.getCreateDate(), r.getCreateDate());
+			assertEquals(e.getMetricsVersion(), r.getMetricsVersion());
+		}
+	}
+
+	public void testHandlerStopsParsing() throws Exception {
+		final List<BasicReview> reviews = new ArrayList<BasicReview>();
+		final int count = new StreamingReviewParser(SERVER_URL, true).parse(new ByteArrayInputStream(openReviews),
+				new CollectingHandler(reviews, 3));
+		assertEquals(3, count);
+		assertEquals(3, reviews.size());
+	}
+
+	public void testOtherDocumentsHaveNoReviews() throws Exception {
+		final String xml = "<reviews><detailedReviewData><name>x</name></detailedReviewData></reviews>";
+		final List<BasicReview> reviews = new ArrayList<BasicReview>();
+		assertEquals(0, new StreamingReviewParser(SERVER_URL, true).parse(
+				new ByteArrayInputStream(xml.getBytes("UTF-8")), new CollectingHandler(reviews, Integer.MAX_VALUE)));
+	}
+
+	public void testMalformedResponse() throws Exception {
+		try {
+			new StreamingReviewParser(SERVER_URL, true).parse(new ByteArrayInputStream("<tag></badtag>".getBytes()),
+					new CollectingHandler(new ArrayList<BasicReview>(), Integer.MAX_VALUE));
+			fail("XMLStreamException expected");
+		} catch (XMLStreamException e) {
+			// expected
+		}
+	}
+
+	private static List<BasicReview> parseWithJdom(byte[] payload) throws Exception {
+		return parseDocument(new SAXBuilder().build(new ByteArrayInputStream(payload)));
+	}
+
+	private static List<BasicReview> parseDocument(Document doc) throws Exception {
+		@SuppressWarnings("unchecked")
+		final List<Element> elements = XPath.newInstance("/detailedReviews/detailedReviewData").selectNodes(doc);
+		final List<BasicReview> reviews = new ArrayList<BasicReview>();
+		for (Element element : elements) {
+			reviews.add(CrucibleRestXmlHelper.parseBasicReview(SERVER_URL, element, true));
+		}
+		return reviews;
+	}
+
+	private static class CollectingHandler implements ReviewHandler {
+		private final List<BasicReview> reviews;
+
+		private final int limit;
+
+		CollectingHandler(List<BasicReview> reviews, int limit) {
+			this.reviews = reviews;
+			this.limit = limit;
+		}
+
+		public boolean handle(@NotNull BasicReview review) {
+			reviews.add(review);
+			return reviews.size() < limit;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.atlassian.theplugin.jira;
+
+import com.atlassian.connector.commons.jira.cache.CachedIconLoader;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+public class CachedIconLoaderTest extends TestCase {
+
+	private File tempDir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		tempDir = new File(System.getProperty("java.io.tmpdir"), "icon-loader-test-" + System.nanoTime());
+		assertTrue(tempDir.mkdirs());
+		CachedIconLoader.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		CachedIconLoader.setIconDirectory(null);
+		CachedIconLoader.clear();
+		FileUtils.deleteDirectory(tempDir);
+		super.tearDown();
+	}
+
+	public void testLoadInBackgroundAndGet() throws Exception {
+		final String url = createIcon("type.png", 16, 12);
+		CachedIconLoader.loadIcon(url);
+		CachedIconLoader.loadIcon(url);
+
+		final Icon icon = CachedIconLoader.getIcon(url);
+		assertNotNull(icon);
+		assertEquals(16, icon.getIconWidth());
+		assertEquals(12, icon.getIconHeight());
+		assertSame(icon, CachedIconLoader.getIcon(url));
+
+		final Icon disabled = CachedIconLoader.getDisabledIcon(url);
+		assertNotNull(disabled);
+		assertNotSame(icon, disabled);
+		assertEquals(16, disabled.getIconWidth());
+		assertSame(disabled, CachedIconLoader.getDisabledIcon(url));
+	}
+
+	public void testInvalidUrl() {
+		CachedIconLoader.loadIcon("not a url");
+		CachedIconLoader.loadIcon(null);
+		assertNull(CachedIconLoader.getIcon("not a url"));
+		assertNull(CachedIconLoader.getDisabledIcon("not a url"));
+		assertNull(CachedIconLoader.getIcon((String) null));
+	}
+
+	public void testMissingIconIsNotFatal() throws Exception {
+		final String url = new File(tempDir, "missing.png").toURI().toURL().toString();
+		assertNull(CachedIconLoader.getIcon(url));
+		assertNull(CachedIconLoader.getDisabledIcon(url));
+	}
+
+	public void testFailedDownloadIsNotCachedForever() throws Exception {
+		final File file = new File(tempDir, "late.png");
+		final String url = file.toURI().toURL().toString();
+		assertNull(CachedIconLoader.getIcon(url));
+
+		// not retried within the retry delay
+		createIcon(file.getName(), 8, 8);
+		assertNull(CachedIconLoader.getIcon(url));
+
+		// retried once the failure is forgotten
+		CachedIconLoader.clear();
+		assertEquals(8, CachedIconLoader.getIcon(url).getIconWidth());
+	}
+
+	public void testIconDirectory() throws Exception {
+		final File store = new File(tempDir, "store");
+		CachedIconLoader.setIconDirectory(store);
+		final File source = new File(tempDir, "priority.png");
+		final String url = createIcon(source.getName(), 10, 10);
+		assertEquals(10, CachedIconLoader.getIcon(url).getIconWidth());
+		assertEquals(1, store.listFiles().length);
+
+		// served from the icon directory after the server copy is gone
+		assertTrue(source.delete());
+		CachedIconLoader.clear();
+		assertEquals(10, CachedIconLoader.getIcon(url).getIconWidth());
+	}
+
+	private String createIcon(String name, int width, int height) throws Exception {
+		final File file = new File(tempDir, name);
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+		return file.toURI().toURL().toString();
+	}
+}
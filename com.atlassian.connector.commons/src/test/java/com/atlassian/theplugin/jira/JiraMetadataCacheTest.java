@@ -0,0 +1,245 @@
+package com.atlassian.theplugin.jira;
+
+import com.atlassian.connector.commons.api.ConnectionCfg;
+import com.atlassian.connector.commons.jira.cache.JiraMetadataCache;
+import com.atlassian.connector.commons.jira.rss.JIRAException;
+import com.google.common.base.Ticker;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class JiraMetadataCacheTest extends TestCase {
+
+	private static final int CALLERS = 8;
+
+	private final ConnectionCfg server = new ConnectionCfg("id", "http://jira", "user", "password");
+
+	private final ConnectionCfg otherServer = new ConnectionCfg("id2", "http://other", "user", "password");
+
+	private JiraMetadataCache cache;
+
+	private final ManualTicker ticker = new ManualTicker();
+
+	private final QueuedExecutor refresher = new QueuedExecutor();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		cache = new JiraMetadataCache();
+	}
+
+	public void testValueIsLoadedOnce() throws Exception {
+		final CountingLoader loader = new CountingLoader("Open", "Closed");
+		assertEquals(Arrays.asList("Open", "Closed"), cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader));
+		assertEquals(Arrays.asList("Open", "Closed"), cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader));
+		assertEquals(1, loader.loads.get());
+		assertEquals(1, cache.getStats(JiraMetadataCache.Kind.STATUSES).hitCount());
+		assertEquals(1, cache.getStats(JiraMetadataCache.Kind.STATUSES).missCount());
+		assertEquals(0.5, cache.getStats().hitRate());
+	}
+
+	public void testValuesAreKeptPerServerKindAndProject() throws Exception {
+		final CountingLoader loader = new CountingLoader("x");
+		cache.get(server, JiraMetadataCache.Kind.VERSIONS, "A", loader);
+		cache.get(server, JiraMetadataCache.Kind.VERSIONS, "B", loader);
+		cache.get(server, JiraMetadataCache.Kind.COMPONENTS, "A", loader);
+		cache.get(otherServer, JiraMetadataCache.Kind.VERSIONS, "A", loader);
+		cache.get(new ConnectionCfg("id", "http://jira", "other", "password"), JiraMetadataCache.Kind.VERSIONS, "A",
+				loader);
+		cache.get(server, JiraMetadataCache.Kind.VERSIONS, "A", loader);
+		assertEquals(5, loader.loads.get());
+	}
+
+	public void testReturnedListsAreCopies() throws Exception {
+		final CountingLoader loader = new CountingLoader("Bug");
+		cache.get(server, JiraMetadataCache.Kind.ISSUE_TYPES, null, loader).add("Any");
+		assertEquals(Arrays.asList("Bug"), cache.get(server, JiraMetadataCache.Kind.ISSUE_TYPES, null, loader));
+		loader.values.add("Task");
+		assertEquals(Arrays.asList("Bug"), cache.getIfPresent(server, JiraMetadataCache.Kind.ISSUE_TYPES, null));
+	}
+
+	public void testConcurrentCallersShareLoad() throws Exception {
+		final CountingLoader loader = new CountingLoader("Major");
+		loader.delay = 100;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread[] threads = new Thread[CALLERS];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						if (!Arrays.asList("Major").equals(
+								cache.get(server, JiraMetadataCache.Kind.PRIORITIES, null, loader))) {
+							failures.incrementAndGet();
+						}
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures.get());
+		assertEquals(1, loader.loads.get());
+	}
+
+	public void testFailuresAreNotCached() throws Exception {
+		final CountingLoader loader = new CountingLoader("Fixed");
+		loader.failure = new JIRAException("Server is down");
+		try {
+			cache.get(server, JiraMetadataCache.Kind.RESOLUTIONS, null, loader);
+			fail("JIRAException expected");
+		} catch (JIRAException e) {
+			assertSame(loader.failure, e);
+		}
+		loader.failure = null;
+		assertEquals(Arrays.asList("Fixed"), cache.get(server, JiraMetadataCache.Kind.RESOLUTIONS, null, loader));
+		assertEquals(1, cache.getStats(JiraMetadataCache.Kind.RESOLUTIONS).loadExceptionCount());
+	}
+
+	public void testNullIsCached() throws Exception {
+		final CountingLoader loader = new CountingLoader();
+		loader.values = null;
+		assertNull(cache.get(server, JiraMetadataCache.Kind.SECURITY_LEVELS, "A", loader));
+		assertNull(cache.get(server, JiraMetadataCache.Kind.SECURITY_LEVELS, "A", loader));
+		assertEquals(1, loader.loads.get());
+	}
+
+	public void testInvalidate() throws Exception {
+		final CountingLoader loader = new CountingLoader("1.0");
+		cache.get(server, JiraMetadataCache.Kind.VERSIONS, "A", loader);
+		cache.get(server, JiraMetadataCache.Kind.VERSIONS, "B", loader);
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		cache.get(otherServer, JiraMetadataCache.Kind.VERSIONS, "A", loader);
+
+		cache.invalidate(server, JiraMetadataCache.Kind.VERSIONS, "A");
+		assertNull(cache.getIfPresent(server, JiraMetadataCache.Kind.VERSIONS, "A"));
+		assertNotNull(cache.getIfPresent(server, JiraMetadataCache.Kind.VERSIONS, "B"));
+
+		cache.invalidate(server, JiraMetadataCache.Kind.VERSIONS);
+		assertNull(cache.getIfPresent(server, JiraMetadataCache.Kind.VERSIONS, "B"));
+		assertNotNull(cache.getIfPresent(server, JiraMetadataCache.Kind.STATUSES, null));
+
+		cache.invalidate(server);
+		assertNull(cache.getIfPresent(server, JiraMetadataCache.Kind.STATUSES, null));
+		assertNotNull(cache.getIfPresent(otherServer, JiraMetadataCache.Kind.VERSIONS, "A"));
+
+		cache.invalidateAll();
+		assertNull(cache.getIfPresent(otherServer, JiraMetadataCache.Kind.VERSIONS, "A"));
+	}
+
+	public void testExpiredValueIsLoadedAgain() throws Exception {
+		cache = new JiraMetadataCache(50, 0, ticker, refresher);
+		final CountingLoader loader = new CountingLoader("Open");
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		ticker.advance(40);
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		assertEquals(1, loader.loads.get());
+		ticker.advance(20);
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		assertEquals(2, loader.loads.get());
+	}
+
+	public void testZeroTtlDisablesCaching() throws Exception {
+		cache = new JiraMetadataCache(0, 0);
+		final CountingLoader loader = new CountingLoader("Open");
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		assertEquals(2, loader.loads.get());
+	}
+
+	public void testStaleValueIsRefreshedInBackground() throws Exception {
+		cache = new JiraMetadataCache(60 * 1000, 50, ticker, refresher);
+		final CountingLoader loader = new CountingLoader("Open");
+		cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader);
+		ticker.advance(100);
+		loader.values = new ArrayList<String>(Arrays.asList("Open", "Reopened"));
+
+		// the old value is returned while the new one is being loaded
+		assertEquals(Arrays.asList("Open"), cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader));
+		assertEquals(Arrays.asList("Open"), cache.get(server, JiraMetadataCache.Kind.STATUSES, null, loader));
+		assertEquals(1, loader.loads.get());
+		assertEquals(1, refresher.tasks.size());
+
+		refresher.runAll();
+		assertEquals(Arrays.asList("Open", "Reopened"),
+				cache.getIfPresent(server, JiraMetadataCache.Kind.STATUSES, null));
+		assertEquals(2, loader.loads.get());
+		assertEquals(2, cache.getStats(JiraMetadataCache.Kind.STATUSES).loadSuccessCount());
+	}
+
+	private static final class ManualTicker extends Ticker {
+		private final AtomicLong nanos = new AtomicLong();
+
+		private void advance(long millis) {
+			nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+	}
+
+	/**
+	 * Runs background reloads only when the test asks for it.
+	 */
+	private static final class QueuedExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		public synchronized void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		private void runAll() {
+			final List<Runnable> queued;
+			synchronized (this) {
+				queued = new ArrayList<Runnable>(tasks);
+				tasks.clear();
+			}
+			for (Runnable task : queued) {
+				task.run();
+			}
+		}
+	}
+
+	private static final class CountingLoader implements JiraMetadataCache.Loader<String> {
+		private final AtomicInteger loads = new AtomicInteger();
+
+		private volatile List<String> values;
+
+		private volatile long delay;
+
+		private volatile JIRAException failure;
+
+		private CountingLoader(String... values) {
+			this.values = new ArrayList<String>(Arrays.asList(values));
+		}
+
+		public List<String> load() throws JIRAException {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				throw new JIRAException("interrupted", e);
+			}
+			loads.incrementAndGet();
+			if (failure != null) {
+				throw failure;
+			}
+			return values;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.atlassian.theplugin.jira;
 
+import com.atlassian.connector.commons.jira.JIRAIssueBean;
 import com.atlassian.jira.rest.client.domain.FavouriteFilter;
 import com.atlassian.jira.rest.client.internal.json.FavouriteFilterJsonParser;
 import com.atlassian.jira.rest.client.internal.json.GenericJsonArrayParser;
@@ -60,4 +61,36 @@ public class RestParserTest extends TestCase {
             fail(e.getMessage());
         }
     }
+
+    public void testIssueSummaries() throws JSONException {
+        JSONArray issues = getJsonObjectFromResource("/mock/jira/search-summaries.json").getJSONArray("issues");
+
+        JIRAIssueBean issue = new JIRAIssueBean("http://my-jira-url/jira", issues.getJSONObject(0));
+        assertTrue(issue.isSummaryOnly());
+        assertTrue(issue.usesRest());
+        assertEquals(Long.valueOf(10201), issue.getId());
+        assertEquals("PL-2818", issue.getKey());
+        assertEquals("PL", issue.getProjectKey());
+        assertEquals("Cannot parse favourite filters", issue.getSummary());
+        assertEquals("In Progress", issue.getStatus());
+        assertEquals(3, issue.getStatusId());
+        assertEquals("http://my-jira-url/jira/images/icons/status_inprogress.gif", issue.getStatusTypeUrl());
+        assertEquals("Critical", issue.getPriority());
+        assertEquals(2, issue.getPriorityId());
+        assertEquals("kalamon", issue.getAssigneeId());
+        assertEquals("Janusz Kalamon", issue.getAssignee());
+        assertNotNull(issue.getUpdated());
+        assertNull(issue.getDescription());
+        assertNull(issue.getApiIssueObject());
+
+        JIRAIssueBean unassigned = new JIRAIssueBean("http://my-jira-url/jira", issues.getJSONObject(1));
+        assertEquals("PL-2819", unassigned.getKey());
+        assertEquals("Open", unassigned.getStatus());
+        assertNull(unassigned.getPriority());
+        assertNull(unassigned.getAssignee());
+
+        // copies keep telling that details have not been retrieved yet
+        assertTrue(new JIRAIssueBean(issue).isSummaryOnly());
+        assertTrue(new JIRAIssueBean(issue).usesRest());
+    }
 }